@@ -0,0 +1,158 @@
+package dev.ouanu.iems.aop;
+
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.security.core.Authentication;
+import org.springframework.stereotype.Component;
+import org.springframework.web.multipart.MultipartFile;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+
+/**
+ * Turns the arguments of an audited call into a storable, redacted map.
+ * <p>
+ * {@link #detach} runs on the request thread and only swaps out arguments that do not outlive the request;
+ * {@link #redact} does the serialization work later, on the audit writer thread.
+ * <p>
+ * Rules, applied per argument:
+ * <ul>
+ * <li>an argument whose parameter name is a sensitive name is replaced by a mask;</li>
+ * <li>uploads are reduced to file name, size and content type, other streams and servlet / security objects are
+ *     left out;</li>
+ * <li>anything else is converted to a JSON tree in which every sensitive field, at any depth, is masked, and long
+ *     strings are truncated.</li>
+ * </ul>
+ */
+@Component
+public class AuditRedactor {
+
+    static final String MASK = "***";
+    // 不记录的参数
+    private static final Object OMIT = new Object();
+
+    private final ObjectMapper objectMapper;
+    private final Set<String> sensitiveNames;
+    private final int maxValueLength;
+
+    public AuditRedactor(ObjectMapper objectMapper,
+                         @Value("${app.audit.redact-fields:password,newPassword,currentPassword,confirmNewPassword,passwordHash,signatureHash,accessToken,refreshToken,token}") String[] redactFields,
+                         @Value("${app.audit.max-value-length:1024}") int maxValueLength) {
+        this.objectMapper = objectMapper;
+        // 字段名比较不区分大小写
+        this.sensitiveNames = Arrays.stream(redactFields)
+                .map(name -> name.trim().toLowerCase(Locale.ROOT))
+                .filter(name -> !name.isEmpty())
+                .collect(Collectors.toUnmodifiableSet());
+        this.maxValueLength = maxValueLength;
+    }
+
+    /**
+     * Replace uploads by their metadata and drop streams and servlet / security objects, which are invalid once the
+     * request ends. Returns {@code args} itself when nothing needs replacing.
+     */
+    public Object[] detach(Object[] args) {
+        Object[] detached = args;
+        for (int i = 0; i < args.length; i++) {
+            Object replacement = detachArgument(args[i]);
+            if (replacement != args[i]) {
+                if (detached == args) {
+                    detached = args.clone();
+                }
+                detached[i] = replacement;
+            }
+        }
+        return detached;
+    }
+
+    private static Object detachArgument(Object arg) {
+        if (arg instanceof MultipartFile file) {
+            Map<String, Object> summary = new LinkedHashMap<>();
+            summary.put("originalFilename", file.getOriginalFilename());
+            summary.put("size", file.getSize());
+            summary.put("contentType", file.getContentType());
+            return summary;
+        }
+        if (arg instanceof InputStream || arg instanceof InputStreamSource || arg instanceof byte[]
+                || arg instanceof ServletRequest || arg instanceof ServletResponse || arg instanceof Authentication) {
+            return OMIT;
+        }
+        return arg;
+    }
+
+    /**
+     * @param names parameter names, may be null when the class was compiled without {@code -parameters}
+     * @param args arguments as returned by {@link #detach}
+     */
+    public Map<String, Object> redact(String[] names, Object[] args) {
+        Map<String, Object> redacted = new LinkedHashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            String name = names != null && i < names.length ? names[i] : "arg" + i;
+            Object value = redactArgument(name, args[i]);
+            if (value != OMIT) {
+                redacted.put(name, value);
+            }
+        }
+        return redacted;
+    }
+
+    private Object redactArgument(String name, Object arg) {
+        if (arg == null) {
+            return null;
+        }
+        if (arg == OMIT) {
+            return OMIT;
+        }
+        if (isSensitive(name)) {
+            return MASK;
+        }
+        try {
+            JsonNode tree = objectMapper.valueToTree(arg);
+            return objectMapper.convertValue(scrub(tree), Object.class);
+        } catch (IllegalArgumentException e) {
+            return "<unserializable " + arg.getClass().getSimpleName() + ">";
+        }
+    }
+
+    private JsonNode scrub(JsonNode node) {
+        if (node.isObject()) {
+            ObjectNode object = (ObjectNode) node;
+            for (Map.Entry<String, JsonNode> field : object.properties()) {
+                if (isSensitive(field.getKey())) {
+                    field.setValue(TextNode.valueOf(MASK));
+                } else {
+                    field.setValue(scrub(field.getValue()));
+                }
+            }
+            return object;
+        }
+        if (node.isArray()) {
+            for (int i = 0; i < node.size(); i++) {
+                ((ArrayNode) node).set(i, scrub(node.get(i)));
+            }
+            return node;
+        }
+        if (node.isTextual() && node.textValue().length() > maxValueLength) {
+            return TextNode.valueOf(node.textValue().substring(0, maxValueLength) + "...");
+        }
+        return node;
+    }
+
+    private boolean isSensitive(String name) {
+        return name != null && sensitiveNames.contains(name.toLowerCase(Locale.ROOT));
+    }
+}
@@ -1,23 +1,39 @@
 package dev.ouanu.iems.aop;
 
-import java.util.UUID;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
 import org.aspectj.lang.annotation.Pointcut;
+import org.aspectj.lang.reflect.MethodSignature;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Component;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.ouanu.iems.annotation.ActionLog;
+import dev.ouanu.iems.service.AuditService;
+import dev.ouanu.iems.service.AuditService.AuditedMethod;
 
+/**
+ * Hands every {@code @ActionLog} call to {@link AuditService}. Nothing is serialized on the request thread;
+ * arguments are redacted and written asynchronously.
+ */
 @Aspect
 @Component
 public class ServiceLogAspect {
     private static final Logger log = LoggerFactory.getLogger(ServiceLogAspect.class);
-    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final AuditService auditService;
+    // 每个方法的动作名 / 方法名 / 参数名只解析一次
+    private final Map<Method, AuditedMethod> methods = new ConcurrentHashMap<>();
+
+    public ServiceLogAspect(AuditService auditService) {
+        this.auditService = auditService;
+    }
 
     // @Pointcut("execution(* dev.ouanu.iems.service.*.*(..))")
     // public void serviceLogPointcut() {
@@ -32,22 +48,29 @@ public class ServiceLogAspect {
     @Around("serviceLogPointcut()")
     public Object doAround(ProceedingJoinPoint joinPoint) throws Throwable {
         long startTime = System.currentTimeMillis();
-        String id = UUID.randomUUID().toString();
-        String methodName = joinPoint.getSignature().getDeclaringTypeName() + "." + joinPoint.getSignature().getName();
-        Object[] args = joinPoint.getArgs();
-
+        Object result = null;
+        Throwable failure = null;
         try {
-            log.info("ID: {}, 方法: {}, 参数: {}", id, methodName, objectMapper.writeValueAsString(args));
-        } catch (JsonProcessingException e) {
-            log.warn("ID: {}, 方法: {}, 参数序列化失败: {}", id, methodName, args);
+            // 执行目标方法
+            result = joinPoint.proceed();
+            return result;
+        } catch (Throwable t) {
+            failure = t;
+            throw t;
+        } finally {
+            long executionTime = System.currentTimeMillis() - startTime;
+            AuditedMethod method = methods.computeIfAbsent(((MethodSignature) joinPoint.getSignature()).getMethod(),
+                    m -> describe(joinPoint, m));
+            Integer status = result instanceof ResponseEntity<?> response ? response.getStatusCode().value() : null;
+            auditService.capture(method, joinPoint.getArgs(), startTime, executionTime, status, failure);
+            log.debug("方法: {} 执行完毕, 耗时: {} ms", method.method(), executionTime);
         }
+    }
 
-        // 执行目标方法
-        Object result = joinPoint.proceed();
-
-        long executionTime = System.currentTimeMillis() - startTime;
-        log.info("ID: {}, 方法: {} 执行完毕, 耗时: {} ms", id, methodName, executionTime);
-
-        return result;
+    private static AuditedMethod describe(ProceedingJoinPoint joinPoint, Method method) {
+        ActionLog actionLog = method.getAnnotation(ActionLog.class);
+        String name = joinPoint.getSignature().getDeclaringTypeName() + "." + method.getName();
+        String action = actionLog != null && !actionLog.value().isEmpty() ? actionLog.value() : method.getName();
+        return new AuditedMethod(action, name, ((MethodSignature) joinPoint.getSignature()).getParameterNames());
     }
 }
@@ -0,0 +1,30 @@
+package dev.ouanu.iems.apk;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Everything the server keeps from an APK, as read by {@link ApkMetadataExtractor}.
+ * @param labels application label by BCP 47 language tag, plus {@code default}
+ * @param abis native ABIs shipped under {@code lib/}, empty for pure Java / Kotlin apps
+ * @param signerDigests hex SHA-256 of each signer certificate (DER), v2/v3 signing block first, else v1
+ * @param icons raster launcher icons, one per density
+ */
+public record ApkMetadata(
+    String packageName,
+    long versionCode,
+    String versionName,
+    Map<String, String> labels,
+    Integer minSdkVersion,
+    Integer targetSdkVersion,
+    List<String> abis,
+    List<String> permissions,
+    List<String> signerDigests,
+    List<Icon> icons
+) {
+    /**
+     * @param density screen density of the resource configuration, 0 when unspecified
+     */
+    public record Icon(String path, int density, byte[] data) {
+    }
+}
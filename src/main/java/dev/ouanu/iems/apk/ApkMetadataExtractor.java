@@ -0,0 +1,306 @@
+package dev.ouanu.iems.apk;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.cert.Certificate;
+import java.security.cert.CertificateException;
+import java.security.cert.CertificateFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.apache.commons.codec.digest.DigestUtils;
+
+import net.dongliu.apk.parser.bean.ApkMeta;
+import net.dongliu.apk.parser.bean.IconPath;
+import net.dongliu.apk.parser.parser.ApkMetaTranslator;
+import net.dongliu.apk.parser.parser.BinaryXmlParser;
+import net.dongliu.apk.parser.parser.ResourceTableParser;
+import net.dongliu.apk.parser.struct.resource.ResourceTable;
+import net.dongliu.apk.parser.utils.Locales;
+
+/**
+ * Reads {@link ApkMetadata} with one parse of {@code resources.arsc}.
+ * <p>
+ * {@code ApkFile.setPreferredLocale} followed by {@code getApkMeta} re-parses the manifest and re-resolves every
+ * attribute for each locale. Here the manifest is parsed once against the resource table (default label, icons,
+ * SDK levels, permissions) and once against an empty table, which leaves the label as its raw resource id; every
+ * translation is then read straight from that resource's entries in the table. ABIs come from the zip entry names
+ * and signer digests from the APK Signing Block (or the v1 signature files), without loading dex or other resources.
+ */
+public final class ApkMetadataExtractor {
+
+    private static final String MANIFEST = "AndroidManifest.xml";
+    private static final String RESOURCES = "resources.arsc";
+    private static final String DEFAULT_LABEL = "default";
+    // 资源引用在无资源表时的字符串形式
+    private static final Pattern RESOURCE_REFERENCE = Pattern.compile("resourceId:0x([0-9a-fA-F]+)");
+    private static final Set<String> RASTER_EXTENSIONS = Set.of(".png", ".webp", ".jpg", ".jpeg");
+
+    private static final byte[] SIGNING_BLOCK_MAGIC = "APK Sig Block 42".getBytes(StandardCharsets.US_ASCII);
+    private static final int SIGNATURE_SCHEME_V2_ID = 0x7109871a;
+    private static final int SIGNATURE_SCHEME_V3_ID = 0xf05368c0;
+    private static final int MAX_SIGNING_BLOCK_SIZE = 16 * 1024 * 1024;
+
+    private ApkMetadataExtractor() {
+    }
+
+    /**
+     * @throws java.util.zip.ZipException if the file is not a zip archive
+     * @throws IllegalArgumentException if the archive has no manifest
+     * @throws net.dongliu.apk.parser.exception.ParserException if the manifest or resource table is malformed
+     */
+    public static ApkMetadata extract(Path apk) throws IOException {
+        try (ZipFile zip = new ZipFile(apk.toFile())) {
+            byte[] manifest = read(zip, MANIFEST);
+            if (manifest == null) {
+                throw new IllegalArgumentException("Not an APK: missing " + MANIFEST);
+            }
+            byte[] resources = read(zip, RESOURCES);
+            ResourceTable table;
+            if (resources != null) {
+                ResourceTableParser parser = new ResourceTableParser(ByteBuffer.wrap(resources));
+                parser.parse();
+                table = parser.getResourceTable();
+            } else {
+                table = new ResourceTable();
+            }
+
+            ApkMetaTranslator translator = translate(manifest, table);
+            ApkMeta meta = translator.getApkMeta();
+            String rawLabel = translate(manifest, new ResourceTable()).getApkMeta().getLabel();
+
+            Map<String, String> labels = new LinkedHashMap<>();
+            labels.put(DEFAULT_LABEL, meta.getLabel());
+            labels.putAll(localizedLabels(rawLabel, table));
+
+            return new ApkMetadata(
+                    meta.getPackageName(),
+                    meta.getVersionCode() == null ? 0L : meta.getVersionCode(),
+                    meta.getVersionName(),
+                    labels,
+                    sdkLevel(meta.getMinSdkVersion()),
+                    sdkLevel(meta.getTargetSdkVersion()),
+                    abis(zip),
+                    meta.getUsesPermissions() == null ? List.of() : List.copyOf(new LinkedHashSet<>(meta.getUsesPermissions())),
+                    signerDigests(apk, zip),
+                    icons(zip, translator.getIconPaths()));
+        }
+    }
+
+    private static ApkMetaTranslator translate(byte[] manifest, ResourceTable table) {
+        ApkMetaTranslator translator = new ApkMetaTranslator(table, Locales.any);
+        BinaryXmlParser parser = new BinaryXmlParser(ByteBuffer.wrap(manifest), table);
+        parser.setLocale(Locales.any);
+        parser.setXmlStreamer(translator);
+        parser.parse();
+        return translator;
+    }
+
+    // 直接遍历标签资源在各语言配置下的条目，一次得到全部翻译
+    private static Map<String, String> localizedLabels(String rawLabel, ResourceTable table) {
+        Map<String, String> labels = new LinkedHashMap<>();
+        Matcher matcher = rawLabel == null ? null : RESOURCE_REFERENCE.matcher(rawLabel);
+        if (matcher == null || !matcher.matches()) {
+            // 标签是字面量，没有翻译
+            return labels;
+        }
+        long resourceId = Long.parseLong(matcher.group(1), 16);
+        for (ResourceTable.Resource resource : table.getResourcesById(resourceId)) {
+            Locale locale = resource.getType().getLocale();
+            if (locale == null || locale.getLanguage().isEmpty()) {
+                continue;
+            }
+            String label = resource.getResourceEntry().toStringValue(table, locale);
+            if (label != null && !label.isEmpty()) {
+                labels.putIfAbsent(locale.toLanguageTag(), label);
+            }
+        }
+        return labels;
+    }
+
+    private static List<String> abis(ZipFile zip) {
+        Set<String> abis = new TreeSet<>();
+        Enumeration<? extends ZipEntry> entries = zip.entries();
+        while (entries.hasMoreElements()) {
+            String name = entries.nextElement().getName();
+            // lib/<abi>/libfoo.so
+            if (name.startsWith("lib/") && name.endsWith(".so")) {
+                int slash = name.indexOf('/', 4);
+                if (slash > 4) {
+                    abis.add(name.substring(4, slash));
+                }
+            }
+        }
+        return List.copyOf(abis);
+    }
+
+    private static List<ApkMetadata.Icon> icons(ZipFile zip, List<IconPath> iconPaths) throws IOException {
+        List<ApkMetadata.Icon> icons = new ArrayList<>();
+        if (iconPaths == null) {
+            return icons;
+        }
+        Set<String> seen = new LinkedHashSet<>();
+        for (IconPath iconPath : iconPaths) {
+            String path = iconPath.getPath();
+            // 自适应图标（XML）需要渲染，只取位图
+            if (path == null || !isRaster(path) || !seen.add(path)) {
+                continue;
+            }
+            byte[] data = read(zip, path);
+            if (data != null && data.length > 0) {
+                icons.add(new ApkMetadata.Icon(path, iconPath.getDensity(), data));
+            }
+        }
+        return icons;
+    }
+
+    private static boolean isRaster(String path) {
+        int dot = path.lastIndexOf('.');
+        return dot > 0 && RASTER_EXTENSIONS.contains(path.substring(dot).toLowerCase(Locale.ROOT));
+    }
+
+    private static Integer sdkLevel(String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Integer.valueOf(value.trim());
+        } catch (NumberFormatException e) {
+            // 预览版 SDK 用代号表示，例如 "VanillaIceCream"
+            return null;
+        }
+    }
+
+    private static byte[] read(ZipFile zip, String name) throws IOException {
+        ZipEntry entry = zip.getEntry(name);
+        if (entry == null) {
+            return null;
+        }
+        try (InputStream in = zip.getInputStream(entry)) {
+            return in.readAllBytes();
+        }
+    }
+
+    // ---- signer certificates ----
+
+    static List<String> signerDigests(Path apk, ZipFile zip) throws IOException {
+        Set<String> digests = new LinkedHashSet<>();
+        try (FileChannel channel = FileChannel.open(apk, StandardOpenOption.READ)) {
+            ByteBuffer pairs = signingBlockPairs(channel);
+            while (pairs != null && pairs.remaining() >= 12) {
+                long length = pairs.getLong();
+                if (length < 4 || length > pairs.remaining()) {
+                    break;
+                }
+                int id = pairs.getInt();
+                ByteBuffer value = slice(pairs, (int) length - 4);
+                if (id == SIGNATURE_SCHEME_V2_ID || id == SIGNATURE_SCHEME_V3_ID) {
+                    collectSigners(value, digests);
+                }
+            }
+        } catch (RuntimeException e) {
+            // 签名块格式异常时退回 v1
+            digests.clear();
+        }
+        if (digests.isEmpty()) {
+            digests.addAll(v1SignerDigests(zip));
+        }
+        return List.copyOf(digests);
+    }
+
+    /**
+     * @return the ID-value pairs of the APK Signing Block, or null if the file has none
+     */
+    private static ByteBuffer signingBlockPairs(FileChannel channel) throws IOException {
+        long centralDirectoryOffset = ZipLayout.centralDirectoryOffset(channel);
+        if (centralDirectoryOffset < 32 || centralDirectoryOffset > channel.size()) {
+            return null;
+        }
+        // 块尾：8 字节块大小 + 16 字节魔数，紧挨中央目录
+        ByteBuffer footer = ZipLayout.readAt(channel, centralDirectoryOffset - 24, 24);
+        byte[] magic = new byte[SIGNING_BLOCK_MAGIC.length];
+        footer.position(8);
+        footer.get(magic);
+        if (!Arrays.equals(magic, SIGNING_BLOCK_MAGIC)) {
+            return null;
+        }
+        long blockSize = footer.getLong(0);
+        if (blockSize < 24 || blockSize > MAX_SIGNING_BLOCK_SIZE || blockSize + 8 > centralDirectoryOffset) {
+            return null;
+        }
+        long blockStart = centralDirectoryOffset - blockSize - 8;
+        return ZipLayout.readAt(channel, blockStart + 8, (int) blockSize - 24);
+    }
+
+    // signers: [signer: [signed data: [digests][certificates: [cert]...]...]...]，均为 uint32 长度前缀
+    private static void collectSigners(ByteBuffer value, Set<String> digests) {
+        ByteBuffer signers = lengthPrefixed(value);
+        while (signers.hasRemaining()) {
+            ByteBuffer signer = lengthPrefixed(signers);
+            ByteBuffer signedData = lengthPrefixed(signer);
+            lengthPrefixed(signedData);
+            ByteBuffer certificates = lengthPrefixed(signedData);
+            if (certificates.hasRemaining()) {
+                ByteBuffer certificate = lengthPrefixed(certificates);
+                byte[] encoded = new byte[certificate.remaining()];
+                certificate.get(encoded);
+                digests.add(DigestUtils.sha256Hex(encoded));
+            }
+        }
+    }
+
+    private static List<String> v1SignerDigests(ZipFile zip) throws IOException {
+        List<String> digests = new ArrayList<>();
+        Enumeration<? extends ZipEntry> entries = zip.entries();
+        while (entries.hasMoreElements()) {
+            ZipEntry entry = entries.nextElement();
+            String name = entry.getName().toUpperCase(Locale.ROOT);
+            if (!name.startsWith("META-INF/") || name.indexOf('/', 9) >= 0
+                    || !(name.endsWith(".RSA") || name.endsWith(".DSA") || name.endsWith(".EC"))) {
+                continue;
+            }
+            try (InputStream in = zip.getInputStream(entry)) {
+                // PKCS#7 SignedData，第一个证书为签名者证书
+                for (Certificate certificate : CertificateFactory.getInstance("X.509").generateCertificates(in)) {
+                    digests.add(DigestUtils.sha256Hex(certificate.getEncoded()));
+                    break;
+                }
+            } catch (CertificateException e) {
+                // 无法解析的签名文件忽略
+            }
+        }
+        return digests;
+    }
+
+    private static ByteBuffer lengthPrefixed(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IllegalArgumentException("Malformed APK signing block");
+        }
+        return slice(buffer, length);
+    }
+
+    private static ByteBuffer slice(ByteBuffer buffer, int length) {
+        ByteBuffer slice = buffer.slice(buffer.position(), length).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.position(buffer.position() + length);
+        return slice;
+    }
+}
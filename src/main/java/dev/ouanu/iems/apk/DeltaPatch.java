@@ -0,0 +1,232 @@
+package dev.ouanu.iems.apk;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ZIP-aware binary delta between two APKs.
+ * <p>
+ * An APK update usually keeps most entries bit-for-bit: the same compressed bytes under the same name, only at a
+ * different offset. The patch describes the new file as a sequence of operations that copy such entry data from the
+ * old file and add everything else (local headers, changed entries, signing block, central directory) literally, so
+ * applying it rebuilds the new APK byte-for-byte and its signature stays valid.
+ * <p>
+ * Format, big-endian:
+ * <pre>
+ * "IEMSDLT1"  old SHA-256 (32)  new SHA-256 (32)  new size (8)
+ * { 1 offset(8) length(8)       copy from the old file
+ * | 2 length(8) bytes           add literal bytes }*
+ * 0                             end
+ * </pre>
+ * A client checks the old hash against the APK it has and the new hash against the result.
+ */
+public final class DeltaPatch {
+
+    public static final String MEDIA_TYPE = "application/vnd.iems.apk-delta";
+
+    private static final byte[] MAGIC = "IEMSDLT1".getBytes(StandardCharsets.US_ASCII);
+    private static final int SHA256_LENGTH = 32;
+    private static final int OP_END = 0;
+    private static final int OP_COPY = 1;
+    private static final int OP_ADD = 2;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Identity of a patch as written in its header.
+     */
+    public record Header(byte[] oldSha256, byte[] newSha256, long newSize) {
+    }
+
+    private DeltaPatch() {
+    }
+
+    /**
+     * Write the patch turning {@code oldApk} into {@code newApk}. Entries are reused only when their compressed bytes
+     * are identical, so the result is exact even if the archives are not well-formed; it is merely larger.
+     */
+    public static void create(Path oldApk, Path newApk, byte[] oldSha256, byte[] newSha256, OutputStream out)
+            throws IOException {
+        try (FileChannel oldChannel = FileChannel.open(oldApk, StandardOpenOption.READ);
+             FileChannel newChannel = FileChannel.open(newApk, StandardOpenOption.READ)) {
+            Map<String, ZipLayout.Entry> oldEntries = new HashMap<>();
+            for (ZipLayout.Entry entry : ZipLayout.entries(oldChannel)) {
+                oldEntries.put(entry.name(), entry);
+            }
+            List<ZipLayout.Entry> newEntries = ZipLayout.entries(newChannel).stream()
+                    .sorted(Comparator.comparingLong(ZipLayout.Entry::dataOffset))
+                    .toList();
+
+            long newSize = newChannel.size();
+            DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out, BUFFER_SIZE));
+            data.write(MAGIC);
+            data.write(oldSha256);
+            data.write(newSha256);
+            data.writeLong(newSize);
+
+            long cursor = 0;
+            // 旧文件中连续的条目合并为一次 COPY
+            long copyOffset = -1;
+            long copyLength = 0;
+            for (ZipLayout.Entry entry : newEntries) {
+                ZipLayout.Entry old = oldEntries.get(entry.name());
+                if (old == null || entry.compressedSize() == 0 || entry.dataOffset() < cursor
+                        || old.method() != entry.method() || old.crc() != entry.crc()
+                        || old.compressedSize() != entry.compressedSize()
+                        || !sameBytes(oldChannel, old.dataOffset(), newChannel, entry.dataOffset(), entry.compressedSize())) {
+                    continue;
+                }
+                if (entry.dataOffset() > cursor) {
+                    writeCopy(data, copyOffset, copyLength);
+                    copyOffset = -1;
+                    copyLength = 0;
+                    writeAdd(data, newChannel, cursor, entry.dataOffset() - cursor);
+                }
+                if (copyOffset >= 0 && copyOffset + copyLength == old.dataOffset()) {
+                    copyLength += entry.compressedSize();
+                } else {
+                    writeCopy(data, copyOffset, copyLength);
+                    copyOffset = old.dataOffset();
+                    copyLength = entry.compressedSize();
+                }
+                cursor = entry.dataOffset() + entry.compressedSize();
+            }
+            writeCopy(data, copyOffset, copyLength);
+            writeAdd(data, newChannel, cursor, newSize - cursor);
+            data.writeByte(OP_END);
+            data.flush();
+        }
+    }
+
+    /**
+     * Rebuild the new APK from {@code oldApk} and a patch. The caller verifies the result against
+     * {@link Header#newSha256()}.
+     * @throws IOException if the patch is malformed or refers outside the old file
+     */
+    public static Header apply(Path oldApk, InputStream patch, OutputStream out) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(patch, BUFFER_SIZE));
+        byte[] magic = new byte[MAGIC.length];
+        in.readFully(magic);
+        if (!Arrays.equals(magic, MAGIC)) {
+            throw new IOException("Not an APK delta");
+        }
+        byte[] oldSha256 = new byte[SHA256_LENGTH];
+        byte[] newSha256 = new byte[SHA256_LENGTH];
+        in.readFully(oldSha256);
+        in.readFully(newSha256);
+        long newSize = in.readLong();
+
+        byte[] buffer = new byte[BUFFER_SIZE];
+        long written = 0;
+        WritableByteChannel target = Channels.newChannel(out);
+        try (FileChannel oldChannel = FileChannel.open(oldApk, StandardOpenOption.READ)) {
+            while (true) {
+                int op = in.readUnsignedByte();
+                if (op == OP_END) {
+                    break;
+                }
+                if (op == OP_COPY) {
+                    long offset = in.readLong();
+                    long length = in.readLong();
+                    if (offset < 0 || length < 0 || offset + length > oldChannel.size()) {
+                        throw new IOException("Delta copies outside the old file");
+                    }
+                    for (long position = offset, end = offset + length; position < end; ) {
+                        position += oldChannel.transferTo(position, end - position, target);
+                    }
+                    written += length;
+                } else if (op == OP_ADD) {
+                    long length = in.readLong();
+                    if (length < 0) {
+                        throw new IOException("Corrupt delta");
+                    }
+                    for (long remaining = length; remaining > 0; ) {
+                        int n = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                        if (n < 0) {
+                            throw new IOException("Truncated delta");
+                        }
+                        out.write(buffer, 0, n);
+                        remaining -= n;
+                    }
+                    written += length;
+                } else {
+                    throw new IOException("Corrupt delta: unknown operation " + op);
+                }
+            }
+        }
+        if (written != newSize) {
+            throw new IOException("Delta produced " + written + " bytes, expected " + newSize);
+        }
+        return new Header(oldSha256, newSha256, newSize);
+    }
+
+    private static void writeCopy(DataOutputStream data, long offset, long length) throws IOException {
+        if (offset < 0 || length == 0) {
+            return;
+        }
+        data.writeByte(OP_COPY);
+        data.writeLong(offset);
+        data.writeLong(length);
+    }
+
+    private static void writeAdd(DataOutputStream data, FileChannel source, long offset, long length) throws IOException {
+        if (length <= 0) {
+            return;
+        }
+        data.writeByte(OP_ADD);
+        data.writeLong(length);
+        data.flush();
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        for (long position = offset, end = offset + length; position < end; ) {
+            buffer.clear().limit((int) Math.min(BUFFER_SIZE, end - position));
+            int n = source.read(buffer, position);
+            if (n < 0) {
+                throw new IOException("Unexpected end of file");
+            }
+            data.write(buffer.array(), 0, n);
+            position += n;
+        }
+    }
+
+    private static boolean sameBytes(FileChannel a, long aOffset, FileChannel b, long bOffset, long length)
+            throws IOException {
+        ByteBuffer left = ByteBuffer.allocate(BUFFER_SIZE);
+        ByteBuffer right = ByteBuffer.allocate(BUFFER_SIZE);
+        for (long done = 0; done < length; ) {
+            int chunk = (int) Math.min(BUFFER_SIZE, length - done);
+            left.clear().limit(chunk);
+            right.clear().limit(chunk);
+            readFully(a, left, aOffset + done);
+            readFully(b, right, bOffset + done);
+            if (!left.flip().equals(right.flip())) {
+                return false;
+            }
+            done += chunk;
+        }
+        return true;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of file");
+            }
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package dev.ouanu.iems.apk;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Renders square PNG renditions of a launcher icon.
+ */
+public final class IconRenderer {
+
+    private static final Set<String> RASTER_EXTENSIONS = Set.of(".png", ".webp", ".jpg", ".jpeg", ".gif");
+    private static final Comparator<ApkMetadata.Icon> LARGEST_FIRST = Comparator
+            .comparingInt(ApkMetadata.Icon::density)
+            .thenComparingInt((ApkMetadata.Icon icon) -> icon.data().length)
+            .reversed();
+
+    private IconRenderer() {
+    }
+
+    /**
+     * Decode the largest icon the JDK can read; WebP and other formats without an {@code ImageIO} reader are skipped.
+     * @return the decoded image, or null if none of the icons is readable
+     */
+    public static BufferedImage decodeLargest(List<ApkMetadata.Icon> icons) {
+        List<ApkMetadata.Icon> ordered = icons.stream().sorted(LARGEST_FIRST).toList();
+        for (ApkMetadata.Icon icon : ordered) {
+            try {
+                BufferedImage image = ImageIO.read(new ByteArrayInputStream(icon.data()));
+                if (image != null && image.getWidth() > 0 && image.getHeight() > 0) {
+                    return image;
+                }
+            } catch (IOException | RuntimeException e) {
+                // 损坏的图标继续尝试下一个
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The icon to keep as is when none can be decoded: the largest one stored as a raster file (adaptive icons are
+     * XML and cannot be shown on their own).
+     * @return the icon, or null if there is no raster icon
+     */
+    public static ApkMetadata.Icon largestRaster(List<ApkMetadata.Icon> icons) {
+        return icons.stream()
+                .filter(icon -> RASTER_EXTENSIONS.contains(extensionOf(icon)))
+                .min(LARGEST_FIRST)
+                .orElse(null);
+    }
+
+    /**
+     * @return the lower-case file extension of the icon's path including the dot, or an empty string
+     */
+    public static String extensionOf(ApkMetadata.Icon icon) {
+        String path = icon.path();
+        if (path == null) {
+            return "";
+        }
+        int dot = path.lastIndexOf('.');
+        return dot >= 0 && dot > path.lastIndexOf('/') ? path.substring(dot).toLowerCase(Locale.ROOT) : "";
+    }
+
+    /**
+     * Scale {@code source} to fit a {@code size} x {@code size} transparent square, centered, and encode it as PNG.
+     */
+    public static byte[] renderPng(BufferedImage source, int size) throws IOException {
+        BufferedImage image = toArgb(source);
+        // 逐次减半缩小，避免一次大比例缩放产生锯齿
+        while (image.getWidth() / 2 >= size && image.getHeight() / 2 >= size) {
+            image = scale(image, image.getWidth() / 2, image.getHeight() / 2);
+        }
+        double ratio = Math.min((double) size / image.getWidth(), (double) size / image.getHeight());
+        int width = Math.max(1, (int) Math.round(image.getWidth() * ratio));
+        int height = Math.max(1, (int) Math.round(image.getHeight() * ratio));
+
+        BufferedImage canvas = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = canvas.createGraphics();
+        try {
+            applyQualityHints(g);
+            g.drawImage(image, (size - width) / 2, (size - height) / 2, width, height, null);
+        } finally {
+            g.dispose();
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(canvas, "png", out);
+        return out.toByteArray();
+    }
+
+    private static BufferedImage toArgb(BufferedImage source) {
+        if (source.getType() == BufferedImage.TYPE_INT_ARGB) {
+            return source;
+        }
+        return scale(source, source.getWidth(), source.getHeight());
+    }
+
+    private static BufferedImage scale(BufferedImage source, int width, int height) {
+        BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = scaled.createGraphics();
+        try {
+            applyQualityHints(g);
+            g.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            g.dispose();
+        }
+        return scaled;
+    }
+
+    private static void applyQualityHints(Graphics2D g) {
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+        g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+    }
+}
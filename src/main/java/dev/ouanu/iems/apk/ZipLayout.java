@@ -0,0 +1,119 @@
+package dev.ouanu.iems.apk;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Raw byte layout of a zip archive: where the central directory starts and where each entry's compressed data lies.
+ * Zip64 archives are not supported; APKs are limited to well under 4 GB anyway.
+ */
+final class ZipLayout {
+
+    private static final int EOCD_SIGNATURE = 0x06054b50;
+    private static final int EOCD_MIN_SIZE = 22;
+    private static final int CENTRAL_ENTRY_SIGNATURE = 0x02014b50;
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    private static final int LOCAL_HEADER_SIZE = 30;
+
+    /**
+     * @param dataOffset file offset of the entry's compressed data
+     */
+    record Entry(String name, int method, int crc, long compressedSize, long dataOffset) {
+    }
+
+    private ZipLayout() {
+    }
+
+    /**
+     * @return offset of the central directory, or -1 if the end of central directory record is missing
+     */
+    static long centralDirectoryOffset(FileChannel channel) throws IOException {
+        ByteBuffer eocd = endOfCentralDirectory(channel);
+        return eocd == null ? -1 : eocd.getInt(16) & 0xFFFFFFFFL;
+    }
+
+    /**
+     * @return every entry with its data offset, in central directory order; empty if the archive cannot be read
+     */
+    static List<Entry> entries(FileChannel channel) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        ByteBuffer eocd = endOfCentralDirectory(channel);
+        if (eocd == null) {
+            return entries;
+        }
+        long size = channel.size();
+        long directoryOffset = eocd.getInt(16) & 0xFFFFFFFFL;
+        long directorySize = eocd.getInt(12) & 0xFFFFFFFFL;
+        if (directoryOffset + directorySize > size || directorySize > Integer.MAX_VALUE) {
+            return entries;
+        }
+        ByteBuffer directory = readAt(channel, directoryOffset, (int) directorySize);
+        ByteBuffer local = ByteBuffer.allocate(LOCAL_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        while (directory.remaining() >= 46 && directory.getInt(directory.position()) == CENTRAL_ENTRY_SIGNATURE) {
+            int start = directory.position();
+            int method = directory.getShort(start + 10) & 0xFFFF;
+            int crc = directory.getInt(start + 16);
+            long compressedSize = directory.getInt(start + 20) & 0xFFFFFFFFL;
+            int nameLength = directory.getShort(start + 28) & 0xFFFF;
+            int extraLength = directory.getShort(start + 30) & 0xFFFF;
+            int commentLength = directory.getShort(start + 32) & 0xFFFF;
+            long localHeaderOffset = directory.getInt(start + 42) & 0xFFFFFFFFL;
+            if (start + 46 + nameLength > directory.limit()) {
+                break;
+            }
+            byte[] name = new byte[nameLength];
+            directory.get(start + 46, name);
+            directory.position(start + 46 + nameLength + extraLength + commentLength);
+
+            // 本地头的 extra 长度可能与中央目录不同，以本地头为准
+            local.clear();
+            if (localHeaderOffset + LOCAL_HEADER_SIZE > size) {
+                continue;
+            }
+            while (local.hasRemaining()) {
+                if (channel.read(local, localHeaderOffset + local.position()) < 0) {
+                    throw new IOException("Unexpected end of file");
+                }
+            }
+            if (local.getInt(0) != LOCAL_HEADER_SIGNATURE) {
+                continue;
+            }
+            long dataOffset = localHeaderOffset + LOCAL_HEADER_SIZE
+                    + (local.getShort(26) & 0xFFFF) + (local.getShort(28) & 0xFFFF);
+            if (dataOffset + compressedSize <= size) {
+                entries.add(new Entry(new String(name, StandardCharsets.UTF_8), method, crc, compressedSize, dataOffset));
+            }
+        }
+        return entries;
+    }
+
+    private static ByteBuffer endOfCentralDirectory(FileChannel channel) throws IOException {
+        long size = channel.size();
+        int tailSize = (int) Math.min(size, EOCD_MIN_SIZE + 0xFFFF);
+        if (tailSize < EOCD_MIN_SIZE) {
+            return null;
+        }
+        ByteBuffer tail = readAt(channel, size - tailSize, tailSize);
+        for (int i = tailSize - EOCD_MIN_SIZE; i >= 0; i--) {
+            if (tail.getInt(i) == EOCD_SIGNATURE) {
+                return tail.slice(i, EOCD_MIN_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            }
+        }
+        return null;
+    }
+
+    static ByteBuffer readAt(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of file");
+            }
+        }
+        return buffer.flip();
+    }
+}
@@ -0,0 +1,205 @@
+package dev.ouanu.iems.cache;
+
+import java.net.SocketAddress;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.lettuce.core.ClientOptions;
+import io.lettuce.core.RedisChannelHandler;
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.RedisConnectionStateListener;
+import io.lettuce.core.RedisURI;
+import io.lettuce.core.TrackingArgs;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.api.push.PushMessage;
+import io.lettuce.core.codec.StringCodec;
+import io.lettuce.core.protocol.ProtocolVersion;
+
+/**
+ * Local near-cache kept coherent by Redis server-assisted client-side caching (RESP3 tracking).
+ *
+ * A dedicated RESP3 connection subscribes with {@code CLIENT TRACKING ON BCAST PREFIX ...}; the server then
+ * pushes an {@code invalidate} message whenever a key under one of the prefixes is written, deleted or expires,
+ * and the matching local entry is dropped. While the tracking connection is down every read goes to Redis.
+ */
+public class ClientSideCache implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(ClientSideCache.class);
+
+    private final RedisClient client;
+    private volatile StatefulRedisConnection<String, String> connection;
+    private final String[] prefixes;
+    private final int maxEntries;
+    private final long maxAgeMillis;
+    private final ConcurrentHashMap<String, Object> entries = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+    private volatile boolean tracking;
+
+    private record Entry(Object value, long loadedAt) {
+    }
+
+    public ClientSideCache(RedisURI redisUri, List<String> prefixes, int maxEntries, long maxAgeMillis) {
+        this.prefixes = prefixes.toArray(String[]::new);
+        this.maxEntries = maxEntries;
+        this.maxAgeMillis = maxAgeMillis;
+        this.client = RedisClient.create(redisUri);
+        this.client.setOptions(ClientOptions.builder().protocolVersion(ProtocolVersion.RESP3).build());
+        this.client.addListener(new TrackingStateListener());
+        StatefulRedisConnection<String, String> conn = client.connect(StringCodec.UTF8);
+        conn.addListener(this::onPushMessage);
+        conn.sync().clientTracking(trackingArgs());
+        this.connection = conn;
+        this.tracking = true;
+        log.info("Redis client-side caching enabled for prefixes {}", prefixes);
+    }
+
+    // 不建立跟踪连接的本地缓存，失效消息由调用方通过 onPushMessage 送入；仅供测试使用
+    ClientSideCache(List<String> prefixes, int maxEntries, long maxAgeMillis) {
+        this.prefixes = prefixes.toArray(String[]::new);
+        this.maxEntries = maxEntries;
+        this.maxAgeMillis = maxAgeMillis;
+        this.client = null;
+        this.tracking = true;
+    }
+
+    /**
+     * Returns the locally cached value for {@code key}, or calls {@code loader} and caches a non-null result.
+     * The key must fall under one of the tracked prefixes, otherwise it would never be invalidated.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(String key, Supplier<T> loader) {
+        if (!tracking) {
+            return loader.get();
+        }
+        long now = System.currentTimeMillis();
+        Object current = entries.get(key);
+        if (current instanceof Entry entry && now - entry.loadedAt() < maxAgeMillis) {
+            hits.increment();
+            return (T) entry.value();
+        }
+        misses.increment();
+        if (entries.size() >= maxEntries && !purgeExpired(now)) {
+            return loader.get();
+        }
+        // 先放占位符：加载期间若收到失效消息，占位符被移除，旧值不会被写回
+        Object token = new Object();
+        entries.put(key, token);
+        T value = null;
+        try {
+            value = loader.get();
+            return value;
+        } finally {
+            if (value != null && tracking) {
+                entries.replace(key, token, new Entry(value, now));
+            } else {
+                entries.remove(key, token);
+            }
+        }
+    }
+
+    public void invalidate(String key) {
+        entries.remove(key);
+    }
+
+    public void invalidatePrefix(String prefix) {
+        entries.keySet().removeIf(key -> key.startsWith(prefix));
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getInvalidations() {
+        return invalidations.sum();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public boolean isTracking() {
+        return tracking;
+    }
+
+    @Override
+    public void close() {
+        tracking = false;
+        entries.clear();
+        if (connection != null) {
+            connection.close();
+        }
+        if (client != null) {
+            client.shutdown();
+        }
+    }
+
+    private TrackingArgs trackingArgs() {
+        return TrackingArgs.Builder.enabled().bcast().prefixes(prefixes);
+    }
+
+    private boolean purgeExpired(long now) {
+        entries.values().removeIf(v -> v instanceof Entry entry && now - entry.loadedAt() >= maxAgeMillis);
+        return entries.size() < maxEntries;
+    }
+
+    void onPushMessage(PushMessage message) {
+        if (!"invalidate".equals(message.getType())) {
+            return;
+        }
+        List<Object> content = message.getContent(StringCodec.UTF8::decodeKey);
+        Object keys = content.size() > 1 ? content.get(1) : null;
+        if (keys instanceof List<?> list) {
+            for (Object key : list) {
+                entries.remove(String.valueOf(key));
+                invalidations.increment();
+            }
+        } else {
+            // null 表示服务端执行了 FLUSHALL/FLUSHDB
+            entries.clear();
+            invalidations.increment();
+        }
+    }
+
+    private class TrackingStateListener implements RedisConnectionStateListener {
+
+        @Override
+        public void onRedisConnected(RedisChannelHandler<?, ?> handler, SocketAddress socketAddress) {
+            StatefulRedisConnection<String, String> conn = connection;
+            if (conn == null) {
+                // initial connect, tracking is enabled by the constructor
+                return;
+            }
+            conn.async().clientTracking(trackingArgs()).whenComplete((ok, ex) -> {
+                if (ex != null) {
+                    log.warn("Failed to re-enable Redis client tracking, local cache stays bypassed", ex);
+                } else {
+                    tracking = true;
+                    log.info("Redis client tracking re-enabled after reconnect");
+                }
+            });
+        }
+
+        @Override
+        public void onRedisDisconnected(RedisChannelHandler<?, ?> handler) {
+            // 断线期间的失效消息会丢失，必须清空本地副本
+            tracking = false;
+            entries.clear();
+        }
+
+        @Override
+        public void onRedisExceptionCaught(RedisChannelHandler<?, ?> handler, Throwable cause) {
+            log.debug("Redis tracking connection error: {}", cause.getMessage());
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package dev.ouanu.iems.cache;
+
+import java.util.concurrent.Callable;
+
+import org.springframework.cache.Cache;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+
+/**
+ * Spring {@link Cache} decorator that serves reads from a {@link ClientSideCache} in front of a Redis-backed cache.
+ * Local keys use the RedisCache key layout ({@code <cacheName>::<key>}) so server invalidations map onto them.
+ */
+public class NearCache implements Cache {
+
+    private final Cache delegate;
+    private final ClientSideCache local;
+    private final String keyPrefix;
+
+    public NearCache(Cache delegate, ClientSideCache local) {
+        this.delegate = delegate;
+        this.local = local;
+        this.keyPrefix = delegate.getName() + "::";
+    }
+
+    @Override
+    @NonNull
+    public String getName() {
+        return delegate.getName();
+    }
+
+    @Override
+    @NonNull
+    public Object getNativeCache() {
+        return delegate.getNativeCache();
+    }
+
+    @Override
+    @Nullable
+    public ValueWrapper get(@NonNull Object key) {
+        return local.get(localKey(key), () -> delegate.get(key));
+    }
+
+    @Override
+    @Nullable
+    @SuppressWarnings("unchecked")
+    public <T> T get(@NonNull Object key, @Nullable Class<T> type) {
+        ValueWrapper wrapper = get(key);
+        Object value = wrapper != null ? wrapper.get() : null;
+        if (value != null && type != null && !type.isInstance(value)) {
+            throw new IllegalStateException("Cached value is not of required type [" + type.getName() + "]: " + value);
+        }
+        return (T) value;
+    }
+
+    @Override
+    @Nullable
+    @SuppressWarnings("unchecked")
+    public <T> T get(@NonNull Object key, @NonNull Callable<T> valueLoader) {
+        ValueWrapper wrapper = get(key);
+        if (wrapper != null) {
+            return (T) wrapper.get();
+        }
+        return delegate.get(key, valueLoader);
+    }
+
+    @Override
+    public void put(@NonNull Object key, @Nullable Object value) {
+        delegate.put(key, value);
+        local.invalidate(localKey(key));
+    }
+
+    @Override
+    @Nullable
+    public ValueWrapper putIfAbsent(@NonNull Object key, @Nullable Object value) {
+        ValueWrapper existing = delegate.putIfAbsent(key, value);
+        local.invalidate(localKey(key));
+        return existing;
+    }
+
+    @Override
+    public void evict(@NonNull Object key) {
+        delegate.evict(key);
+        local.invalidate(localKey(key));
+    }
+
+    @Override
+    public boolean evictIfPresent(@NonNull Object key) {
+        boolean evicted = delegate.evictIfPresent(key);
+        local.invalidate(localKey(key));
+        return evicted;
+    }
+
+    @Override
+    public void clear() {
+        delegate.clear();
+        local.invalidatePrefix(keyPrefix);
+    }
+
+    @Override
+    public boolean invalidate() {
+        boolean invalidated = delegate.invalidate();
+        local.invalidatePrefix(keyPrefix);
+        return invalidated;
+    }
+
+    private String localKey(Object key) {
+        return keyPrefix + key;
+    }
+}
@@ -0,0 +1,51 @@
+package dev.ouanu.iems.cache;
+
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+
+/**
+ * Wraps the selected caches of another {@link CacheManager} with a {@link NearCache}; other caches pass through.
+ */
+public class NearCacheManager implements CacheManager {
+
+    private final CacheManager delegate;
+    private final ClientSideCache local;
+    private final Set<String> nearCacheNames;
+    private final ConcurrentMap<String, Cache> decorated = new ConcurrentHashMap<>();
+
+    public NearCacheManager(CacheManager delegate, ClientSideCache local, Set<String> nearCacheNames) {
+        this.delegate = delegate;
+        this.local = local;
+        this.nearCacheNames = Set.copyOf(nearCacheNames);
+    }
+
+    @Override
+    @Nullable
+    public Cache getCache(@NonNull String name) {
+        if (!nearCacheNames.contains(name)) {
+            return delegate.getCache(name);
+        }
+        Cache cached = decorated.get(name);
+        if (cached != null) {
+            return cached;
+        }
+        Cache target = delegate.getCache(name);
+        if (target == null) {
+            return null;
+        }
+        return decorated.computeIfAbsent(name, n -> new NearCache(target, local));
+    }
+
+    @Override
+    @NonNull
+    public Collection<String> getCacheNames() {
+        return delegate.getCacheNames();
+    }
+}
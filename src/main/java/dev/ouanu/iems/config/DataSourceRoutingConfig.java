@@ -0,0 +1,137 @@
+package dev.ouanu.iems.config;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.util.StringUtils;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+
+import dev.ouanu.iems.datasource.ReadWriteRoutingDataSource;
+import dev.ouanu.iems.datasource.RecentWriters;
+import dev.ouanu.iems.datasource.ReplicaLagMonitor;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Opt-in read/write splitting: replaces the auto-configured datasource with one primary pool plus one pool per
+ * replica URL, routed by {@link ReadWriteRoutingDataSource}.
+ * <p>
+ * Every pool reports the standard {@code hikaricp.connections.*} meters tagged with its pool name
+ * ({@code primary}, {@code replica-1}, ...).
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "app.datasource.routing", name = "enabled", havingValue = "true")
+public class DataSourceRoutingConfig implements DisposableBean {
+
+    @Value("${spring.datasource.url}")
+    private String url;
+
+    @Value("${spring.datasource.username}")
+    private String username;
+
+    @Value("${spring.datasource.password}")
+    private String password;
+
+    @Value("${spring.datasource.driver-class-name:com.mysql.cj.jdbc.Driver}")
+    private String driverClassName;
+
+    @Value("${spring.datasource.hikari.maximum-pool-size:10}")
+    private int primaryPoolSize;
+
+    // 逗号分隔的只读副本 JDBC URL；账号默认与主库一致
+    @Value("${app.datasource.replicas.urls:}")
+    private String[] replicaUrls;
+
+    @Value("${app.datasource.replicas.username:${spring.datasource.username}}")
+    private String replicaUsername;
+
+    @Value("${app.datasource.replicas.password:${spring.datasource.password}}")
+    private String replicaPassword;
+
+    @Value("${app.datasource.replicas.maximum-pool-size:10}")
+    private int replicaPoolSize;
+
+    private final List<HikariDataSource> pools = new ArrayList<>();
+
+    @Bean
+    public RecentWriters recentWriters(MeterRegistry meterRegistry,
+                                       @Value("${app.datasource.routing.read-your-writes-window-ms:10000}") long windowMillis) {
+        RecentWriters recentWriters = new RecentWriters(windowMillis);
+        Gauge.builder("iems.datasource.recent-writers", recentWriters, RecentWriters::size)
+                .description("Principals whose reads are pinned to the primary")
+                .register(meterRegistry);
+        return recentWriters;
+    }
+
+    @Bean
+    public ReplicaLagMonitor replicaLagMonitor(MeterRegistry meterRegistry,
+                                               @Value("${app.datasource.routing.max-lag-seconds:5}") long maxLagSeconds) {
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        int n = 0;
+        for (String replicaUrl : replicaUrls) {
+            if (StringUtils.hasText(replicaUrl)) {
+                String name = "replica-" + (++n);
+                replicas.put(name, pool(name, replicaUrl.trim(), replicaUsername, replicaPassword, replicaPoolSize, true, meterRegistry));
+            }
+        }
+        return new ReplicaLagMonitor(replicas, maxLagSeconds, meterRegistry);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(ReplicaLagMonitor lagMonitor, RecentWriters recentWriters, MeterRegistry meterRegistry) {
+        Map<Object, Object> targets = new HashMap<>(lagMonitor.replicas());
+        HikariDataSource primary = pool(ReadWriteRoutingDataSource.PRIMARY, url, username, password, primaryPoolSize, false, meterRegistry);
+        targets.put(ReadWriteRoutingDataSource.PRIMARY, primary);
+
+        ReadWriteRoutingDataSource routing = new ReadWriteRoutingDataSource(lagMonitor, recentWriters, meterRegistry);
+        routing.setTargetDataSources(targets);
+        routing.setDefaultTargetDataSource(primary);
+        routing.afterPropertiesSet();
+
+        // 延迟到第一条语句才取连接，此时只读标记已绑定到当前事务
+        LazyConnectionDataSourceProxy proxy = new LazyConnectionDataSourceProxy(routing);
+        proxy.setDefaultAutoCommit(true);
+        proxy.setDefaultTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+        return proxy;
+    }
+
+    @Override
+    public void destroy() {
+        pools.forEach(HikariDataSource::close);
+    }
+
+    private HikariDataSource pool(String name, String jdbcUrl, String user, String pass, int maxSize,
+                                  boolean readOnly, MeterRegistry meterRegistry) {
+        HikariConfig config = new HikariConfig();
+        config.setPoolName(name);
+        config.setJdbcUrl(jdbcUrl);
+        config.setUsername(user);
+        config.setPassword(pass);
+        config.setDriverClassName(driverClassName);
+        config.setMaximumPoolSize(maxSize);
+        config.setReadOnly(readOnly);
+        // 副本暂时不可达时不阻塞启动，由延迟探测将其移出轮询
+        config.setInitializationFailTimeout(-1);
+        config.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+        HikariDataSource dataSource = new HikariDataSource(config);
+        pools.add(dataSource);
+        return dataSource;
+    }
+}
@@ -15,10 +15,9 @@ import dev.ouanu.iems.constant.BizType;
 import dev.ouanu.iems.constant.Permission;
 import dev.ouanu.iems.entity.IdPermission;
 import dev.ouanu.iems.entity.Operator;
-import dev.ouanu.iems.mapper.DeviceMapper;
 import dev.ouanu.iems.mapper.OperatorMapper;
 import dev.ouanu.iems.mapper.PermissionMapper;
-import dev.ouanu.iems.mapper.SnowflakeIdMapper;
+import dev.ouanu.iems.service.ApkService;
 import dev.ouanu.iems.service.SnowflakeIdService;
 
 @Component
@@ -26,9 +25,8 @@ public class DatabaseInitializationRunner implements ApplicationRunner {
 
     private final OperatorMapper operatorMapper;
     private final PermissionMapper permissionMapper;
-    private final DeviceMapper deviceMapper;
-    private final SnowflakeIdMapper snowflakeIdMapper;
     private final SnowflakeIdService snowflakeIdService;
+    private final ApkService apkService;
     private final Logger log = LoggerFactory.getLogger(DatabaseInitializationRunner.class);
 
     @Value("${app.initial.admin.email:admin@example.com}")
@@ -43,36 +41,34 @@ public class DatabaseInitializationRunner implements ApplicationRunner {
     @Value("${app.initial.admin.phone:12345678910}")
     private String adminPhone;
 
-    public DatabaseInitializationRunner(OperatorMapper operatorMapper, PermissionMapper permissionMapper, DeviceMapper deviceMapper, SnowflakeIdMapper snowflakeIdMapper, SnowflakeIdService snowflakeIdService) {
+    public DatabaseInitializationRunner(OperatorMapper operatorMapper, PermissionMapper permissionMapper, SnowflakeIdService snowflakeIdService, ApkService apkService) {
         this.operatorMapper = operatorMapper;
         this.permissionMapper = permissionMapper;
-        this.deviceMapper = deviceMapper;
-        this.snowflakeIdMapper = snowflakeIdMapper;
         this.snowflakeIdService = snowflakeIdService;
+        this.apkService = apkService;
     }
 
     @Override
     public void run(ApplicationArguments args) {
+        // 表结构由 SchemaMigrator 在上下文刷新完成前迁移（早于定时任务与 Web 服务启动），这里只做数据初始化
         try {
-            ensureTablesExist();
             ensureDefaultAdmin();
-        } catch (Exception ex) {
-            log.error("Failed to initialize database / default admin", ex);
+        } catch (RuntimeException ex) {
+            log.error("Failed to initialize default admin", ex);
+        }
+        try {
+            apkService.dropLegacyIndexes();
+        } catch (RuntimeException ex) {
+            log.error("Failed to drop legacy APK indexes", ex);
+        }
+        try {
+            int updated = apkService.backfillSearchTerms();
+            if (updated > 0) {
+                log.info("Backfilled search terms of {} APKs", updated);
+            }
+        } catch (RuntimeException ex) {
+            log.error("Failed to backfill APK search terms", ex);
         }
-    }
-
-    private void ensureTablesExist() {
-        operatorMapper.createTableIfNotExists();
-        log.info("Ensured operators table exists (createTableIfNotExists executed).");
-
-        permissionMapper.createTableIfNotExists();
-        log.info("Ensured operator_permissions table exists.");
-
-        deviceMapper.createTableIfNotExists();
-        log.info("Ensured devices table exists.");
-
-        snowflakeIdMapper.createTableIfNotExists();
-        log.info("Ensured snowflake_ids table exists.");
     }
 
     private void ensureDefaultAdmin() {
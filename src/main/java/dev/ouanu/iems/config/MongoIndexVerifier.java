@@ -0,0 +1,141 @@
+package dev.ouanu.iems.config;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.IndexField;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Creates the indexes declared with {@code @Indexed}, {@code @CompoundIndex} and {@code @TextIndexed} on MongoDB
+ * documents and then checks that each one really exists with the declared keys and uniqueness.
+ * <p>
+ * Spring Data's automatic index creation is off by default, and a {@code createIndex} can fail quietly in effect,
+ * e.g. a unique index over data that already contains duplicates. Missing indexes are logged as errors; with
+ * {@code app.mongo.require-indexes=true} they abort startup instead.
+ */
+@Component
+public class MongoIndexVerifier {
+
+    private static final String TEXT = "text";
+    private static final String TEXT_INDEX_VERSION_KEY = "_ftsx";
+
+    private final MongoTemplate mongoTemplate;
+    private final boolean requireIndexes;
+    private final Logger log = LoggerFactory.getLogger(MongoIndexVerifier.class);
+
+    public MongoIndexVerifier(MongoTemplate mongoTemplate,
+                              @Value("${app.mongo.require-indexes:false}") boolean requireIndexes) {
+        this.mongoTemplate = mongoTemplate;
+        this.requireIndexes = requireIndexes;
+    }
+
+    @PostConstruct
+    public void verify() {
+        MongoMappingContext mappingContext = (MongoMappingContext) mongoTemplate.getConverter().getMappingContext();
+        MongoPersistentEntityIndexResolver resolver = new MongoPersistentEntityIndexResolver(mappingContext);
+        List<String> missing = new ArrayList<>();
+        int verified = 0;
+        for (MongoPersistentEntity<?> entity : mappingContext.getPersistentEntities()) {
+            if (!entity.isAnnotationPresent(org.springframework.data.mongodb.core.mapping.Document.class)) {
+                continue;
+            }
+            List<IndexDefinition> declared = new ArrayList<>();
+            resolver.resolveIndexFor(entity.getType()).forEach(declared::add);
+            if (declared.isEmpty()) {
+                continue;
+            }
+            IndexOperations ops = mongoTemplate.indexOps(entity.getType());
+            for (IndexDefinition index : declared) {
+                try {
+                    ops.createIndex(index);
+                } catch (RuntimeException e) {
+                    log.error("Could not create index {} on {}: {}", nameOf(index), entity.getCollection(), e.getMessage());
+                }
+            }
+            // 按键与唯一性核对，而非只看名称：同键不同名的已有索引也算存在
+            List<IndexInfo> existing = ops.getIndexInfo();
+            for (IndexDefinition index : declared) {
+                if (existing.stream().anyMatch(info -> matches(info, index))) {
+                    verified++;
+                } else {
+                    missing.add(entity.getCollection() + "." + nameOf(index));
+                }
+            }
+        }
+        if (missing.isEmpty()) {
+            log.info("Verified {} MongoDB indexes", verified);
+            return;
+        }
+        String message = "Missing MongoDB indexes: " + missing;
+        if (requireIndexes) {
+            throw new IllegalStateException(message);
+        }
+        log.error(message);
+    }
+
+    private static boolean matches(IndexInfo info, IndexDefinition index) {
+        Document keys = index.getIndexKeys();
+        // 文本索引在服务端存为 {_fts: "text", _ftsx: 1}，字段与权重在 weights 中且顺序不定，按集合比较
+        List<IndexField> fields = info.getIndexFields().stream()
+                .filter(field -> !TEXT_INDEX_VERSION_KEY.equals(field.getKey()))
+                .toList();
+        Set<String> textKeys = keys.entrySet().stream()
+                .filter(key -> TEXT.equals(key.getValue()))
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toSet());
+        Set<String> textFields = fields.stream()
+                .filter(IndexField::isText)
+                .map(IndexField::getKey)
+                .collect(Collectors.toSet());
+        if (!textKeys.equals(textFields)) {
+            return false;
+        }
+        List<Map.Entry<String, Object>> orderedKeys = keys.entrySet().stream()
+                .filter(key -> !TEXT.equals(key.getValue()))
+                .toList();
+        List<IndexField> orderedFields = fields.stream()
+                .filter(field -> !field.isText())
+                .toList();
+        if (orderedFields.size() != orderedKeys.size()) {
+            return false;
+        }
+        for (int i = 0; i < orderedKeys.size(); i++) {
+            Map.Entry<String, Object> key = orderedKeys.get(i);
+            IndexField field = orderedFields.get(i);
+            if (!field.getKey().equals(key.getKey())) {
+                return false;
+            }
+            if (key.getValue() instanceof Number direction) {
+                Sort.Direction expected = direction.intValue() < 0 ? Sort.Direction.DESC : Sort.Direction.ASC;
+                if (field.getDirection() != expected) {
+                    return false;
+                }
+            }
+        }
+        boolean unique = Boolean.TRUE.equals(index.getIndexOptions().get("unique"));
+        return !unique || info.isUnique();
+    }
+
+    private static String nameOf(IndexDefinition index) {
+        Object name = index.getIndexOptions().get("name");
+        return name != null ? name.toString() : index.getIndexKeys().toJson();
+    }
+}
@@ -1,8 +1,17 @@
 package dev.ouanu.iems.config;
 
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
 
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -14,6 +23,11 @@ import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactor
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
+import org.springframework.util.StringUtils;
+
+import dev.ouanu.iems.cache.ClientSideCache;
+import dev.ouanu.iems.cache.NearCacheManager;
+import io.lettuce.core.RedisURI;
 
 
 @Configuration
@@ -29,6 +43,9 @@ public class RedisConfig {
     @Value("${spring.data.redis.password}")
     private String password;
 
+    @Value("${app.redis.client-side-caching.caches:}")
+    private String[] nearCacheNames;
+
     @Bean
     public RedisConnectionFactory redisConnectionFactory() {
         RedisStandaloneConfiguration config = new RedisStandaloneConfiguration(host, port);
@@ -50,12 +67,41 @@ public class RedisConfig {
     }
 
     @Bean
-    public RedisCacheManager cacheManager(RedisConnectionFactory connectionFactory) {
+    public CacheManager cacheManager(RedisConnectionFactory connectionFactory,
+                                     ObjectProvider<ClientSideCache> clientSideCache) {
         RedisCacheConfiguration cfg = RedisCacheConfiguration.defaultCacheConfig()
         .entryTtl(Duration.ofMinutes(60))
         .disableCachingNullValues();
-        return RedisCacheManager.builder(connectionFactory).cacheDefaults(cfg).build();
+        RedisCacheManager redisCacheManager = RedisCacheManager.builder(connectionFactory).cacheDefaults(cfg).build();
+        ClientSideCache local = clientSideCache.getIfAvailable();
+        if (local == null) {
+            return redisCacheManager;
+        }
+        redisCacheManager.afterPropertiesSet();
+        return new NearCacheManager(redisCacheManager, local, nearCacheNames());
     }
 
+    /**
+     * Opt-in RESP3 client-side caching: token markers and the configured Spring caches are tracked in BCAST mode.
+     */
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(prefix = "app.redis.client-side-caching", name = "enabled", havingValue = "true")
+    public ClientSideCache clientSideCache(
+            @Value("${app.redis.client-side-caching.max-entries:10000}") int maxEntries,
+            @Value("${app.redis.client-side-caching.max-age-seconds:600}") long maxAgeSeconds) {
+        RedisURI.Builder uri = RedisURI.Builder.redis(host, port).withTimeout(Duration.ofSeconds(2));
+        if (StringUtils.hasText(password)) {
+            uri.withPassword(password.toCharArray());
+        }
+        List<String> prefixes = new ArrayList<>(List.of("blacklist:access:", "refresh:"));
+        nearCacheNames().forEach(name -> prefixes.add(name + "::"));
+        return new ClientSideCache(uri.build(), prefixes, maxEntries, Duration.ofSeconds(maxAgeSeconds).toMillis());
+    }
 
+    private Set<String> nearCacheNames() {
+        return Arrays.stream(nearCacheNames)
+                .map(String::trim)
+                .filter(StringUtils::hasText)
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+    }
 }
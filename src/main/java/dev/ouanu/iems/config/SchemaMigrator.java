@@ -0,0 +1,266 @@
+package dev.ouanu.iems.config;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StreamUtils;
+
+/**
+ * Applies versioned SQL scripts from {@code classpath:db/migration} ({@code V<n>__<description>.sql}, next to
+ * {@code classpath:mapper}) in order, recording each applied version and the SHA-256 of its script in
+ * {@code schema_migrations}.
+ * <p>
+ * When every script is already in the ledger with a matching checksum, startup costs two metadata reads and
+ * issues no DDL. Otherwise the pending scripts run on one connection holding a MySQL named lock, so only one
+ * instance of a rolling deploy migrates; each DDL statement runs with a short {@code lock_wait_timeout} and is
+ * retried, so a DDL stuck behind a long transaction gives up instead of queueing every other query on the table
+ * behind its metadata lock.
+ * <p>
+ * Migrations run once all singletons exist and before the context finishes refreshing, i.e. before scheduled tasks
+ * start and before the web server accepts requests; a failure aborts startup.
+ */
+@Component
+public class SchemaMigrator implements SmartInitializingSingleton {
+
+    private static final String LOCATION = "classpath*:db/migration/V*__*.sql";
+    private static final Pattern FILE_NAME = Pattern.compile("V(\\d+)__(.+)\\.sql");
+    private static final String LEDGER = "schema_migrations";
+    private static final String LOCK_NAME = "iems_schema_migration";
+    // MySQL ER_LOCK_WAIT_TIMEOUT
+    private static final int LOCK_WAIT_TIMEOUT = 1205;
+    // 发布后仅为可重跑而修改、对已完整执行的库没有影响的脚本：台账中的旧校验和视为有效并更新为新值
+    private static final Map<Integer, Set<String>> SUPERSEDED_CHECKSUMS = Map.of(
+            // V3 回填前先清空聚合表
+            3, Set.of("e671580fc50748d838e1df3db1167adbf794868f41d821ff4830e7ba58aa25b3"));
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int lockWaitTimeoutSeconds;
+    private final int ddlRetries;
+    private final Logger log = LoggerFactory.getLogger(SchemaMigrator.class);
+
+    private record Migration(int version, String description, String script, String checksum) {
+    }
+
+    public SchemaMigrator(JdbcTemplate jdbcTemplate,
+                          @Value("${app.migration.lock-wait-timeout-seconds:10}") int lockWaitTimeoutSeconds,
+                          @Value("${app.migration.ddl-retries:3}") int ddlRetries) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.lockWaitTimeoutSeconds = lockWaitTimeoutSeconds;
+        this.ddlRetries = ddlRetries;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        try {
+            migrate();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read schema migrations", e);
+        }
+    }
+
+    public void migrate() throws IOException {
+        List<Migration> migrations = discover();
+        if (isCurrent(jdbcTemplate, migrations)) {
+            log.info("Schema is current at V{}, no migrations to apply", migrations.isEmpty() ? "-" : migrations.get(migrations.size() - 1).version());
+            return;
+        }
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            JdbcTemplate session = new JdbcTemplate(new SingleConnectionDataSource(connection, true));
+            Integer locked = session.queryForObject("SELECT GET_LOCK(?, ?)", Integer.class, LOCK_NAME, 300);
+            if (locked == null || locked != 1) {
+                throw new IllegalStateException("Timed out waiting for the schema migration lock");
+            }
+            try {
+                migrateLocked(session, migrations);
+            } finally {
+                session.queryForObject("SELECT RELEASE_LOCK(?)", Integer.class, LOCK_NAME);
+            }
+            return null;
+        });
+    }
+
+    private void migrateLocked(JdbcTemplate session, List<Migration> migrations) {
+        ensureLedger(session);
+        // 其他实例可能在等锁期间已完成迁移，持锁后重新读取台账
+        Map<Integer, String> applied = readLedger(session);
+        session.execute("SET SESSION lock_wait_timeout = " + lockWaitTimeoutSeconds);
+        for (Migration migration : migrations) {
+            if (applied.containsKey(migration.version())) {
+                verifyOrAdopt(session, migration, applied.get(migration.version()));
+                continue;
+            }
+            long start = System.currentTimeMillis();
+            // MySQL DDL 隐式提交，无法整体回滚；失败时抛出，修复后重启会从该版本重新执行
+            for (String statement : splitStatements(migration.script())) {
+                executeWithRetry(session, statement, migration);
+            }
+            long elapsed = System.currentTimeMillis() - start;
+            session.update("INSERT INTO " + LEDGER + " (version, description, checksum, execution_ms) VALUES (?, ?, ?, ?)",
+                    migration.version(), migration.description(), migration.checksum(), elapsed);
+            log.info("Applied schema migration V{} ({}) in {} ms", migration.version(), migration.description(), elapsed);
+        }
+    }
+
+    // 台账齐全且校验和一致时不做任何 DDL，也不取锁
+    private boolean isCurrent(JdbcTemplate jdbc, List<Migration> migrations) {
+        Integer columns = jdbc.queryForObject(
+                "SELECT COUNT(*) FROM information_schema.columns WHERE table_schema = DATABASE() AND table_name = ? AND column_name = 'checksum'",
+                Integer.class, LEDGER);
+        if (columns == null || columns == 0) {
+            return false;
+        }
+        Map<Integer, String> applied = readLedger(jdbc);
+        for (Migration migration : migrations) {
+            if (!migration.checksum().equals(applied.get(migration.version()))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void ensureLedger(JdbcTemplate session) {
+        session.execute("""
+                CREATE TABLE IF NOT EXISTS schema_migrations (
+                    version INT NOT NULL,
+                    description VARCHAR(200) NOT NULL,
+                    applied_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+                    PRIMARY KEY (version)
+                ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4""");
+        Integer columns = session.queryForObject(
+                "SELECT COUNT(*) FROM information_schema.columns WHERE table_schema = DATABASE() AND table_name = ? AND column_name = 'checksum'",
+                Integer.class, LEDGER);
+        if (columns == null || columns == 0) {
+            // 早期台账没有校验和列；已有记录在下面首次校验时按当前脚本补齐
+            session.execute("ALTER TABLE " + LEDGER + " ADD COLUMN checksum CHAR(64) NULL, ADD COLUMN execution_ms BIGINT NULL");
+        }
+    }
+
+    private static Map<Integer, String> readLedger(JdbcTemplate jdbc) {
+        Map<Integer, String> applied = new TreeMap<>();
+        jdbc.query("SELECT version, checksum FROM " + LEDGER, rs -> {
+            applied.put(rs.getInt("version"), rs.getString("checksum"));
+        });
+        return applied;
+    }
+
+    private void verifyOrAdopt(JdbcTemplate session, Migration migration, String recorded) {
+        if (recorded == null) {
+            session.update("UPDATE " + LEDGER + " SET checksum = ? WHERE version = ?", migration.checksum(), migration.version());
+            log.info("Recorded checksum for previously applied migration V{}", migration.version());
+            return;
+        }
+        if (SUPERSEDED_CHECKSUMS.getOrDefault(migration.version(), Set.of()).contains(recorded)) {
+            session.update("UPDATE " + LEDGER + " SET checksum = ? WHERE version = ?", migration.checksum(), migration.version());
+            log.info("Updated checksum of migration V{} to its revised script", migration.version());
+            return;
+        }
+        if (!recorded.equals(migration.checksum())) {
+            throw new IllegalStateException("Migration V" + migration.version() + " (" + migration.description()
+                    + ") was modified after it was applied; add a new version instead of editing it");
+        }
+    }
+
+    private void executeWithRetry(JdbcTemplate session, String statement, Migration migration) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                session.execute(statement);
+                return;
+            } catch (DataAccessException e) {
+                if (attempt > ddlRetries || !isLockWaitTimeout(e)) {
+                    throw e;
+                }
+                log.warn("V{}: metadata lock not granted within {}s (attempt {}/{}), retrying",
+                        migration.version(), lockWaitTimeoutSeconds, attempt, ddlRetries + 1);
+                try {
+                    Thread.sleep(1000L * attempt);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private static boolean isLockWaitTimeout(DataAccessException e) {
+        return e.getMostSpecificCause() instanceof SQLException sql && sql.getErrorCode() == LOCK_WAIT_TIMEOUT;
+    }
+
+    private List<Migration> discover() throws IOException {
+        Resource[] resources = new PathMatchingResourcePatternResolver().getResources(LOCATION);
+        List<Migration> migrations = new ArrayList<>();
+        for (Resource resource : resources) {
+            Matcher m = FILE_NAME.matcher(resource.getFilename() == null ? "" : resource.getFilename());
+            if (m.matches()) {
+                String script = StreamUtils.copyToString(resource.getInputStream(), StandardCharsets.UTF_8);
+                migrations.add(new Migration(Integer.parseInt(m.group(1)), m.group(2).replace('_', ' '), script, checksum(script)));
+            }
+        }
+        migrations.sort(Comparator.comparingInt(Migration::version));
+        for (int i = 1; i < migrations.size(); i++) {
+            if (migrations.get(i).version() == migrations.get(i - 1).version()) {
+                throw new IllegalStateException("Duplicate migration version V" + migrations.get(i).version());
+            }
+        }
+        return migrations;
+    }
+
+    // 统一换行符并去掉行尾空白，避免仅因签出时的换行差异导致校验失败
+    private static String checksum(String script) {
+        StringBuilder normalized = new StringBuilder();
+        for (String line : script.split("\\R")) {
+            normalized.append(line.stripTrailing()).append('\n');
+        }
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(normalized.toString().strip().getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // 按行尾分号切分语句，忽略 -- 注释行
+    private static List<String> splitStatements(String script) {
+        List<String> statements = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        for (String line : script.split("\\R")) {
+            String trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.startsWith("--")) {
+                continue;
+            }
+            current.append(line).append('\n');
+            if (trimmed.endsWith(";")) {
+                String sql = current.toString().trim();
+                statements.add(sql.substring(0, sql.length() - 1));
+                current.setLength(0);
+            }
+        }
+        if (!current.toString().isBlank()) {
+            statements.add(current.toString().trim());
+        }
+        return statements;
+    }
+}
@@ -3,6 +3,7 @@ package dev.ouanu.iems.config;
 
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpMethod;
 import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.http.SessionCreationPolicy;
@@ -36,7 +37,11 @@ public class SecurityConfig {
                 .requestMatchers("/api/auth/**").permitAll()
                 .requestMatchers("/api/devices/auth/**").permitAll()
                 .requestMatchers("/api/admin/**").authenticated()
+                // 图标地址按内容哈希命名，公开以便浏览器和代理缓存
+                .requestMatchers(HttpMethod.GET, "/api/icons/**").permitAll()
                 .requestMatchers("/api/apks/**").authenticated()
+                .requestMatchers("/actuator/health").permitAll()
+                .requestMatchers("/actuator/**").hasAuthority("operator:manage")
                 .anyRequest().permitAll()
                 // .requestMatchers("/api/**").permitAll()
                 // .anyRequest().authenticated()
@@ -1,13 +1,20 @@
 package dev.ouanu.iems.controller;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.RejectedExecutionException;
 
 import javax.validation.Valid;
 
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.util.StringUtils;
@@ -17,6 +24,7 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
@@ -24,41 +32,192 @@ import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
 import dev.ouanu.iems.annotation.ActionLog;
+import dev.ouanu.iems.apk.DeltaPatch;
 import dev.ouanu.iems.dto.ApkSearchCriteria;
 import dev.ouanu.iems.dto.ApkUpdateRequest;
 import dev.ouanu.iems.dto.BatchUpdateApksRequest;
+import dev.ouanu.iems.dto.InitiateUploadRequest;
 import dev.ouanu.iems.entity.Apk;
+import dev.ouanu.iems.service.ApkDeltaService;
+import dev.ouanu.iems.service.ApkIngestPipeline;
 import dev.ouanu.iems.service.ApkService;
+import dev.ouanu.iems.service.ChunkedUploadService;
+import dev.ouanu.iems.service.FileDownloadService;
+import dev.ouanu.iems.vo.ApkJobVO;
 import dev.ouanu.iems.vo.ApkVO;
+import dev.ouanu.iems.vo.UploadSessionVO;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 
 @RestController
 @RequestMapping("/api/apks")
 public class ApkController {
 
+    private static final String APK_MEDIA_TYPE = "application/vnd.android.package-archive";
+    private static final String CHUNK_SHA256_HEADER = "X-Chunk-Sha256";
+    private static final String RETRY_AFTER_SECONDS = "5";
+    private static final String DELTA_FROM_HEADER = "X-Delta-From";
+    private static final String DELTA_TO_HEADER = "X-Delta-To";
+
     private final ApkService apkService;
+    private final FileDownloadService fileDownloadService;
+    private final ChunkedUploadService chunkedUploadService;
+    private final ApkIngestPipeline ingestPipeline;
+    private final ApkDeltaService deltaService;
 
-    public ApkController(ApkService apkService) {
+    public ApkController(ApkService apkService,
+                         FileDownloadService fileDownloadService,
+                         ChunkedUploadService chunkedUploadService,
+                         ApkIngestPipeline ingestPipeline,
+                         ApkDeltaService deltaService) {
         this.apkService = apkService;
+        this.fileDownloadService = fileDownloadService;
+        this.chunkedUploadService = chunkedUploadService;
+        this.ingestPipeline = ingestPipeline;
+        this.deltaService = deltaService;
     }
 
+    // 上传后立即返回 202 与任务 id，解析入库在后台进行；通过 GET /api/apks/jobs/{jobId} 查询结果
     @ActionLog("上传APK")
     @PreAuthorize("hasAuthority('app:manage')")
     @PostMapping("/upload")
-    public ResponseEntity<Apk> uploadApk(
+    public ResponseEntity<ApkJobVO> uploadApk(
             @RequestParam("file") MultipartFile file,
             @RequestParam("organization") String organization,
             @RequestParam("group") String group) {
         if (file.isEmpty()) {
             return ResponseEntity.badRequest().body(null);
         }
+        try (InputStream in = file.getInputStream()) {
+            return accepted(ingestPipeline.submit(in, organization, group));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(null);
+        } catch (RejectedExecutionException e) {
+            return busy();
+        } catch (IOException e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(null);
+        }
+    }
+
+    // 流式上传：请求体即 APK 本身（非 multipart），不经容器落临时文件，直接写入存储目录并同时计算 SHA-256
+    @ActionLog("上传APK")
+    @PreAuthorize("hasAuthority('app:manage')")
+    @PostMapping(path = "/upload", consumes = { APK_MEDIA_TYPE, MediaType.APPLICATION_OCTET_STREAM_VALUE })
+    public ResponseEntity<ApkJobVO> uploadApkStream(
+            HttpServletRequest request,
+            @RequestParam("organization") String organization,
+            @RequestParam("group") String group) {
+        long contentLength = request.getContentLengthLong();
+        if (contentLength == 0) {
+            return ResponseEntity.badRequest().body(null);
+        }
+        if (contentLength > apkService.getMaxApkBytes()) {
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body(null);
+        }
         try {
-            Apk savedApk = apkService.processAndSaveApk(file, organization, group);
-            return ResponseEntity.status(HttpStatus.CREATED).body(savedApk);
+            return accepted(ingestPipeline.submit(request.getInputStream(), organization, group));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(null);
+        } catch (RejectedExecutionException e) {
+            return busy();
         } catch (IOException e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(null);
         }
     }
 
+    @PreAuthorize("hasAuthority('app:manage')")
+    @GetMapping("/jobs/{jobId}")
+    public ResponseEntity<ApkJobVO> getJob(@PathVariable String jobId) {
+        ApkJobVO job = ingestPipeline.status(jobId);
+        return job == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(job);
+    }
+
+    private static ResponseEntity<ApkJobVO> accepted(ApkJobVO job) {
+        return ResponseEntity.accepted()
+                .location(URI.create("/api/apks/jobs/" + job.getJobId()))
+                .body(job);
+    }
+
+    // 上传或解析队列已满，客户端稍后重试
+    private static <T> ResponseEntity<T> busy() {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS)
+                .build();
+    }
+
+    // 断点续传上传：发起 -> 按偏移 PUT 分片（X-Chunk-Sha256 校验）-> 提交
+    @PreAuthorize("hasAuthority('app:manage')")
+    @PostMapping(path = "/uploads", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<UploadSessionVO> initiateUpload(@RequestBody InitiateUploadRequest request) {
+        try {
+            return ResponseEntity.status(HttpStatus.CREATED).body(chunkedUploadService.initiate(request));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        } catch (IOException e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    @PreAuthorize("hasAuthority('app:manage')")
+    @PutMapping(path = "/uploads/{uploadId}", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE,
+            produces = MediaType.TEXT_PLAIN_VALUE)
+    public ResponseEntity<String> uploadChunk(
+            @PathVariable String uploadId,
+            @RequestParam("offset") long offset,
+            @RequestHeader(name = CHUNK_SHA256_HEADER, required = false) String sha256,
+            HttpServletRequest request) {
+        try {
+            chunkedUploadService.writeChunk(uploadId, offset, sha256, request.getInputStream());
+            return ResponseEntity.noContent().build();
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+        } catch (IOException e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    @PreAuthorize("hasAuthority('app:manage')")
+    @GetMapping("/uploads/{uploadId}")
+    public ResponseEntity<UploadSessionVO> uploadStatus(@PathVariable String uploadId) {
+        try {
+            return ResponseEntity.ok(chunkedUploadService.status(uploadId));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    @ActionLog("上传APK")
+    @PreAuthorize("hasAuthority('app:manage')")
+    @PostMapping("/uploads/{uploadId}/commit")
+    public ResponseEntity<ApkJobVO> commitUpload(@PathVariable String uploadId) {
+        try {
+            return accepted(chunkedUploadService.commit(uploadId));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        } catch (RejectedExecutionException e) {
+            return busy();
+        } catch (IOException e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    @PreAuthorize("hasAuthority('app:manage')")
+    @DeleteMapping("/uploads/{uploadId}")
+    public ResponseEntity<Void> abortUpload(@PathVariable String uploadId) {
+        try {
+            chunkedUploadService.abort(uploadId);
+            return ResponseEntity.noContent().build();
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.notFound().build();
+        } catch (IOException e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
     @PreAuthorize("hasAuthority('app:manage')")
     @GetMapping
     public ResponseEntity<List<Apk>> listApks() {
@@ -73,15 +232,95 @@ public class ApkController {
                 .orElse(ResponseEntity.notFound().build());
     }
 
+    // 下载 APK：支持 Range 断点续传与 If-None-Match / If-Range（ETag 为文件 SHA-256）
+    @PreAuthorize("hasAuthority('app:read')")
+    @GetMapping("/{id}/download")
+    public void downloadApk(@PathVariable String id, HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        Apk apk = apkService.findById(id).orElse(null);
+        if (apk == null) {
+            response.sendError(HttpStatus.NOT_FOUND.value());
+            return;
+        }
+        sendApk(apk, request, response, FileDownloadService.CACHE_IMMUTABLE);
+    }
+
+    // 增量下载：设备提供已安装版本（fromVersionCode 或其 APK 的 SHA-256），有补丁时返回补丁，否则回退为完整 APK。
+    // 两种响应以 Content-Type 区分；补丁应用后须校验结果的 SHA-256 等于 X-Delta-To
+    @PreAuthorize("hasAuthority('app:read')")
+    @GetMapping("/{id}/delta")
+    public void downloadDelta(
+            @PathVariable String id,
+            @RequestParam(name = "fromVersionCode", required = false) Long fromVersionCode,
+            @RequestParam(name = "fromHash", required = false) String fromHash,
+            HttpServletRequest request,
+            HttpServletResponse response) throws IOException {
+        Apk apk = apkService.findById(id).orElse(null);
+        if (apk == null) {
+            response.sendError(HttpStatus.NOT_FOUND.value());
+            return;
+        }
+        String from = StringUtils.hasText(fromHash) ? fromHash.trim().toLowerCase(Locale.ROOT) : null;
+        if (from == null && fromVersionCode != null) {
+            from = apkService.findSiblingVersion(apk, fromVersionCode)
+                    .map(Apk::getFileHash)
+                    .orElse(null);
+        }
+        Path patch = from == null ? null : deltaService.find(from, apk.getFileHash()).orElse(null);
+        if (patch == null) {
+            // 补丁生成后同一 URL 将返回补丁，完整包回退不能被长期缓存
+            sendApk(apk, request, response, FileDownloadService.CACHE_REVALIDATE);
+            return;
+        }
+        response.setHeader(DELTA_FROM_HEADER, from);
+        response.setHeader(DELTA_TO_HEADER, apk.getFileHash());
+        String fileName = String.format("%s-v%d.delta", apk.getPackageName(), apk.getVersionCode());
+        fileDownloadService.send(request, response, patch, "\"" + from + "_" + apk.getFileHash() + "\"",
+                MediaType.parseMediaType(DeltaPatch.MEDIA_TYPE), fileName, "delta");
+    }
+
+    private void sendApk(Apk apk, HttpServletRequest request, HttpServletResponse response, String cacheControl)
+            throws IOException {
+        Path file = apkService.apkFileOf(apk);
+        if (file == null) {
+            response.sendError(HttpStatus.NOT_FOUND.value());
+            return;
+        }
+        String fileName = String.format("%s-v%d.apk", apk.getPackageName(), apk.getVersionCode());
+        fileDownloadService.send(request, response, file, fileTag(apk, ""),
+                MediaType.parseMediaType(APK_MEDIA_TYPE), fileName, "apk", cacheControl);
+    }
+
+    @PreAuthorize("hasAuthority('app:read')")
+    @GetMapping("/{id}/icon")
+    public void downloadIcon(@PathVariable String id, HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        Apk apk = apkService.findById(id).orElse(null);
+        Path file = apk == null ? null : apkService.iconFileOf(apk);
+        if (file == null) {
+            response.sendError(HttpStatus.NOT_FOUND.value());
+            return;
+        }
+        MediaType contentType = MediaTypeFactory.getMediaType(file.getFileName().toString())
+                .orElse(MediaType.APPLICATION_OCTET_STREAM);
+        fileDownloadService.send(request, response, file, fileTag(apk, ".icon"), contentType, null, "icon");
+    }
+
+    // 图标由 APK 内容决定，同样以文件哈希作为 ETag
+    private static String fileTag(Apk apk, String suffix) {
+        return StringUtils.hasText(apk.getFileHash()) ? "\"" + apk.getFileHash() + suffix + "\"" : null;
+    }
+
     @PreAuthorize("hasAuthority('app:read')")
     @GetMapping("/summary")
     public ResponseEntity<List<ApkVO>> listApkSummaries(
             @RequestParam(required = false) String group,
+            @RequestParam(name = "q", required = false) String keyword,
             @RequestParam int offset,
             @RequestParam int limit) {
         String baseUrl = ServletUriComponentsBuilder.fromCurrentContextPath().build().toUriString();
         List<ApkVO> summaries = apkService
-                .queryApks(new ApkSearchCriteria(null, null, null, null, group, true, offset, limit)).stream()
+                .queryApks(new ApkSearchCriteria(null, null, null, null, group, true, offset, limit, keyword)).stream()
                 .map(apk -> ApkVO.fromEntity(apk, baseUrl))
                 .toList();
         return ResponseEntity.ok(summaries);
@@ -117,6 +356,8 @@ public class ApkController {
             return ResponseEntity.ok("批量更新成功");
         } catch (IllegalArgumentException e) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
         }
     }
 
@@ -128,6 +369,8 @@ public class ApkController {
             return ResponseEntity.ok(apkService.updateApk(id, updateRequest));
         } catch (IllegalArgumentException e) {
             return ResponseEntity.notFound().build();
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
         }
     }
 
@@ -0,0 +1,52 @@
+package dev.ouanu.iems.controller;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import dev.ouanu.iems.service.AuditService;
+import dev.ouanu.iems.vo.AuditRecordVO;
+import dev.ouanu.iems.vo.CursorPageVO;
+
+@RestController
+@RequestMapping("/api/admin/audit")
+public class AuditController {
+
+    private final AuditService auditService;
+
+    public AuditController(AuditService auditService) {
+        this.auditService = auditService;
+    }
+
+    // 按操作者 / 动作 / 时间范围查询审计记录，最新在前；下一页游标通过 X-Next-Cursor 响应头返回
+    // 时间参数为 ISO-8601，例如 2025-01-01T00:00:00+08:00
+    @PreAuthorize("hasAuthority('operator:manage')")
+    @GetMapping
+    public ResponseEntity<List<AuditRecordVO>> query(
+            @RequestParam(name = "actor", required = false) String actor,
+            @RequestParam(name = "action", required = false) String action,
+            @RequestParam(name = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime from,
+            @RequestParam(name = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime to,
+            @RequestParam(name = "cursor", required = false) String cursor,
+            @RequestParam(name = "limit", required = false, defaultValue = "50") int limit) {
+        try {
+            CursorPageVO<AuditRecordVO> page = auditService.query(actor, action,
+                    from == null ? null : from.toInstant(), to == null ? null : to.toInstant(), cursor, limit);
+            var builder = ResponseEntity.ok();
+            if (page.getNextCursor() != null) {
+                builder.header(CursorPageVO.NEXT_CURSOR_HEADER, page.getNextCursor());
+            }
+            return builder.body(page.getItems());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+        }
+    }
+}
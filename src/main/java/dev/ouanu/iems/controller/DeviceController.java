@@ -2,9 +2,13 @@ package dev.ouanu.iems.controller;
 
 import java.util.List;
 import java.util.Map;
+import java.util.zip.GZIPOutputStream;
 
 import javax.validation.Valid;
 
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -15,9 +19,11 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import dev.ouanu.iems.annotation.ActionLog;
 import dev.ouanu.iems.dto.BatchUpdateDevicesRequest;
@@ -25,7 +31,15 @@ import dev.ouanu.iems.dto.DeviceLogoutDTO;
 import dev.ouanu.iems.dto.RegisterDeviceDTO;
 import dev.ouanu.iems.dto.UpdateDeviceDTO;
 import dev.ouanu.iems.entity.Device;
+import dev.ouanu.iems.query.SearchQuery;
+import dev.ouanu.iems.query.SearchSchema;
 import dev.ouanu.iems.service.DeviceService;
+import dev.ouanu.iems.service.ExportService;
+import dev.ouanu.iems.util.CursorCodec;
+import dev.ouanu.iems.util.ETags;
+import dev.ouanu.iems.util.PageLimits;
+import dev.ouanu.iems.vo.CursorPageVO;
+import dev.ouanu.iems.vo.DeviceSimpleVO;
 import dev.ouanu.iems.vo.DeviceVO;
 import dev.ouanu.iems.vo.TokenVO;
 import lombok.AllArgsConstructor;
@@ -35,9 +49,11 @@ import lombok.AllArgsConstructor;
 public class DeviceController {
 
     private final DeviceService deviceService;
+    private final ExportService exportService;
 
-    public DeviceController(DeviceService deviceService) {
+    public DeviceController(DeviceService deviceService, ExportService exportService) {
         this.deviceService = deviceService;
+        this.exportService = exportService;
     }
 
     // Create device (admin)
@@ -67,17 +83,26 @@ public class DeviceController {
         public final String romVersion;
     }
 
-    // Admin update device by id
+    // Admin update device by id; 未提交的字段保持不变，携带 If-Match（GET 返回的 ETag）时仅在版本一致时更新
     @ActionLog("更新设备")
     @PreAuthorize("hasAuthority('operator:write')")
     @PutMapping(path = "/admin/devices/{id}", consumes = MediaType.APPLICATION_JSON_VALUE)
     public ResponseEntity<?> adminUpdateDevice(@PathVariable("id") Long id,
+                                                    @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
                                                     @Valid @RequestBody UpdateDeviceDTO dto) {
+        Long expectedVersion;
         try {
-            Device device = deviceService.updateDevice(id, dto);
-            return ResponseEntity.ok(DeviceVO.fromEntity(device));
+            expectedVersion = ETags.parseIfMatch(ifMatch);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+        try {
+            Device device = deviceService.updateDevice(id, dto, expectedVersion);
+            return ResponseEntity.ok().eTag(ETags.of(device.getVersion())).body(DeviceVO.fromEntity(device));
         } catch (IllegalArgumentException e) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
+        } catch (OptimisticLockingFailureException e) {
+            return ResponseEntity.status(expectedVersion != null ? HttpStatus.PRECONDITION_FAILED : HttpStatus.CONFLICT).body(e.getMessage());
         } catch (RuntimeException e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(e.getMessage());
         }
@@ -92,6 +117,8 @@ public class DeviceController {
             return ResponseEntity.ok("批量更新成功");
         } catch (IllegalArgumentException e) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
+        } catch (OptimisticLockingFailureException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
         } catch (RuntimeException e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(e.getMessage());
         }
@@ -100,12 +127,32 @@ public class DeviceController {
     // List devices (admin)
     @PreAuthorize("hasAuthority('operator:read')")
     @GetMapping(path = "/admin/devices")
+    // 传入 cursor（首页传空串）时使用 keyset 分页，下一页游标通过 X-Next-Cursor 响应头返回
     public ResponseEntity<List<DeviceVO>> listDevices(
             @RequestParam(name = "offset", required = false, defaultValue = "0") int offset,
-            @RequestParam(name = "limit", required = false, defaultValue = "20") int limit) {
+            @RequestParam(name = "limit", required = false, defaultValue = "20") int limit,
+            @RequestParam(name = "cursor", required = false) String cursor) {
         try {
-            List<DeviceVO> devices = deviceService.listDevices(offset, limit);
-            return ResponseEntity.ok(devices);
+            CursorPageVO<DeviceVO> page;
+            if (cursor != null) {
+                page = deviceService.listDevicesAfter(CursorCodec.decode(cursor), limit);
+            } else {
+                page = CursorPageVO.of(deviceService.listDevices(offset, limit), PageLimits.clamp(limit), DeviceVO::getId);
+            }
+            return pageResponse(page);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    // List device summaries (admin)：选择器等场景只返回概要字段，keyset 分页
+    @PreAuthorize("hasAuthority('operator:read')")
+    @GetMapping(path = "/admin/devices/simple")
+    public ResponseEntity<List<DeviceSimpleVO>> listDeviceSummaries(
+            @RequestParam(name = "limit", required = false, defaultValue = "20") int limit,
+            @RequestParam(name = "cursor", required = false) String cursor) {
+        try {
+            return pageResponse(deviceService.listDeviceSummariesAfter(CursorCodec.decode(cursor), limit));
         } catch (IllegalArgumentException e) {
             return ResponseEntity.badRequest().build();
         }
@@ -117,13 +164,60 @@ public class DeviceController {
     public ResponseEntity<List<DeviceVO>> queryDevices(@RequestBody(required = false) Map<String, Object> params) {
         System.out.println("Querying devices with params: " + params);
         try {
-            List<DeviceVO> devices = deviceService.queryDevices(params);
-            return ResponseEntity.ok(devices);
+            return pageResponse(deviceService.queryDevices(SearchQuery.fromParams(SearchSchema.DEVICES, params)));
         } catch (IllegalArgumentException e) {
             return ResponseEntity.badRequest().build();
         }
     }
 
+    private static <T> ResponseEntity<List<T>> pageResponse(CursorPageVO<T> page) {
+        var builder = ResponseEntity.ok();
+        if (page.getNextCursor() != null) {
+            builder.header(CursorPageVO.NEXT_CURSOR_HEADER, page.getNextCursor());
+        }
+        return builder.body(page.getItems());
+    }
+
+    // Streaming export (admin): CSV / NDJSON，过滤条件与 /admin/devices/query 相同，不分页
+    @ActionLog("导出设备")
+    @PreAuthorize("hasAuthority('operator:read')")
+    @PostMapping(path = "/admin/devices/export", produces = { "text/csv", "application/x-ndjson", "application/gzip" })
+    public ResponseEntity<StreamingResponseBody> exportDevices(
+            @RequestParam(name = "format", required = false, defaultValue = "csv") String format,
+            @RequestParam(name = "gzip", required = false, defaultValue = "false") boolean gzip,
+            @RequestBody(required = false) Map<String, Object> filters) {
+        ExportService.Format exportFormat;
+        SearchQuery query;
+        try {
+            exportFormat = ExportService.Format.fromName(format);
+            query = SearchQuery.fromParams(SearchSchema.DEVICES, filters);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        StreamingResponseBody body = out -> {
+            if (gzip) {
+                GZIPOutputStream gz = new GZIPOutputStream(out, 64 * 1024);
+                exportService.exportDevices(query, exportFormat, gz);
+                gz.finish();
+            } else {
+                exportService.exportDevices(query, exportFormat, out);
+            }
+        };
+        return exportResponse("devices", exportFormat, gzip, body);
+    }
+
+    private static ResponseEntity<StreamingResponseBody> exportResponse(String name, ExportService.Format format,
+                                                                        boolean gzip, StreamingResponseBody body) {
+        String filename = name + format.getExtension() + (gzip ? ".gz" : "");
+        MediaType contentType = gzip
+                ? MediaType.parseMediaType("application/gzip")
+                : MediaType.parseMediaType(format.getContentType() + ";charset=UTF-8");
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename(filename).build().toString())
+                .contentType(contentType)
+                .body(body);
+    }
+
     // Delete device (admin)
     @ActionLog("删除设备")
     @PreAuthorize("hasAuthority('operator:delete')")
@@ -145,7 +239,7 @@ public class DeviceController {
     @GetMapping(path = "/admin/devices/{id}")
     public ResponseEntity<DeviceVO> getDevice(@PathVariable("id") Long id) {
         DeviceVO device = deviceService.getDeviceById(id);
-        return device != null ? ResponseEntity.ok(device) : ResponseEntity.notFound().build();
+        return device != null ? ResponseEntity.ok().eTag(ETags.of(device.getVersion())).body(device) : ResponseEntity.notFound().build();
     }
 
     // Get device by uuid (public/admin)
@@ -248,6 +342,8 @@ public class DeviceController {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(e.getMessage());
         } catch (IllegalArgumentException e) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
+        } catch (OptimisticLockingFailureException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
         } catch (RuntimeException e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(e.getMessage());
         }
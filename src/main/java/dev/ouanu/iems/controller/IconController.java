@@ -0,0 +1,47 @@
+package dev.ouanu.iems.controller;
+
+import java.io.IOException;
+import java.time.Duration;
+
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import dev.ouanu.iems.service.IconService;
+
+@RestController
+@RequestMapping("/api/icons")
+public class IconController {
+
+    // 地址包含内容哈希，内容永不变化
+    private static final CacheControl IMMUTABLE = CacheControl.maxAge(Duration.ofDays(365)).cachePublic().immutable();
+
+    private final IconService iconService;
+
+    public IconController(IconService iconService) {
+        this.iconService = iconService;
+    }
+
+    // 图标渲染图：/api/icons/{apk sha256}/{48|96|192}.png
+    @GetMapping(path = "/{hash}/{size:\\d+}.png", produces = MediaType.IMAGE_PNG_VALUE)
+    public ResponseEntity<byte[]> getIcon(@PathVariable String hash, @PathVariable int size) {
+        try {
+            byte[] data = iconService.load(hash, size);
+            if (data == null) {
+                return ResponseEntity.notFound().build();
+            }
+            return ResponseEntity.ok()
+                    .cacheControl(IMMUTABLE)
+                    .eTag("\"" + hash + "-" + size + "\"")
+                    .contentType(MediaType.IMAGE_PNG)
+                    .body(data);
+        } catch (IOException e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package dev.ouanu.iems.controller;
+
+import java.util.List;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import dev.ouanu.iems.query.IndexAdvisor;
+import dev.ouanu.iems.vo.IndexAdviceVO;
+
+@RestController
+@RequestMapping("/api/admin/index-advisor")
+public class IndexAdvisorController {
+
+    private final ObjectProvider<IndexAdvisor> indexAdvisor;
+
+    public IndexAdvisorController(ObjectProvider<IndexAdvisor> indexAdvisor) {
+        this.indexAdvisor = indexAdvisor;
+    }
+
+    // EXPLAIN 已记录的查询形状，默认只返回全表 / 全索引扫描
+    @PreAuthorize("hasAuthority('operator:manage')")
+    @GetMapping
+    public ResponseEntity<List<IndexAdviceVO>> report(
+            @RequestParam(name = "fullScansOnly", required = false, defaultValue = "true") boolean fullScansOnly) {
+        IndexAdvisor advisor = indexAdvisor.getIfAvailable();
+        if (advisor == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(advisor.report(fullScansOnly));
+    }
+
+    @PreAuthorize("hasAuthority('operator:manage')")
+    @DeleteMapping
+    public ResponseEntity<Void> reset() {
+        IndexAdvisor advisor = indexAdvisor.getIfAvailable();
+        if (advisor == null) {
+            return ResponseEntity.notFound().build();
+        }
+        advisor.reset();
+        return ResponseEntity.noContent().build();
+    }
+}
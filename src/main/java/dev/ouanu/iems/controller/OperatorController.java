@@ -2,9 +2,13 @@ package dev.ouanu.iems.controller;
 
 import java.util.List;
 import java.util.Map;
+import java.util.zip.GZIPOutputStream;
 
 import javax.validation.Valid;
 
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -15,9 +19,11 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import dev.ouanu.iems.annotation.ActionLog;
 import dev.ouanu.iems.dto.AdminResetPasswordDTO;
@@ -27,7 +33,15 @@ import dev.ouanu.iems.dto.OperatorLogoutDTO;
 import dev.ouanu.iems.dto.RegisterOperatorDTO;
 import dev.ouanu.iems.dto.UpdateOperatorDTO;
 import dev.ouanu.iems.entity.Operator;
+import dev.ouanu.iems.query.SearchQuery;
+import dev.ouanu.iems.query.SearchSchema;
+import dev.ouanu.iems.service.ExportService;
 import dev.ouanu.iems.service.OperatorService;
+import dev.ouanu.iems.util.CursorCodec;
+import dev.ouanu.iems.util.ETags;
+import dev.ouanu.iems.util.PageLimits;
+import dev.ouanu.iems.vo.CursorPageVO;
+import dev.ouanu.iems.vo.OperatorSimpleVO;
 import dev.ouanu.iems.vo.OperatorVO;
 import dev.ouanu.iems.vo.TokenVO;
 
@@ -39,9 +53,11 @@ import dev.ouanu.iems.vo.TokenVO;
 public class OperatorController {
 
     private final OperatorService operatorService;
+    private final ExportService exportService;
 
-    public OperatorController(OperatorService operatorService) {
+    public OperatorController(OperatorService operatorService, ExportService exportService) {
         this.operatorService = operatorService;
+        this.exportService = exportService;
     }
 
     // ----------------- Operator management -----------------
@@ -61,17 +77,35 @@ public class OperatorController {
         }
     }
 
-    // Admin update profile
+    // Admin update profile; 携带 If-Match 时按版本号条件更新，冲突返回 412
+    // Prefer: return=minimal 时只返回 204 与新 ETag，省去更新后的回读
     @ActionLog("更新操作员")
     @PreAuthorize("hasAuthority('operator:write')")
     @PutMapping(path = "/admin/operators/{id}", consumes = MediaType.APPLICATION_JSON_VALUE)
     public ResponseEntity<OperatorVO> adminUpdateProfile(@PathVariable("id") Long id,
+                                                     @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                                     @RequestHeader(value = "Prefer", required = false) String prefer,
                                                      @Valid @RequestBody UpdateOperatorDTO dto) {
+        Long expectedVersion;
         try {
-            Operator operator = operatorService.adminUpdateProfile(id, dto);
-            return ResponseEntity.ok(OperatorVO.fromEntity(operator));
+            expectedVersion = ETags.parseIfMatch(ifMatch);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(null);
+        }
+        try {
+            Long version = operatorService.adminUpdateProfile(id, dto, expectedVersion);
+            if (version != null && prefer != null && prefer.contains("return=minimal")) {
+                return ResponseEntity.noContent().eTag(ETags.of(version)).build();
+            }
+            OperatorVO operator = operatorService.getOperator(id);
+            if (operator == null) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).body(null);
+            }
+            return ResponseEntity.ok().eTag(ETags.of(operator.getVersion())).body(operator);
         } catch (IllegalArgumentException e) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body(null);
+        } catch (OptimisticLockingFailureException e) {
+            return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).body(null);
         } catch (RuntimeException e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(null);
         }
@@ -117,11 +151,13 @@ public class OperatorController {
     public ResponseEntity<OperatorVO> updateProfile(@Valid @RequestBody UpdateOperatorDTO dto) {
         try {
             OperatorVO updatedOperator = operatorService.updateProfile(dto);
-            return ResponseEntity.ok(updatedOperator);
+            return ResponseEntity.ok().eTag(ETags.of(updatedOperator.getVersion())).body(updatedOperator);
         } catch (SecurityException e) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(null);
         } catch (IllegalArgumentException e) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body(null);
+        } catch (OptimisticLockingFailureException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(null);
         } catch (RuntimeException e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(null);
         }
@@ -201,14 +237,36 @@ public class OperatorController {
     // List operators (admin) with pagination
     @PreAuthorize("hasAuthority('operator:read')")
     @GetMapping(path = "/admin/operators")
+    // 传入 cursor（首页传空串）时使用 keyset 分页，下一页游标通过 X-Next-Cursor 响应头返回
     public ResponseEntity<List<OperatorVO>> listOperators(
             @RequestParam(name = "offset", required = false, defaultValue = "0") int offset,
-            @RequestParam(name = "limit", required = false, defaultValue = "20") int limit) {
+            @RequestParam(name = "limit", required = false, defaultValue = "20") int limit,
+            @RequestParam(name = "cursor", required = false) String cursor) {
+        if (cursor != null) {
+            try {
+                return pageResponse(operatorService.listOperatorsAfter(CursorCodec.decode(cursor), limit));
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest().build();
+            }
+        }
         List<OperatorVO> operatorVOs = operatorService.listOperators(offset, limit);
         if (operatorVOs == null) {
             return ResponseEntity.badRequest().build();
         }
-        return ResponseEntity.ok(operatorVOs);
+        return pageResponse(CursorPageVO.of(operatorVOs, PageLimits.clamp(limit), OperatorVO::getId));
+    }
+
+    // List operator summaries (admin)：选择器等场景只返回概要字段，keyset 分页
+    @PreAuthorize("hasAuthority('operator:read')")
+    @GetMapping(path = "/admin/operators/simple")
+    public ResponseEntity<List<OperatorSimpleVO>> listOperatorSummaries(
+            @RequestParam(name = "limit", required = false, defaultValue = "20") int limit,
+            @RequestParam(name = "cursor", required = false) String cursor) {
+        try {
+            return pageResponse(operatorService.listOperatorSummariesAfter(CursorCodec.decode(cursor), limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
     }
 
     // Query operators (admin) with a JSON body of params
@@ -216,13 +274,60 @@ public class OperatorController {
     @PostMapping(path = "/admin/operators/query", consumes = MediaType.APPLICATION_JSON_VALUE)
     public ResponseEntity<List<OperatorVO>> queryOperators(@RequestBody(required = false) Map<String, Object> params) {
         try {
-            List<OperatorVO> operators = operatorService.query(params);
-            return ResponseEntity.ok(operators);
+            return pageResponse(operatorService.query(SearchQuery.fromParams(SearchSchema.OPERATORS, params)));
         } catch (IllegalArgumentException e) {
             return ResponseEntity.badRequest().build();
         }
     }
 
+    private static <T> ResponseEntity<List<T>> pageResponse(CursorPageVO<T> page) {
+        var builder = ResponseEntity.ok();
+        if (page.getNextCursor() != null) {
+            builder.header(CursorPageVO.NEXT_CURSOR_HEADER, page.getNextCursor());
+        }
+        return builder.body(page.getItems());
+    }
+
+    // Streaming export (admin): CSV / NDJSON，过滤条件与 /admin/operators/query 相同，不分页
+    @ActionLog("导出操作员")
+    @PreAuthorize("hasAuthority('operator:read')")
+    @PostMapping(path = "/admin/operators/export", produces = { "text/csv", "application/x-ndjson", "application/gzip" })
+    public ResponseEntity<StreamingResponseBody> exportOperators(
+            @RequestParam(name = "format", required = false, defaultValue = "csv") String format,
+            @RequestParam(name = "gzip", required = false, defaultValue = "false") boolean gzip,
+            @RequestBody(required = false) Map<String, Object> filters) {
+        ExportService.Format exportFormat;
+        SearchQuery query;
+        try {
+            exportFormat = ExportService.Format.fromName(format);
+            query = SearchQuery.fromParams(SearchSchema.OPERATORS, filters);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        StreamingResponseBody body = out -> {
+            if (gzip) {
+                GZIPOutputStream gz = new GZIPOutputStream(out, 64 * 1024);
+                exportService.exportOperators(query, exportFormat, gz);
+                gz.finish();
+            } else {
+                exportService.exportOperators(query, exportFormat, out);
+            }
+        };
+        return exportResponse("operators", exportFormat, gzip, body);
+    }
+
+    private static ResponseEntity<StreamingResponseBody> exportResponse(String name, ExportService.Format format,
+                                                                        boolean gzip, StreamingResponseBody body) {
+        String filename = name + format.getExtension() + (gzip ? ".gz" : "");
+        MediaType contentType = gzip
+                ? MediaType.parseMediaType("application/gzip")
+                : MediaType.parseMediaType(format.getContentType() + ";charset=UTF-8");
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename(filename).build().toString())
+                .contentType(contentType)
+                .body(body);
+    }
+
     // Delete operator (admin)
     @ActionLog("删除操作员")
     @PreAuthorize("hasAuthority('operator:delete')")
@@ -246,7 +351,7 @@ public class OperatorController {
         if (operator == null) {
             return ResponseEntity.notFound().build();
         }
-        return ResponseEntity.ok(operator);
+        return ResponseEntity.ok().eTag(ETags.of(operator.getVersion())).body(operator);
     }
 
     
@@ -6,6 +6,8 @@ import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
 
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
@@ -15,6 +17,7 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
@@ -22,6 +25,10 @@ import org.springframework.web.bind.annotation.RestController;
 import dev.ouanu.iems.annotation.ActionLog;
 import dev.ouanu.iems.constant.Permission;
 import dev.ouanu.iems.service.PermissionService;
+import dev.ouanu.iems.util.CursorCodec;
+import dev.ouanu.iems.util.ETags;
+import dev.ouanu.iems.util.PageLimits;
+import dev.ouanu.iems.vo.CursorPageVO;
 import dev.ouanu.iems.vo.PermissionVO;
 
 @RestController
@@ -54,7 +61,16 @@ public class PermissionController {
     @ActionLog("更新权限")
     @PreAuthorize("hasAuthority('operator:manage')")
     @PutMapping("/admin/permissions/{id}")
-    public ResponseEntity<String> updatePermission(@PathVariable Long id, @RequestBody String permissionStr) {
+    // 携带 If-Match（GET 返回的 ETag）时仅在版本一致时覆盖，否则返回 412
+    public ResponseEntity<String> updatePermission(@PathVariable Long id,
+                                                   @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                                   @RequestBody String permissionStr) {
+        Long expectedVersion;
+        try {
+            expectedVersion = ETags.parseIfMatch(ifMatch);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
         try {
             Permission[] permission;
             String[] permissions = permissionStr.split(","); // 检查是否包含逗号
@@ -62,10 +78,12 @@ public class PermissionController {
                     .map(p -> Permission.fromType(p.replace("\"", "")))
                     .collect(Collectors.toSet());
             permission = permissionSet.toArray(Permission[]::new);
-            if (permissionService.updatePermission(id, permission)) {
+            if (permissionService.updatePermission(id, expectedVersion, permission)) {
                 return ResponseEntity.ok("Permission updated successfully");
             }
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Error updating permission");
+        } catch (OptimisticLockingFailureException e) {
+            return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).body(e.getMessage());
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body("Error updating permission: " + e.getMessage());
@@ -92,28 +110,55 @@ public class PermissionController {
         try {
             // 手动处理 offset 和 limit 参数
             int offset = Integer.parseInt(params.getOrDefault("offset", "0").toString());
-            int limit = Integer.parseInt(params.getOrDefault("limit", "20").toString());
+            int limit = PageLimits.clamp(Integer.parseInt(params.getOrDefault("limit", "20").toString()));
             params.put("offset", offset);
             params.put("limit", limit);
+            // 游标在这里解码，格式错误返回 400 而不是空列表
+            if (params.containsKey("cursor")) {
+                Object cursor = params.remove("cursor");
+                Long afterId;
+                try {
+                    afterId = CursorCodec.decode(cursor == null ? null : cursor.toString());
+                } catch (IllegalArgumentException e) {
+                    return ResponseEntity.badRequest().build();
+                }
+                params.put("afterId", afterId);
+                params.put("offset", 0);
+            }
 
             List<PermissionVO> permissions = permissionService.queryPermissions(params);
-            return ResponseEntity.ok(permissions);
+            return pageResponse(CursorPageVO.of(permissions, limit, PermissionVO::getId));
         } catch (NumberFormatException e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
     }
 
+    // 传入 cursor（首页传空串）时使用 keyset 分页，下一页游标通过 X-Next-Cursor 响应头返回
     @PreAuthorize("hasAuthority('operator:manage')")
     @GetMapping("/admin/permissions")
-    public ResponseEntity<List<PermissionVO>> listPermissions(@RequestParam int offset, @RequestParam int limit) {
+    public ResponseEntity<List<PermissionVO>> listPermissions(@RequestParam(required = false, defaultValue = "0") int offset,
+            @RequestParam int limit, @RequestParam(required = false) String cursor) {
         try {
+            if (cursor != null) {
+                return pageResponse(permissionService.listPermissionsAfter(CursorCodec.decode(cursor), limit));
+            }
             List<PermissionVO> permissions = permissionService.listPermissions(offset, limit);
-            return ResponseEntity.ok(permissions);
+            return pageResponse(CursorPageVO.of(permissions, PageLimits.clamp(limit), PermissionVO::getId));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
     }
 
+    private static <T> ResponseEntity<List<T>> pageResponse(CursorPageVO<T> page) {
+        var builder = ResponseEntity.ok();
+        if (page.getNextCursor() != null) {
+            builder.header(CursorPageVO.NEXT_CURSOR_HEADER, page.getNextCursor());
+        }
+        return builder.body(page.getItems());
+    }
+
     @GetMapping("/auth/verify")
     public ResponseEntity<Boolean> verifyPermission(@RequestParam Long operatorId,
             @RequestParam Permission permission) {
@@ -131,7 +176,7 @@ public class PermissionController {
         try {
             PermissionVO permission = permissionService.getPermissionVOById(id);
             if (permission != null) {
-                return ResponseEntity.ok(permission);
+                return ResponseEntity.ok().eTag(ETags.of(permission.getVersion())).body(permission);
             } else {
                 return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
             }
@@ -1,22 +1,43 @@
 package dev.ouanu.iems.controller;
 
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import dev.ouanu.iems.service.ActiveSubjectService;
+import dev.ouanu.iems.service.DeviceAnalyticsService;
 import dev.ouanu.iems.service.StatisticsService;
+import dev.ouanu.iems.vo.ActiveSubjectsVO;
 import dev.ouanu.iems.vo.DashboardStatsVO;
+import dev.ouanu.iems.vo.DistributionEntryVO;
+import dev.ouanu.iems.vo.TimeSeriesPointVO;
 
 @RestController
 @RequestMapping("/api/stats")
 public class StatisticsController {
 
+    private static final ZoneOffset BUSINESS_ZONE = ZoneOffset.ofHours(8);
+
     private final StatisticsService statisticsService;
+    private final DeviceAnalyticsService deviceAnalyticsService;
+    private final ActiveSubjectService activeSubjectService;
 
-    public StatisticsController(StatisticsService statisticsService) {
+    public StatisticsController(StatisticsService statisticsService,
+                                DeviceAnalyticsService deviceAnalyticsService,
+                                ActiveSubjectService activeSubjectService) {
         this.statisticsService = statisticsService;
+        this.deviceAnalyticsService = deviceAnalyticsService;
+        this.activeSubjectService = activeSubjectService;
     }
 
     @PreAuthorize("hasAnyAuthority('operator:read','operator:manage','device:read','device:manage','app:read','app:manage')")
@@ -25,4 +46,51 @@ public class StatisticsController {
         DashboardStatsVO stats = statisticsService.getDashboardStats();
         return ResponseEntity.ok(stats);
     }
+
+    // 活跃设备 / 操作员数（DAU / WAU / MAU，HyperLogLog 近似值）
+    @PreAuthorize("hasAnyAuthority('operator:read','operator:manage','device:read','device:manage')")
+    @GetMapping("/active")
+    public ResponseEntity<ActiveSubjectsVO> getActiveSubjects() {
+        return ResponseEntity.ok(activeSubjectService.summary());
+    }
+
+    // 设备构成分布：dimension = brand / model / androidVersion / appVersion / romVersion
+    @PreAuthorize("hasAnyAuthority('operator:read','operator:manage','device:read','device:manage')")
+    @GetMapping("/devices/distribution")
+    public ResponseEntity<List<DistributionEntryVO>> getDeviceDistribution(
+            @RequestParam("dimension") String dimension,
+            @RequestParam(name = "limit", required = false, defaultValue = "20") int limit) {
+        try {
+            return ResponseEntity.ok(deviceAnalyticsService.distribution(dimension, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    // 设备事件时间序列：event = registered / updated / deleted；granularity = hour / day；
+    // from / to 为东八区日期（含 from，不含 to），默认最近 30 天（按小时则最近 48 小时）
+    @PreAuthorize("hasAnyAuthority('operator:read','operator:manage','device:read','device:manage')")
+    @GetMapping("/devices/timeseries")
+    public ResponseEntity<List<TimeSeriesPointVO>> getDeviceTimeSeries(
+            @RequestParam(name = "event", required = false, defaultValue = DeviceAnalyticsService.EVENT_REGISTERED) String event,
+            @RequestParam(name = "granularity", required = false, defaultValue = "day") String granularity,
+            @RequestParam(name = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(name = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        try {
+            if ("hour".equals(granularity)) {
+                LocalDateTime end = to != null ? to.atStartOfDay()
+                        : LocalDateTime.now(BUSINESS_ZONE).truncatedTo(ChronoUnit.HOURS).plusHours(1);
+                LocalDateTime start = from != null ? from.atStartOfDay() : end.minusHours(48);
+                return ResponseEntity.ok(deviceAnalyticsService.hourly(event, start, end));
+            }
+            if ("day".equals(granularity)) {
+                LocalDate end = to != null ? to : LocalDate.now(BUSINESS_ZONE).plusDays(1);
+                LocalDate start = from != null ? from : end.minusDays(30);
+                return ResponseEntity.ok(deviceAnalyticsService.daily(event, start, end));
+            }
+            return ResponseEntity.badRequest().build();
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
 }
@@ -0,0 +1,75 @@
+package dev.ouanu.iems.datasource;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Sends read-only transactions to a replica and everything else to the primary.
+ * <p>
+ * Must be wrapped in a {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy}: the transaction
+ * manager opens its connection before the read-only flag is bound, the lazy proxy defers the lookup to the first
+ * statement. A read-only transaction still goes to the primary when no replica is within the lag budget, or when
+ * the current principal committed a write within the read-your-writes window.
+ */
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+
+    public static final String PRIMARY = "primary";
+
+    private final ReplicaLagMonitor lagMonitor;
+    private final RecentWriters recentWriters;
+    private final MeterRegistry meterRegistry;
+    private final AtomicInteger next = new AtomicInteger();
+
+    public ReadWriteRoutingDataSource(ReplicaLagMonitor lagMonitor, RecentWriters recentWriters, MeterRegistry meterRegistry) {
+        this.lagMonitor = lagMonitor;
+        this.recentWriters = recentWriters;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        String principal = currentPrincipal();
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            if (principal != null && TransactionSynchronizationManager.isSynchronizationActive()) {
+                // 只在写事务提交后记账，回滚或只读访问不影响后续路由
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void afterCommit() {
+                        recentWriters.record(principal);
+                    }
+                });
+            }
+            return route(PRIMARY, "write");
+        }
+        if (principal != null && recentWriters.wroteRecently(principal)) {
+            return route(PRIMARY, "read-your-writes");
+        }
+        List<String> available = lagMonitor.available();
+        if (available.isEmpty()) {
+            return route(PRIMARY, "no-replica");
+        }
+        return route(available.get(Math.floorMod(next.getAndIncrement(), available.size())), "read");
+    }
+
+    private String route(String target, String reason) {
+        meterRegistry.counter("iems.datasource.route", "target", target, "reason", reason).increment();
+        return target;
+    }
+
+    private static String currentPrincipal() {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        if (auth == null || !auth.isAuthenticated() || auth instanceof AnonymousAuthenticationToken) {
+            return null;
+        }
+        return auth.getName();
+    }
+}
@@ -0,0 +1,51 @@
+package dev.ouanu.iems.datasource;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.scheduling.annotation.Scheduled;
+
+/**
+ * Principals that committed a write recently, so their reads can stay on the primary until replicas catch up.
+ * <p>
+ * Kept per instance: a client whose next request lands on another instance may still read from a replica, which is
+ * why the window should be at least the replica lag budget plus one lag probe interval.
+ */
+public class RecentWriters {
+
+    private final long windowMillis;
+    private final Map<String, Long> lastWrite = new ConcurrentHashMap<>();
+
+    public RecentWriters(long windowMillis) {
+        this.windowMillis = windowMillis;
+    }
+
+    public void record(String principal) {
+        lastWrite.put(principal, System.currentTimeMillis());
+    }
+
+    public boolean wroteRecently(String principal) {
+        Long at = lastWrite.get(principal);
+        if (at == null) {
+            return false;
+        }
+        if (System.currentTimeMillis() - at > windowMillis) {
+            lastWrite.remove(principal, at);
+            return false;
+        }
+        return true;
+    }
+
+    public int size() {
+        return lastWrite.size();
+    }
+
+    /**
+     * Drop expired entries of principals that never read again.
+     */
+    @Scheduled(fixedDelay = 60000)
+    public void prune() {
+        long cutoff = System.currentTimeMillis() - windowMillis;
+        lastWrite.values().removeIf(at -> at < cutoff);
+    }
+}
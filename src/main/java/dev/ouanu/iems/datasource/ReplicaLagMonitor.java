@@ -0,0 +1,106 @@
+package dev.ouanu.iems.datasource;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Probes each replica's replication delay and keeps the list of replicas that may serve reads.
+ * <p>
+ * A replica is usable when it answers and reports a delay of at most {@code maxLagSeconds}. A stopped replication
+ * thread ({@code Seconds_Behind_Source} is NULL) or a failed probe takes it out until the next successful probe.
+ * A server that is not configured as a replica at all reports no status and is treated as lag 0.
+ */
+public class ReplicaLagMonitor {
+
+    // 探测失败或复制中断
+    public static final long UNKNOWN = -1L;
+
+    private final Map<String, DataSource> replicas;
+    private final long maxLagSeconds;
+    private final Map<String, Long> lagSeconds = new ConcurrentHashMap<>();
+    private volatile List<String> available = List.of();
+    private final Logger log = LoggerFactory.getLogger(ReplicaLagMonitor.class);
+
+    public ReplicaLagMonitor(Map<String, DataSource> replicas, long maxLagSeconds, MeterRegistry meterRegistry) {
+        this.replicas = replicas;
+        this.maxLagSeconds = maxLagSeconds;
+        for (String name : replicas.keySet()) {
+            lagSeconds.put(name, UNKNOWN);
+            Gauge.builder("iems.datasource.replica.lag", lagSeconds, m -> m.getOrDefault(name, UNKNOWN))
+                    .tag("replica", name)
+                    .baseUnit("seconds")
+                    .description("Replication delay reported by the replica, -1 when unknown")
+                    .register(meterRegistry);
+        }
+        Gauge.builder("iems.datasource.replicas.available", this, m -> m.available.size())
+                .description("Replicas currently eligible for read-only transactions")
+                .register(meterRegistry);
+    }
+
+    public Map<String, DataSource> replicas() {
+        return replicas;
+    }
+
+    public List<String> available() {
+        return available;
+    }
+
+    @Scheduled(fixedDelayString = "${app.datasource.routing.lag-check-interval-ms:2000}")
+    public void refresh() {
+        List<String> usable = new ArrayList<>();
+        replicas.forEach((name, dataSource) -> {
+            long lag = probe(name, dataSource);
+            long previous = lagSeconds.getOrDefault(name, UNKNOWN);
+            lagSeconds.put(name, lag);
+            boolean ok = lag != UNKNOWN && lag <= maxLagSeconds;
+            if (ok) {
+                usable.add(name);
+            }
+            boolean wasOk = previous != UNKNOWN && previous <= maxLagSeconds;
+            if (ok != wasOk) {
+                log.info("Replica {} is now {} (lag {}s, budget {}s)", name, ok ? "in rotation" : "out of rotation", lag, maxLagSeconds);
+            }
+        });
+        available = List.copyOf(usable);
+    }
+
+    private long probe(String name, DataSource dataSource) {
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            try (ResultSet rs = statement.executeQuery("SHOW REPLICA STATUS")) {
+                return lag(rs, "Seconds_Behind_Source");
+            } catch (SQLException e) {
+                // MySQL 8.0.22 之前只支持旧语法
+                try (ResultSet rs = statement.executeQuery("SHOW SLAVE STATUS")) {
+                    return lag(rs, "Seconds_Behind_Master");
+                }
+            }
+        } catch (SQLException | RuntimeException e) {
+            log.debug("Lag probe failed for replica {}: {}", name, e.getMessage());
+            return UNKNOWN;
+        }
+    }
+
+    private static long lag(ResultSet rs, String column) throws SQLException {
+        if (!rs.next()) {
+            return 0L;
+        }
+        long lag = rs.getLong(column);
+        return rs.wasNull() ? UNKNOWN : lag;
+    }
+}
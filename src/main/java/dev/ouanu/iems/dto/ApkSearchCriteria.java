@@ -6,7 +6,10 @@ public record ApkSearchCriteria(
     String versionName,
     String organization,
     String group,
-    Boolean fuzzy, // 添加此字段
+    // 为 true 时各字段按前缀匹配（应用名不区分大小写）
+    Boolean fuzzy,
     int offset,
-    int limit
+    int limit,
+    // 全文检索应用名与包名，结果按相关度排序
+    String keyword
 ) {}
\ No newline at end of file
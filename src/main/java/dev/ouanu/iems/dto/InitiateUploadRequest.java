@@ -0,0 +1,16 @@
+package dev.ouanu.iems.dto;
+
+/**
+ * Start of a resumable chunked upload.
+ * @param size total file size in bytes
+ * @param chunkSize bytes per chunk (every chunk but the last), null for the server default
+ * @param sha256 optional hex SHA-256 of the whole file, checked on commit
+ */
+public record InitiateUploadRequest(
+    String fileName,
+    Long size,
+    Integer chunkSize,
+    String sha256,
+    String organization,
+    String group
+) {}
@@ -1,28 +1,60 @@
 package dev.ouanu.iems.entity;
 
 import java.io.Serializable;
+import java.util.List;
 import java.util.Map;
 
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.index.TextIndexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+/**
+ * One stored APK version. Indexes are declared here and created / verified at startup by
+ * {@link dev.ouanu.iems.config.MongoIndexVerifier}; {@code (packageName, versionCode)} is unique per organization and
+ * group.
+ */
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
-@Document(collection = "apks")
+// 文本索引不做词干化：应用名与包名不是自然语言
+@Document(collection = "apks", language = "none")
+// 同一版本可分发给不同组织 / 分组，各自一条记录、共享同一个 blob；唯一索引的前缀兼作按包名查找与按版本号排序的索引
+@CompoundIndex(name = "uk_apk_package_version_scope",
+        def = "{'packageName': 1, 'versionCode': 1, 'organization': 1, 'group': 1}", unique = true)
+@CompoundIndex(name = "idx_apk_label", def = "{'labels.default': 1}")
 public class Apk implements Serializable{
     private String id;
+    @TextIndexed
     private String packageName;
     private String iconPath;
+    // 已生成的图标尺寸（px），图标位于 icons/<fileHash>/<size>.png；旧数据为空
+    private List<Integer> iconSizes;
+    @Indexed(name = "idx_apk_organization")
     private String organization;
     private Map<String, String> labels;
+    // 各语言标签及其单词的小写规范形式，供前缀匹配与全文检索
+    @Indexed(name = "idx_apk_search_terms")
+    @TextIndexed(weight = 2)
+    private List<String> searchTerms;
+    // 生成 searchTerms 的规则版本，低于当前版本的文档在启动时重算
+    private Integer searchTermsVersion;
+    @Indexed(name = "idx_apk_version_name")
     private String versionName;
     private Long versionCode;
     private String filePath;
     private String fileHash;
+    @Indexed(name = "idx_apk_group")
     private String group;
+    private Integer minSdkVersion;
+    // lib/ 下的原生 ABI，如 arm64-v8a
+    private List<String> abis;
+    private List<String> permissions;
+    // 签名证书 SHA-256（十六进制）
+    private List<String> signerDigests;
 
 }
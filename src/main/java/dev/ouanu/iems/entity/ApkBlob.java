@@ -0,0 +1,24 @@
+package dev.ouanu.iems.entity;
+
+import java.time.Instant;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Reference count of one content-addressed APK file, keyed by its SHA-256.
+ */
+@Data
+@NoArgsConstructor
+@Document(collection = "apk_blobs")
+public class ApkBlob {
+    @Id
+    private String hash;
+    // 引用该文件的 Apk 文档数
+    private long refs;
+    private long size;
+    private Instant createdAt;
+}
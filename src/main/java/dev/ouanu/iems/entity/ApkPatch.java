@@ -0,0 +1,26 @@
+package dev.ouanu.iems.entity;
+
+import java.time.Instant;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A stored delta patch from one APK blob to another, keyed by {@code <fromHash>_<toHash>}.
+ */
+@Data
+@NoArgsConstructor
+@Document(collection = "apk_patches")
+public class ApkPatch {
+    @Id
+    private String id;
+    private String fromHash;
+    private String toHash;
+    // 补丁大小与目标 APK 大小，便于评估节省的流量
+    private long size;
+    private long targetSize;
+    private Instant createdAt;
+}
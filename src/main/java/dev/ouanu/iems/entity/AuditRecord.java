@@ -0,0 +1,41 @@
+package dev.ouanu.iems.entity;
+
+import java.io.Serializable;
+import java.time.Instant;
+import java.util.Map;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One audited {@code @ActionLog} invocation. Indexes (actor / action / TTL on {@code occurredAt}) are created by
+ * {@code AuditService} at startup.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Document(collection = "audit_records")
+public class AuditRecord implements Serializable {
+    // ObjectId 在请求线程生成，按 _id 倒序即按发生时间倒序
+    @Id
+    private String id;
+
+    // 操作者 id；未登录（登录、注册等接口）为 anonymous
+    private String actor;
+    private String action;
+    private String method;
+    private String clientIp;
+
+    // 参数名 -> 脱敏后的参数值
+    private Map<String, Object> args;
+
+    // HTTP 状态码（返回 ResponseEntity 时），异常时为空
+    private Integer status;
+    private String error;
+    private long durationMs;
+    private Instant occurredAt;
+}
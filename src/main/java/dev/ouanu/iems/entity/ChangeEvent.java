@@ -0,0 +1,24 @@
+package dev.ouanu.iems.entity;
+
+import java.time.Instant;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One row of {@code change_outbox}: an entity mutation waiting to be (or already) relayed to the change stream.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ChangeEvent {
+    private Long id;
+    private String aggregateType;
+    private String aggregateId;
+    private String eventType;
+    // JSON，内容由事件类型决定；消费者按需回查最新状态
+    private String payload;
+    private Instant createdAt;
+    private Instant publishedAt;
+}
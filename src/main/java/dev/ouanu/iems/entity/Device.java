@@ -27,5 +27,6 @@ public class Device implements Serializable{
     private String romVersion; // 设备rom版本, ro.build.fingerprint
     private Instant createdAt;
     private Instant updatedAt;
+    private Long version; // 乐观锁版本号，每次更新 +1
 
 }
@@ -0,0 +1,17 @@
+package dev.ouanu.iems.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Change to apply to {@code device_dimension_counts} for one (dimension, value) pair.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class DeviceDimensionDelta {
+    private String dimension;
+    private String value;
+    private long delta;
+}
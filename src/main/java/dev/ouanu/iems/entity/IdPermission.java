@@ -11,6 +11,7 @@ public class IdPermission implements Serializable{
     private String permissions; // 改为字符串存储逗号分隔的权限
     private Instant createdAt;
     private Instant updatedAt;
+    private Long version; // 乐观锁版本号，每次更新 +1
 
     // 工具方法：设置权限（从枚举转字符串）
     public void setPermissions(Permission... permission) {
@@ -50,6 +51,9 @@ public class IdPermission implements Serializable{
     public Instant getUpdatedAt() { return updatedAt; }
     public void setUpdatedAt(Instant updatedAt) { this.updatedAt = updatedAt; }
 
+    public Long getVersion() { return version; }
+    public void setVersion(Long version) { this.version = version; }
+
     // 检查是否有某个权限
     public boolean hasPermission(String permissionType) {
         return permissions != null && permissions.contains(permissionType);
@@ -23,6 +23,7 @@ public class Operator implements Serializable{
     private Boolean active;
     private Instant createdAt;
     private Instant updatedAt;
+    private Long version; // 乐观锁版本号，每次更新 +1
     
 
     public Long getId() {
@@ -133,6 +134,14 @@ public class Operator implements Serializable{
         return updatedAt;
     }
 
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
     public void setUpdatedAt(Instant updatedAt) {
         this.updatedAt = updatedAt;
     }
@@ -154,6 +163,7 @@ public class Operator implements Serializable{
                 ", active=" + active +
                 ", createdAt=" + createdAt +
                 ", updatedAt=" + updatedAt +
+                ", version=" + version +
                 '}';
 
     }
@@ -73,13 +73,13 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
             Long id = jwtUtil.getSubjectAsLong(token);
             if (id != null) {
                 // System.out.println("Authenticated operator ID: " + id);
-                var permissionVO = permissionService.getPermissionVOById(id);
-                if (permissionVO == null) {
+                String permissions = permissionService.getPermissionsById(id);
+                if (permissions == null) {
                     throw new IllegalStateException("Operator has no permissions");
                 }
                 List<SimpleGrantedAuthority> authorities = List.of();
-                if (permissionVO.getPermissions() != null && !permissionVO.getPermissions().isBlank()) {
-                    authorities = Arrays.stream(permissionVO.getPermissions().split(","))
+                if (!permissions.isBlank()) {
+                    authorities = Arrays.stream(permissions.split(","))
                             .map(String::trim)
                             .filter(s -> !s.isEmpty())
                             .map(SimpleGrantedAuthority::new) // 权限形如 "operator:read"
@@ -0,0 +1,17 @@
+package dev.ouanu.iems.mapper;
+
+import java.time.Instant;
+import java.util.List;
+
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import dev.ouanu.iems.entity.ChangeEvent;
+
+@Mapper
+public interface ChangeOutboxMapper {
+    int insertBatch(@Param("events") List<ChangeEvent> events);
+    List<ChangeEvent> lockPending(@Param("limit") int limit);
+    int markPublished(@Param("ids") List<Long> ids);
+    int deletePublishedBefore(@Param("cutoff") Instant cutoff, @Param("limit") int limit);
+}
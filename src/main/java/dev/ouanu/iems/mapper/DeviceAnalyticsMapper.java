@@ -0,0 +1,22 @@
+package dev.ouanu.iems.mapper;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import dev.ouanu.iems.entity.DeviceDimensionDelta;
+import dev.ouanu.iems.vo.DistributionEntryVO;
+import dev.ouanu.iems.vo.TimeSeriesPointVO;
+
+@Mapper
+public interface DeviceAnalyticsMapper {
+    int adjustDimensions(@Param("deltas") List<DeviceDimensionDelta> deltas);
+    int addHourlyEvent(@Param("bucket") LocalDateTime bucket, @Param("event") String event, @Param("delta") long delta);
+    int addDailyEvent(@Param("day") LocalDate day, @Param("event") String event, @Param("delta") long delta);
+    List<DistributionEntryVO> selectDistribution(@Param("dimension") String dimension, @Param("limit") int limit);
+    List<TimeSeriesPointVO> selectHourly(@Param("event") String event, @Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+    List<TimeSeriesPointVO> selectDaily(@Param("event") String event, @Param("from") LocalDate from, @Param("to") LocalDate to);
+}
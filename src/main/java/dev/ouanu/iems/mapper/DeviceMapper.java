@@ -5,20 +5,28 @@ import java.util.Map;
 
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.cursor.Cursor;
 
 import dev.ouanu.iems.entity.Device;
+import dev.ouanu.iems.vo.DeviceSimpleVO;
 
 @Mapper
 public interface DeviceMapper {
-    void createTableIfNotExists();
     Device selectById(Long id);
     Device selectByUuid(String uuid);
     Device selectByMacAddress(String macAddress);
+    Device selectCredentialsByMacAddress(String macAddress);
+    boolean existsByMacAddress(String macAddress);
     int insert(Device device);
-    int update(Device device);
+    int updateFields(@Param("id") Long id, @Param("expectedVersion") Long expectedVersion, @Param("patch") Device patch);
     int deleteById(Long id);
     List<Device> list(@Param("offset") int offset, @Param("limit") int limit);
+    List<Device> listAfter(@Param("afterId") Long afterId, @Param("limit") int limit);
+    List<DeviceSimpleVO> listSimpleAfter(@Param("afterId") Long afterId, @Param("limit") int limit);
     List<Device> query(Map<String, Object> params);
+    Cursor<Device> streamQuery(Map<String, Object> params);
     long count();
+    Map<String, Object> countByState();
+    List<Map<String, Object>> countByCustomerGroup();
     boolean existsByUuid(String uuid);
 }
@@ -5,22 +5,27 @@ import java.util.Map;
 
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.cursor.Cursor;
 
 import dev.ouanu.iems.entity.Operator;
+import dev.ouanu.iems.vo.OperatorSimpleVO;
 
 @Mapper
 public interface OperatorMapper {
-    void createTableIfNotExists();
     int insert(Operator operator);
     Operator selectById(@Param("id") Long id);
     Operator selectByUuid(@Param("uuid") String uuid);
     Operator selectByEmail(@Param("email") String email);
     Operator selectByPhone(@Param("phone") String phone);
-    int update(Operator operator);
+    int updateFields(@Param("id") Long id, @Param("expectedVersion") Long expectedVersion, @Param("patch") Operator patch);
     int deleteById(@Param("id") Long id);
     List<Operator> list(@Param("offset") int offset, @Param("limit") int limit);
+    List<Operator> listAfter(@Param("afterId") Long afterId, @Param("limit") int limit);
+    List<OperatorSimpleVO> listSimpleAfter(@Param("afterId") Long afterId, @Param("limit") int limit);
     List<Operator> query(Map<String, Object> params);
+    Cursor<Operator> streamQuery(Map<String, Object> params);
     long count();
     boolean existsByPhone(@Param("phone") String phone);
     boolean existsByEmail(@Param("email") String email);
+    boolean existsById(@Param("id") Long id);
 }
@@ -4,19 +4,21 @@ import java.util.List;
 import java.util.Map;
 
 import org.apache.ibatis.annotations.Mapper;
-import org.springframework.data.repository.query.Param;
+import org.apache.ibatis.annotations.Param;
 
 import dev.ouanu.iems.entity.IdPermission;
 
 @Mapper
 public interface PermissionMapper {
-    void createTableIfNotExists();
     IdPermission selectById(@Param("id") Long id);
+    String selectPermissionsById(@Param("id") Long id);
     boolean existsById(@Param("id") Long id);
     int insert(IdPermission permission);
-    int update(IdPermission permission);
+    int upsert(IdPermission permission);
+    int updateIfVersion(@Param("permission") IdPermission permission, @Param("expectedVersion") Long expectedVersion);
     int deleteById(@Param("id") Long id);
     List<IdPermission> list(@Param("offset") int offset, @Param("limit") int limit);
+    List<IdPermission> listAfter(@Param("afterId") Long afterId, @Param("limit") int limit);
     List<IdPermission> query(Map<String, Object> params);
     long count();
 }
@@ -7,7 +7,6 @@ import dev.ouanu.iems.entity.SnowflakeId;
 
 @Mapper
 public interface SnowflakeIdMapper {
-    void createTableIfNotExists();
     int insert(SnowflakeId snowflakeId);
     SnowflakeId selectById(@Param("id") Long id);
 }
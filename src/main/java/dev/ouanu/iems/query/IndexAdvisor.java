@@ -0,0 +1,172 @@
+package dev.ouanu.iems.query;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ParameterMapping;
+import org.apache.ibatis.mapping.ParameterMode;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import dev.ouanu.iems.vo.IndexAdviceVO;
+
+/**
+ * Records the distinct SELECT shapes MyBatis executes and, on demand, EXPLAINs them against the live schema
+ * to report which ones scan whole tables.
+ * <p>
+ * Recording costs one extra SQL rendering, a map lookup and a counter per query. Bind values are captured once, on first sight of a
+ * shape, only so that EXPLAIN can be run later; they are never included in the report. Because that cost is paid on
+ * every query, the advisor is off unless {@code app.index-advisor.enabled=true}; enable it for a diagnosis window.
+ */
+@Component
+@ConditionalOnProperty(prefix = "app.index-advisor", name = "enabled", havingValue = "true")
+@Intercepts({
+        @Signature(type = Executor.class, method = "query",
+                args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class}),
+        @Signature(type = Executor.class, method = "queryCursor",
+                args = {MappedStatement.class, Object.class, RowBounds.class})
+})
+public class IndexAdvisor implements Interceptor {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int maxShapes;
+    private final Map<String, Shape> shapes = new ConcurrentHashMap<>();
+    private final Logger log = LoggerFactory.getLogger(IndexAdvisor.class);
+
+    private static final class Shape {
+        final String statementId;
+        final String sql;
+        final Object[] sampleArgs;
+        final LongAdder executions = new LongAdder();
+
+        Shape(String statementId, String sql, Object[] sampleArgs) {
+            this.statementId = statementId;
+            this.sql = sql;
+            this.sampleArgs = sampleArgs;
+        }
+    }
+
+    public IndexAdvisor(JdbcTemplate jdbcTemplate,
+                        @Value("${app.index-advisor.max-shapes:500}") int maxShapes) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.maxShapes = maxShapes;
+    }
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+        Object[] args = invocation.getArgs();
+        MappedStatement ms = (MappedStatement) args[0];
+        if (ms.getSqlCommandType() == SqlCommandType.SELECT) {
+            try {
+                record(ms, ms.getBoundSql(args[1]));
+            } catch (RuntimeException e) {
+                log.debug("Index advisor failed to record {}: {}", ms.getId(), e.getMessage());
+            }
+        }
+        return invocation.proceed();
+    }
+
+    /**
+     * EXPLAIN every recorded shape.
+     * @param fullScansOnly only return shapes whose plan reads a whole table or index
+     * @return advice, most expensive (estimated rows x executions) first
+     */
+    public List<IndexAdviceVO> report(boolean fullScansOnly) {
+        List<IndexAdviceVO> advice = new ArrayList<>();
+        for (Shape shape : shapes.values()) {
+            List<IndexAdviceVO> rows;
+            try {
+                rows = jdbcTemplate.query("EXPLAIN " + shape.sql, (rs, i) -> {
+                    String type = rs.getString("type");
+                    long estimated = rs.getLong("rows");
+                    Long estimatedRows = rs.wasNull() ? null : estimated;
+                    return new IndexAdviceVO(shape.statementId, shape.sql, shape.executions.sum(),
+                            rs.getString("table"), type, rs.getString("possible_keys"), rs.getString("key"),
+                            estimatedRows, rs.getString("Extra"),
+                            "ALL".equals(type) || "index".equals(type));
+                }, shape.sampleArgs);
+            } catch (DataAccessException e) {
+                log.warn("EXPLAIN failed for {}: {}", shape.statementId, e.getMessage());
+                continue;
+            }
+            for (IndexAdviceVO row : rows) {
+                if (!fullScansOnly || row.isFullScan()) {
+                    advice.add(row);
+                }
+            }
+        }
+        advice.sort(Comparator.comparingLong(
+                (IndexAdviceVO a) -> (a.getEstimatedRows() == null ? 0L : a.getEstimatedRows()) * a.getExecutions()).reversed());
+        return advice;
+    }
+
+    public int getShapeCount() {
+        return shapes.size();
+    }
+
+    public void reset() {
+        shapes.clear();
+    }
+
+    private void record(MappedStatement ms, BoundSql boundSql) {
+        String sql = boundSql.getSql();
+        String key = ms.getId() + '\n' + sql;
+        Shape shape = shapes.get(key);
+        if (shape == null) {
+            if (shapes.size() >= maxShapes) {
+                return;
+            }
+            shape = shapes.computeIfAbsent(key, k -> new Shape(ms.getId(), sql, bindValues(ms.getConfiguration(), boundSql)));
+        }
+        shape.executions.increment();
+    }
+
+    // 与 DefaultParameterHandler 相同的取值规则
+    private static Object[] bindValues(Configuration configuration, BoundSql boundSql) {
+        List<ParameterMapping> mappings = boundSql.getParameterMappings();
+        Object parameterObject = boundSql.getParameterObject();
+        Object[] values = new Object[mappings.size()];
+        MetaObject metaObject = null;
+        for (int i = 0; i < mappings.size(); i++) {
+            ParameterMapping mapping = mappings.get(i);
+            if (mapping.getMode() == ParameterMode.OUT) {
+                continue;
+            }
+            String property = mapping.getProperty();
+            if (boundSql.hasAdditionalParameter(property)) {
+                values[i] = boundSql.getAdditionalParameter(property);
+            } else if (parameterObject == null) {
+                values[i] = null;
+            } else if (configuration.getTypeHandlerRegistry().hasTypeHandler(parameterObject.getClass())) {
+                values[i] = parameterObject;
+            } else {
+                if (metaObject == null) {
+                    metaObject = configuration.newMetaObject(parameterObject);
+                }
+                values[i] = metaObject.getValue(property);
+            }
+        }
+        return values;
+    }
+}
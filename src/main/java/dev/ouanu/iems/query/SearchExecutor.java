@@ -0,0 +1,170 @@
+package dev.ouanu.iems.query;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.ibatis.builder.SqlSourceBuilder;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ResultSetType;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.mapping.SqlSource;
+import org.apache.ibatis.mapping.StatementType;
+import org.apache.ibatis.session.Configuration;
+import org.mybatis.spring.SqlSessionTemplate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Runs {@link SearchQuery} instances through statements compiled once per query shape.
+ * <p>
+ * Each distinct combination of filtered fields, operators, ordering and paging mode is rendered to a flat SQL
+ * string with positional {@code #{pN}} placeholders and registered as a MyBatis statement, so repeated searches
+ * skip dynamic-SQL evaluation and hit the driver's prepared-statement cache with identical SQL text.
+ * Every shape gets its own latency timer ({@code iems.search.query}).
+ */
+@Component
+public class SearchExecutor {
+
+    private static final Logger logger = LoggerFactory.getLogger(SearchExecutor.class);
+    private static final String NAMESPACE = SearchExecutor.class.getName();
+    private static final String METRIC_NAME = "iems.search.query";
+    // 形状数量上限：超出后不再注册新语句（MyBatis Configuration 无法删除已注册语句），改走 XML 动态 SQL
+    private static final int MAX_SHAPES = 512;
+    // MySQL 驱动在未开启 useCursorFetch 时只认 Integer.MIN_VALUE 为逐行流式读取，仅对导出语句生效
+    private static final int STREAM_FETCH_SIZE = Integer.MIN_VALUE;
+
+    private final SqlSessionTemplate sqlSession;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, CompiledShape> shapes = new ConcurrentHashMap<>();
+    private final AtomicInteger sequence = new AtomicInteger();
+
+    private record CompiledShape(String statementId, String sql, Timer timer) {
+    }
+
+    public SearchExecutor(SqlSessionTemplate sqlSession, MeterRegistry meterRegistry) {
+        this.sqlSession = sqlSession;
+        this.meterRegistry = meterRegistry;
+    }
+
+    public <T> List<T> list(SearchQuery query) {
+        CompiledShape shape = shapeFor(query, false);
+        long start = System.nanoTime();
+        try {
+            if (shape == null) {
+                return sqlSession.selectList(query.getSchema().getFallbackStatement(false), query.legacyParameters());
+            }
+            return sqlSession.selectList(shape.statementId(), query.bindParameters());
+        } finally {
+            timerFor(query, shape).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Open a server-side cursor over all matching rows; must be consumed inside a transaction.
+     */
+    public <T> Cursor<T> stream(SearchQuery query) {
+        SearchQuery unpaged = query.unpaged();
+        CompiledShape shape = shapeFor(unpaged, true);
+        if (shape == null) {
+            return sqlSession.selectCursor(unpaged.getSchema().getFallbackStatement(true), unpaged.legacyParameters());
+        }
+        return sqlSession.selectCursor(shape.statementId(), unpaged.bindParameters());
+    }
+
+    public int getShapeCount() {
+        return shapes.size();
+    }
+
+    private CompiledShape shapeFor(SearchQuery query, boolean stream) {
+        String key = query.shapeKey(stream);
+        CompiledShape shape = shapes.get(key);
+        if (shape != null || shapes.size() >= MAX_SHAPES) {
+            return shape;
+        }
+        return shapes.computeIfAbsent(key, k -> compile(query, stream));
+    }
+
+    private Timer timerFor(SearchQuery query, CompiledShape shape) {
+        if (shape != null) {
+            return shape.timer();
+        }
+        return Timer.builder(METRIC_NAME)
+                .tag("table", query.getSchema().getTable())
+                .tag("shape", "dynamic")
+                .register(meterRegistry);
+    }
+
+    private CompiledShape compile(SearchQuery query, boolean stream) {
+        SearchSchema schema = query.getSchema();
+        String shapeId = schema.getTable() + "_" + sequence.incrementAndGet();
+        String statementId = NAMESPACE + "." + shapeId;
+        String sql = render(query, stream);
+
+        Configuration configuration = sqlSession.getConfiguration();
+        SqlSource sqlSource = new SqlSourceBuilder(configuration).parse(sql, Map.class, new HashMap<>());
+        MappedStatement.Builder builder = new MappedStatement.Builder(configuration, statementId, sqlSource, SqlCommandType.SELECT)
+                .resource(NAMESPACE)
+                .statementType(StatementType.PREPARED)
+                .resultMaps(List.of(configuration.getResultMap(schema.getResultMap())));
+        if (stream) {
+            builder.fetchSize(STREAM_FETCH_SIZE).resultSetType(ResultSetType.FORWARD_ONLY);
+        }
+        configuration.addMappedStatement(builder.build());
+
+        Timer timer = Timer.builder(METRIC_NAME)
+                .description("Latency of admin search queries per compiled shape")
+                .tag("table", schema.getTable())
+                .tag("shape", shapeId)
+                .register(meterRegistry);
+        logger.debug("Compiled search shape {} [{}]: {}", shapeId, query.shapeKey(stream), sql);
+        return new CompiledShape(statementId, sql, timer);
+    }
+
+    private static String render(SearchQuery query, boolean stream) {
+        SearchSchema schema = query.getSchema();
+        String dir = query.getDirection().name();
+        StringBuilder sql = new StringBuilder("SELECT ").append(schema.getSelectColumns())
+                .append(" FROM ").append(schema.getTable());
+
+        String glue = " WHERE ";
+        List<SearchQuery.Predicate> predicates = query.getPredicates();
+        for (int i = 0; i < predicates.size(); i++) {
+            SearchQuery.Predicate p = predicates.get(i);
+            String column = p.field().column();
+            String param = "#{p" + i + "}";
+            sql.append(glue);
+            switch (p.op()) {
+                case EQ -> sql.append(column).append(" = ").append(param);
+                // 表使用 _ci 排序规则，LIKE 本身不区分大小写；不包裹 LOWER() 以便前缀匹配走索引
+                case LIKE -> sql.append(column).append(" LIKE ").append(param);
+                case MATCH -> sql.append("MATCH(").append(column).append(") AGAINST(").append(param).append(" IN BOOLEAN MODE)");
+                case GTE -> sql.append(column).append(" >= CONVERT_TZ(").append(param).append(", '+08:00', @@session.time_zone)");
+                case LTE -> sql.append(column).append(" <= CONVERT_TZ(").append(param).append(", '+08:00', @@session.time_zone)");
+            }
+            glue = " AND ";
+        }
+        if (!stream && query.getAfterId() != null) {
+            sql.append(glue).append("id ").append(query.getDirection() == SearchQuery.Direction.DESC ? "<" : ">")
+                    .append(" #{afterId}");
+        }
+
+        sql.append(" ORDER BY ").append(query.getSortField().column()).append(' ').append(dir);
+        if (!"id".equals(query.getSortField().name())) {
+            // 非主键排序时追加 id 作为稳定的次序键
+            sql.append(", id ").append(dir);
+        }
+        if (!stream) {
+            sql.append(query.getAfterId() != null ? " LIMIT #{limit}" : " LIMIT #{limit} OFFSET #{offset}");
+        }
+        return sql.toString();
+    }
+}
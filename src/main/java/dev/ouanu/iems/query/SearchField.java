@@ -0,0 +1,45 @@
+package dev.ouanu.iems.query;
+
+/**
+ * One allowlisted search field: the API name, the backing column and which predicates may use it.
+ */
+public record SearchField(String name, String column, Type type, boolean equality, boolean like,
+                          boolean range, boolean sortable, boolean fulltext) {
+
+    public enum Type {
+        STRING,
+        BOOLEAN,
+        LONG,
+        DATETIME
+    }
+
+    /** Text column: exact match and LIKE. */
+    public static SearchField text(String name, String column) {
+        return new SearchField(name, column, Type.STRING, true, true, false, false, false);
+    }
+
+    /** Text column that also has an ngram FULLTEXT index, so infix searches can avoid a scan. */
+    public static SearchField fulltext(String name, String column) {
+        return new SearchField(name, column, Type.STRING, true, true, false, false, true);
+    }
+
+    /** Boolean flag column: exact match only. */
+    public static SearchField flag(String name, String column) {
+        return new SearchField(name, column, Type.BOOLEAN, true, false, false, false, false);
+    }
+
+    /** Numeric column: exact match only. */
+    public static SearchField number(String name, String column) {
+        return new SearchField(name, column, Type.LONG, true, false, false, false, false);
+    }
+
+    /** Timestamp column: {@code <name>Start} / {@code <name>End} ranges, sortable. */
+    public static SearchField time(String name, String column) {
+        return new SearchField(name, column, Type.DATETIME, false, false, true, true, false);
+    }
+
+    /** Primary key: exact match, sortable, and the only key usable for cursors. */
+    public static SearchField id(boolean equality) {
+        return new SearchField("id", "id", Type.LONG, equality, false, false, true, false);
+    }
+}
@@ -0,0 +1,314 @@
+package dev.ouanu.iems.query;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import dev.ouanu.iems.util.CursorCodec;
+import dev.ouanu.iems.util.PageLimits;
+
+/**
+ * A validated search against one {@link SearchSchema}.
+ * <p>
+ * Predicates are kept in a canonical order so that two requests filtering on the same fields with the same
+ * operators produce the same {@link #shapeKey(boolean) shape} and reuse one compiled statement, whatever the
+ * values or the order of keys in the request body.
+ */
+public final class SearchQuery {
+
+    public enum Op {
+        EQ(""),
+        LIKE("Like"),
+        GTE("Start"),
+        LTE("End"),
+        /** FULLTEXT phrase match; never parsed from a request, only produced by {@link TextMatchPlanner}. */
+        MATCH("Match");
+
+        private final String suffix;
+
+        Op(String suffix) {
+            this.suffix = suffix;
+        }
+
+        /** Request key used by the JSON query API, e.g. {@code modelLike}, {@code createdAtStart}. */
+        public String keyFor(SearchField field) {
+            return field.name() + suffix;
+        }
+    }
+
+    public enum Direction {
+        ASC,
+        DESC
+    }
+
+    public record Predicate(SearchField field, Op op, Object value) {
+    }
+
+    private static final String OFFSET_KEY = "offset";
+    private static final String LIMIT_KEY = "limit";
+    private static final String CURSOR_KEY = "cursor";
+    private static final String SORT_KEY = "sort";
+    private static final Comparator<Predicate> CANONICAL_ORDER =
+            Comparator.comparing((Predicate p) -> p.field().name()).thenComparing(Predicate::op);
+    private static final ZoneOffset QUERY_ZONE = ZoneOffset.ofHours(8);
+    private static final DateTimeFormatter SPACE_DATETIME = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm[:ss]");
+
+    private final SearchSchema schema;
+    private final List<Predicate> predicates;
+    private final SearchField sortField;
+    private final Direction direction;
+    private final Long afterId;
+    private final int offset;
+    private final int limit;
+
+    private SearchQuery(SearchSchema schema, List<Predicate> predicates, SearchField sortField, Direction direction,
+                        Long afterId, int offset, int limit) {
+        this.schema = schema;
+        this.predicates = predicates;
+        this.sortField = sortField;
+        this.direction = direction;
+        this.afterId = afterId;
+        this.offset = offset;
+        this.limit = limit;
+    }
+
+    /**
+     * Parse the JSON body accepted by the admin query/export endpoints.
+     * <p>
+     * Keys are {@code <field>} (exact), {@code <field>Like}, {@code <field>Start}/{@code <field>End} (ranges), plus
+     * {@code offset}, {@code limit}, {@code cursor} and {@code sort} ({@code "createdAt,asc"}).
+     * @throws IllegalArgumentException on unknown fields, disallowed operators or badly typed values
+     */
+    public static SearchQuery fromParams(SearchSchema schema, Map<String, Object> params) throws IllegalArgumentException {
+        Map<String, Object> source = params == null ? Map.of() : params;
+        List<Predicate> predicates = new ArrayList<>();
+        for (Map.Entry<String, Object> entry : source.entrySet()) {
+            String key = entry.getKey();
+            if (OFFSET_KEY.equals(key) || LIMIT_KEY.equals(key) || CURSOR_KEY.equals(key) || SORT_KEY.equals(key)) {
+                continue;
+            }
+            if (entry.getValue() == null) {
+                continue;
+            }
+            predicates.add(resolve(schema, key, entry.getValue()));
+        }
+        predicates.sort(CANONICAL_ORDER);
+
+        SearchField sortField = schema.field("id");
+        Direction direction = Direction.DESC;
+        Object sort = source.get(SORT_KEY);
+        if (sort != null && !sort.toString().isBlank()) {
+            String[] parts = sort.toString().split(",", 2);
+            sortField = schema.field(parts[0].trim());
+            if (sortField == null || !sortField.sortable()) {
+                throw new IllegalArgumentException("Unsupported sort field: " + parts[0].trim());
+            }
+            if (parts.length > 1) {
+                try {
+                    direction = Direction.valueOf(parts[1].trim().toUpperCase(Locale.ROOT));
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("Unsupported sort direction: " + parts[1].trim());
+                }
+            }
+        }
+
+        Long afterId = null;
+        int offset = toInt(source.get(OFFSET_KEY), OFFSET_KEY, 0);
+        if (offset < 0) {
+            throw new IllegalArgumentException("Offset must be non-negative");
+        }
+        // cursor 存在时使用 keyset 分页，忽略 offset；游标只编码主键，因此只能配合按 id 排序
+        if (source.containsKey(CURSOR_KEY)) {
+            if (!"id".equals(sortField.name())) {
+                throw new IllegalArgumentException("Cursor pagination requires sorting by id");
+            }
+            Object cursor = source.get(CURSOR_KEY);
+            afterId = CursorCodec.decode(cursor == null ? null : cursor.toString());
+            offset = 0;
+        }
+        int limit = toInt(source.get(LIMIT_KEY), LIMIT_KEY, SearchSchema.DEFAULT_LIMIT);
+        limit = PageLimits.clamp(limit, SearchSchema.DEFAULT_LIMIT, SearchSchema.MAX_LIMIT);
+
+        return new SearchQuery(schema, List.copyOf(predicates), sortField, direction, afterId, offset, limit);
+    }
+
+    /**
+     * Same ordering and paging with rewritten predicates, kept in canonical order.
+     */
+    SearchQuery withPredicates(List<Predicate> rewritten) {
+        List<Predicate> sorted = new ArrayList<>(rewritten);
+        sorted.sort(CANONICAL_ORDER);
+        return new SearchQuery(schema, List.copyOf(sorted), sortField, direction, afterId, offset, limit);
+    }
+
+    /**
+     * Same filters and order without paging, for exports.
+     */
+    public SearchQuery unpaged() {
+        return new SearchQuery(schema, predicates, sortField, direction, null, 0, 0);
+    }
+
+    /**
+     * Identity of the generated SQL: which fields/operators are filtered, the ordering and the paging mode.
+     * Values are not part of the shape.
+     */
+    public String shapeKey(boolean stream) {
+        String filters = predicates.stream()
+                .map(p -> p.field().name() + ":" + p.op())
+                .collect(Collectors.joining(","));
+        String paging = stream ? "stream" : afterId != null ? "seek" : "page";
+        return schema.getTable() + "|" + filters + "|" + sortField.name() + ":" + direction + "|" + paging;
+    }
+
+    /**
+     * Positional parameters for the compiled shape: {@code p0..pn} in predicate order, plus paging values.
+     */
+    public Map<String, Object> bindParameters() {
+        Map<String, Object> bound = new HashMap<>();
+        for (int i = 0; i < predicates.size(); i++) {
+            bound.put("p" + i, predicates.get(i).value());
+        }
+        bound.put("afterId", afterId);
+        bound.put(OFFSET_KEY, offset);
+        bound.put(LIMIT_KEY, limit);
+        return bound;
+    }
+
+    /**
+     * Named parameters understood by the dynamic XML {@code query}/{@code streamQuery} statements.
+     */
+    public Map<String, Object> legacyParameters() {
+        Map<String, Object> legacy = new HashMap<>();
+        // MATCH 总是伴随同字段的 LIKE 复核条件，动态 SQL 只用 LIKE 即可得到相同结果
+        predicates.stream()
+                .filter(p -> p.op() != Op.MATCH)
+                .forEach(p -> legacy.put(p.op().keyFor(p.field()), p.value()));
+        legacy.put("afterId", afterId);
+        // 列名取自 SearchSchema 白名单，方向取自枚举，XML 中以 ${} 内联
+        legacy.put("sortColumn", sortField.column());
+        legacy.put("sortDirection", direction.name());
+        if (limit > 0) {
+            legacy.put(OFFSET_KEY, offset);
+            legacy.put(LIMIT_KEY, limit);
+        }
+        return legacy;
+    }
+
+    /** Whether a next-page cursor can be derived from the last row (only when ordered by primary key). */
+    public boolean supportsCursor() {
+        return "id".equals(sortField.name());
+    }
+
+    public SearchSchema getSchema() {
+        return schema;
+    }
+
+    public List<Predicate> getPredicates() {
+        return predicates;
+    }
+
+    public SearchField getSortField() {
+        return sortField;
+    }
+
+    public Direction getDirection() {
+        return direction;
+    }
+
+    public Long getAfterId() {
+        return afterId;
+    }
+
+    public int getOffset() {
+        return offset;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    private static Predicate resolve(SearchSchema schema, String key, Object raw) {
+        SearchField exact = schema.field(key);
+        if (exact != null && exact.equality()) {
+            return new Predicate(exact, Op.EQ, coerce(exact, key, raw));
+        }
+        for (Op op : new Op[] {Op.LIKE, Op.GTE, Op.LTE}) {
+            if (!key.endsWith(op.suffix) || key.length() == op.suffix.length()) {
+                continue;
+            }
+            SearchField field = schema.field(key.substring(0, key.length() - op.suffix.length()));
+            if (field == null) {
+                continue;
+            }
+            boolean allowed = op == Op.LIKE ? field.like() : field.range();
+            if (allowed) {
+                return new Predicate(field, op, op == Op.LIKE ? raw.toString() : coerce(field, key, raw));
+            }
+        }
+        throw new IllegalArgumentException("Unsupported query field: " + key);
+    }
+
+    private static Object coerce(SearchField field, String key, Object raw) {
+        return switch (field.type()) {
+            case STRING -> raw.toString();
+            case BOOLEAN -> {
+                if (raw instanceof Boolean b) yield b;
+                String s = raw.toString().trim();
+                if ("true".equalsIgnoreCase(s) || "1".equals(s)) yield Boolean.TRUE;
+                if ("false".equalsIgnoreCase(s) || "0".equals(s)) yield Boolean.FALSE;
+                throw new IllegalArgumentException("Invalid boolean for " + key + ": " + raw);
+            }
+            case LONG -> {
+                if (raw instanceof Number n) yield n.longValue();
+                try {
+                    yield Long.valueOf(raw.toString().trim());
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Invalid number for " + key + ": " + raw);
+                }
+            }
+            case DATETIME -> parseDateTime(key, raw.toString().trim());
+        };
+    }
+
+    // SQL 中按东八区本地时间经 CONVERT_TZ 转到会话时区；带时区的 ISO 时间（如 ...Z）先换算为东八区
+    private static LocalDateTime parseDateTime(String key, String value) {
+        try {
+            if (value.length() == 10) {
+                return LocalDate.parse(value).atStartOfDay();
+            }
+            if (value.endsWith("Z") || value.lastIndexOf('+') > 10 || value.lastIndexOf('-') > 10) {
+                return OffsetDateTime.parse(value).atZoneSameInstant(QUERY_ZONE).toLocalDateTime();
+            }
+            if (value.indexOf('T') > 0) {
+                return LocalDateTime.parse(value);
+            }
+            return LocalDateTime.parse(value, SPACE_DATETIME);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid datetime for " + key + ": " + value);
+        }
+    }
+
+    private static int toInt(Object raw, String key, int defaultValue) {
+        if (raw == null) {
+            return defaultValue;
+        }
+        if (raw instanceof Number n) {
+            return n.intValue();
+        }
+        try {
+            return Integer.parseInt(raw.toString().trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + key + ": " + raw);
+        }
+    }
+}
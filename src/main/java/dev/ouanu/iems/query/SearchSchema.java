@@ -0,0 +1,96 @@
+package dev.ouanu.iems.query;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Allowlist of searchable fields for one table, plus the MyBatis statements it maps results with.
+ * Only fields declared here can reach generated SQL; column names never come from user input.
+ */
+public final class SearchSchema {
+
+    public static final SearchSchema DEVICES = new SearchSchema(
+            "devices",
+            "id, uuid, mac_address, active, locked, customer_id, customer_group, model, brand, serialno, "
+                    + "android_version, app_version, rom_version, created_at, updated_at, version",
+            "dev.ouanu.iems.mapper.DeviceMapper",
+            "DeviceResultMap",
+            List.of(
+                    SearchField.id(false),
+                    SearchField.text("uuid", "uuid"),
+                    SearchField.text("macAddress", "mac_address"),
+                    SearchField.text("signatureHash", "signature_hash"),
+                    SearchField.flag("active", "active"),
+                    SearchField.flag("locked", "locked"),
+                    SearchField.number("customerId", "customer_id"),
+                    SearchField.text("customerGroup", "customer_group"),
+                    SearchField.text("model", "model"),
+                    SearchField.text("brand", "brand"),
+                    SearchField.text("serialno", "serialno"),
+                    SearchField.text("androidVersion", "android_version"),
+                    SearchField.text("appVersion", "app_version"),
+                    SearchField.text("romVersion", "rom_version"),
+                    SearchField.time("createdAt", "created_at"),
+                    SearchField.time("updatedAt", "updated_at")));
+
+    public static final SearchSchema OPERATORS = new SearchSchema(
+            "operators",
+            "id, uuid, display_name, phone, email, account_type, department, team, position, level, "
+                    + "active, created_at, updated_at, version",
+            "dev.ouanu.iems.mapper.OperatorMapper",
+            "OperatorResultMap",
+            List.of(
+                    SearchField.id(true),
+                    SearchField.text("uuid", "uuid"),
+                    SearchField.fulltext("displayName", "display_name"),
+                    SearchField.text("phone", "phone"),
+                    SearchField.text("email", "email"),
+                    SearchField.text("accountType", "account_type"),
+                    SearchField.text("department", "department"),
+                    SearchField.text("team", "team"),
+                    SearchField.text("position", "position"),
+                    SearchField.text("level", "level"),
+                    SearchField.flag("active", "active"),
+                    SearchField.time("createdAt", "created_at"),
+                    SearchField.time("updatedAt", "updated_at")));
+
+    public static final int DEFAULT_LIMIT = 20;
+    public static final int MAX_LIMIT = 100;
+
+    private final String table;
+    private final String selectColumns;
+    private final String mapperNamespace;
+    private final String resultMapId;
+    private final Map<String, SearchField> fields = new LinkedHashMap<>();
+
+    private SearchSchema(String table, String selectColumns, String mapperNamespace, String resultMapId,
+                         List<SearchField> fields) {
+        this.table = table;
+        this.selectColumns = selectColumns;
+        this.mapperNamespace = mapperNamespace;
+        this.resultMapId = resultMapId;
+        fields.forEach(f -> this.fields.put(f.name(), f));
+    }
+
+    public SearchField field(String name) {
+        return fields.get(name);
+    }
+
+    public String getTable() {
+        return table;
+    }
+
+    public String getSelectColumns() {
+        return selectColumns;
+    }
+
+    public String getResultMap() {
+        return mapperNamespace + "." + resultMapId;
+    }
+
+    /** Dynamic XML statement with the same filters, used when the shape cache is full. */
+    public String getFallbackStatement(boolean stream) {
+        return mapperNamespace + (stream ? ".streamQuery" : ".query");
+    }
+}
@@ -0,0 +1,95 @@
+package dev.ouanu.iems.query;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Rewrites {@code <field>Like} predicates into the cheapest form the indexes can serve.
+ * <ul>
+ *   <li>{@link Strategy#EXACT}: no wildcard at all, becomes an equality lookup;</li>
+ *   <li>{@link Strategy#PREFIX}: {@code abc%}, left as LIKE, which is an index range scan under a _ci collation;</li>
+ *   <li>{@link Strategy#FULLTEXT}: {@code %abc%} / {@code %abc} on a field with an ngram FULLTEXT index, becomes a
+ *       phrase MATCH to narrow candidates plus the original LIKE to keep the exact substring semantics (the index
+ *       is built without stopwords, so MATCH never drops a row the LIKE would keep);</li>
+ *   <li>{@link Strategy#SCAN}: anything else (inner wildcards, fragments shorter than an ngram token).</li>
+ * </ul>
+ */
+public final class TextMatchPlanner {
+
+    public enum Strategy {
+        EXACT,
+        PREFIX,
+        FULLTEXT,
+        SCAN
+    }
+
+    // 与 MySQL 默认 ngram_token_size 一致，更短的片段无法命中 ngram 索引
+    static final int NGRAM_TOKEN_SIZE = 2;
+
+    private TextMatchPlanner() {
+    }
+
+    public static SearchQuery plan(SearchQuery query) {
+        List<SearchQuery.Predicate> planned = new ArrayList<>();
+        boolean rewritten = false;
+        for (SearchQuery.Predicate p : query.getPredicates()) {
+            if (p.op() != SearchQuery.Op.LIKE) {
+                planned.add(p);
+                continue;
+            }
+            String pattern = (String) p.value();
+            switch (strategyFor(p.field(), pattern)) {
+                case EXACT -> {
+                    planned.add(new SearchQuery.Predicate(p.field(), SearchQuery.Op.EQ, pattern));
+                    rewritten = true;
+                }
+                case FULLTEXT -> {
+                    String phrase = "\"" + core(pattern) + "\"";
+                    planned.add(new SearchQuery.Predicate(p.field(), SearchQuery.Op.MATCH, phrase));
+                    planned.add(p);
+                    rewritten = true;
+                }
+                default -> planned.add(p);
+            }
+        }
+        return rewritten ? query.withPredicates(planned) : query;
+    }
+
+    public static Strategy strategyFor(SearchField field, String pattern) {
+        if (pattern.isEmpty() || !hasSpecial(pattern, 0, pattern.length())) {
+            return pattern.isEmpty() ? Strategy.SCAN : Strategy.EXACT;
+        }
+        int start = 0;
+        int end = pattern.length();
+        while (start < end && pattern.charAt(start) == '%') start++;
+        while (end > start && pattern.charAt(end - 1) == '%') end--;
+        if (start == end || hasSpecial(pattern, start, end)) {
+            return Strategy.SCAN;
+        }
+        if (start == 0) {
+            return Strategy.PREFIX;
+        }
+        boolean usableForNgram = field.fulltext()
+                && end - start >= NGRAM_TOKEN_SIZE
+                && pattern.substring(start, end).indexOf('"') < 0;
+        return usableForNgram ? Strategy.FULLTEXT : Strategy.SCAN;
+    }
+
+    private static String core(String pattern) {
+        int start = 0;
+        int end = pattern.length();
+        while (start < end && pattern.charAt(start) == '%') start++;
+        while (end > start && pattern.charAt(end - 1) == '%') end--;
+        return pattern.substring(start, end);
+    }
+
+    private static boolean hasSpecial(String s, int from, int to) {
+        for (int i = from; i < to; i++) {
+            char c = s.charAt(i);
+            if (c == '%' || c == '_' || c == '\\') {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -10,7 +10,12 @@ import dev.ouanu.iems.entity.Apk;
 
 @Repository
 public interface ApkRepository extends MongoRepository<Apk, String> {
-    Optional<Apk> findByPackageName(String packageName);
+    // 以下两个查询均落在 (packageName, versionCode, organization, group) 唯一索引上
+    boolean existsByPackageNameAndVersionCodeAndOrganizationAndGroup(String packageName, Long versionCode,
+            String organization, String group);
+    Optional<Apk> findByPackageNameAndVersionCodeAndOrganizationAndGroup(String packageName, Long versionCode,
+            String organization, String group);
+    List<Apk> findByPackageName(String packageName);
     List<Apk> findByGroup(String group);
     List<Apk> findByOrganization(String organization);
 }
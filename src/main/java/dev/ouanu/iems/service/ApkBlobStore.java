@@ -0,0 +1,152 @@
+package dev.ouanu.iems.service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import com.mongodb.client.result.DeleteResult;
+
+import dev.ouanu.iems.entity.ApkBlob;
+
+/**
+ * Content-addressed storage for APK files.
+ * <p>
+ * A file lives at {@code <apks-dir>/<h0h1>/<h2h3>/<sha256>.apk}, so identical uploads share one copy and the file
+ * name itself is the integrity link to {@code Apk.fileHash}. The number of {@code Apk} documents pointing at each
+ * file is kept in {@code apk_blobs}; the file is unlinked when the last reference is released.
+ * <p>
+ * Acquire and release for the same hash are serialized in-process, which is sufficient because the store is a local
+ * directory owned by this instance. Running several instances against one shared {@code apks-dir} is not supported:
+ * their acquire / release calls would not exclude each other, and a release could unlink a file another instance has
+ * just re-referenced. The file is only unlinked when this call actually removed the counter document.
+ */
+@Service
+public class ApkBlobStore {
+
+    private static final Pattern SHA256_HEX = Pattern.compile("[0-9a-f]{64}");
+    private static final String EXTENSION = ".apk";
+    private static final int LOCK_STRIPES = 64;
+
+    private final MongoTemplate mongoTemplate;
+    private final Path root;
+    private final Object[] locks = new Object[LOCK_STRIPES];
+    private final Logger log = LoggerFactory.getLogger(ApkBlobStore.class);
+
+    public ApkBlobStore(MongoTemplate mongoTemplate,
+                        @Value("${file.storage.apks-dir:./storage/apks}") String apksDir) {
+        this.mongoTemplate = mongoTemplate;
+        this.root = Paths.get(apksDir).toAbsolutePath().normalize();
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    /**
+     * Take a reference on the blob {@code hash}, moving {@code source} into place if the blob is not stored yet.
+     * {@code source} must be in the same file system as the store; it is deleted when the blob already exists.
+     * @return the stored file
+     */
+    public Path acquire(String hash, Path source) throws IOException {
+        Path target = pathOf(hash);
+        long size = Files.size(source);
+        synchronized (lockFor(hash)) {
+            // 先计数再落盘：与 release 在同一把锁内，不会出现“计数存在但文件已删”
+            mongoTemplate.findAndModify(Query.query(Criteria.where("_id").is(hash)),
+                    new Update().inc("refs", 1).setOnInsert("size", size).setOnInsert("createdAt", Instant.now()),
+                    FindAndModifyOptions.options().upsert(true).returnNew(true),
+                    ApkBlob.class);
+            try {
+                if (Files.exists(target) && Files.size(target) == size) {
+                    Files.delete(source);
+                } else {
+                    Files.createDirectories(target.getParent());
+                    Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+                }
+            } catch (IOException | RuntimeException e) {
+                decrement(hash);
+                throw e;
+            }
+        }
+        return target;
+    }
+
+    /**
+     * Files derived from a blob (e.g. icon renditions) that must go away together with it.
+     */
+    @FunctionalInterface
+    public interface Derived {
+        void delete(String hash) throws IOException;
+    }
+
+    /**
+     * Drop one reference; the file is deleted with the last one.
+     */
+    public void release(String hash) throws IOException {
+        release(hash, null);
+    }
+
+    /**
+     * Drop one reference; with the last one the file is deleted and {@code derived} is cleaned up under the same lock,
+     * so a concurrent {@link #acquire} never sees derived files disappear while it holds a reference.
+     */
+    public void release(String hash, Derived derived) throws IOException {
+        synchronized (lockFor(hash)) {
+            ApkBlob blob = decrement(hash);
+            if (blob != null && blob.getRefs() <= 0) {
+                DeleteResult removed = mongoTemplate.remove(
+                        Query.query(Criteria.where("_id").is(hash).and("refs").lte(0)), ApkBlob.class);
+                // 计数在删除前被重新引用（refs 已回升）时文档仍在，文件必须保留
+                if (removed.getDeletedCount() == 0) {
+                    return;
+                }
+                Files.deleteIfExists(pathOf(hash));
+                if (derived != null) {
+                    derived.delete(hash);
+                }
+            }
+        }
+    }
+
+    private ApkBlob decrement(String hash) {
+        ApkBlob blob = mongoTemplate.findAndModify(Query.query(Criteria.where("_id").is(hash)),
+                new Update().inc("refs", -1),
+                FindAndModifyOptions.options().returnNew(true),
+                ApkBlob.class);
+        if (blob == null) {
+            log.warn("Released unknown APK blob {}", hash);
+        }
+        return blob;
+    }
+
+    public Path pathOf(String hash) {
+        if (hash == null || !SHA256_HEX.matcher(hash).matches()) {
+            throw new IllegalArgumentException("Invalid SHA-256: " + hash);
+        }
+        return root.resolve(hash.substring(0, 2)).resolve(hash.substring(2, 4)).resolve(hash + EXTENSION);
+    }
+
+    /**
+     * @return true if {@code file} is a blob of this store rather than a legacy {@code <package>-v<code>.apk} file
+     */
+    public boolean isBlob(Path file, String hash) {
+        return hash != null && SHA256_HEX.matcher(hash).matches() && file.normalize().equals(pathOf(hash));
+    }
+
+    private Object lockFor(String hash) {
+        return locks[Math.floorMod(hash.hashCode(), LOCK_STRIPES)];
+    }
+}
@@ -0,0 +1,256 @@
+package dev.ouanu.iems.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import dev.ouanu.iems.apk.DeltaPatch;
+import dev.ouanu.iems.entity.Apk;
+import dev.ouanu.iems.entity.ApkPatch;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Delta patches between versions of the same package, so a device that already has an older build downloads only
+ * what changed.
+ * <p>
+ * After a new version is stored, patches from the previous {@code app.delta.max-base-versions} versions to it are
+ * built on a single low-priority background thread (see {@link DeltaPatch} for the format). Every patch is applied
+ * once and checked against the target hash before it is kept, and patches that would save too little
+ * ({@code app.delta.max-size-ratio} of the full APK) are discarded. Patches are stored next to the blobs at
+ * {@code <apks-dir>/deltas/<h0h1>/<from>_<to>.patch}, listed in {@code apk_patches}, and deleted together with
+ * either blob.
+ */
+@Service
+public class ApkDeltaService {
+
+    private static final Pattern SHA256_HEX = Pattern.compile("[0-9a-f]{64}");
+    private static final String EXTENSION = ".patch";
+
+    private final MongoTemplate mongoTemplate;
+    private final ApkBlobStore blobStore;
+    private final MeterRegistry meterRegistry;
+    private final Path root;
+    private final int maxBaseVersions;
+    private final double maxSizeRatio;
+    private final ThreadPoolExecutor worker;
+    private final Logger log = LoggerFactory.getLogger(ApkDeltaService.class);
+
+    public ApkDeltaService(MongoTemplate mongoTemplate,
+                           ApkBlobStore blobStore,
+                           MeterRegistry meterRegistry,
+                           @Value("${file.storage.apks-dir:./storage/apks}") String apksDir,
+                           @Value("${app.delta.max-base-versions:3}") int maxBaseVersions,
+                           @Value("${app.delta.max-size-ratio:0.8}") double maxSizeRatio,
+                           @Value("${app.delta.queue-capacity:64}") int queueCapacity) {
+        this.mongoTemplate = mongoTemplate;
+        this.blobStore = blobStore;
+        this.meterRegistry = meterRegistry;
+        this.root = Paths.get(apksDir).toAbsolutePath().normalize().resolve("deltas");
+        this.maxBaseVersions = maxBaseVersions;
+        this.maxSizeRatio = maxSizeRatio;
+        this.worker = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "apk-delta");
+                    // 补丁生成不紧急，优先级低于入库与请求线程
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @PostConstruct
+    public void ensureIndexes() {
+        try {
+            IndexOperations ops = mongoTemplate.indexOps(ApkPatch.class);
+            ops.createIndex(new Index().on("fromHash", Sort.Direction.ASC).named("idx_patch_from"));
+            ops.createIndex(new Index().on("toHash", Sort.Direction.ASC).named("idx_patch_to"));
+        } catch (RuntimeException e) {
+            log.warn("Could not ensure APK patch indexes: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Queue patch generation from the previous versions of {@code target}'s package; never throws.
+     */
+    public void generateAsync(Apk target) {
+        if (maxBaseVersions <= 0 || target.getFileHash() == null || target.getVersionCode() == null) {
+            return;
+        }
+        try {
+            worker.execute(() -> generate(target));
+        } catch (RejectedExecutionException e) {
+            // 队列满时放弃：设备仍可下载完整 APK
+            meterRegistry.counter("iems.apk.delta.rejected").increment();
+            log.warn("Delta generation queue full, skipping {} v{}", target.getPackageName(), target.getVersionCode());
+        }
+    }
+
+    private void generate(Apk target) {
+        String toHash = target.getFileHash();
+        // 只取同一组织 / 分组的旧版本：设备据此请求补丁
+        Query query = Query.query(Criteria.where("packageName").is(target.getPackageName())
+                        .and("versionCode").lt(target.getVersionCode())
+                        .and("organization").is(target.getOrganization())
+                        .and("group").is(target.getGroup())
+                        .and("fileHash").ne(null))
+                .with(Sort.by(Sort.Direction.DESC, "versionCode"))
+                .limit(maxBaseVersions);
+        query.fields().include("fileHash");
+        Set<String> bases = new LinkedHashSet<>();
+        for (Apk base : mongoTemplate.find(query, Apk.class)) {
+            if (!toHash.equals(base.getFileHash())) {
+                bases.add(base.getFileHash());
+            }
+        }
+        for (String fromHash : bases) {
+            try {
+                build(fromHash, toHash);
+            } catch (IOException | RuntimeException e) {
+                log.warn("Could not build delta {} -> {}: {}", fromHash, toHash, e.getMessage());
+            }
+        }
+    }
+
+    private void build(String fromHash, String toHash) throws IOException {
+        String id = idOf(fromHash, toHash);
+        if (mongoTemplate.exists(Query.query(Criteria.where("_id").is(id)), ApkPatch.class)) {
+            return;
+        }
+        Path fromFile = blobStore.pathOf(fromHash);
+        Path toFile = blobStore.pathOf(toHash);
+        // 旧版本可能仍是非内容寻址的历史文件，无法作为基线
+        if (!Files.isRegularFile(fromFile) || !Files.isRegularFile(toFile)) {
+            return;
+        }
+        Path target = pathOf(fromHash, toHash);
+        Files.createDirectories(target.getParent());
+        Path temp = target.resolveSibling("." + UUID.randomUUID() + ".tmp");
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "stored";
+        try {
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                DeltaPatch.create(fromFile, toFile, HexFormat.of().parseHex(fromHash), HexFormat.of().parseHex(toHash), out);
+            }
+            verify(fromFile, temp, toHash);
+            long size = Files.size(temp);
+            long targetSize = Files.size(toFile);
+            if (size > targetSize * maxSizeRatio) {
+                outcome = "too-large";
+                return;
+            }
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+
+            ApkPatch patch = new ApkPatch();
+            patch.setId(id);
+            patch.setFromHash(fromHash);
+            patch.setToHash(toHash);
+            patch.setSize(size);
+            patch.setTargetSize(targetSize);
+            patch.setCreatedAt(Instant.now());
+            mongoTemplate.save(patch);
+            // 生成期间任一 blob 被释放：其清理可能早于本记录写入，这里补做
+            if (!Files.exists(fromFile) || !Files.exists(toFile)) {
+                outcome = "stale";
+                mongoTemplate.remove(Query.query(Criteria.where("_id").is(id)), ApkPatch.class);
+                Files.deleteIfExists(target);
+            }
+        } catch (IOException | RuntimeException e) {
+            outcome = "failed";
+            throw e;
+        } finally {
+            Files.deleteIfExists(temp);
+            sample.stop(Timer.builder("iems.apk.delta.build")
+                    .tag("outcome", outcome)
+                    .description("Delta patch generation")
+                    .register(meterRegistry));
+        }
+    }
+
+    // 应用一次补丁，结果的 SHA-256 必须等于目标 blob
+    private static void verify(Path fromFile, Path patch, String toHash) throws IOException {
+        MessageDigest digest = DigestUtils.getSha256Digest();
+        try (InputStream in = Files.newInputStream(patch);
+             OutputStream out = new DigestOutputStream(OutputStream.nullOutputStream(), digest)) {
+            DeltaPatch.apply(fromFile, in, out);
+        }
+        if (!Hex.encodeHexString(digest.digest()).equals(toHash)) {
+            throw new IOException("Delta verification failed");
+        }
+    }
+
+    /**
+     * @return the stored patch from {@code fromHash} to {@code toHash}, if there is one
+     */
+    public Optional<Path> find(String fromHash, String toHash) {
+        if (!isHash(fromHash) || !isHash(toHash)) {
+            return Optional.empty();
+        }
+        Path file = pathOf(fromHash, toHash);
+        return Files.isRegularFile(file) ? Optional.of(file) : Optional.empty();
+    }
+
+    /**
+     * Delete every patch from or to {@code hash}; called when the blob is released for the last time.
+     */
+    public void deleteFor(String hash) throws IOException {
+        List<ApkPatch> patches = mongoTemplate.findAllAndRemove(
+                Query.query(new Criteria().orOperator(Criteria.where("fromHash").is(hash), Criteria.where("toHash").is(hash))),
+                ApkPatch.class);
+        for (ApkPatch patch : patches) {
+            Files.deleteIfExists(pathOf(patch.getFromHash(), patch.getToHash()));
+        }
+    }
+
+    private Path pathOf(String fromHash, String toHash) {
+        return root.resolve(fromHash.substring(0, 2)).resolve(idOf(fromHash, toHash) + EXTENSION);
+    }
+
+    private static String idOf(String fromHash, String toHash) {
+        return fromHash + "_" + toHash;
+    }
+
+    private static boolean isHash(String value) {
+        return StringUtils.hasText(value) && SHA256_HEX.matcher(value).matches();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // 中断进行中的生成，临时文件在 finally 中删除；缺失的补丁只意味着设备下载完整 APK
+        worker.shutdownNow();
+    }
+}
@@ -0,0 +1,289 @@
+package dev.ouanu.iems.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+import dev.ouanu.iems.entity.Apk;
+import dev.ouanu.iems.vo.ApkJobVO;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Asynchronous APK ingest.
+ * <p>
+ * The request thread only receives the body into the storage directory (hashing inline) and enqueues a job; parsing,
+ * icon extraction, blob storage and the database write run on a small bounded worker pool, and the client polls the
+ * job. Two limits keep uploads from crowding out device traffic: at most {@code app.apk-ingest.max-concurrent-uploads}
+ * request threads may be receiving at once, and at most {@code app.apk-ingest.queue-capacity} jobs may wait for a
+ * worker. Beyond either limit the upload is rejected with {@link RejectedExecutionException}.
+ * <p>
+ * Job state is kept in the Redis hash {@code apk:job:<id>} for {@code app.apk-ingest.job-ttl-hours}, so any instance
+ * can answer a status request.
+ */
+@Service
+public class ApkIngestPipeline {
+
+    private static final String KEY_PREFIX = "apk:job:";
+    private static final String STAGE_PREFIX = "stage.";
+
+    private final ApkService apkService;
+    private final StringRedisTemplate redis;
+    private final MeterRegistry meterRegistry;
+    private final ThreadPoolExecutor workers;
+    private final Semaphore uploads;
+    private final Duration jobTtl;
+    private final Logger log = LoggerFactory.getLogger(ApkIngestPipeline.class);
+
+    public ApkIngestPipeline(ApkService apkService,
+                             StringRedisTemplate redis,
+                             MeterRegistry meterRegistry,
+                             @Value("${app.apk-ingest.workers:2}") int workerCount,
+                             @Value("${app.apk-ingest.queue-capacity:16}") int queueCapacity,
+                             @Value("${app.apk-ingest.max-concurrent-uploads:4}") int maxConcurrentUploads,
+                             @Value("${app.apk-ingest.job-ttl-hours:24}") long jobTtlHours) {
+        this.apkService = apkService;
+        this.redis = redis;
+        this.meterRegistry = meterRegistry;
+        this.uploads = new Semaphore(maxConcurrentUploads);
+        this.jobTtl = Duration.ofHours(jobTtlHours);
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(workerCount, workerCount, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "apk-ingest-" + threadIndex.incrementAndGet());
+                    // 解析是 CPU 密集型，让出优先级给请求线程
+                    thread.setPriority(Thread.NORM_PRIORITY - 1);
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+        meterRegistry.gauge("iems.apk.ingest.queued", workers.getQueue(), Collection::size);
+    }
+
+    /**
+     * Receive an upload on the calling thread and queue it for processing.
+     * @throws RejectedExecutionException if too many uploads are in progress or the queue is full
+     * @throws IllegalArgumentException if the content is empty or too large
+     */
+    public ApkJobVO submit(InputStream in, String organization, String group) throws IOException {
+        if (!uploads.tryAcquire()) {
+            meterRegistry.counter("iems.apk.ingest.rejected", "reason", "uploads").increment();
+            throw new RejectedExecutionException("Too many concurrent uploads");
+        }
+        Path file = apkService.newIngestFile();
+        try {
+            long startedAt = System.currentTimeMillis();
+            String fileHash = apkService.receive(in, file);
+            long receiveMillis = System.currentTimeMillis() - startedAt;
+            return enqueue(file, fileHash, organization, group, Map.of("receive", receiveMillis));
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        } finally {
+            uploads.release();
+        }
+    }
+
+    /**
+     * Queue a file that is already complete under the APK storage directory; the job takes ownership of it and
+     * deletes it when done.
+     * @param stageMillis stages already completed by the caller, e.g. {@code receive}
+     * @throws RejectedExecutionException if the queue is full; the file is left to the caller
+     */
+    public ApkJobVO enqueue(Path file, String fileHash, String organization, String group, Map<String, Long> stageMillis) {
+        String jobId = UUID.randomUUID().toString().replace("-", "");
+        String key = KEY_PREFIX + jobId;
+        Instant now = Instant.now();
+        Map<String, String> job = new HashMap<>();
+        job.put("state", ApkJobVO.QUEUED);
+        job.put("createdAt", now.toString());
+        job.put("updatedAt", now.toString());
+        stageMillis.forEach((stage, millis) -> job.put(STAGE_PREFIX + stage, Long.toString(millis)));
+        redis.opsForHash().putAll(key, job);
+        redis.expire(key, jobTtl);
+
+        long queuedAt = System.currentTimeMillis();
+        try {
+            workers.execute(new IngestTask(jobId, file, fileHash, organization, group, queuedAt));
+        } catch (RejectedExecutionException e) {
+            redis.delete(key);
+            meterRegistry.counter("iems.apk.ingest.rejected", "reason", "queue").increment();
+            throw e;
+        }
+        return status(jobId);
+    }
+
+    /**
+     * @return the job, or null if it is unknown or expired
+     */
+    public ApkJobVO status(String jobId) {
+        if (jobId == null || !jobId.matches("[0-9a-f]{32}")) {
+            return null;
+        }
+        Map<Object, Object> entries = redis.opsForHash().entries(KEY_PREFIX + jobId);
+        if (entries.isEmpty()) {
+            return null;
+        }
+        ApkJobVO vo = new ApkJobVO();
+        vo.setJobId(jobId);
+        Map<String, Long> stages = new LinkedHashMap<>();
+        entries.forEach((k, v) -> {
+            String field = (String) k;
+            String value = (String) v;
+            switch (field) {
+                case "state" -> vo.setState(value);
+                case "apkId" -> vo.setApkId(value);
+                case "failure" -> vo.setFailure(value);
+                case "error" -> vo.setError(value);
+                case "createdAt" -> vo.setCreatedAt(Instant.parse(value));
+                case "updatedAt" -> vo.setUpdatedAt(Instant.parse(value));
+                default -> {
+                    if (field.startsWith(STAGE_PREFIX)) {
+                        stages.put(field.substring(STAGE_PREFIX.length()), Long.valueOf(value));
+                    }
+                }
+            }
+        });
+        vo.setStageMillis(stages);
+        return vo;
+    }
+
+    // 具名任务：关闭时可从被丢弃的队列项中找回各自的文件
+    private final class IngestTask implements Runnable {
+        private final String jobId;
+        private final Path file;
+        private final String fileHash;
+        private final String organization;
+        private final String group;
+        private final long queuedAt;
+
+        IngestTask(String jobId, Path file, String fileHash, String organization, String group, long queuedAt) {
+            this.jobId = jobId;
+            this.file = file;
+            this.fileHash = fileHash;
+            this.organization = organization;
+            this.group = group;
+            this.queuedAt = queuedAt;
+        }
+
+        @Override
+        public void run() {
+            process(jobId, file, fileHash, organization, group, queuedAt);
+        }
+    }
+
+    private void process(String jobId, Path file, String fileHash, String organization, String group, long queuedAt) {
+        String key = KEY_PREFIX + jobId;
+        Map<String, Long> stageMillis = new LinkedHashMap<>();
+        stageMillis.put("queue", System.currentTimeMillis() - queuedAt);
+        update(key, Map.of("state", ApkJobVO.RUNNING));
+
+        Map<String, String> result = new HashMap<>();
+        String outcome = "succeeded";
+        try {
+            Apk saved = apkService.ingestReceived(file, fileHash, organization, group, stageMillis);
+            result.put("state", ApkJobVO.SUCCEEDED);
+            result.put("apkId", saved.getId());
+        } catch (IllegalArgumentException e) {
+            outcome = "invalid";
+            fail(result, outcome, e);
+        } catch (IllegalStateException e) {
+            outcome = "conflict";
+            fail(result, outcome, e);
+        } catch (IOException | RuntimeException e) {
+            outcome = "error";
+            log.warn("APK ingest job {} failed", jobId, e);
+            fail(result, outcome, e);
+        } finally {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                log.warn("Could not delete ingest file {}: {}", file, e.getMessage());
+            }
+        }
+
+        stageMillis.forEach((stage, millis) -> {
+            result.put(STAGE_PREFIX + stage, Long.toString(millis));
+            Timer.builder("iems.apk.ingest.stage")
+                    .tag("stage", stage)
+                    .description("APK ingest stage duration")
+                    .register(meterRegistry)
+                    .record(Duration.ofMillis(millis));
+        });
+        meterRegistry.counter("iems.apk.ingest.jobs", "outcome", outcome).increment();
+        update(key, result);
+    }
+
+    private static void fail(Map<String, String> result, String failure, Exception e) {
+        result.put("state", ApkJobVO.FAILED);
+        result.put("failure", failure);
+        result.put("error", String.valueOf(e.getMessage()));
+    }
+
+    private void update(String key, Map<String, String> fields) {
+        try {
+            Map<String, String> values = new HashMap<>(fields);
+            values.put("updatedAt", Instant.now().toString());
+            redis.opsForHash().putAll(key, values);
+            redis.expire(key, jobTtl);
+        } catch (RuntimeException e) {
+            // 状态写入失败不影响入库结果
+            log.warn("Could not update APK ingest job {}: {}", key, e.getMessage());
+        }
+    }
+
+    @PostConstruct
+    public void deleteStaleFiles() {
+        try {
+            int deleted = apkService.deleteStaleIngestFiles();
+            if (deleted > 0) {
+                log.info("Deleted {} ingest files left by a previous run", deleted);
+            }
+        } catch (IOException e) {
+            log.warn("Could not delete stale ingest files: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        workers.shutdown();
+        if (workers.awaitTermination(30, TimeUnit.SECONDS)) {
+            return;
+        }
+        log.warn("APK ingest jobs still running at shutdown: {}", workers.getActiveCount());
+        // 未开始的任务被丢弃：删除其文件并标记失败，客户端需重新上传
+        for (Runnable dropped : workers.shutdownNow()) {
+            if (dropped instanceof IngestTask task) {
+                try {
+                    Files.deleteIfExists(task.file);
+                } catch (IOException e) {
+                    log.warn("Could not delete ingest file {}: {}", task.file, e.getMessage());
+                }
+                Map<String, String> result = new HashMap<>();
+                fail(result, "shutdown", new IllegalStateException("Server shut down before the job started"));
+                update(KEY_PREFIX + task.jobId, result);
+            }
+        }
+    }
+}
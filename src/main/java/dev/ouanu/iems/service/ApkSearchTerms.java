@@ -0,0 +1,121 @@
+package dev.ouanu.iems.service;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Normalized search keys for the APK catalog.
+ * <p>
+ * {@code Apk.searchTerms} holds every label (all locales) and every word of those labels in NFKC, lower-case form.
+ * Matching a user's input against it with an anchored, escaped prefix expression is case-insensitive yet still an
+ * index range scan, unlike an unanchored {@code /value/i} regex, which must test every document.
+ * <p>
+ * Chinese, Japanese and Korean labels have no separators between words, so for those the suffixes starting at each
+ * CJK character (and at each boundary between CJK and other text) are added as well: "微信支付" is found by "支付".
+ */
+final class ApkSearchTerms {
+
+    // 规则变化时递增，已存文档由 ApkService.backfillSearchTerms 重算
+    static final int VERSION = 2;
+
+    private static final Pattern WORD_SEPARATOR = Pattern.compile("[\\s\\p{Punct}\\p{IsPunctuation}]+");
+    private static final String REGEX_METACHARACTERS = "\\^$.|?*+()[]{}";
+    private static final int MAX_TERMS = 64;
+    private static final int MAX_TERM_LENGTH = 128;
+
+    private ApkSearchTerms() {
+    }
+
+    static List<String> of(Map<String, String> labels) {
+        Set<String> terms = new LinkedHashSet<>();
+        if (labels != null) {
+            for (String label : labels.values()) {
+                String normalized = normalize(label);
+                if (normalized.isEmpty()) {
+                    continue;
+                }
+                add(terms, normalized);
+                for (String word : WORD_SEPARATOR.split(normalized)) {
+                    add(terms, word);
+                }
+            }
+            // 后缀放在所有标签与单词之后，条目数达上限时优先舍弃
+            for (String label : labels.values()) {
+                for (String word : WORD_SEPARATOR.split(normalize(label))) {
+                    addCjkSuffixes(terms, word);
+                }
+            }
+        }
+        return new ArrayList<>(terms);
+    }
+
+    private static void addCjkSuffixes(Set<String> terms, String word) {
+        boolean previousCjk = false;
+        for (int i = 0; i < word.length(); ) {
+            int codePoint = word.codePointAt(i);
+            boolean cjk = isCjk(codePoint);
+            if (i > 0 && (cjk || previousCjk)) {
+                add(terms, word.substring(i));
+            }
+            previousCjk = cjk;
+            i += Character.charCount(codePoint);
+        }
+    }
+
+    private static boolean isCjk(int codePoint) {
+        Character.UnicodeScript script = Character.UnicodeScript.of(codePoint);
+        return script == Character.UnicodeScript.HAN
+                || script == Character.UnicodeScript.HIRAGANA
+                || script == Character.UnicodeScript.KATAKANA
+                || script == Character.UnicodeScript.HANGUL;
+    }
+
+    private static void add(Set<String> terms, String term) {
+        if (!term.isEmpty() && terms.size() < MAX_TERMS) {
+            terms.add(term.length() > MAX_TERM_LENGTH ? term.substring(0, MAX_TERM_LENGTH) : term);
+        }
+    }
+
+    static String normalize(String value) {
+        if (value == null) {
+            return "";
+        }
+        String normalized = Normalizer.normalize(value, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT).trim();
+        return normalized.replaceAll("\\s+", " ");
+    }
+
+    /**
+     * Words of a free-text query, reduced to letters and digits so that none of them is read as a {@code $text}
+     * operator (phrase quotes, negation).
+     */
+    static List<String> words(String input) {
+        List<String> words = new ArrayList<>();
+        for (String word : WORD_SEPARATOR.split(normalize(input))) {
+            if (!word.isEmpty()) {
+                words.add(word);
+            }
+        }
+        return words;
+    }
+
+    /**
+     * @return an anchored regular expression matching values that start with {@code input} taken literally
+     */
+    static String prefixRegex(String input) {
+        StringBuilder regex = new StringBuilder(input.length() + 8).append('^');
+        for (int i = 0; i < input.length(); i++) {
+            char c = input.charAt(i);
+            if (REGEX_METACHARACTERS.indexOf(c) >= 0) {
+                regex.append('\\');
+            }
+            regex.append(c);
+        }
+        return regex.toString();
+    }
+}
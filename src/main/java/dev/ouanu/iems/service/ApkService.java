@@ -1,37 +1,51 @@
 package dev.ouanu.iems.service;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
 import java.util.HashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.UUID;
+import java.util.zip.ZipException;
 
+import org.apache.commons.codec.binary.Hex;
 import org.apache.commons.codec.digest.DigestUtils;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
 import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexOperations;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.TextCriteria;
+import org.springframework.data.mongodb.core.query.TextQuery;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
-import org.springframework.web.multipart.MultipartFile;
+import org.springframework.util.unit.DataSize;
 
+import dev.ouanu.iems.apk.ApkMetadata;
+import dev.ouanu.iems.apk.ApkMetadataExtractor;
 import dev.ouanu.iems.dto.ApkSearchCriteria;
 import dev.ouanu.iems.dto.ApkUpdateRequest;
 import dev.ouanu.iems.entity.Apk;
 import dev.ouanu.iems.repository.ApkRepository;
-import net.dongliu.apk.parser.ApkFile;
-import net.dongliu.apk.parser.bean.ApkMeta;
-import net.dongliu.apk.parser.bean.IconFace;
+import dev.ouanu.iems.util.PageLimits;
+import net.dongliu.apk.parser.exception.ParserException;
 
 @Service
 public class ApkService {
@@ -39,22 +53,48 @@ public class ApkService {
     private final Path apkStorageLocation;
     private final Path iconStorageLocation;
     private final MongoTemplate mongoTemplate;
+    private final DashboardCounterService counters;
+    private final ChangeOutboxService changes;
+    private final ApkBlobStore blobStore;
+    private final IconService iconService;
+    private final ApkDeltaService deltaService;
+    private final long maxApkBytes;
 
     private static final String FIELD_PACKAGE_NAME = "packageName";
     private static final String FIELD_APP_NAME = "labels.default";
     private static final String FIELD_VERSION_NAME = "versionName";
+    private static final String FIELD_VERSION_CODE = "versionCode";
+    private static final String FIELD_SEARCH_TERMS = "searchTerms";
+    private static final String FIELD_SEARCH_TERMS_VERSION = "searchTermsVersion";
     private static final String FIELD_ORGANIZATION = "organization";
     private static final String FIELD_GROUP = "group";
     private static final int DEFAULT_LIMIT = 20;
     private static final int MAX_LIMIT = 200;
+    private static final int BACKFILL_BATCH_SIZE = 500;
     private static final String APK_NOT_FOUND_MESSAGE = "Apk not found with id: ";
+    private static final int TRANSFER_BUFFER_SIZE = 256 * 1024;
+    private static final String INGEST_FILE_PREFIX = ".ingest-";
+    private static final String INGEST_FILE_SUFFIX = ".part";
+    private static final String LEGACY_UNIQUE_INDEX = "uk_apk_package_version";
 
     public ApkService(ApkRepository apkRepository,
             MongoTemplate mongoTemplate,
+            DashboardCounterService counters,
+            ChangeOutboxService changes,
+            ApkBlobStore blobStore,
+            IconService iconService,
+            ApkDeltaService deltaService,
             @Value("${file.storage.apks-dir:./storage/apks}") String apksDir,
-            @Value("${file.storage.icons-dir:./storage/icons}") String iconsDir) {
+            @Value("${file.storage.icons-dir:./storage/icons}") String iconsDir,
+            @Value("${spring.servlet.multipart.max-file-size:2000MB}") DataSize maxApkSize) {
         this.apkRepository = apkRepository;
         this.mongoTemplate = mongoTemplate;
+        this.counters = counters;
+        this.changes = changes;
+        this.blobStore = blobStore;
+        this.iconService = iconService;
+        this.deltaService = deltaService;
+        this.maxApkBytes = maxApkSize.toBytes();
         this.apkStorageLocation = Paths.get(apksDir).toAbsolutePath().normalize();
         this.iconStorageLocation = Paths.get(iconsDir).toAbsolutePath().normalize();
         try {
@@ -81,23 +121,45 @@ public class ApkService {
         return apkRepository.count();
     }
 
+    /**
+     * Catalog query. Every condition is answerable from an index:
+     * <ul>
+     * <li>{@code keyword} is a full-text search over labels and package name, ranked by relevance;</li>
+     * <li>with {@code fuzzy}, fields match by prefix: the app name against the lower-cased {@code searchTerms}
+     *     (so case-insensitively), the other fields against their stored value;</li>
+     * <li>otherwise fields must be equal.</li>
+     * </ul>
+     * User input is always taken literally.
+     */
     @Cacheable(value = "apks:query", key = "T(java.lang.String).valueOf(#criteria.hashCode())")
     public List<Apk> queryApks(ApkSearchCriteria criteria) {
-        Query query = new Query();
         boolean isFuzzy = criteria.fuzzy() != null && criteria.fuzzy();
+        Query query = new Query();
+        if (StringUtils.hasText(criteria.keyword())) {
+            List<String> words = ApkSearchTerms.words(criteria.keyword());
+            if (words.isEmpty()) {
+                return List.of();
+            }
+            query = TextQuery.queryText(TextCriteria.forDefaultLanguage().matchingAny(words.toArray(String[]::new)))
+                    .sortByScore()
+                    .with(Sort.by(Sort.Direction.DESC, FIELD_VERSION_CODE));
+        }
 
-        addCriteriaToQuery(query, FIELD_APP_NAME, criteria.appName(), isFuzzy);
+        if (StringUtils.hasText(criteria.appName())) {
+            if (isFuzzy) {
+                query.addCriteria(Criteria.where(FIELD_SEARCH_TERMS)
+                        .regex(ApkSearchTerms.prefixRegex(ApkSearchTerms.normalize(criteria.appName()))));
+            } else {
+                query.addCriteria(Criteria.where(FIELD_APP_NAME).is(criteria.appName()));
+            }
+        }
         addCriteriaToQuery(query, FIELD_PACKAGE_NAME, criteria.packageName(), isFuzzy);
         addCriteriaToQuery(query, FIELD_VERSION_NAME, criteria.versionName(), isFuzzy);
         addCriteriaToQuery(query, FIELD_ORGANIZATION, criteria.organization(), isFuzzy);
         addCriteriaToQuery(query, FIELD_GROUP, criteria.group(), isFuzzy);
 
         int limit = criteria.limit();
-        if (limit <= 0) {
-            limit = DEFAULT_LIMIT;
-        } else if (limit > MAX_LIMIT) {
-            limit = MAX_LIMIT;
-        }
+        limit = PageLimits.clamp(limit, DEFAULT_LIMIT, MAX_LIMIT);
         int offset = Math.max(criteria.offset(), 0);
         query.skip(offset);
         query.limit(limit);
@@ -105,16 +167,45 @@ public class ApkService {
         return mongoTemplate.find(query, Apk.class);
     }
 
+    // 模糊模式为锚定前缀（大小写敏感），可走字段索引的范围扫描
     private void addCriteriaToQuery(Query query, String fieldName, String value, boolean isFuzzy) {
         if (StringUtils.hasText(value)) {
             if (isFuzzy) {
-                query.addCriteria(Criteria.where(fieldName).regex(value, "i"));
+                query.addCriteria(Criteria.where(fieldName).regex(ApkSearchTerms.prefixRegex(value.trim())));
             } else {
                 query.addCriteria(Criteria.where(fieldName).is(value));
             }
         }
     }
 
+    /**
+     * Fill {@code searchTerms} on documents stored before catalog search existed or under an older
+     * {@link ApkSearchTerms#VERSION} of its rules.
+     * @return the number of documents updated
+     */
+    @CacheEvict(value = { "apks:all", "apks:byId", "apks:query" }, allEntries = true)
+    public int backfillSearchTerms() {
+        Query query = Query.query(Criteria.where(FIELD_SEARCH_TERMS_VERSION).ne(ApkSearchTerms.VERSION))
+                .limit(BACKFILL_BATCH_SIZE);
+        query.fields().include("labels");
+        int updated = 0;
+        while (true) {
+            List<Apk> batch = mongoTemplate.find(query, Apk.class);
+            if (batch.isEmpty()) {
+                return updated;
+            }
+            BulkOperations ops = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Apk.class);
+            for (Apk apk : batch) {
+                // 无标签时写入空数组；写入当前版本号后不会被再次选中
+                ops.updateOne(Query.query(Criteria.where("_id").is(apk.getId())),
+                        Update.update(FIELD_SEARCH_TERMS, ApkSearchTerms.of(apk.getLabels()))
+                                .set(FIELD_SEARCH_TERMS_VERSION, ApkSearchTerms.VERSION));
+            }
+            ops.execute();
+            updated += batch.size();
+        }
+    }
+
     @Transactional
     @CacheEvict(value = { "apks:all", "apks:byId", "apks:query", "apks:count" }, allEntries = true)
     public void adminBatchUpdateApks(List<String> ids, String organization, String group) {
@@ -146,103 +237,223 @@ public class ApkService {
             if (normalizedGroup != null) {
                 apk.setGroup(normalizedGroup);
             }
-            apkRepository.save(apk);
+            saveScoped(apk);
         }
+        changes.appendAll(ChangeOutboxService.APK, uniqueIds, ChangeOutboxService.UPDATED, null);
     }
 
+    /**
+     * Parse and store an APK that has already been received under the APK storage directory, e.g. the assembled file
+     * of a chunked upload. On success {@code file} is moved into {@link ApkBlobStore}; on failure it is left for the
+     * caller to delete.
+     * @param fileHash hex SHA-256 of {@code file}
+     * @param stageMillis if not null, receives the duration of the {@code parse}, {@code store}, {@code icons} and
+     *        {@code save} stages
+     */
     @CacheEvict(value = { "apks:all", "apks:byId", "apks:query", "apks:count" }, allEntries = true)
-    public Apk processAndSaveApk(MultipartFile file, String organization, String group) throws IOException {
-        // 1. Save uploaded file to a temporary location first.
-        Path tempFile = Files.createTempFile("iems-upload-", ".apk");
+    public Apk ingestReceived(Path file, String fileHash, String organization, String group,
+            Map<String, Long> stageMillis) throws IOException {
+        long stageStart = System.currentTimeMillis();
+        Apk apk = new Apk();
+
+        // 2. Parse metadata from the received file: one pass over the resource table for all locales.
+        ApkMetadata metadata;
         try {
-            file.transferTo(tempFile);
-
-            Apk apk = new Apk();
-            String packageName;
-            long versionCode;
-            String versionName;
-            String iconExtension = ".png"; // Default extension
-
-            // 2. Parse metadata from the temporary file.
-            try (ApkFile apkFile = new ApkFile(tempFile.toFile())) {
-                ApkMeta defaultApkMeta = apkFile.getApkMeta();
-                packageName = defaultApkMeta.getPackageName();
-                versionCode = defaultApkMeta.getVersionCode();
-                versionName = defaultApkMeta.getVersionName();
-
-                apk.setPackageName(packageName);
-                apk.setVersionName(versionName);
-                apk.setVersionCode(versionCode);
-
-                // --- Multi-language Labels ---
-                Map<String, String> localizedLabels = new HashMap<>();
-                localizedLabels.put("default", defaultApkMeta.getLabel());
-                for (Locale locale : apkFile.getLocales()) {
-                    apkFile.setPreferredLocale(locale);
-                    String label = apkFile.getApkMeta().getLabel();
-                    if (label != null) {
-                        localizedLabels.put(locale.toLanguageTag(), label);
-                    }
-                }
-                apk.setLabels(localizedLabels);
-
-                // 2.1 Check if packageName already exists in DB -> if yes, remove uploaded
-                // files and throw
-                List<Apk> existingApks = mongoTemplate.find(Query.query(Criteria.where(FIELD_PACKAGE_NAME).is(packageName)), Apk.class);
-                
-                if (!existingApks.isEmpty()) {
-                    if (versionCode == existingApks.get(0).getVersionCode()) {
-                        throw new IllegalStateException("Apk已存在: " + packageName);
-                    }else{
-                        // Allow different versionCode for the same packageName
-                    }
-                }
-                // --- Icon Extraction ---
-                // IconFace iconFace = apkFile.getAllIcons().stream()
-                //         .filter(IconFace::isFile)
-                //         .max(Comparator.comparingInt(icon -> icon.getData().length))
-                //         .orElse(null);
-                int size = apkFile.getAllIcons().size();
-                apkFile.getAllIcons().sort((a, b) -> Integer.compare(b.getData().length, a.getData().length));
-                IconFace iconFace = apkFile.getAllIcons().get(size / 2);
-
-                if (iconFace != null) {
-                    String iconPath = iconFace.getPath();
-                    int dotIndex = iconPath.lastIndexOf('.');
-                    if (dotIndex > 0) {
-                        iconExtension = iconPath.substring(dotIndex);
-                    }
-                    // Use a unique name for the icon file
-                    String iconFileName = String.format("%s-v%d%s", packageName, versionCode, iconExtension);
-                    Path iconTargetPath = this.iconStorageLocation.resolve(iconFileName).normalize();
-                    Files.write(iconTargetPath, iconFace.getData());
-                    apk.setIconPath(
-                            iconStorageLocation.getParent().relativize(iconTargetPath).toString().replace('\\', '/'));
-                }
-            }
+            metadata = ApkMetadataExtractor.extract(file);
+        } catch (ParserException | ZipException e) {
+            throw new IllegalArgumentException("无法解析APK: " + e.getMessage(), e);
+        }
+        String packageName = metadata.packageName();
+        long versionCode = metadata.versionCode();
+
+        apk.setPackageName(packageName);
+        apk.setVersionName(metadata.versionName());
+        apk.setVersionCode(versionCode);
+        apk.setLabels(new HashMap<>(metadata.labels()));
+        apk.setSearchTerms(ApkSearchTerms.of(metadata.labels()));
+        apk.setSearchTermsVersion(ApkSearchTerms.VERSION);
+        apk.setMinSdkVersion(metadata.minSdkVersion());
+        apk.setAbis(metadata.abis());
+        apk.setPermissions(metadata.permissions());
+        apk.setSignerDigests(metadata.signerDigests());
+
+        // 2.1 Reject a package version that is already stored for this organization and group: one lookup on the
+        // unique (packageName, versionCode, organization, group) index. The index itself catches a concurrent upload
+        // of the same version at save time. The same file for another organization or group is a second reference
+        // to the stored blob.
+        if (apkRepository.existsByPackageNameAndVersionCodeAndOrganizationAndGroup(packageName, versionCode,
+                organization, group)) {
+            throw new IllegalStateException(duplicateMessage(packageName, versionCode));
+        }
+        stageStart = recordStage(stageMillis, "parse", stageStart);
 
-            // 3. Move APK to its final destination with a unique name.
-            String apkFileName = String.format("%s-v%d.apk", packageName, versionCode);
-            Path apkTargetPath = this.apkStorageLocation.resolve(apkFileName).normalize();
-            Files.move(tempFile, apkTargetPath, StandardCopyOption.REPLACE_EXISTING);
+        // 3. Hand the file to the content-addressed store: a same-directory-tree rename, or a no-op when
+        // identical bytes are already stored.
+        Path apkTargetPath = blobStore.acquire(fileHash, file);
+        stageStart = recordStage(stageMillis, "store", stageStart);
 
-            // Set file path after moving
-            apk.setFilePath(apkStorageLocation.getParent().relativize(apkTargetPath).toString().replace('\\', '/'));
+        apk.setFilePath(apkStorageLocation.getParent().relativize(apkTargetPath).toString().replace('\\', '/'));
+        apk.setFileHash(fileHash);
 
-            // 4. Calculate hash from the final file.
-            try (var fis = Files.newInputStream(apkTargetPath)) {
-                apk.setFileHash(DigestUtils.sha256Hex(fis));
+        Apk saved;
+        try {
+            // 3.1 Icon renditions, shared by every APK with the same content; rendered while holding the blob reference.
+            List<Integer> iconSizes = iconService.render(fileHash, metadata.icons());
+            if (!iconSizes.isEmpty()) {
+                apk.setIconSizes(iconSizes);
+                apk.setIconPath(iconService.relativePath(fileHash, iconSizes.get(iconSizes.size() - 1)));
+            } else {
+                // 无法解码（如 WebP）时保留原始图标，仍可经 /{id}/icon 下载
+                apk.setIconPath(iconService.storeOriginal(fileHash, metadata.icons()));
             }
+            stageStart = recordStage(stageMillis, "icons", stageStart);
 
-            // 5. Set other info and save to database.
+            // 4. Set other info and save to database.
             apk.setOrganization(organization);
             apk.setGroup(group);
+            saved = apkRepository.save(apk);
+        } catch (DuplicateKeyException e) {
+            blobStore.release(fileHash, this::deleteDerived);
+            throw new IllegalStateException(duplicateMessage(packageName, versionCode), e);
+        } catch (IOException | RuntimeException e) {
+            blobStore.release(fileHash, this::deleteDerived);
+            throw e;
+        }
+        recordStage(stageMillis, "save", stageStart);
+        counters.apksAdded(1);
+        changes.append(ChangeOutboxService.APK, saved.getId(), ChangeOutboxService.CREATED,
+                ChangeOutboxService.payload("packageName", saved.getPackageName(), "versionCode", saved.getVersionCode()));
+        // 5. Delta patches from the previous versions are built in the background.
+        deltaService.generateAsync(saved);
+        return saved;
+    }
+
+    // 随 blob 一起删除的派生文件：图标渲染图与以其为起点或终点的增量补丁
+    private void deleteDerived(String fileHash) throws IOException {
+        iconService.delete(fileHash);
+        deltaService.deleteFor(fileHash);
+    }
+
+    /**
+     * @return the stored APK for this package version in the same organization and group as {@code apk}, if any
+     */
+    public Optional<Apk> findSiblingVersion(Apk apk, long versionCode) {
+        return apkRepository.findByPackageNameAndVersionCodeAndOrganizationAndGroup(apk.getPackageName(), versionCode,
+                apk.getOrganization(), apk.getGroup());
+    }
+
+    /**
+     * Drop the global (packageName, versionCode) unique index of earlier releases, which would still reject the same
+     * version for a second organization or group.
+     */
+    public void dropLegacyIndexes() {
+        IndexOperations ops = mongoTemplate.indexOps(Apk.class);
+        boolean present = ops.getIndexInfo().stream().anyMatch(info -> LEGACY_UNIQUE_INDEX.equals(info.getName()));
+        if (present) {
+            ops.dropIndex(LEGACY_UNIQUE_INDEX);
+        }
+    }
+
+    // 改动组织 / 分组后可能与目标范围内的同版本冲突
+    private Apk saveScoped(Apk apk) {
+        try {
             return apkRepository.save(apk);
+        } catch (DuplicateKeyException e) {
+            throw new IllegalStateException(duplicateMessage(apk.getPackageName(), apk.getVersionCode()), e);
+        }
+    }
+
+    private static String duplicateMessage(String packageName, Long versionCode) {
+        return "Apk已存在: " + packageName + " (versionCode " + versionCode + ")";
+    }
+
+    private static long recordStage(Map<String, Long> stageMillis, String stage, long startedAt) {
+        long now = System.currentTimeMillis();
+        if (stageMillis != null) {
+            stageMillis.put(stage, now - startedAt);
+        }
+        return now;
+    }
+
+    /**
+     * @return a new, not yet existing temporary file in the APK storage directory, for {@link #receive}
+     */
+    public Path newIngestFile() {
+        return apkStorageLocation.resolve(INGEST_FILE_PREFIX + UUID.randomUUID() + INGEST_FILE_SUFFIX);
+    }
 
-        } finally {
-            // Ensure temporary file is deleted even if an error occurs.
-            Files.deleteIfExists(tempFile);
+    /**
+     * Delete {@link #newIngestFile} files left behind by an earlier run, e.g. one that crashed with jobs queued.
+     * Only safe before this instance queues any job.
+     * @return the number of files deleted
+     */
+    public int deleteStaleIngestFiles() throws IOException {
+        int deleted = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(apkStorageLocation,
+                INGEST_FILE_PREFIX + "*" + INGEST_FILE_SUFFIX)) {
+            for (Path file : files) {
+                if (Files.deleteIfExists(file)) {
+                    deleted++;
+                }
+            }
         }
+        return deleted;
+    }
+
+    /**
+     * Copy {@code in} to {@code target}, computing its SHA-256 in the same pass.
+     * @return hex SHA-256 of the content
+     * @throws IllegalArgumentException if the content is empty or larger than the upload limit
+     */
+    public String receive(InputStream in, Path target) throws IOException {
+        MessageDigest sha256 = DigestUtils.getSha256Digest();
+        byte[] buffer = new byte[TRANSFER_BUFFER_SIZE];
+        long total = 0;
+        try (OutputStream out = Files.newOutputStream(target, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                total += read;
+                if (total > maxApkBytes) {
+                    throw new IllegalArgumentException("APK 超过大小上限: " + maxApkBytes + " bytes");
+                }
+                sha256.update(buffer, 0, read);
+                out.write(buffer, 0, read);
+            }
+        }
+        if (total == 0) {
+            throw new IllegalArgumentException("APK 内容为空");
+        }
+        return Hex.encodeHexString(sha256.digest());
+    }
+
+    public long getMaxApkBytes() {
+        return maxApkBytes;
+    }
+
+    /**
+     * @return the stored APK file of {@code apk}, or null if it has none or the file is missing
+     */
+    public Path apkFileOf(Apk apk) {
+        return storedFile(apkStorageLocation.getParent(), apk.getFilePath());
+    }
+
+    /**
+     * @return the stored icon of {@code apk}, or null if it has none or the file is missing
+     */
+    public Path iconFileOf(Apk apk) {
+        return storedFile(iconStorageLocation.getParent(), apk.getIconPath());
+    }
+
+    private static Path storedFile(Path base, String relativePath) {
+        if (!StringUtils.hasText(relativePath)) {
+            return null;
+        }
+        Path file = base.resolve(relativePath).normalize();
+        // 防止路径穿越到存储目录之外
+        if (!file.startsWith(base) || !Files.isRegularFile(file)) {
+            return null;
+        }
+        return file;
     }
 
     @CacheEvict(value = { "apks:all", "apks:byId", "apks:query", "apks:count" }, allEntries = true)
@@ -253,7 +464,9 @@ public class ApkService {
         existingApk.setOrganization(updateRequest.organization());
         existingApk.setGroup(updateRequest.group());
 
-        return apkRepository.save(existingApk);
+        Apk saved = saveScoped(existingApk);
+        changes.append(ChangeOutboxService.APK, id, ChangeOutboxService.UPDATED, null);
+        return saved;
     }
 
     @CacheEvict(value = { "apks:all", "apks:byId", "apks:query", "apks:count" }, allEntries = true)
@@ -285,15 +498,28 @@ public class ApkService {
         Apk apk = apkRepository.findById(id)
                 .orElseThrow(() -> new IllegalArgumentException(APK_NOT_FOUND_MESSAGE + id));
 
+        // 内容寻址文件在删除文档后释放引用；旧的 <package>-v<code>.apk 文件直接删除
+        boolean sharedBlob = false;
         if (StringUtils.hasText(apk.getFilePath())) {
             Path apkPath = apkStorageLocation.getParent().resolve(apk.getFilePath()).normalize();
-            Files.deleteIfExists(apkPath);
+            sharedBlob = blobStore.isBlob(apkPath, apk.getFileHash());
+            if (!sharedBlob) {
+                Files.deleteIfExists(apkPath);
+            }
         }
-        if (StringUtils.hasText(apk.getIconPath())) {
+        // 图标渲染与增量补丁随内容共享，最后一个引用释放时一并删除
+        if (!sharedBlob && StringUtils.hasText(apk.getIconPath())
+                && (apk.getIconSizes() == null || apk.getIconSizes().isEmpty())) {
             Path iconPath = iconStorageLocation.getParent().resolve(apk.getIconPath()).normalize();
             Files.deleteIfExists(iconPath);
         }
 
         apkRepository.deleteById(id);
+        if (sharedBlob) {
+            blobStore.release(apk.getFileHash(), this::deleteDerived);
+        }
+        counters.apksRemoved(1);
+        changes.append(ChangeOutboxService.APK, id, ChangeOutboxService.DELETED,
+                ChangeOutboxService.payload("packageName", apk.getPackageName(), "versionCode", apk.getVersionCode()));
     }
 }
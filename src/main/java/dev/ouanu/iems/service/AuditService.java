@@ -0,0 +1,256 @@
+package dev.ouanu.iems.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import dev.ouanu.iems.aop.AuditRedactor;
+import dev.ouanu.iems.entity.AuditRecord;
+import dev.ouanu.iems.util.PageLimits;
+import dev.ouanu.iems.util.RingBuffer;
+import dev.ouanu.iems.vo.AuditRecordVO;
+import dev.ouanu.iems.vo.CursorPageVO;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Audit trail of {@code @ActionLog} calls, stored in the MongoDB collection {@code audit_records}.
+ * <p>
+ * The request thread only records references (actor, arguments, outcome) into a lock-free {@link RingBuffer}; when
+ * the buffer is full the record is dropped and counted rather than slowing the request down. A writer drains the
+ * buffer on a short fixed delay, redacts and serializes the arguments, and inserts each batch with one
+ * {@code insertMany}. Records expire through a TTL index after {@code app.audit.retention-days}.
+ */
+@Service
+public class AuditService {
+
+    public static final String ANONYMOUS = "anonymous";
+    private static final int DEFAULT_LIMIT = 50;
+    private static final int MAX_LIMIT = 200;
+
+    /**
+     * Per-method data resolved once by the aspect and shared by every capture of that method.
+     */
+    public record AuditedMethod(String action, String method, String[] parameterNames) {
+    }
+
+    private record Capture(AuditedMethod method, Object[] args, String actor, String clientIp,
+                           long startedAt, long durationMs, Integer status, String error) {
+    }
+
+    private final MongoTemplate mongoTemplate;
+    private final AuditRedactor redactor;
+    private final RingBuffer<Capture> buffer;
+    private final int batchSize;
+    private final Duration retention;
+    private final Counter written;
+    private final Counter droppedFull;
+    private final Counter droppedFailed;
+    // 上一批写入失败的记录，下次刷新时重试一次
+    private List<AuditRecord> retry = List.of();
+    private final Logger log = LoggerFactory.getLogger(AuditService.class);
+
+    public AuditService(MongoTemplate mongoTemplate,
+                        AuditRedactor redactor,
+                        MeterRegistry meterRegistry,
+                        @Value("${app.audit.buffer-capacity:8192}") int capacity,
+                        @Value("${app.audit.batch-size:500}") int batchSize,
+                        @Value("${app.audit.retention-days:180}") long retentionDays) {
+        this.mongoTemplate = mongoTemplate;
+        this.redactor = redactor;
+        this.buffer = new RingBuffer<>(capacity);
+        this.batchSize = batchSize;
+        this.retention = Duration.ofDays(retentionDays);
+        this.written = Counter.builder("iems.audit.written").description("Audit records persisted").register(meterRegistry);
+        this.droppedFull = Counter.builder("iems.audit.dropped").tag("reason", "buffer-full")
+                .description("Audit records lost").register(meterRegistry);
+        this.droppedFailed = Counter.builder("iems.audit.dropped").tag("reason", "write-failed")
+                .description("Audit records lost").register(meterRegistry);
+        Gauge.builder("iems.audit.buffered", buffer, RingBuffer::size)
+                .description("Audit records waiting to be written")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void ensureIndexes() {
+        try {
+            IndexOperations ops = mongoTemplate.indexOps(AuditRecord.class);
+            // 等值条件 + 按 _id（即时间）倒序翻页
+            ops.createIndex(new Index().on("actor", Sort.Direction.ASC).on("_id", Sort.Direction.DESC).named("idx_audit_actor"));
+            ops.createIndex(new Index().on("action", Sort.Direction.ASC).on("_id", Sort.Direction.DESC).named("idx_audit_action"));
+            ops.createIndex(new Index().on("occurredAt", Sort.Direction.ASC).expire(retention).named("idx_audit_ttl"));
+        } catch (RuntimeException e) {
+            // 修改保留天数需先 collMod 或删除旧 TTL 索引
+            log.warn("Could not ensure audit indexes: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Record one call; never blocks and never throws.
+     */
+    public void capture(AuditedMethod method, Object[] args, long startedAt, long durationMs, Integer status, Throwable error) {
+        try {
+            Capture capture = new Capture(method, redactor.detach(args), currentActor(), currentClientIp(),
+                    startedAt, durationMs, status, error == null ? null : error.getClass().getSimpleName() + ": " + error.getMessage());
+            if (!buffer.offer(capture)) {
+                droppedFull.increment();
+            }
+        } catch (RuntimeException e) {
+            // 审计失败不影响业务请求
+            log.warn("Failed to capture audit record for {}: {}", method.method(), e.getMessage());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.audit.flush-interval-ms:1000}")
+    @PreDestroy
+    public synchronized void flush() {
+        if (!retry.isEmpty()) {
+            List<AuditRecord> pending = retry;
+            retry = List.of();
+            write(pending, false);
+        }
+        List<Capture> drained = new ArrayList<>(batchSize);
+        while (buffer.drainTo(drained, batchSize) > 0) {
+            List<AuditRecord> records = new ArrayList<>(drained.size());
+            for (Capture capture : drained) {
+                records.add(toRecord(capture));
+            }
+            drained.clear();
+            if (!write(records, true)) {
+                return;
+            }
+        }
+    }
+
+    private boolean write(List<AuditRecord> records, boolean retryOnFailure) {
+        try {
+            mongoTemplate.insert(records, AuditRecord.class);
+            written.increment(records.size());
+            return true;
+        } catch (RuntimeException e) {
+            log.warn("Failed to write {} audit records: {}", records.size(), e.getMessage());
+            if (retryOnFailure) {
+                retry = records;
+            } else {
+                droppedFailed.increment(records.size());
+            }
+            return false;
+        }
+    }
+
+    private AuditRecord toRecord(Capture capture) {
+        AuditRecord record = new AuditRecord();
+        record.setId(new ObjectId(new Date(capture.startedAt())).toHexString());
+        record.setActor(capture.actor());
+        record.setAction(capture.method().action());
+        record.setMethod(capture.method().method());
+        record.setClientIp(capture.clientIp());
+        try {
+            record.setArgs(redactor.redact(capture.method().parameterNames(), capture.args()));
+        } catch (RuntimeException e) {
+            record.setArgs(null);
+        }
+        record.setStatus(capture.status());
+        record.setError(capture.error());
+        record.setDurationMs(capture.durationMs());
+        record.setOccurredAt(Instant.ofEpochMilli(capture.startedAt()));
+        return record;
+    }
+
+    /**
+     * Newest first, keyset-paginated on the record id.
+     * @param cursor id of the last record of the previous page, blank for the first page
+     * @throws IllegalArgumentException if the cursor is malformed or the time range is empty
+     */
+    public CursorPageVO<AuditRecordVO> query(String actor, String action, Instant from, Instant to, String cursor, int limit) {
+        limit = PageLimits.clamp(limit, DEFAULT_LIMIT, MAX_LIMIT);
+        if (from != null && to != null && !from.isBefore(to)) {
+            throw new IllegalArgumentException("from must be before to");
+        }
+        Query query = new Query();
+        if (StringUtils.hasText(actor)) {
+            query.addCriteria(Criteria.where("actor").is(actor));
+        }
+        if (StringUtils.hasText(action)) {
+            query.addCriteria(Criteria.where("action").is(action));
+        }
+        // 时间范围换算为 _id 上下界（秒级），与排序共用同一索引；occurredAt 条件再做毫秒级精确过滤
+        ObjectId upper = to == null ? null : idAt(to.getNano() == 0 ? to.getEpochSecond() : to.getEpochSecond() + 1);
+        if (StringUtils.hasText(cursor)) {
+            if (!ObjectId.isValid(cursor.trim())) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            ObjectId after = new ObjectId(cursor.trim());
+            upper = upper == null || after.compareTo(upper) < 0 ? after : upper;
+        }
+        if (from != null || upper != null) {
+            Criteria id = Criteria.where("_id");
+            if (from != null) {
+                id = id.gte(idAt(from.getEpochSecond()));
+            }
+            if (upper != null) {
+                id = id.lt(upper);
+            }
+            query.addCriteria(id);
+        }
+        if (from != null || to != null) {
+            Criteria occurredAt = Criteria.where("occurredAt");
+            if (from != null) {
+                occurredAt = occurredAt.gte(from);
+            }
+            if (to != null) {
+                occurredAt = occurredAt.lt(to);
+            }
+            query.addCriteria(occurredAt);
+        }
+        query.with(Sort.by(Sort.Direction.DESC, "_id")).limit(limit);
+
+        List<AuditRecordVO> items = mongoTemplate.find(query, AuditRecord.class).stream().map(AuditRecordVO::fromEntity).toList();
+        String next = !items.isEmpty() && items.size() >= limit ? items.get(items.size() - 1).getId() : null;
+        return new CursorPageVO<>(items, next);
+    }
+
+    // 某一秒内最小的 ObjectId
+    private static ObjectId idAt(long epochSecond) {
+        return new ObjectId(String.format("%08x%016x", epochSecond, 0L));
+    }
+
+    private static String currentActor() {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        if (auth == null || !auth.isAuthenticated() || auth instanceof AnonymousAuthenticationToken) {
+            return ANONYMOUS;
+        }
+        return auth.getName();
+    }
+
+    private static String currentClientIp() {
+        if (RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes) {
+            return attributes.getRequest().getRemoteAddr();
+        }
+        return null;
+    }
+}
@@ -0,0 +1,151 @@
+package dev.ouanu.iems.service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.RedisStreamCommands.XAddOptions;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import dev.ouanu.iems.entity.ChangeEvent;
+import dev.ouanu.iems.mapper.ChangeOutboxMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Publishes pending {@code change_outbox} rows to the Redis Stream {@value #STREAM} in batches.
+ * <p>
+ * Each batch is claimed with {@code FOR UPDATE SKIP LOCKED}, sent with one pipelined round of {@code XADD}, and marked
+ * published in the same transaction. If Redis or the commit fails the rows stay pending and are sent again, so
+ * delivery is at-least-once: consumers should deduplicate on the {@code outboxId} field. Every instance relays;
+ * SKIP LOCKED keeps them from claiming the same rows, which also means events of different batches can interleave,
+ * so consumers ordering changes of one entity should compare {@code outboxId} (or the entity version in the payload).
+ */
+@Service
+public class ChangeOutboxRelay {
+
+    public static final String STREAM = "iems:changes";
+    // 单次调度最多连续转发的批数，积压时也会及时让出调度线程
+    private static final int MAX_ROUNDS = 20;
+    private static final int PURGE_CHUNK = 1000;
+
+    private final ChangeOutboxMapper outboxMapper;
+    private final TransactionTemplate tx;
+    private final StringRedisTemplate redis;
+    private final int batchSize;
+    private final long streamMaxLength;
+    private final Duration retention;
+    private final Counter published;
+    private final Counter failures;
+    private final Logger log = LoggerFactory.getLogger(ChangeOutboxRelay.class);
+
+    public ChangeOutboxRelay(ChangeOutboxMapper outboxMapper,
+                             PlatformTransactionManager transactionManager,
+                             StringRedisTemplate redis,
+                             MeterRegistry meterRegistry,
+                             @Value("${app.outbox.batch-size:200}") int batchSize,
+                             @Value("${app.outbox.stream-max-length:100000}") long streamMaxLength,
+                             @Value("${app.outbox.retention-hours:72}") long retentionHours) {
+        this.outboxMapper = outboxMapper;
+        this.tx = new TransactionTemplate(transactionManager);
+        // READ COMMITTED：FOR UPDATE 只锁读到的行，不加间隙锁，不会阻塞业务事务向发件箱末尾插入
+        this.tx.setIsolationLevel(TransactionDefinition.ISOLATION_READ_COMMITTED);
+        this.redis = redis;
+        this.batchSize = batchSize;
+        this.streamMaxLength = streamMaxLength;
+        this.retention = Duration.ofHours(retentionHours);
+        this.published = Counter.builder("iems.outbox.published")
+                .description("Change events relayed to the change stream")
+                .register(meterRegistry);
+        this.failures = Counter.builder("iems.outbox.relay.failures")
+                .description("Relay batches rolled back and left pending")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${app.outbox.relay-interval-ms:500}")
+    public void relay() {
+        for (int round = 0; round < MAX_ROUNDS; round++) {
+            Integer sent;
+            try {
+                sent = tx.execute(status -> relayBatch());
+            } catch (RuntimeException e) {
+                failures.increment();
+                log.warn("Change outbox relay failed, will retry: {}", e.getMessage());
+                return;
+            }
+            if (sent == null || sent < batchSize) {
+                return;
+            }
+        }
+    }
+
+    private int relayBatch() {
+        List<ChangeEvent> events = outboxMapper.lockPending(batchSize);
+        if (events.isEmpty()) {
+            return 0;
+        }
+        publish(events);
+        outboxMapper.markPublished(events.stream().map(ChangeEvent::getId).toList());
+        published.increment(events.size());
+        return events.size();
+    }
+
+    private void publish(List<ChangeEvent> events) {
+        byte[] stream = STREAM.getBytes(StandardCharsets.UTF_8);
+        // 近似裁剪（MAXLEN ~）按宏节点整块淘汰，开销远小于精确裁剪
+        XAddOptions options = XAddOptions.maxlen(streamMaxLength).approximateTrimming(true);
+        redis.executePipelined((RedisCallback<Object>) connection -> {
+            for (ChangeEvent event : events) {
+                connection.streamCommands().xAdd(StreamRecords.rawBytes(fields(event)).withStreamKey(stream), options);
+            }
+            return null;
+        });
+    }
+
+    private static Map<byte[], byte[]> fields(ChangeEvent event) {
+        Map<byte[], byte[]> fields = new LinkedHashMap<>();
+        put(fields, "outboxId", event.getId().toString());
+        put(fields, "aggregate", event.getAggregateType());
+        put(fields, "id", event.getAggregateId());
+        put(fields, "type", event.getEventType());
+        put(fields, "occurredAt", Long.toString(event.getCreatedAt().toEpochMilli()));
+        if (event.getPayload() != null) {
+            put(fields, "payload", event.getPayload());
+        }
+        return fields;
+    }
+
+    private static void put(Map<byte[], byte[]> fields, String key, String value) {
+        fields.put(key.getBytes(StandardCharsets.UTF_8), value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Drop relayed rows older than the retention window; the stream itself is capped by {@code MAXLEN}.
+     */
+    @Scheduled(initialDelayString = "${app.outbox.purge-initial-delay-ms:60000}",
+               fixedDelayString = "${app.outbox.purge-interval-ms:3600000}")
+    public void purge() {
+        Instant cutoff = Instant.now().minus(retention);
+        try {
+            int deleted;
+            do {
+                deleted = outboxMapper.deletePublishedBefore(cutoff, PURGE_CHUNK);
+            } while (deleted == PURGE_CHUNK);
+        } catch (RuntimeException e) {
+            log.warn("Change outbox purge failed: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package dev.ouanu.iems.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import dev.ouanu.iems.entity.ChangeEvent;
+import dev.ouanu.iems.mapper.ChangeOutboxMapper;
+
+/**
+ * Appends entity change events to {@code change_outbox}.
+ * <p>
+ * Called from inside the service transaction that performs the write, so an event exists if and only if the change
+ * committed. {@link ChangeOutboxRelay} later publishes pending rows to the Redis Stream {@value ChangeOutboxRelay#STREAM}.
+ * APK metadata lives in MongoDB, outside the MySQL transaction: its events are appended right after the document
+ * write and are lost if the process dies in between, which the periodic counter reconciliation already tolerates.
+ */
+@Service
+public class ChangeOutboxService {
+
+    public static final String DEVICE = "device";
+    public static final String OPERATOR = "operator";
+    public static final String PERMISSION = "permission";
+    public static final String APK = "apk";
+
+    public static final String CREATED = "created";
+    public static final String UPDATED = "updated";
+    public static final String DELETED = "deleted";
+
+    private final ChangeOutboxMapper outboxMapper;
+    private final ObjectMapper objectMapper;
+
+    public ChangeOutboxService(ChangeOutboxMapper outboxMapper, ObjectMapper objectMapper) {
+        this.outboxMapper = outboxMapper;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * @param aggregateType one of {@link #DEVICE}, {@link #OPERATOR}, {@link #PERMISSION}, {@link #APK}
+     * @param aggregateId id of the changed entity
+     * @param eventType one of {@link #CREATED}, {@link #UPDATED}, {@link #DELETED}
+     * @param payload small JSON-serializable map (keys, changed fields, new version); null for none
+     */
+    public void append(String aggregateType, Object aggregateId, String eventType, Map<String, ?> payload) {
+        appendAll(aggregateType, List.of(aggregateId), eventType, payload);
+    }
+
+    /**
+     * Same event for many entities (batch updates), written with one multi-row insert.
+     */
+    public void appendAll(String aggregateType, Collection<?> aggregateIds, String eventType, Map<String, ?> payload) {
+        if (aggregateIds.isEmpty()) {
+            return;
+        }
+        String json = toJson(payload);
+        List<ChangeEvent> events = new ArrayList<>(aggregateIds.size());
+        for (Object id : aggregateIds) {
+            ChangeEvent event = new ChangeEvent();
+            event.setAggregateType(aggregateType);
+            event.setAggregateId(String.valueOf(id));
+            event.setEventType(eventType);
+            event.setPayload(json);
+            events.add(event);
+        }
+        // 写失败即抛出，让业务事务一起回滚，不允许出现"有变更无事件"
+        outboxMapper.insertBatch(events);
+    }
+
+    /**
+     * Build a payload from alternating keys and values, leaving out null values.
+     */
+    public static Map<String, Object> payload(Object... keyValues) {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        for (int i = 0; i + 1 < keyValues.length; i += 2) {
+            if (keyValues[i + 1] != null) {
+                payload.put(keyValues[i].toString(), keyValues[i + 1]);
+            }
+        }
+        return payload;
+    }
+
+    private String toJson(Map<String, ?> payload) {
+        if (payload == null || payload.isEmpty()) {
+            return null;
+        }
+        try {
+            return objectMapper.writeValueAsString(payload);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Unserializable change event payload", e);
+        }
+    }
+}
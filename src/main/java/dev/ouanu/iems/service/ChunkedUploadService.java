@@ -0,0 +1,406 @@
+package dev.ouanu.iems.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.regex.Pattern;
+
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import dev.ouanu.iems.dto.InitiateUploadRequest;
+import dev.ouanu.iems.vo.ApkJobVO;
+import dev.ouanu.iems.vo.UploadSessionVO;
+
+/**
+ * Resumable chunked APK uploads: initiate, PUT chunks in any order and as often as needed, then commit.
+ * <p>
+ * Initiating creates a sparse file of the final size under {@code <apks-dir>/.uploads}; every chunk is verified
+ * against its SHA-256 while it is written in place with positional {@link FileChannel} writes, so the assembled file
+ * is the upload file itself and is never recopied. Session metadata lives in the Redis hash {@code upload:<id>}, and
+ * the received chunks in the bitmap {@code upload:<id>:chunks}; both expire after {@code app.upload.session-ttl-hours}
+ * without activity. Commit hashes the assembled file once and queues it on the {@link ApkIngestPipeline}.
+ * <p>
+ * Every chunk write holds a lease in the sorted set {@code upload:<id>:writers} (member = lease token, score = expiry),
+ * renewed while the body is copied. Taking a lease and starting a commit are single Lua scripts, so a commit is
+ * refused with 409 while any unexpired lease exists, and no write starts once the commit has begun.
+ * <p>
+ * The file is on this instance's disk, so all requests of one upload must reach the same instance.
+ */
+@Service
+public class ChunkedUploadService {
+
+    private static final String KEY_PREFIX = "upload:";
+    private static final String CHUNKS_SUFFIX = ":chunks";
+    private static final String WRITERS_SUFFIX = ":writers";
+    private static final String PART_SUFFIX = ".part";
+    private static final Pattern SHA256_HEX = Pattern.compile("[0-9a-fA-F]{64}");
+    private static final int MIN_CHUNK_SIZE = 64 * 1024;
+    private static final int COPY_BUFFER_SIZE = 256 * 1024;
+    private static final String NOT_FOUND_MESSAGE = "Upload not found: ";
+    // KEYS: 会话 hash、租约 zset；ARGV: 租约 token、到期时间（毫秒）、zset 过期秒数。提交开始后不再发放 / 续期租约
+    private static final RedisScript<Long> ACQUIRE_WRITE_LEASE = new DefaultRedisScript<>(
+            "if redis.call('hexists', KEYS[1], 'committing') == 1 then return 0 end "
+                    + "redis.call('zadd', KEYS[2], ARGV[2], ARGV[1]) "
+                    + "redis.call('expire', KEYS[2], ARGV[3]) "
+                    + "return 1",
+            Long.class);
+    // KEYS: 会话 hash、租约 zset；ARGV: 当前时间（毫秒）。返回 1 开始提交，0 已在提交，-1 仍有分片在写入
+    private static final RedisScript<Long> BEGIN_COMMIT = new DefaultRedisScript<>(
+            "if redis.call('hexists', KEYS[1], 'committing') == 1 then return 0 end "
+                    + "redis.call('zremrangebyscore', KEYS[2], '-inf', ARGV[1]) "
+                    + "if redis.call('zcard', KEYS[2]) > 0 then return -1 end "
+                    + "redis.call('hset', KEYS[1], 'committing', '1') "
+                    + "return 1",
+            Long.class);
+
+    private final StringRedisTemplate redis;
+    private final ApkService apkService;
+    private final ApkIngestPipeline ingestPipeline;
+    private final Path uploadDir;
+    private final int defaultChunkSize;
+    private final int maxChunkSize;
+    private final Duration sessionTtl;
+    private final Duration writeLease;
+    private final Logger log = LoggerFactory.getLogger(ChunkedUploadService.class);
+
+    public ChunkedUploadService(StringRedisTemplate redis,
+                                ApkService apkService,
+                                ApkIngestPipeline ingestPipeline,
+                                @Value("${file.storage.apks-dir:./storage/apks}") String apksDir,
+                                @Value("${app.upload.chunk-size:8388608}") int defaultChunkSize,
+                                @Value("${app.upload.max-chunk-size:67108864}") int maxChunkSize,
+                                @Value("${app.upload.session-ttl-hours:24}") long sessionTtlHours,
+                                @Value("${app.upload.write-lease-seconds:120}") long writeLeaseSeconds) {
+        this.redis = redis;
+        this.apkService = apkService;
+        this.ingestPipeline = ingestPipeline;
+        // 与 APK 存储目录同一文件系统，提交时只需重命名
+        this.uploadDir = Paths.get(apksDir).toAbsolutePath().normalize().resolve(".uploads");
+        this.defaultChunkSize = defaultChunkSize;
+        this.maxChunkSize = maxChunkSize;
+        this.sessionTtl = Duration.ofHours(sessionTtlHours);
+        this.writeLease = Duration.ofSeconds(writeLeaseSeconds);
+        try {
+            Files.createDirectories(uploadDir);
+        } catch (IOException ex) {
+            throw new IllegalStateException("Could not create upload directory.", ex);
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException if the size, chunk size or checksum is invalid
+     */
+    public UploadSessionVO initiate(InitiateUploadRequest request) throws IOException {
+        long size = request.size() == null ? 0 : request.size();
+        if (size <= 0 || size > apkService.getMaxApkBytes()) {
+            throw new IllegalArgumentException("文件大小无效: " + size);
+        }
+        int chunkSize = request.chunkSize() == null ? defaultChunkSize : request.chunkSize();
+        if (chunkSize < MIN_CHUNK_SIZE || chunkSize > maxChunkSize) {
+            throw new IllegalArgumentException("分片大小需在 " + MIN_CHUNK_SIZE + " 与 " + maxChunkSize + " 之间");
+        }
+        if (StringUtils.hasText(request.sha256()) && !SHA256_HEX.matcher(request.sha256()).matches()) {
+            throw new IllegalArgumentException("sha256 格式无效");
+        }
+
+        String uploadId = UUID.randomUUID().toString().replace("-", "");
+        String key = KEY_PREFIX + uploadId;
+        Map<String, String> session = new HashMap<>();
+        session.put("owner", currentOwner());
+        session.put("size", Long.toString(size));
+        session.put("chunkSize", Integer.toString(chunkSize));
+        putIfText(session, "fileName", request.fileName());
+        putIfText(session, "sha256", request.sha256() == null ? null : request.sha256().toLowerCase());
+        putIfText(session, "organization", request.organization());
+        putIfText(session, "group", request.group());
+        redis.opsForHash().putAll(key, session);
+        redis.expire(key, sessionTtl);
+
+        // 稀疏文件：只占用已写入分片的磁盘空间
+        try (RandomAccessFile file = new RandomAccessFile(partFile(uploadId).toFile(), "rw")) {
+            file.setLength(size);
+        } catch (IOException e) {
+            redis.delete(key);
+            throw e;
+        }
+        return toVO(uploadId, size, chunkSize, new byte[0]);
+    }
+
+    /**
+     * Write one chunk at {@code offset}; repeating a chunk overwrites it.
+     * @param sha256 hex SHA-256 of the chunk body
+     * @throws IllegalArgumentException if the upload does not exist, or the offset, length or checksum is wrong
+     * @throws IllegalStateException if the upload is being committed, or the commit started while the chunk was written
+     */
+    public void writeChunk(String uploadId, long offset, String sha256, InputStream in) throws IOException {
+        Map<String, String> session = session(uploadId);
+        if (sha256 == null || !SHA256_HEX.matcher(sha256.trim()).matches()) {
+            throw new IllegalArgumentException("缺少或无效的分片 SHA-256");
+        }
+        long size = Long.parseLong(session.get("size"));
+        int chunkSize = Integer.parseInt(session.get("chunkSize"));
+        if (offset < 0 || offset >= size || offset % chunkSize != 0) {
+            throw new IllegalArgumentException("分片偏移无效: " + offset);
+        }
+        long expected = Math.min(chunkSize, size - offset);
+
+        String lease = UUID.randomUUID().toString();
+        renewWriteLease(uploadId, lease);
+        try {
+            writeLeased(uploadId, lease, offset, expected, chunkSize, sha256.trim(), in);
+        } finally {
+            redis.opsForZSet().remove(KEY_PREFIX + uploadId + WRITERS_SUFFIX, lease);
+        }
+    }
+
+    private void writeLeased(String uploadId, String lease, long offset, long expected, int chunkSize, String sha256,
+                             InputStream in) throws IOException {
+        // 租约过半即续期，慢速上传不会在写入途中失去租约
+        long renewAt = System.currentTimeMillis() + writeLease.toMillis() / 2;
+        MessageDigest digest = DigestUtils.getSha256Digest();
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(COPY_BUFFER_SIZE, expected));
+        long written = 0;
+        try (FileChannel channel = FileChannel.open(partFile(uploadId), StandardOpenOption.WRITE)) {
+            int read;
+            while ((read = in.read(buffer.array(), 0, buffer.capacity())) != -1) {
+                if (written + read > expected) {
+                    throw new IllegalArgumentException("分片长度超过 " + expected + " bytes");
+                }
+                // 读取可能长时间阻塞，落盘前确认租约仍有效，避免在提交开始后写入文件
+                if (System.currentTimeMillis() >= renewAt) {
+                    renewWriteLease(uploadId, lease);
+                    renewAt = System.currentTimeMillis() + writeLease.toMillis() / 2;
+                }
+                digest.update(buffer.array(), 0, read);
+                buffer.limit(read).position(0);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer, offset + written + buffer.position());
+                }
+                buffer.clear();
+                written += read;
+            }
+        }
+        if (written != expected) {
+            throw new IllegalArgumentException("分片长度应为 " + expected + " bytes，实际 " + written);
+        }
+        if (!Hex.encodeHexString(digest.digest()).equalsIgnoreCase(sha256)) {
+            // 未标记为已接收，客户端重传即可覆盖
+            throw new IllegalArgumentException("分片校验失败");
+        }
+
+        // 租约保证提交不会在写入期间开始；标记前再确认一次，提交中的上传不再接收分片
+        if (Boolean.TRUE.equals(redis.opsForHash().hasKey(KEY_PREFIX + uploadId, "committing"))) {
+            throw new IllegalStateException("Upload is being committed: " + uploadId);
+        }
+        String chunksKey = KEY_PREFIX + uploadId + CHUNKS_SUFFIX;
+        redis.opsForValue().setBit(chunksKey, offset / chunkSize, true);
+        redis.expire(chunksKey, sessionTtl);
+        redis.expire(KEY_PREFIX + uploadId, sessionTtl);
+    }
+
+    /**
+     * @throws IllegalArgumentException if the upload does not exist
+     */
+    public UploadSessionVO status(String uploadId) {
+        Map<String, String> session = session(uploadId);
+        return toVO(uploadId, Long.parseLong(session.get("size")), Integer.parseInt(session.get("chunkSize")),
+                receivedChunks(uploadId));
+    }
+
+    /**
+     * Verify the assembled file and queue it on the {@link ApkIngestPipeline}, which takes over the file.
+     * @throws IllegalArgumentException if the upload does not exist or the file checksum differs from the one given
+     *         at initiation
+     * @throws IllegalStateException if chunks are missing, chunks are still being written, or a commit is already
+     *         running
+     * @throws RejectedExecutionException if the ingest queue is full; the upload can be committed again later
+     */
+    public ApkJobVO commit(String uploadId) throws IOException {
+        Map<String, String> session = session(uploadId);
+        String key = KEY_PREFIX + uploadId;
+        Long started = redis.execute(BEGIN_COMMIT, List.of(key, key + WRITERS_SUFFIX),
+                Long.toString(System.currentTimeMillis()));
+        if (started == null || started == 0) {
+            throw new IllegalStateException("Upload is already being committed: " + uploadId);
+        }
+        if (started < 0) {
+            throw new IllegalStateException("Chunks of upload " + uploadId + " are still being written");
+        }
+        boolean finished = false;
+        try {
+            long size = Long.parseLong(session.get("size"));
+            int chunkSize = Integer.parseInt(session.get("chunkSize"));
+            int missing = missingChunks(receivedChunks(uploadId), chunkCount(size, chunkSize)).size();
+            if (missing > 0) {
+                throw new IllegalStateException("尚有 " + missing + " 个分片未上传");
+            }
+
+            long startedAt = System.currentTimeMillis();
+            Path file = partFile(uploadId);
+            String fileHash;
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                channel.force(true);
+            }
+            // 分片乱序到达，整体摘要只能在组装后读取一次
+            try (InputStream in = Files.newInputStream(file)) {
+                fileHash = DigestUtils.sha256Hex(in);
+            }
+            String declared = session.get("sha256");
+            if (declared != null && !declared.equals(fileHash)) {
+                throw new IllegalArgumentException("文件校验失败");
+            }
+
+            // 移出 .uploads 再入队：任务独占该文件，sweep 删除无会话的 .part 时不会波及排队中的任务
+            Path jobFile = apkService.newIngestFile();
+            Files.move(file, jobFile, StandardCopyOption.ATOMIC_MOVE);
+            ApkJobVO job;
+            try {
+                job = ingestPipeline.enqueue(jobFile, fileHash, session.get("organization"), session.get("group"),
+                        Map.of("assemble", System.currentTimeMillis() - startedAt));
+            } catch (RejectedExecutionException e) {
+                Files.move(jobFile, file, StandardCopyOption.ATOMIC_MOVE);
+                throw e;
+            }
+            finished = true;
+            return job;
+        } finally {
+            if (finished) {
+                // 文件已交给入库任务，只删除会话
+                redis.delete(List.of(key, key + CHUNKS_SUFFIX, key + WRITERS_SUFFIX));
+            } else {
+                redis.opsForHash().delete(key, "committing");
+            }
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException if the upload does not exist
+     */
+    public void abort(String uploadId) throws IOException {
+        session(uploadId);
+        discard(uploadId);
+    }
+
+    // 清理会话已过期但文件仍在的上传
+    @Scheduled(fixedDelayString = "${app.upload.sweep-interval-ms:3600000}")
+    public void sweep() {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(uploadDir, "*" + PART_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                String uploadId = name.substring(0, name.length() - PART_SUFFIX.length());
+                if (!Boolean.TRUE.equals(redis.hasKey(KEY_PREFIX + uploadId))) {
+                    Files.deleteIfExists(file);
+                    log.info("Removed expired upload {}", uploadId);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("Upload sweep failed: {}", e.getMessage());
+        }
+    }
+
+    private void discard(String uploadId) throws IOException {
+        redis.delete(List.of(KEY_PREFIX + uploadId, KEY_PREFIX + uploadId + CHUNKS_SUFFIX,
+                KEY_PREFIX + uploadId + WRITERS_SUFFIX));
+        Files.deleteIfExists(partFile(uploadId));
+    }
+
+    private Map<String, String> session(String uploadId) {
+        if (uploadId == null || !uploadId.matches("[0-9a-f]{32}")) {
+            throw new IllegalArgumentException(NOT_FOUND_MESSAGE + uploadId);
+        }
+        Map<Object, Object> entries = redis.opsForHash().entries(KEY_PREFIX + uploadId);
+        // 只有发起者可以继续上传
+        if (entries.isEmpty() || !currentOwner().equals(entries.get("owner"))) {
+            throw new IllegalArgumentException(NOT_FOUND_MESSAGE + uploadId);
+        }
+        Map<String, String> session = new HashMap<>();
+        entries.forEach((k, v) -> session.put((String) k, (String) v));
+        return session;
+    }
+
+    private void renewWriteLease(String uploadId, String lease) {
+        String key = KEY_PREFIX + uploadId;
+        long expiresAt = System.currentTimeMillis() + writeLease.toMillis();
+        Long acquired = redis.execute(ACQUIRE_WRITE_LEASE, List.of(key, key + WRITERS_SUFFIX),
+                lease, Long.toString(expiresAt), Long.toString(sessionTtl.toSeconds()));
+        if (acquired == null || acquired == 0) {
+            throw new IllegalStateException("Upload is being committed: " + uploadId);
+        }
+    }
+
+    private byte[] receivedChunks(String uploadId) {
+        byte[] key = (KEY_PREFIX + uploadId + CHUNKS_SUFFIX).getBytes(StandardCharsets.UTF_8);
+        // 位图是二进制值，绕过 String 序列化直接读取
+        byte[] bitmap = redis.execute((RedisCallback<byte[]>) connection -> connection.stringCommands().get(key));
+        return bitmap == null ? new byte[0] : bitmap;
+    }
+
+    private UploadSessionVO toVO(String uploadId, long size, int chunkSize, byte[] received) {
+        int chunkCount = chunkCount(size, chunkSize);
+        Long ttl = redis.getExpire(KEY_PREFIX + uploadId);
+        Instant expiresAt = ttl == null || ttl < 0 ? null : Instant.now().plusSeconds(ttl);
+        return new UploadSessionVO(uploadId, size, chunkSize, chunkCount, missingChunks(received, chunkCount), expiresAt);
+    }
+
+    private static List<Integer> missingChunks(byte[] received, int chunkCount) {
+        List<Integer> missing = new ArrayList<>();
+        for (int i = 0; i < chunkCount; i++) {
+            // SETBIT 的位序：字节内最高位为偏移 0
+            boolean set = (i >> 3) < received.length && (received[i >> 3] & (0x80 >>> (i & 7))) != 0;
+            if (!set) {
+                missing.add(i);
+            }
+        }
+        return missing;
+    }
+
+    private static int chunkCount(long size, int chunkSize) {
+        return (int) ((size + chunkSize - 1) / chunkSize);
+    }
+
+    private Path partFile(String uploadId) {
+        return uploadDir.resolve(uploadId + PART_SUFFIX);
+    }
+
+    private static void putIfText(Map<String, String> map, String field, String value) {
+        if (StringUtils.hasText(value)) {
+            map.put(field, value.trim());
+        }
+    }
+
+    private static String currentOwner() {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        return auth == null ? "" : auth.getName();
+    }
+}
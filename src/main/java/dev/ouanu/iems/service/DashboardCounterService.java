@@ -0,0 +1,240 @@
+package dev.ouanu.iems.service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import dev.ouanu.iems.entity.Device;
+import dev.ouanu.iems.mapper.DeviceMapper;
+import dev.ouanu.iems.mapper.OperatorMapper;
+import dev.ouanu.iems.repository.ApkRepository;
+
+/**
+ * Dashboard counters kept in one Redis hash and maintained incrementally on insert / update / delete.
+ * <p>
+ * Increments are applied after the surrounding transaction commits, so rolled-back writes never count.
+ * A periodic reconciliation recomputes the true counts and atomically swaps the hash, which bounds any drift
+ * (lost increments, Redis outages, writes made outside the services) to one reconciliation interval.
+ * <p>
+ * Known window: an increment applied to the live hash after the COUNT queries ran but before the rebuilt
+ * hash is renamed over it is overwritten by the rebuild. The resulting drift (at most the writes committed
+ * during one reconciliation, typically a few milliseconds) is corrected by the next reconciliation; the
+ * counters are a dashboard approximation and are not used for any decision.
+ */
+@Service
+public class DashboardCounterService {
+
+    public static final String KEY = "stats:counters";
+    private static final String REBUILD_KEY = "stats:counters:rebuild";
+    private static final String LOCK_KEY = "stats:counters:lock";
+    // 仅当锁仍归本实例持有时才删除，避免误删超时后被其他实例重新获取的锁
+    private static final RedisScript<Long> RELEASE_LOCK = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end",
+            Long.class);
+
+    public static final String OPERATORS = "operators";
+    public static final String DEVICES = "devices";
+    public static final String APKS = "apks";
+    public static final String DEVICES_ACTIVE = "devices:active";
+    public static final String DEVICES_LOCKED = "devices:locked";
+    public static final String DEVICES_GROUP_PREFIX = "devices:group:";
+    public static final String RECONCILED_AT = "reconciledAt";
+    // customer_group 为空的设备归入该分组
+    public static final String NO_GROUP = "-";
+
+    private final StringRedisTemplate redis;
+    private final OperatorMapper operatorMapper;
+    private final DeviceMapper deviceMapper;
+    private final ApkRepository apkRepository;
+    private final Logger log = LoggerFactory.getLogger(DashboardCounterService.class);
+
+    /**
+     * The part of a device that the breakdowns depend on.
+     */
+    public record DeviceState(boolean active, boolean locked, String group) {
+        public static DeviceState of(Device device) {
+            String group = device.getCustomerGroup();
+            return new DeviceState(Boolean.TRUE.equals(device.getActive()), Boolean.TRUE.equals(device.getLocked()),
+                    group == null || group.isBlank() ? NO_GROUP : group);
+        }
+    }
+
+    public DashboardCounterService(StringRedisTemplate redis,
+                                   OperatorMapper operatorMapper,
+                                   DeviceMapper deviceMapper,
+                                   ApkRepository apkRepository) {
+        this.redis = redis;
+        this.operatorMapper = operatorMapper;
+        this.deviceMapper = deviceMapper;
+        this.apkRepository = apkRepository;
+    }
+
+    public void deviceAdded(Device device) {
+        DeviceState state = DeviceState.of(device);
+        afterCommit(() -> applyDevice(state, 1));
+    }
+
+    public void deviceRemoved(Device device) {
+        DeviceState state = DeviceState.of(device);
+        afterCommit(() -> applyDevice(state, -1));
+    }
+
+    public void deviceChanged(DeviceState before, DeviceState after) {
+        if (before.equals(after)) {
+            return;
+        }
+        afterCommit(() -> {
+            Map<String, Long> delta = new HashMap<>();
+            if (before.active() != after.active()) delta.put(DEVICES_ACTIVE, after.active() ? 1L : -1L);
+            if (before.locked() != after.locked()) delta.put(DEVICES_LOCKED, after.locked() ? 1L : -1L);
+            if (!before.group().equals(after.group())) {
+                delta.put(DEVICES_GROUP_PREFIX + before.group(), -1L);
+                delta.put(DEVICES_GROUP_PREFIX + after.group(), 1L);
+            }
+            increment(delta);
+        });
+    }
+
+    public void operatorAdded() {
+        afterCommit(() -> increment(Map.of(OPERATORS, 1L)));
+    }
+
+    public void operatorRemoved() {
+        afterCommit(() -> increment(Map.of(OPERATORS, -1L)));
+    }
+
+    public void apksAdded(long n) {
+        afterCommit(() -> increment(Map.of(APKS, n)));
+    }
+
+    public void apksRemoved(long n) {
+        afterCommit(() -> increment(Map.of(APKS, -n)));
+    }
+
+    /**
+     * Current counters; rebuilt synchronously on first use when the hash does not exist yet.
+     *
+     * @throws IllegalStateException if the hash is still missing after the rebuild attempt (another instance
+     *                               holds the reconciliation lock, or the rebuild failed), so callers can fall
+     *                               back to counting directly instead of reporting zeros
+     */
+    public Map<String, Long> snapshot() {
+        Map<Object, Object> raw = redis.opsForHash().entries(KEY);
+        if (raw.isEmpty()) {
+            reconcile();
+            raw = redis.opsForHash().entries(KEY);
+            if (raw.isEmpty()) {
+                throw new IllegalStateException("Dashboard counters are not available yet");
+            }
+        }
+        Map<String, Long> counters = new HashMap<>();
+        raw.forEach((k, v) -> counters.put(k.toString(), Long.parseLong(v.toString())));
+        return counters;
+    }
+
+    /**
+     * Recompute true counts and swap them in. Only one instance reconciles at a time.
+     */
+    @Scheduled(initialDelayString = "${app.stats.reconcile-initial-delay-ms:60000}",
+               fixedDelayString = "${app.stats.reconcile-interval-ms:600000}")
+    public void reconcile() {
+        String token = UUID.randomUUID().toString();
+        Boolean acquired = redis.opsForValue().setIfAbsent(LOCK_KEY, token, Duration.ofMinutes(5));
+        if (!Boolean.TRUE.equals(acquired)) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        try {
+            Map<String, String> fresh = new HashMap<>();
+            fresh.put(OPERATORS, Long.toString(operatorMapper.count()));
+            fresh.put(APKS, Long.toString(apkRepository.count()));
+
+            Map<String, Object> state = deviceMapper.countByState();
+            fresh.put(DEVICES, Long.toString(toLong(state.get("total"))));
+            fresh.put(DEVICES_ACTIVE, Long.toString(toLong(state.get("active"))));
+            fresh.put(DEVICES_LOCKED, Long.toString(toLong(state.get("locked"))));
+            List<Map<String, Object>> groups = deviceMapper.countByCustomerGroup();
+            Map<String, Long> byGroup = new HashMap<>();
+            for (Map<String, Object> row : groups) {
+                Object group = row.get("customerGroup");
+                String name = group == null || group.toString().isBlank() ? NO_GROUP : group.toString();
+                byGroup.merge(name, toLong(row.get("total")), Long::sum);
+            }
+            byGroup.forEach((group, count) -> fresh.put(DEVICES_GROUP_PREFIX + group, Long.toString(count)));
+            fresh.put(RECONCILED_AT, Long.toString(System.currentTimeMillis()));
+
+            // 先写临时 key 再 RENAME，读者不会看到半成品
+            redis.delete(REBUILD_KEY);
+            redis.opsForHash().putAll(REBUILD_KEY, fresh);
+            redis.rename(REBUILD_KEY, KEY);
+            log.debug("Dashboard counters reconciled in {} ms", System.currentTimeMillis() - start);
+        } catch (RuntimeException e) {
+            log.warn("Dashboard counter reconciliation failed: {}", e.getMessage());
+        } finally {
+            try {
+                redis.execute(RELEASE_LOCK, List.of(LOCK_KEY), token);
+            } catch (RuntimeException e) {
+                // 释放失败时锁会在 TTL 到期后自动失效
+                log.warn("Failed to release dashboard counter lock: {}", e.getMessage());
+            }
+        }
+    }
+
+    private void applyDevice(DeviceState state, long sign) {
+        Map<String, Long> delta = new HashMap<>();
+        delta.put(DEVICES, sign);
+        if (state.active()) delta.put(DEVICES_ACTIVE, sign);
+        if (state.locked()) delta.put(DEVICES_LOCKED, sign);
+        delta.put(DEVICES_GROUP_PREFIX + state.group(), sign);
+        increment(delta);
+    }
+
+    private void increment(Map<String, Long> delta) {
+        try {
+            // 计数 hash 尚未建立时不增量，等待首次读取或定时对账生成完整快照
+            if (!Boolean.TRUE.equals(redis.hasKey(KEY))) {
+                return;
+            }
+            redis.executePipelined((RedisCallback<Object>) connection -> {
+                byte[] key = KEY.getBytes(StandardCharsets.UTF_8);
+                delta.forEach((field, by) ->
+                        connection.hashCommands().hIncrBy(key, field.getBytes(StandardCharsets.UTF_8), by));
+                return null;
+            });
+        } catch (RuntimeException e) {
+            // 计数仅为看板参考，失败由下次对账修正
+            log.warn("Failed to update dashboard counters: {}", e.getMessage());
+        }
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private static long toLong(Object value) {
+        return value instanceof Number n ? n.longValue() : 0L;
+    }
+}
@@ -0,0 +1,220 @@
+package dev.ouanu.iems.service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import dev.ouanu.iems.entity.Device;
+import dev.ouanu.iems.entity.DeviceDimensionDelta;
+import dev.ouanu.iems.mapper.DeviceAnalyticsMapper;
+import dev.ouanu.iems.vo.DistributionEntryVO;
+import dev.ouanu.iems.vo.TimeSeriesPointVO;
+
+/**
+ * Fleet composition analytics answered from pre-aggregated rollups instead of scans of {@code devices}.
+ * <p>
+ * Device writes call the {@code record*} methods inside their transaction; the rollup is applied after that
+ * transaction commits, so a rolled-back write never counts. A crash between the two commits loses that one rollup.
+ */
+@Service
+public class DeviceAnalyticsService {
+
+    public static final String EVENT_REGISTERED = "registered";
+    public static final String EVENT_UPDATED = "updated";
+    public static final String EVENT_DELETED = "deleted";
+    public static final Set<String> EVENTS = Set.of(EVENT_REGISTERED, EVENT_UPDATED, EVENT_DELETED);
+
+    private static final ZoneOffset BUSINESS_ZONE = ZoneOffset.ofHours(8);
+    private static final String EMPTY_VALUE = "-";
+    private static final int MAX_DISTRIBUTION = 200;
+    private static final int MAX_HOURLY_BUCKETS = 24 * 31;
+    private static final int MAX_DAILY_BUCKETS = 366 * 2;
+
+    // 维度名与设备字段的对应关系（同时也是接口允许的 dimension 参数）
+    private static final Map<String, Function<Device, String>> DIMENSIONS = new LinkedHashMap<>();
+    static {
+        DIMENSIONS.put("brand", Device::getBrand);
+        DIMENSIONS.put("model", Device::getModel);
+        DIMENSIONS.put("androidVersion", Device::getAndroidVersion);
+        DIMENSIONS.put("appVersion", Device::getAppVersion);
+        DIMENSIONS.put("romVersion", Device::getRomVersion);
+    }
+
+    private static final Comparator<DeviceDimensionDelta> DELTA_ORDER = Comparator
+            .comparing(DeviceDimensionDelta::getDimension)
+            .thenComparing(DeviceDimensionDelta::getValue);
+
+    private final DeviceAnalyticsMapper analyticsMapper;
+    private final TransactionTemplate tx;
+    private final Logger log = LoggerFactory.getLogger(DeviceAnalyticsService.class);
+
+    /**
+     * Dimension values of a device captured before it is mutated.
+     */
+    public record Dimensions(Map<String, String> values) {
+        public static Dimensions of(Device device) {
+            Map<String, String> values = new LinkedHashMap<>();
+            DIMENSIONS.forEach((name, getter) -> values.put(name, normalize(getter.apply(device))));
+            return new Dimensions(values);
+        }
+    }
+
+    public DeviceAnalyticsService(DeviceAnalyticsMapper analyticsMapper, PlatformTransactionManager transactionManager) {
+        this.analyticsMapper = analyticsMapper;
+        // afterCommit 回调中原事务已提交但连接仍绑定，必须开启新事务才能提交汇总更新
+        this.tx = new TransactionTemplate(transactionManager);
+        this.tx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    public void recordCreated(Device device) {
+        List<DeviceDimensionDelta> deltas = new ArrayList<>();
+        Dimensions.of(device).values().forEach((dim, value) -> deltas.add(new DeviceDimensionDelta(dim, value, 1)));
+        apply(deltas, EVENT_REGISTERED);
+    }
+
+    public void recordUpdated(Dimensions before, Device after) {
+        Map<String, String> now = Dimensions.of(after).values();
+        List<DeviceDimensionDelta> deltas = new ArrayList<>();
+        before.values().forEach((dim, old) -> {
+            String current = now.get(dim);
+            if (!old.equals(current)) {
+                deltas.add(new DeviceDimensionDelta(dim, old, -1));
+                deltas.add(new DeviceDimensionDelta(dim, current, 1));
+            }
+        });
+        // 维度未变化（如仅修改 active / locked）不计为更新事件
+        if (!deltas.isEmpty()) {
+            apply(deltas, EVENT_UPDATED);
+        }
+    }
+
+    public void recordDeleted(Device device) {
+        List<DeviceDimensionDelta> deltas = new ArrayList<>();
+        Dimensions.of(device).values().forEach((dim, value) -> deltas.add(new DeviceDimensionDelta(dim, value, -1)));
+        apply(deltas, EVENT_DELETED);
+    }
+
+    /**
+     * Apply the rollup once the device write has committed, in a short transaction of its own, so device writes do
+     * not hold the shared event and dimension rows until they commit. Rows are always locked in (dimension, value)
+     * order, so two concurrent rollups cannot deadlock.
+     */
+    private void apply(List<DeviceDimensionDelta> deltas, String event) {
+        deltas.sort(DELTA_ORDER);
+        Runnable rollup = () -> {
+            try {
+                tx.executeWithoutResult(status -> {
+                    analyticsMapper.adjustDimensions(deltas);
+                    addEvent(event);
+                });
+            } catch (RuntimeException e) {
+                // 设备写入已提交，汇总失败只记录日志
+                log.warn("Failed to update device analytics for {}: {}", event, e.getMessage());
+            }
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    rollup.run();
+                }
+            });
+        } else {
+            rollup.run();
+        }
+    }
+
+    /**
+     * Current device count per value of one dimension, largest first.
+     */
+    @Transactional(readOnly = true)
+    public List<DistributionEntryVO> distribution(String dimension, int limit) {
+        if (!DIMENSIONS.containsKey(dimension)) {
+            throw new IllegalArgumentException("Unsupported dimension: " + dimension + ", expected one of " + DIMENSIONS.keySet());
+        }
+        int bounded = limit <= 0 ? 20 : Math.min(limit, MAX_DISTRIBUTION);
+        return analyticsMapper.selectDistribution(dimension, bounded);
+    }
+
+    /**
+     * Event counts per hour in [from, to), zero-filled.
+     */
+    @Transactional(readOnly = true)
+    public List<TimeSeriesPointVO> hourly(String event, LocalDateTime from, LocalDateTime to) {
+        checkEvent(event);
+        LocalDateTime start = from.truncatedTo(ChronoUnit.HOURS);
+        LocalDateTime end = to.truncatedTo(ChronoUnit.HOURS);
+        checkRange(start, end, ChronoUnit.HOURS.between(start, end), MAX_HOURLY_BUCKETS);
+        Map<LocalDateTime, Long> found = new LinkedHashMap<>();
+        analyticsMapper.selectHourly(event, start, end).forEach(p -> found.put(p.getBucket(), p.getCount()));
+        List<TimeSeriesPointVO> points = new ArrayList<>();
+        for (LocalDateTime t = start; t.isBefore(end); t = t.plusHours(1)) {
+            points.add(new TimeSeriesPointVO(t, found.getOrDefault(t, 0L)));
+        }
+        return points;
+    }
+
+    /**
+     * Event counts per day in [from, to), zero-filled.
+     */
+    @Transactional(readOnly = true)
+    public List<TimeSeriesPointVO> daily(String event, LocalDate from, LocalDate to) {
+        checkEvent(event);
+        checkRange(from, to, ChronoUnit.DAYS.between(from, to), MAX_DAILY_BUCKETS);
+        Map<LocalDateTime, Long> found = new LinkedHashMap<>();
+        analyticsMapper.selectDaily(event, from, to).forEach(p -> found.put(p.getBucket(), p.getCount()));
+        List<TimeSeriesPointVO> points = new ArrayList<>();
+        for (LocalDate d = from; d.isBefore(to); d = d.plusDays(1)) {
+            LocalDateTime bucket = d.atStartOfDay();
+            points.add(new TimeSeriesPointVO(bucket, found.getOrDefault(bucket, 0L)));
+        }
+        return points;
+    }
+
+    private void addEvent(String event) {
+        LocalDateTime now = LocalDateTime.now(BUSINESS_ZONE);
+        analyticsMapper.addHourlyEvent(now.truncatedTo(ChronoUnit.HOURS), event, 1);
+        analyticsMapper.addDailyEvent(now.toLocalDate(), event, 1);
+    }
+
+    private static void checkEvent(String event) {
+        if (!EVENTS.contains(event)) {
+            throw new IllegalArgumentException("Unsupported event: " + event + ", expected one of " + EVENTS);
+        }
+    }
+
+    private static void checkRange(Object from, Object to, long buckets, int max) {
+        if (buckets <= 0) {
+            throw new IllegalArgumentException("Invalid range: " + from + " .. " + to);
+        }
+        if (buckets > max) {
+            throw new IllegalArgumentException("Range too large: at most " + max + " buckets");
+        }
+    }
+
+    private static String normalize(String value) {
+        if (value == null || value.isEmpty()) {
+            return EMPTY_VALUE;
+        }
+        // 与列宽 VARCHAR(255) 保持一致
+        return value.length() > 255 ? value.substring(0, 255) : value;
+    }
+}
@@ -5,7 +5,6 @@ import java.time.Instant;
 import java.util.ArrayList;
 import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.UUID;
@@ -15,6 +14,7 @@ import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.cache.annotation.Caching;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -31,10 +31,16 @@ import dev.ouanu.iems.dto.UpdateDeviceDTO;
 import dev.ouanu.iems.entity.Device;
 import dev.ouanu.iems.entity.DeviceToken;
 import dev.ouanu.iems.mapper.DeviceMapper;
+import dev.ouanu.iems.query.SearchExecutor;
+import dev.ouanu.iems.query.SearchQuery;
+import dev.ouanu.iems.query.SearchSchema;
 import dev.ouanu.iems.repository.AccessTokenBlacklistRepository;
 import dev.ouanu.iems.repository.DeviceTokenRepository;
 import dev.ouanu.iems.util.JwtUtil;
+import dev.ouanu.iems.util.PageLimits;
 import dev.ouanu.iems.util.TokenUtils;
+import dev.ouanu.iems.vo.CursorPageVO;
+import dev.ouanu.iems.vo.DeviceSimpleVO;
 import dev.ouanu.iems.vo.DeviceVO;
 
 @Service
@@ -47,13 +53,19 @@ public class DeviceService {
     private final SnowflakeIdService snowflakeIdService;
     private final PermissionService permissionService;
     private final CacheManager cacheManager;
-    private static final int DEFAULT_LIMIT = 20;
-    private static final int MAX_LIMIT = 100;
+    private final SearchExecutor searchExecutor;
+    private final DashboardCounterService counters;
+    private final DeviceAnalyticsService analytics;
+    private final ActiveSubjectService activeSubjects;
+    private final ChangeOutboxService changes;
 
     public DeviceService(DeviceMapper deviceMapper,
                          JwtUtil jwtUtil,
                          DeviceTokenRepository deviceTokenRepository,
-                         AccessTokenBlacklistRepository blacklistRepository, SnowflakeIdService snowflakeIdService, PermissionService permissionService, CacheManager cacheManager) {
+                         AccessTokenBlacklistRepository blacklistRepository, SnowflakeIdService snowflakeIdService, PermissionService permissionService, CacheManager cacheManager,
+                         SearchExecutor searchExecutor, DashboardCounterService counters,
+                         DeviceAnalyticsService analytics, ActiveSubjectService activeSubjects,
+                         ChangeOutboxService changes) {
         this.deviceMapper = deviceMapper;
         this.jwtUtil = jwtUtil;
         this.deviceTokenRepository = deviceTokenRepository;
@@ -61,13 +73,17 @@ public class DeviceService {
         this.snowflakeIdService = snowflakeIdService;
         this.permissionService = permissionService;
         this.cacheManager = cacheManager;
+        this.searchExecutor = searchExecutor;
+        this.counters = counters;
+        this.analytics = analytics;
+        this.activeSubjects = activeSubjects;
+        this.changes = changes;
     }
 
     @Transactional
     @CacheEvict(value = {"devices:list","devices:byId","devices:byUuid"}, allEntries = true)
     public Device registerDevice(RegisterDeviceDTO dto) {
-        var dm = deviceMapper.selectByMacAddress(dto.getMacAddress());
-        if (dm != null) {
+        if (deviceMapper.existsByMacAddress(dto.getMacAddress())) {
             throw new IllegalStateException("Device with this MAC address already exists");
         }
         Device device = RegisterDeviceDTO.toEntity(dto);
@@ -76,6 +92,8 @@ public class DeviceService {
         // default values if null
         if (device.getActive() == null) device.setActive(true);
         if (device.getLocked() == null) device.setLocked(false);
+        // 新行的 version 由列默认值 0 起步
+        device.setVersion(0L);
         int ret = deviceMapper.insert(device);
         if (ret != 1) {
             throw new IllegalStateException("Failed to create device");
@@ -84,31 +102,63 @@ public class DeviceService {
         if (retP) {
             throw new IllegalStateException("Failed to create device permissions");
         }
+        analytics.recordCreated(device);
+        counters.deviceAdded(device);
+        publishChange(device, ChangeOutboxService.CREATED);
         return device;
     }
 
+    /**
+     * Partial update: fields left null in {@code dto} keep their stored value.
+     * @param expectedVersion version the client last read (from {@code If-Match}), null for an unconditional update
+     * @throws OptimisticLockingFailureException if the row changed since {@code expectedVersion} or concurrently
+     */
     @Transactional
     @CacheEvict(value = {"devices:list", "devices:byId", "devices:byUuid"}, allEntries = true)
-    public Device updateDevice(Long id, UpdateDeviceDTO dto) {
+    public Device updateDevice(Long id, UpdateDeviceDTO dto, Long expectedVersion) {
+        // 看板计数与维度汇总需要更新前的状态，这里仍需读取一次
         Device device = deviceMapper.selectById(id);
         if (device == null) {
             throw new IllegalArgumentException("Device not found");
         }
-        device.setActive(dto.getActive());
-        device.setLocked(dto.getLocked());
-        device.setModel(dto.getModel());
-        device.setBrand(dto.getBrand());
-        device.setSerialno(dto.getSerialno());
-        device.setAndroidVersion(dto.getAndroidVersion());
-        device.setAppVersion(dto.getAppVersion());
-        device.setRomVersion(dto.getRomVersion());
-        int ret = deviceMapper.update(device);
-        if (ret != 1) {
-            throw new IllegalStateException("Failed to update device");
-        }
+        if (expectedVersion != null && !expectedVersion.equals(device.getVersion())) {
+            throw new OptimisticLockingFailureException("Device was modified by someone else");
+        }
+        var before = DashboardCounterService.DeviceState.of(device);
+        var dimensionsBefore = DeviceAnalyticsService.Dimensions.of(device);
+        Device patch = new Device();
+        patch.setActive(dto.getActive());
+        patch.setLocked(dto.getLocked());
+        patch.setModel(dto.getModel());
+        patch.setBrand(dto.getBrand());
+        patch.setSerialno(dto.getSerialno());
+        patch.setAndroidVersion(dto.getAndroidVersion());
+        patch.setAppVersion(dto.getAppVersion());
+        patch.setRomVersion(dto.getRomVersion());
+        compareAndUpdate(device, patch);
+        analytics.recordUpdated(dimensionsBefore, device);
+        counters.deviceChanged(before, DashboardCounterService.DeviceState.of(device));
+        publishChange(device, ChangeOutboxService.UPDATED);
         return device;
     }
 
+    // 以读到的版本号做条件更新，成功后把 patch 合并回内存中的实体
+    private void compareAndUpdate(Device device, Device patch) {
+        int ret = deviceMapper.updateFields(device.getId(), device.getVersion(), patch);
+        if (ret != 1) {
+            throw new OptimisticLockingFailureException("Device " + device.getId() + " was modified concurrently");
+        }
+        if (patch.getActive() != null) device.setActive(patch.getActive());
+        if (patch.getLocked() != null) device.setLocked(patch.getLocked());
+        if (patch.getModel() != null) device.setModel(patch.getModel());
+        if (patch.getBrand() != null) device.setBrand(patch.getBrand());
+        if (patch.getSerialno() != null) device.setSerialno(patch.getSerialno());
+        if (patch.getAndroidVersion() != null) device.setAndroidVersion(patch.getAndroidVersion());
+        if (patch.getAppVersion() != null) device.setAppVersion(patch.getAppVersion());
+        if (patch.getRomVersion() != null) device.setRomVersion(patch.getRomVersion());
+        device.setVersion(device.getVersion() == null ? null : device.getVersion() + 1);
+    }
+
     @Transactional
     public void adminBatchUpdateDevices(List<Long> ids, Boolean active, Boolean locked) {
         if (active == null && locked == null) {
@@ -119,16 +169,13 @@ public class DeviceService {
         List<Device> devices = loadDevices(uniqueIds);
 
         for (Device device : devices) {
-            if (active != null) {
-                device.setActive(active);
-            }
-            if (locked != null) {
-                device.setLocked(locked);
-            }
-            int ret = deviceMapper.update(device);
-            if (ret != 1) {
-                throw new IllegalStateException("批量更新失败, 设备ID: " + device.getId());
-            }
+            var before = DashboardCounterService.DeviceState.of(device);
+            Device patch = new Device();
+            patch.setActive(active);
+            patch.setLocked(locked);
+            compareAndUpdate(device, patch);
+            counters.deviceChanged(before, DashboardCounterService.DeviceState.of(device));
+            publishChange(device, ChangeOutboxService.UPDATED);
         }
 
         evictBatchCaches(uniqueIds, devices);
@@ -179,16 +226,17 @@ public class DeviceService {
         if (Boolean.FALSE.equals(device.getActive()) || Boolean.TRUE.equals(device.getLocked())) {
             throw new SecurityException("Device is inactive or locked");
         }
-        device.setModel(dto.getModel());
-        device.setBrand(dto.getBrand());
-        device.setSerialno(dto.getSerialno());
-        device.setAndroidVersion(dto.getAndroidVersion());
-        device.setAppVersion(dto.getAppVersion());
-        device.setRomVersion(dto.getRomVersion());
-        int ret = deviceMapper.update(device);
-        if (ret != 1) {
-            throw new IllegalStateException("Failed to update device");
-        }
+        var dimensionsBefore = DeviceAnalyticsService.Dimensions.of(device);
+        Device patch = new Device();
+        patch.setModel(dto.getModel());
+        patch.setBrand(dto.getBrand());
+        patch.setSerialno(dto.getSerialno());
+        patch.setAndroidVersion(dto.getAndroidVersion());
+        patch.setAppVersion(dto.getAppVersion());
+        patch.setRomVersion(dto.getRomVersion());
+        compareAndUpdate(device, patch);
+        analytics.recordUpdated(dimensionsBefore, device);
+        publishChange(device, ChangeOutboxService.UPDATED);
         return DeviceVO.fromEntity(device);
     }
 
@@ -228,11 +276,7 @@ public class DeviceService {
     @Transactional(readOnly = true)
     @Cacheable(value = "devices:list", key = "#offset + ':' + #limit")
     public List<DeviceVO> listDevices(int offset, int limit) {
-        if (limit <= 0) {
-            limit = DEFAULT_LIMIT;
-        } else if (limit > MAX_LIMIT) {
-            limit = MAX_LIMIT;
-        }
+        limit = PageLimits.clamp(limit);
         if (offset < 0) {
             throw new IllegalArgumentException("Offset must be non-negative");
         }
@@ -241,25 +285,43 @@ public class DeviceService {
         return devices.stream().map(DeviceVO::fromEntity).toList();
     }
 
+    /**
+     * Keyset pagination: newest first, seeking past {@code afterId}; cost does not grow with page depth.
+     * @param afterId id of the last device of the previous page, null for the first page
+     * @param limit page size
+     * @return the page and the continuation token for the next one
+     */
     @Transactional(readOnly = true)
-    public List<DeviceVO> queryDevices(Map<String, Object> params) {
-        String offsetKey = "offset";
-        String limitKey = "limit";
-        if (params == null || params.isEmpty()) {
-            throw new IllegalArgumentException("Query params cannot be empty");
-        }
-        // validate offset/limit if provided
-        if (params.containsKey(offsetKey)) {
-            int offset = (int) params.get(offsetKey);
-            if (offset < 0) throw new IllegalArgumentException("Offset must be non-negative");
-        }
-        if (params.containsKey(limitKey)) {
-            int limit = (int) params.get(limitKey);
-            if (limit <= 0) params.put(limitKey, DEFAULT_LIMIT);
-            else if (limit > MAX_LIMIT) params.put(limitKey, MAX_LIMIT);
-        }
-        List<Device> devices = deviceMapper.query(params);
-        return devices.stream().map(DeviceVO::fromEntity).toList();
+    @Cacheable(value = "devices:list", key = "'after:' + #afterId + ':' + #limit")
+    public CursorPageVO<DeviceVO> listDevicesAfter(Long afterId, int limit) {
+        limit = PageLimits.clamp(limit);
+        List<DeviceVO> devices = deviceMapper.listAfter(afterId, limit).stream().map(DeviceVO::fromEntity).toList();
+        return CursorPageVO.of(devices, limit, DeviceVO::getId);
+    }
+
+    /**
+     * Keyset listing of summary rows ({@link DeviceSimpleVO}) read straight from a narrow projection.
+     * @param afterId id of the last device of the previous page, null for the first page
+     * @param limit page size
+     * @return the page and the continuation token for the next one
+     */
+    @Transactional(readOnly = true)
+    public CursorPageVO<DeviceSimpleVO> listDeviceSummariesAfter(Long afterId, int limit) {
+        limit = PageLimits.clamp(limit);
+        return CursorPageVO.of(deviceMapper.listSimpleAfter(afterId, limit), limit, DeviceSimpleVO::getId);
+    }
+
+    /**
+     * Search devices with a validated query; the next cursor is only set when results are ordered by id.
+     */
+    @Transactional(readOnly = true)
+    public CursorPageVO<DeviceVO> queryDevices(SearchQuery query) {
+        if (query.getSchema() != SearchSchema.DEVICES) {
+            throw new IllegalArgumentException("Not a device query");
+        }
+        List<Device> devices = searchExecutor.list(query);
+        List<DeviceVO> items = devices.stream().map(DeviceVO::fromEntity).toList();
+        return query.supportsCursor() ? CursorPageVO.of(items, query.getLimit(), DeviceVO::getId) : new CursorPageVO<>(items, null);
     }
 
     private void evictBatchCaches(Set<Long> ids, List<Device> devices) {
@@ -296,6 +358,15 @@ public class DeviceService {
             throw new IllegalStateException("Failed to delete device");
         }
         permissionService.deletePermission(id);
+        analytics.recordDeleted(device);
+        counters.deviceRemoved(device);
+        publishChange(device, ChangeOutboxService.DELETED);
+    }
+
+    // 事件携带 uuid，按 uuid 缓存的消费者无需回查
+    private void publishChange(Device device, String eventType) {
+        changes.append(ChangeOutboxService.DEVICE, device.getId(), eventType,
+                ChangeOutboxService.payload("uuid", device.getUuid(), "version", device.getVersion()));
     }
 
     // --- Authentication / token management for devices ---
@@ -319,7 +390,7 @@ public class DeviceService {
     }
 
     public ResponseEntity<dev.ouanu.iems.vo.TokenVO> login(String macAddress, String signatureHash) {
-        Device device = deviceMapper.selectByMacAddress(macAddress);
+        Device device = deviceMapper.selectCredentialsByMacAddress(macAddress);
         if (device == null || device.getSignatureHash() == null || !device.getSignatureHash().equals(signatureHash)) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(null);
         }
@@ -328,6 +399,7 @@ public class DeviceService {
 
         String accessToken = jwtUtil.generateToken(device.getId(), /*isRefresh*/ false, accessJti);
         String refreshToken = jwtUtil.generateToken(device.getId(), /*isRefresh*/ true, refreshJti);
+        activeSubjects.deviceAuthenticated(device.getId());
 
         DeviceToken token = new DeviceToken();
         token.setDeviceId(device.getId());
@@ -368,6 +440,7 @@ public class DeviceService {
 
         String accessJti = UUID.randomUUID().toString();
         String newAccessToken = jwtUtil.generateToken(token.getDeviceId(), false, accessJti);
+        activeSubjects.deviceAuthenticated(token.getDeviceId());
 
         if (token.getExpiresAt().isBefore(Instant.now().plus(Duration.ofHours(48)))) {
             token.setRevoked(true);
@@ -453,8 +526,7 @@ public class DeviceService {
     }
 
     public ResponseEntity<String> verifyDeviceExists(String macAddress) {
-        var device = deviceMapper.selectByMacAddress(macAddress);
-        if (device == null) {
+        if (!deviceMapper.existsByMacAddress(macAddress)) {
             return ResponseEntity.notFound().build();
         }
         return ResponseEntity.ok("Device exists");
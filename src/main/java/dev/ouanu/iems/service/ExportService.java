@@ -0,0 +1,229 @@
+package dev.ouanu.iems.service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.apache.ibatis.cursor.Cursor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.MinimalPrettyPrinter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import dev.ouanu.iems.entity.Device;
+import dev.ouanu.iems.entity.Operator;
+import dev.ouanu.iems.query.SearchExecutor;
+import dev.ouanu.iems.query.SearchQuery;
+import dev.ouanu.iems.query.TextMatchPlanner;
+
+/**
+ * Streams full device / operator exports straight from a MyBatis {@link Cursor} to the response,
+ * so memory stays constant regardless of fleet size.
+ */
+@Service
+public class ExportService {
+
+    public enum Format {
+        CSV("text/csv", ".csv"),
+        NDJSON("application/x-ndjson", ".ndjson");
+
+        private final String contentType;
+        private final String extension;
+
+        Format(String contentType, String extension) {
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+
+        public static Format fromName(String name) {
+            if (name == null || name.isBlank()) {
+                return CSV;
+            }
+            try {
+                return Format.valueOf(name.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unsupported export format: " + name);
+            }
+        }
+    }
+
+    private record Column<T>(String name, Function<T, Object> getter) {
+    }
+
+    // signature_hash / password_hash 不导出
+    private static final List<Column<Device>> DEVICE_COLUMNS = List.of(
+            new Column<>("id", d -> d.getId() == null ? null : d.getId().toString()),
+            new Column<>("uuid", Device::getUuid),
+            new Column<>("macAddress", Device::getMacAddress),
+            new Column<>("active", Device::getActive),
+            new Column<>("locked", Device::getLocked),
+            new Column<>("customerId", Device::getCustomerId),
+            new Column<>("customerGroup", Device::getCustomerGroup),
+            new Column<>("model", Device::getModel),
+            new Column<>("brand", Device::getBrand),
+            new Column<>("serialno", Device::getSerialno),
+            new Column<>("androidVersion", Device::getAndroidVersion),
+            new Column<>("appVersion", Device::getAppVersion),
+            new Column<>("romVersion", Device::getRomVersion),
+            new Column<>("createdAt", Device::getCreatedAt),
+            new Column<>("updatedAt", Device::getUpdatedAt));
+
+    private static final List<Column<Operator>> OPERATOR_COLUMNS = List.of(
+            new Column<>("id", o -> o.getId() == null ? null : o.getId().toString()),
+            new Column<>("uuid", Operator::getUuid),
+            new Column<>("displayName", Operator::getDisplayName),
+            new Column<>("phone", Operator::getPhone),
+            new Column<>("email", Operator::getEmail),
+            new Column<>("accountType", Operator::getAccountType),
+            new Column<>("department", Operator::getDepartment),
+            new Column<>("team", Operator::getTeam),
+            new Column<>("position", Operator::getPosition),
+            new Column<>("level", Operator::getLevel),
+            new Column<>("active", Operator::getActive),
+            new Column<>("createdAt", Operator::getCreatedAt),
+            new Column<>("updatedAt", Operator::getUpdatedAt));
+
+    private static final int FLUSH_EVERY_ROWS = 1000;
+    private static final char UTF8_BOM = '\uFEFF';
+
+    private final SearchExecutor searchExecutor;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate readOnlyTx;
+    private final Logger log = LoggerFactory.getLogger(ExportService.class);
+
+    public ExportService(SearchExecutor searchExecutor,
+                         ObjectMapper objectMapper,
+                         PlatformTransactionManager transactionManager) {
+        this.searchExecutor = searchExecutor;
+        this.objectMapper = objectMapper;
+        this.readOnlyTx = new TransactionTemplate(transactionManager);
+        this.readOnlyTx.setReadOnly(true);
+    }
+
+    /**
+     * Export devices matching the same filters as {@code /admin/devices/query}, without paging.
+     * Runs on the response-writing thread; the cursor lives inside its own read-only transaction.
+     */
+    public long exportDevices(SearchQuery query, Format format, OutputStream out) throws IOException {
+        return stream(() -> searchExecutor.<Device>stream(query), DEVICE_COLUMNS, format, out);
+    }
+
+    /**
+     * Export operators matching the same filters as {@code /admin/operators/query}, without paging.
+     */
+    public long exportOperators(SearchQuery query, Format format, OutputStream out) throws IOException {
+        return stream(() -> searchExecutor.<Operator>stream(TextMatchPlanner.plan(query)), OPERATOR_COLUMNS, format, out);
+    }
+
+    private <T> long stream(Supplier<Cursor<T>> query, List<Column<T>> columns,
+                            Format format, OutputStream out) throws IOException {
+        long start = System.currentTimeMillis();
+        try {
+            Long rows = readOnlyTx.execute(status -> {
+                try (Cursor<T> cursor = query.get()) {
+                    return format == Format.CSV ? writeCsv(cursor, columns, out) : writeNdjson(cursor, columns, out);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            log.info("Export finished: format={}, rows={}, took={} ms", format, rows, System.currentTimeMillis() - start);
+            return rows == null ? 0L : rows;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private <T> long writeCsv(Cursor<T> cursor, List<Column<T>> columns, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+        // BOM 让 Excel 正确识别 UTF-8 中文
+        writer.write(UTF8_BOM);
+        for (int i = 0; i < columns.size(); i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            writer.write(columns.get(i).name());
+        }
+        writer.write("\r\n");
+        long rows = 0;
+        for (T row : cursor) {
+            for (int i = 0; i < columns.size(); i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                Object value = columns.get(i).getter().apply(row);
+                if (value != null) {
+                    writeCsvField(writer, value.toString());
+                }
+            }
+            writer.write("\r\n");
+            if (++rows % FLUSH_EVERY_ROWS == 0) {
+                writer.flush();
+            }
+        }
+        writer.flush();
+        return rows;
+    }
+
+    private static void writeCsvField(Writer writer, String value) throws IOException {
+        boolean quote = false;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                quote = true;
+                break;
+            }
+        }
+        if (!quote) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        writer.write(value.replace("\"", "\"\""));
+        writer.write('"');
+    }
+
+    private <T> long writeNdjson(Cursor<T> cursor, List<Column<T>> columns, OutputStream out) throws IOException {
+        long rows = 0;
+        try (JsonGenerator gen = objectMapper.createGenerator(out, JsonEncoding.UTF8)) {
+            gen.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            // 每行一个对象，不使用默认的空格分隔符
+            gen.setPrettyPrinter(new MinimalPrettyPrinter(""));
+            for (T row : cursor) {
+                gen.writeStartObject();
+                for (Column<T> column : columns) {
+                    gen.writeFieldName(column.name());
+                    gen.writeObject(column.getter().apply(row));
+                }
+                gen.writeEndObject();
+                gen.writeRaw('\n');
+                if (++rows % FLUSH_EVERY_ROWS == 0) {
+                    gen.flush();
+                }
+            }
+            gen.flush();
+        }
+        return rows;
+    }
+}
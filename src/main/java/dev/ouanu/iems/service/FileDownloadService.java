@@ -0,0 +1,196 @@
+package dev.ouanu.iems.service;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Serves immutable stored files with single-range requests, strong-ETag conditionals and zero-copy transfer.
+ * <p>
+ * When the connector supports it (Tomcat NIO), the body is handed to the container as a sendfile request, which
+ * uses {@code FileChannel.transferTo} straight to the socket; otherwise the file channel is transferred to the
+ * response stream. {@code If-None-Match} answers 304, {@code Range} answers 206 (or 416), and {@code If-Range}
+ * falls back to the full body when the tag no longer matches, so an interrupted download resumes only against the
+ * same bytes. Multiple ranges are not supported and get the full body, as RFC 9110 allows.
+ */
+@Service
+public class FileDownloadService {
+
+    // Tomcat sendfile 约定的请求属性
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+    // 文件按内容寻址、永不原地修改，可长期缓存
+    public static final String CACHE_IMMUTABLE = "private, max-age=31536000, immutable";
+    // 同一 URL 之后可能返回不同内容（如增量下载的完整包回退）：每次按 ETag 重新验证
+    public static final String CACHE_REVALIDATE = "private, no-cache";
+
+    private final MeterRegistry meterRegistry;
+    private final Logger log = LoggerFactory.getLogger(FileDownloadService.class);
+
+    public FileDownloadService(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * @param etag strong entity tag including quotes, or null to disable conditional handling
+     * @param fileName download name for {@code Content-Disposition}, or null to serve inline
+     * @param kind metric tag, e.g. {@code apk} or {@code icon}
+     */
+    public void send(HttpServletRequest request, HttpServletResponse response, Path file, String etag,
+                     MediaType contentType, String fileName, String kind) throws IOException {
+        send(request, response, file, etag, contentType, fileName, kind, CACHE_IMMUTABLE);
+    }
+
+    /**
+     * Same as {@link #send(HttpServletRequest, HttpServletResponse, Path, String, MediaType, String, String)} with an
+     * explicit {@code Cache-Control}, for URLs whose response may change.
+     */
+    public void send(HttpServletRequest request, HttpServletResponse response, Path file, String etag,
+                     MediaType contentType, String fileName, String kind, String cacheControl) throws IOException {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "full";
+        try {
+            long length = Files.size(file);
+            response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+            response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl);
+            if (etag != null) {
+                response.setHeader(HttpHeaders.ETAG, etag);
+                if (matchesAny(request.getHeader(HttpHeaders.IF_NONE_MATCH), etag)) {
+                    outcome = "not-modified";
+                    response.setStatus(HttpStatus.NOT_MODIFIED.value());
+                    return;
+                }
+            }
+
+            long start = 0;
+            long end = length - 1;
+            String range = request.getHeader(HttpHeaders.RANGE);
+            if (range != null && ifRangeHolds(request.getHeader(HttpHeaders.IF_RANGE), etag)) {
+                List<HttpRange> ranges = parseRanges(range);
+                if (ranges.size() == 1) {
+                    HttpRange requested = ranges.get(0);
+                    long rangeStart = length == 0 ? 0 : requested.getRangeStart(length);
+                    long rangeEnd = length == 0 ? -1 : requested.getRangeEnd(length);
+                    if (rangeStart >= length || rangeStart > rangeEnd) {
+                        outcome = "unsatisfiable";
+                        response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                        response.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+                        return;
+                    }
+                    start = rangeStart;
+                    end = rangeEnd;
+                    outcome = "partial";
+                    response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+                    response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+                }
+            }
+
+            long count = end - start + 1;
+            response.setContentType(contentType.toString());
+            response.setContentLengthLong(count);
+            if (fileName != null) {
+                response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                        ContentDisposition.attachment().filename(fileName, StandardCharsets.UTF_8).build().toString());
+            }
+            if (HttpMethod.HEAD.matches(request.getMethod()) || count == 0) {
+                return;
+            }
+            if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+                // 由容器在响应提交后直接 transferTo 到 socket
+                request.setAttribute(SENDFILE_FILENAME, file.toAbsolutePath().toString());
+                request.setAttribute(SENDFILE_START, start);
+                request.setAttribute(SENDFILE_END, end + 1);
+            } else if (!transfer(file, start, count, response)) {
+                outcome = "aborted";
+                return;
+            }
+            DistributionSummary.builder("iems.download.bytes")
+                    .tag("kind", kind)
+                    .baseUnit("bytes")
+                    .description("Bytes handed out per download")
+                    .register(meterRegistry)
+                    .record(count);
+        } finally {
+            sample.stop(Timer.builder("iems.download")
+                    .tag("kind", kind)
+                    .tag("outcome", outcome)
+                    .description("Stored file downloads")
+                    .register(meterRegistry));
+        }
+    }
+
+    private boolean transfer(Path file, long start, long count, HttpServletResponse response) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            long remaining = count;
+            while (remaining > 0) {
+                long sent = channel.transferTo(position, remaining, out);
+                if (sent <= 0) {
+                    break;
+                }
+                position += sent;
+                remaining -= sent;
+            }
+            return true;
+        } catch (IOException e) {
+            // 设备网络中断很常见，客户端会用 Range 续传
+            log.debug("Download of {} aborted: {}", file.getFileName(), e.getMessage());
+            return false;
+        }
+    }
+
+    private static List<HttpRange> parseRanges(String range) {
+        try {
+            return HttpRange.parseRanges(range);
+        } catch (IllegalArgumentException e) {
+            // 无法解析的 Range 按无 Range 处理
+            return List.of();
+        }
+    }
+
+    // If-Range 只接受强 ETag；日期形式或不匹配时忽略 Range，返回完整内容
+    private static boolean ifRangeHolds(String ifRange, String etag) {
+        return ifRange == null || (etag != null && etag.equals(ifRange.trim()));
+    }
+
+    private static boolean matchesAny(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if ("*".equals(tag) || etag.equals(tag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,218 @@
+package dev.ouanu.iems.service;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import dev.ouanu.iems.apk.ApkMetadata;
+import dev.ouanu.iems.apk.IconRenderer;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Fixed-size icon renditions, keyed by the SHA-256 of the APK they come from.
+ * <p>
+ * At ingest the best readable launcher icon is scaled to every size in {@link #SIZES} and written to
+ * {@code <icons-dir>/<apk sha256>/<size>.png}. Because the key is the content hash, a rendition URL never changes
+ * meaning and can be cached forever; APKs sharing a blob share its renditions. Served bytes are kept in an LRU
+ * bounded by {@code app.icons.cache-max-bytes}, so listing pages do not hit the disk for every icon.
+ */
+@Service
+public class IconService {
+
+    public static final List<Integer> SIZES = List.of(48, 96, 192);
+    // 列表页默认使用的尺寸
+    public static final int DEFAULT_SIZE = 96;
+
+    private static final Pattern SHA256_HEX = Pattern.compile("[0-9a-f]{64}");
+    private static final String ORIGINAL = "original";
+
+    private final Path iconStorageLocation;
+    private final long cacheMaxBytes;
+    // 访问顺序的 LinkedHashMap 即 LRU；读写都需持有 this 锁
+    private final LinkedHashMap<String, byte[]> cache = new LinkedHashMap<>(256, 0.75f, true);
+    private long cachedBytes;
+    private final Counter hits;
+    private final Counter misses;
+
+    public IconService(MeterRegistry meterRegistry,
+                       @Value("${file.storage.icons-dir:./storage/icons}") String iconsDir,
+                       @Value("${app.icons.cache-max-bytes:16777216}") long cacheMaxBytes) {
+        this.iconStorageLocation = Paths.get(iconsDir).toAbsolutePath().normalize();
+        this.cacheMaxBytes = cacheMaxBytes;
+        this.hits = Counter.builder("iems.icons.cache").tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder("iems.icons.cache").tag("result", "miss").register(meterRegistry);
+        Gauge.builder("iems.icons.cache.bytes", this, IconService::cachedBytes)
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Write the renditions for {@code hash} unless they already exist.
+     * @return the sizes available, empty if no icon could be decoded
+     */
+    public List<Integer> render(String hash, List<ApkMetadata.Icon> icons) throws IOException {
+        Path dir = directoryOf(hash);
+        List<Integer> existing = availableSizes(hash);
+        if (existing.size() == SIZES.size()) {
+            return existing;
+        }
+        BufferedImage source = IconRenderer.decodeLargest(icons);
+        if (source == null) {
+            return List.of();
+        }
+        Files.createDirectories(dir);
+        for (int size : SIZES) {
+            Path target = renditionPath(hash, size);
+            Path temp = dir.resolve("." + UUID.randomUUID() + ".tmp");
+            try {
+                Files.write(temp, IconRenderer.renderPng(source, size));
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        }
+        return SIZES;
+    }
+
+    /**
+     * Keep the largest raster icon unscaled, for APKs whose icons cannot be decoded for rendering, e.g. WebP, which
+     * has no {@code ImageIO} reader in the JDK. The file is stored with the renditions as
+     * {@code <icons-dir>/<apk sha256>/original<ext>} and deleted together with them.
+     * @return the stored path relative to the storage base directory, or null if there is no raster icon
+     */
+    public String storeOriginal(String hash, List<ApkMetadata.Icon> icons) throws IOException {
+        Path dir = directoryOf(hash);
+        ApkMetadata.Icon icon = IconRenderer.largestRaster(icons);
+        if (icon == null) {
+            return null;
+        }
+        Path target = dir.resolve(ORIGINAL + IconRenderer.extensionOf(icon));
+        if (!Files.isRegularFile(target)) {
+            Files.createDirectories(dir);
+            Path temp = dir.resolve("." + UUID.randomUUID() + ".tmp");
+            try {
+                Files.write(temp, icon.data());
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        }
+        return iconStorageLocation.getParent().relativize(target).toString().replace('\\', '/');
+    }
+
+    public List<Integer> availableSizes(String hash) {
+        List<Integer> sizes = new ArrayList<>();
+        for (int size : SIZES) {
+            if (Files.isRegularFile(renditionPath(hash, size))) {
+                sizes.add(size);
+            }
+        }
+        return sizes;
+    }
+
+    /**
+     * @return the PNG bytes, or null if there is no such rendition
+     */
+    public byte[] load(String hash, int size) throws IOException {
+        if (hash == null || !SHA256_HEX.matcher(hash).matches() || !SIZES.contains(size)) {
+            return null;
+        }
+        String key = hash + "/" + size;
+        synchronized (this) {
+            byte[] cached = cache.get(key);
+            if (cached != null) {
+                hits.increment();
+                return cached;
+            }
+        }
+        misses.increment();
+        byte[] data;
+        try {
+            data = Files.readAllBytes(renditionPath(hash, size));
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+        put(key, data);
+        return data;
+    }
+
+    /**
+     * Remove the renditions of {@code hash}, once no APK references that content any more.
+     */
+    public void delete(String hash) throws IOException {
+        Path dir = directoryOf(hash);
+        synchronized (this) {
+            for (int size : SIZES) {
+                byte[] removed = cache.remove(hash + "/" + size);
+                if (removed != null) {
+                    cachedBytes -= removed.length;
+                }
+            }
+        }
+        if (!Files.isDirectory(dir)) {
+            return;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            for (Path file : files) {
+                Files.deleteIfExists(file);
+            }
+        }
+        Files.deleteIfExists(dir);
+    }
+
+    /**
+     * @return the storage path of a rendition, relative to the storage base directory like {@code Apk.iconPath}
+     */
+    public String relativePath(String hash, int size) {
+        return iconStorageLocation.getParent().relativize(renditionPath(hash, size)).toString().replace('\\', '/');
+    }
+
+    public static String urlPath(String hash, int size) {
+        return "/api/icons/" + hash + "/" + size + ".png";
+    }
+
+    private synchronized void put(String key, byte[] data) {
+        if (data.length > cacheMaxBytes) {
+            return;
+        }
+        byte[] previous = cache.put(key, data);
+        cachedBytes += data.length - (previous == null ? 0 : previous.length);
+        Iterator<Map.Entry<String, byte[]>> eldest = cache.entrySet().iterator();
+        while (cachedBytes > cacheMaxBytes && eldest.hasNext()) {
+            cachedBytes -= eldest.next().getValue().length;
+            eldest.remove();
+        }
+    }
+
+    private synchronized long cachedBytes() {
+        return cachedBytes;
+    }
+
+    private Path renditionPath(String hash, int size) {
+        return directoryOf(hash).resolve(size + ".png");
+    }
+
+    private Path directoryOf(String hash) {
+        if (hash == null || !SHA256_HEX.matcher(hash).matches()) {
+            throw new IllegalArgumentException("Invalid SHA-256: " + hash);
+        }
+        return iconStorageLocation.resolve(hash);
+    }
+}
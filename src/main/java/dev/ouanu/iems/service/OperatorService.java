@@ -2,11 +2,9 @@ package dev.ouanu.iems.service;
 
 import java.time.Duration;
 import java.time.Instant;
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.UUID;
@@ -16,6 +14,7 @@ import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.cache.annotation.Caching;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -35,10 +34,17 @@ import dev.ouanu.iems.entity.AccessTokenBlacklist;
 import dev.ouanu.iems.entity.Operator;
 import dev.ouanu.iems.entity.OperatorToken;
 import dev.ouanu.iems.mapper.OperatorMapper;
+import dev.ouanu.iems.query.SearchExecutor;
+import dev.ouanu.iems.query.SearchQuery;
+import dev.ouanu.iems.query.SearchSchema;
+import dev.ouanu.iems.query.TextMatchPlanner;
 import dev.ouanu.iems.repository.AccessTokenBlacklistRepository;
 import dev.ouanu.iems.repository.OperatorTokenRepository;
 import dev.ouanu.iems.util.JwtUtil;
+import dev.ouanu.iems.util.PageLimits;
 import dev.ouanu.iems.util.TokenUtils;
+import dev.ouanu.iems.vo.CursorPageVO;
+import dev.ouanu.iems.vo.OperatorSimpleVO;
 import dev.ouanu.iems.vo.OperatorVO;
 import dev.ouanu.iems.vo.TokenVO;
 
@@ -50,12 +56,14 @@ public class OperatorService {
     private final JwtUtil jwtUtil;
     private final OperatorTokenRepository operatorTokenRepository;
     private final AccessTokenBlacklistRepository blacklistRepository;
-    private static final int DEFAULT_LIMIT = 20;
-    private static final int MAX_LIMIT = 100;
     private final SnowflakeIdService snowflakeIdService;
     private final RedisTokenService redisTokenService;
     private final CacheManager cacheManager;
     private final PermissionService permissionService;
+    private final SearchExecutor searchExecutor;
+    private final DashboardCounterService counters;
+    private final ActiveSubjectService activeSubjects;
+    private final ChangeOutboxService changes;
 
     public OperatorService(OperatorMapper operatorMapper,
                            PasswordEncoder passwordEncoder,
@@ -65,7 +73,11 @@ public class OperatorService {
                            SnowflakeIdService snowflakeIdService,
                            RedisTokenService redisTokenService,
                            CacheManager cacheManager,
-                           PermissionService permissionService) {
+                           PermissionService permissionService,
+                           SearchExecutor searchExecutor,
+                           DashboardCounterService counters,
+                           ActiveSubjectService activeSubjects,
+                           ChangeOutboxService changes) {
         this.snowflakeIdService = snowflakeIdService;
         this.operatorMapper = operatorMapper;
         this.passwordEncoder = passwordEncoder;
@@ -75,6 +87,10 @@ public class OperatorService {
         this.redisTokenService = redisTokenService;
         this.cacheManager = cacheManager;
         this.permissionService = permissionService;
+        this.searchExecutor = searchExecutor;
+        this.counters = counters;
+        this.activeSubjects = activeSubjects;
+        this.changes = changes;
     }
 
     /**
@@ -94,10 +110,14 @@ public class OperatorService {
         Operator operator = dto.toEntity(passwordEncoder);
         operator.setId(snowflakeIdService.nextIdAndPersist(BizType.OPERATOR));
         operator.setUuid(UUID.randomUUID().toString());
+        operator.setVersion(0L);
         int ret = operatorMapper.insert(operator);
         if (ret != 1) {
             throw new IllegalStateException("Failed to create operator");
         }
+        counters.operatorAdded();
+        changes.append(ChangeOutboxService.OPERATOR, operator.getId(), ChangeOutboxService.CREATED,
+                ChangeOutboxService.payload("version", operator.getVersion()));
         return operator;
     }
 
@@ -117,6 +137,7 @@ public class OperatorService {
 
         String accessToken = jwtUtil.generateToken(operator.getId(), /*isRefresh*/ false, accessJti);
         String refreshToken = jwtUtil.generateToken(operator.getId(), /*isRefresh*/ true, refreshJti);
+        activeSubjects.operatorAuthenticated(operator.getId());
 
         // 保存 refresh 的元数据到 DB/Mongo（只存 refreshHash + refreshJti）
         OperatorToken token = new OperatorToken();
@@ -172,6 +193,7 @@ public class OperatorService {
         // 生成新的 access token（每次都生成）
         String accessJti = UUID.randomUUID().toString();
         String newAccessToken = jwtUtil.generateToken(token.getOperatorId(), false, accessJti);
+        activeSubjects.operatorAuthenticated(token.getOperatorId());
 
         // 如果距离 refresh 到期 48 小时内 -> rotate（撤销旧记录并新建）
         if (token.getExpiresAt().isBefore(Instant.now().plus(Duration.ofHours(48)))) {
@@ -278,11 +300,10 @@ public class OperatorService {
     @CacheEvict(value = {"operators:list","operators:byId"}, allEntries = true)
     public ResponseEntity<String> changePassword(ChangePasswordDTO dto) {
         var auth = SecurityContextHolder.getContext().getAuthentication();
-        if (auth == null) {
+        if (auth == null || !(auth.getPrincipal() instanceof Long operatorId)) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Unauthorized");
         }
-        String phone = auth.getName();
-        Operator operator = operatorMapper.selectByPhone(phone);
+        Operator operator = operatorMapper.selectById(operatorId);
         if (operator == null) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Operator unfounded");
         }
@@ -292,11 +313,15 @@ public class OperatorService {
         if (!passwordEncoder.matches(dto.getCurrentPassword(), operator.getPasswordHash())) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Old password is incorrect");
         }
-        operator.setPasswordHash(passwordEncoder.encode(dto.getNewPassword()));
-        int ret = operatorMapper.update(operator);
+        Operator patch = new Operator();
+        patch.setPasswordHash(passwordEncoder.encode(dto.getNewPassword()));
+        // 以校验旧密码时读到的版本号更新，期间密码被改动过则拒绝
+        int ret = operatorMapper.updateFields(operatorId, operator.getVersion(), patch);
         if (ret != 1) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Failed to change password");
+            return ResponseEntity.status(HttpStatus.CONFLICT).body("Password was changed concurrently, please retry");
         }
+        changes.append(ChangeOutboxService.OPERATOR, operatorId, ChangeOutboxService.UPDATED,
+                ChangeOutboxService.payload("version", operator.getVersion() + 1, "credentials", true));
         return ResponseEntity.ok("Password changed successfully");
     }
 
@@ -308,41 +333,41 @@ public class OperatorService {
     @Transactional
     @CacheEvict(value = "operators:byId", key = "#dto.id")
     public void adminResetPassword(AdminResetPasswordDTO dto) {
-        // verify auth's permission
-        Operator operator = operatorMapper.selectById(dto.getId());
-        if (operator == null) {
+        Operator patch = new Operator();
+        patch.setPasswordHash(passwordEncoder.encode(dto.getNewPassword()));
+        // 单条语句，无需先读；影响 0 行即不存在
+        if (operatorMapper.updateFields(dto.getId(), null, patch) != 1) {
             throw new IllegalArgumentException("Operator not found");
         }
-        operator.setPasswordHash(passwordEncoder.encode(dto.getNewPassword()));
-        int ret = operatorMapper.update(operator);
-        if (ret != 1) {
-            throw new IllegalStateException("Failed to reset password");
-        }
+        changes.append(ChangeOutboxService.OPERATOR, dto.getId(), ChangeOutboxService.UPDATED,
+                ChangeOutboxService.payload("credentials", true));
     }
 
     /**
-     * Admin update operator profile
+     * Admin update operator profile in one statement without reading the row first; null fields are left unchanged
      * @param id the operator ID
      * @param dto the operator DTO
-     * @return 
+     * @param expectedVersion version the client last read (from {@code If-Match}), null for an unconditional update
+     * @return the new version when {@code expectedVersion} was given, otherwise null
+     * @throws OptimisticLockingFailureException if the operator exists but is no longer at {@code expectedVersion}
      */
     @Transactional
     @Caching(evict = {
         @CacheEvict(value = "operators:list", allEntries = true),
         @CacheEvict(value = "operators:byId", key = "#id")
     })
-    public Operator adminUpdateProfile(Long id, UpdateOperatorDTO dto) {
-        // verify auth's permission
-        Operator operator = operatorMapper.selectById(id);
-        if (operator == null) {
-            throw new IllegalArgumentException("Operator not found");
-        }
-        updateOperatorFields(dto, operator);
-        int ret = operatorMapper.update(operator);
+    public Long adminUpdateProfile(Long id, UpdateOperatorDTO dto, Long expectedVersion) {
+        int ret = operatorMapper.updateFields(id, expectedVersion, toPatch(dto));
         if (ret != 1) {
-            throw new IllegalStateException("Failed to update profile");
+            // 区分版本冲突与记录不存在只在失败路径上多查一次
+            if (expectedVersion != null && operatorMapper.existsById(id)) {
+                throw new OptimisticLockingFailureException("Operator was modified by someone else");
+            }
+            throw new IllegalArgumentException("Operator not found");
         }
-        return operator;
+        Long version = expectedVersion == null ? null : expectedVersion + 1;
+        changes.append(ChangeOutboxService.OPERATOR, id, ChangeOutboxService.UPDATED, ChangeOutboxService.payload("version", version));
+        return version;
     }
 
     @Transactional
@@ -361,22 +386,14 @@ public class OperatorService {
             uniqueIds.add(id);
         }
 
-        List<Operator> operators = new ArrayList<>(uniqueIds.size());
+        // 每个操作员一条部分列更新，不再逐个预读；任一不存在则整体回滚
+        Operator patch = toPatch(updates);
         for (Long id : uniqueIds) {
-            Operator operator = operatorMapper.selectById(id);
-            if (operator == null) {
+            if (operatorMapper.updateFields(id, null, patch) != 1) {
                 throw new IllegalArgumentException("操作员不存在: " + id);
             }
-            operators.add(operator);
-        }
-
-        for (Operator operator : operators) {
-            updateOperatorFields(updates, operator);
-            int ret = operatorMapper.update(operator);
-            if (ret != 1) {
-                throw new IllegalStateException("批量更新失败, 操作员ID: " + operator.getId());
-            }
         }
+        changes.appendAll(ChangeOutboxService.OPERATOR, uniqueIds, ChangeOutboxService.UPDATED, null);
 
         evictBatchCaches(uniqueIds);
     }
@@ -393,23 +410,38 @@ public class OperatorService {
     })
     public OperatorVO updateProfile(UpdateOperatorDTO dto) {
         var auth = SecurityContextHolder.getContext().getAuthentication();
-        if (auth == null) {
+        if (auth == null || !(auth.getPrincipal() instanceof Long operatorId)) {
             throw new SecurityException("Unauthorized");
         }
-        String phone = auth.getName();
-        Operator operator = operatorMapper.selectByPhone(phone);
+        Operator operator = operatorMapper.selectById(operatorId);
         if (operator == null) {
             throw new IllegalArgumentException("Operator not found");
         }
-        updateOperatorFields(dto, operator);
-    
-        int ret = operatorMapper.update(operator);
+        int ret = operatorMapper.updateFields(operatorId, operator.getVersion(), toPatch(dto));
         if (ret != 1) {
-            throw new IllegalStateException("Failed to update profile");
+            throw new OptimisticLockingFailureException("Profile was modified concurrently");
         }
+        updateOperatorFields(dto, operator);
+        operator.setVersion(operator.getVersion() + 1);
+        changes.append(ChangeOutboxService.OPERATOR, operatorId, ChangeOutboxService.UPDATED,
+                ChangeOutboxService.payload("version", operator.getVersion()));
         return OperatorVO.fromEntity(operator);
     }
 
+    private static Operator toPatch(UpdateOperatorDTO dto) {
+        Operator patch = new Operator();
+        patch.setDisplayName(dto.getDisplayName());
+        patch.setPhone(dto.getPhone());
+        patch.setEmail(dto.getEmail());
+        patch.setAccountType(dto.getAccountType());
+        patch.setDepartment(dto.getDepartment());
+        patch.setTeam(dto.getTeam());
+        patch.setPosition(dto.getPosition());
+        patch.setLevel(dto.getLevel());
+        patch.setActive(dto.getActive());
+        return patch;
+    }
+
     private void updateOperatorFields(UpdateOperatorDTO dto, Operator operator) {
         operator.setDisplayName(dto.getDisplayName() != null ? dto.getDisplayName() : operator.getDisplayName());
         operator.setPhone(dto.getPhone() != null ? dto.getPhone() : operator.getPhone());
@@ -462,11 +494,7 @@ public class OperatorService {
     @Transactional(readOnly = true)
     @Cacheable(value = "operators:list", key = "#offset + ':' + #limit")
     public List<OperatorVO> listOperators(int offset, int limit) {
-        if (limit <= 0) {
-            limit = DEFAULT_LIMIT;
-        } else if (limit > MAX_LIMIT) {
-            limit = MAX_LIMIT;
-        }
+        limit = PageLimits.clamp(limit);
         if (offset < 0) {
             return Collections.emptyList(); // 或者抛出异常
         }
@@ -475,37 +503,45 @@ public class OperatorService {
     }
 
     /**
-     * Query operators with parameters
-     * @param params the query parameters, e.g. department, team, position, level, active
-     * @return 
+     * List operators with keyset pagination, newest first
+     * @param afterId id of the last operator of the previous page, null for the first page
+     * @param limit the limit
+     * @return the page and the continuation token for the next one
      */
     @Transactional(readOnly = true)
-    public List<OperatorVO> query(Map<String, Object> params) {
-        String offsetKey = "offset";
-        String limitKey = "limit";
-        if (params == null || params.isEmpty()) {
-            throw new IllegalArgumentException("Query params cannot be empty");
-        }
-        if (!params.containsKey(offsetKey)) {
-            throw new IllegalArgumentException("Query params must contain offset");
-        } else {
-            int offset = (int) params.get(offsetKey);
-            if (offset < 0) {
-                throw new IllegalArgumentException("Offset must be non-negative");
-            }
-        }
-        if (!params.containsKey(limitKey)) {
-            throw new IllegalArgumentException("Query params must contain limit");
-        } else {
-            int limit = (int) params.get(limitKey);
-            if (limit <= 0) {
-                params.put(limitKey, DEFAULT_LIMIT);
-            } else if (limit > MAX_LIMIT) {
-                params.put(limitKey, MAX_LIMIT);
-            }
-        }
-        List<Operator> operators = operatorMapper.query(params);
-        return operators.stream().map(OperatorVO::fromEntity).toList();
+    @Cacheable(value = "operators:list", key = "'after:' + #afterId + ':' + #limit")
+    public CursorPageVO<OperatorVO> listOperatorsAfter(Long afterId, int limit) {
+        limit = PageLimits.clamp(limit);
+        List<OperatorVO> operators = operatorMapper.listAfter(afterId, limit).stream().map(OperatorVO::fromEntity).toList();
+        return CursorPageVO.of(operators, limit, OperatorVO::getId);
+    }
+
+    /**
+     * List operator summaries ({@link OperatorSimpleVO}) with keyset pagination, read from a narrow projection
+     * @param afterId id of the last operator of the previous page, null for the first page
+     * @param limit the limit
+     * @return the page and the continuation token for the next one
+     */
+    @Transactional(readOnly = true)
+    public CursorPageVO<OperatorSimpleVO> listOperatorSummariesAfter(Long afterId, int limit) {
+        limit = PageLimits.clamp(limit);
+        return CursorPageVO.of(operatorMapper.listSimpleAfter(afterId, limit), limit, OperatorSimpleVO::getId);
+    }
+
+    /**
+     * Query operators with a validated search
+     * @param query filters, ordering and paging parsed by {@link SearchQuery#fromParams}
+     * @return the page; the continuation token is only set when results are ordered by id
+     */
+    @Transactional(readOnly = true)
+    public CursorPageVO<OperatorVO> query(SearchQuery query) {
+        if (query.getSchema() != SearchSchema.OPERATORS) {
+            throw new IllegalArgumentException("Not an operator query");
+        }
+        // 按模式选择最廉价的匹配方式：精确 / 前缀 / ngram 全文 / 扫描
+        List<Operator> operators = searchExecutor.list(TextMatchPlanner.plan(query));
+        List<OperatorVO> items = operators.stream().map(OperatorVO::fromEntity).toList();
+        return query.supportsCursor() ? CursorPageVO.of(items, query.getLimit(), OperatorVO::getId) : new CursorPageVO<>(items, null);
     }
 
     /**
@@ -529,6 +565,8 @@ public class OperatorService {
             throw new IllegalStateException("Failed to delete operator");
         }
         permissionService.deletePermission(id);
+        counters.operatorRemoved();
+        changes.append(ChangeOutboxService.OPERATOR, id, ChangeOutboxService.DELETED, null);
     }
 
     /**
@@ -5,25 +5,28 @@ import java.util.Map;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import dev.ouanu.iems.constant.Permission;
 import dev.ouanu.iems.entity.IdPermission;
 import dev.ouanu.iems.mapper.PermissionMapper;
+import dev.ouanu.iems.util.PageLimits;
+import dev.ouanu.iems.vo.CursorPageVO;
 import dev.ouanu.iems.vo.PermissionVO;
 
 @Service
 public class PermissionService {
 
     private final PermissionMapper permissionMapper;
-    private static final int DEFAULT_LIMIT = 20;
-    private static final int MAX_LIMIT = 100;
+    private final ChangeOutboxService changes;
 
     private final Logger log = LoggerFactory.getLogger(PermissionService.class);
 
-    public PermissionService(PermissionMapper permissionMapper) {
+    public PermissionService(PermissionMapper permissionMapper, ChangeOutboxService changes) {
         this.permissionMapper = permissionMapper;
+        this.changes = changes;
     }
 
     /**
@@ -50,39 +53,57 @@ public class PermissionService {
      */
     @Transactional
     public boolean createPermission(Long Id, Permission... permissions) {
+        boolean created;
         try {
             IdPermission entity = new IdPermission();
             entity.setId(Id);
             entity.setPermissions(permissions);
-            return permissionMapper.insert(entity) > 0;
+            created = permissionMapper.insert(entity) > 0;
         } catch (Exception e) {
             log.error("createPermission error for Id={}", Id, e);
             return false;
         }
+        // 事件写入放在 try 之外：失败时异常带出事务边界，权限变更随之回滚
+        if (created) {
+            changes.append(ChangeOutboxService.PERMISSION, Id, ChangeOutboxService.CREATED, null);
+        }
+        return created;
     }
 
     /**
-     * Update permissions for an operator.
+     * Update permissions for an operator, creating the row if it does not exist yet.
      * 
      * @param Id
+     * @param expectedVersion version the client last read (from {@code If-Match}); null to overwrite unconditionally
      * @param permissions
      * @return
+     * @throws OptimisticLockingFailureException if {@code expectedVersion} is given and the row is missing or has moved on
      */
     @Transactional
-    public boolean updatePermission(Long Id, Permission... permissions) {
+    public boolean updatePermission(Long Id, Long expectedVersion, Permission... permissions) {
+        boolean updated;
         try {
             IdPermission entity = new IdPermission();
             entity.setId(Id);
             entity.setPermissions(permissions);
-            if (permissionMapper.existsById(Id)) {
-                return permissionMapper.update(entity) > 0;
+            if (expectedVersion == null) {
+                updated = permissionMapper.upsert(entity) > 0;
+            } else if (permissionMapper.updateIfVersion(entity, expectedVersion) != 1) {
+                throw new OptimisticLockingFailureException("Permissions of " + Id + " were modified by someone else");
             } else {
-                return permissionMapper.insert(entity) > 0;
+                updated = true;
             }
+        } catch (OptimisticLockingFailureException e) {
+            throw e;
         } catch (Exception e) {
             log.error("updatePermission error for Id={}", Id, e);
             return false;
         }
+        if (updated) {
+            changes.append(ChangeOutboxService.PERMISSION, Id, ChangeOutboxService.UPDATED,
+                    ChangeOutboxService.payload("version", expectedVersion == null ? null : expectedVersion + 1));
+        }
+        return updated;
     }
 
     /**
@@ -93,12 +114,17 @@ public class PermissionService {
      */
     @Transactional
     public boolean deletePermission(Long Id) {
+        boolean deleted;
         try {
-            return permissionMapper.deleteById(Id) > 0;
+            deleted = permissionMapper.deleteById(Id) > 0;
         } catch (Exception e) {
             log.error("deletePermission error for Id={}", Id, e);
             return false;
         }
+        if (deleted) {
+            changes.append(ChangeOutboxService.PERMISSION, Id, ChangeOutboxService.DELETED, null);
+        }
+        return deleted;
     }
 
     /**
@@ -112,6 +138,17 @@ public class PermissionService {
         return PermissionVO.fromEntity(operatorPermission);
     }
 
+    /**
+     * Raw comma-separated permission string of an operator or device, reading only that column; used on every
+     * authenticated request.
+     *
+     * @param Id
+     * @return null when the subject has no permission row
+     */
+    public String getPermissionsById(Long Id) {
+        return permissionMapper.selectPermissionsById(Id);
+    }
+
     /**
      * List permissions with pagination.
      * 
@@ -121,6 +158,7 @@ public class PermissionService {
      */
     @Transactional(readOnly = true)
     public List<PermissionVO> listPermissions(int offset, int limit) {
+        limit = PageLimits.clamp(limit);
         try {
             List<IdPermission> entities = permissionMapper.list(offset, limit);
             return entities.stream().map(this::toVO).toList();
@@ -131,6 +169,21 @@ public class PermissionService {
         }
     }
 
+    /**
+     * List permissions with keyset pagination, newest first.
+     * 
+     * @param afterId id of the last entry of the previous page, null for the first page
+     * @param limit
+     * @return
+     */
+    @Transactional(readOnly = true)
+    public CursorPageVO<PermissionVO> listPermissionsAfter(Long afterId, int limit) {
+        limit = PageLimits.clamp(limit);
+        List<PermissionVO> items = permissionMapper.listAfter(afterId, limit).stream().map(this::toVO).toList();
+        return CursorPageVO.of(items, limit, PermissionVO::getId);
+    }
+
+    @Transactional(readOnly = true)
     public long countPermissions() {
         return permissionMapper.count();
     }
@@ -138,7 +191,7 @@ public class PermissionService {
     /**
      * Query permissions based on parameters.
      * 
-     * @param params
+     * @param params filters plus offset / limit; keyset paging passes the decoded cursor as {@code afterId}
      * @return
      */
     @Transactional(readOnly = true)
@@ -160,12 +213,7 @@ public class PermissionService {
             if (!params.containsKey(limitKey)) {
                 return List.of();
             } else {
-                int limit = (int) params.get(limitKey);
-                if (limit <= 0) {
-                    params.put(limitKey, DEFAULT_LIMIT);
-                } else if (limit > MAX_LIMIT) {
-                    params.put(limitKey, MAX_LIMIT);
-                }
+                params.put(limitKey, PageLimits.clamp((int) params.get(limitKey)));
             }
             List<IdPermission> entities = permissionMapper.query(params);
             return entities.stream().map(this::toVO).toList();
@@ -181,6 +229,7 @@ public class PermissionService {
         vo.setPermissions(entity.getPermissions()); // 直接使用字符串
         vo.setCreatedAt(entity.getCreatedAt());
         vo.setUpdatedAt(entity.getUpdatedAt());
+        vo.setVersion(entity.getVersion());
         return vo;
     }
 }
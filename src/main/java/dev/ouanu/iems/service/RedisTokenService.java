@@ -3,15 +3,21 @@ package dev.ouanu.iems.service;
 import java.time.Duration;
 import java.time.Instant;
 
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.stereotype.Service;
 
+import dev.ouanu.iems.cache.ClientSideCache;
+
 @Service
 public class RedisTokenService {
     private final RedisTemplate<String, Object> redisTemplate;
+    // 未开启 app.redis.client-side-caching.enabled 时为 null，直接读 Redis
+    private final ClientSideCache clientSideCache;
 
-    public RedisTokenService(RedisTemplate<String, Object> redisTemplate) {
+    public RedisTokenService(RedisTemplate<String, Object> redisTemplate, ObjectProvider<ClientSideCache> clientSideCache) {
         this.redisTemplate = redisTemplate;
+        this.clientSideCache = clientSideCache.getIfAvailable();
     }
 
     public void blacklistAccessToken(String jti, Instant expiresAt) {
@@ -22,11 +28,12 @@ public class RedisTokenService {
         } else {
             redisTemplate.opsForValue().set(key, "1", Duration.ofMinutes(5));
         }
+        invalidateLocal(key);
     }
 
     public boolean isTokenBlacklisted(String jti) {
         String key = "blacklist:access:" + jti;
-        return Boolean.TRUE.equals(redisTemplate.hasKey(key));
+        return hasKey(key);
     }
 
     public void storeRefreshToken(String refreshHash, String ownerMarker, Instant expiresAt) {
@@ -37,16 +44,33 @@ public class RedisTokenService {
         } else {
             redisTemplate.opsForValue().set(key, ownerMarker, Duration.ofMinutes(5));
         }
+        invalidateLocal(key);
     }
 
     public boolean isRefreshTokenStored(String refreshHash) {
         String key = "refresh:" + refreshHash;
-        return Boolean.TRUE.equals(redisTemplate.hasKey(key));
+        return hasKey(key);
     }
 
     public void revokeRefreshToken(String refreshHash) {
         String key = "refresh:" + refreshHash;
         redisTemplate.delete(key);
+        invalidateLocal(key);
+    }
+
+    private boolean hasKey(String key) {
+        if (clientSideCache == null) {
+            return Boolean.TRUE.equals(redisTemplate.hasKey(key));
+        }
+        // 不存在的结果同样缓存在本地，由服务端 BCAST 失效消息保证一致
+        return Boolean.TRUE.equals(clientSideCache.get(key, () -> redisTemplate.hasKey(key)));
+    }
+
+    // 本节点的写入立即生效，不必等待服务端异步推送的失效消息
+    private void invalidateLocal(String key) {
+        if (clientSideCache != null) {
+            clientSideCache.invalidate(key);
+        }
     }
 
 }
@@ -60,8 +60,6 @@ public class SnowflakeIdService {
         } catch (UnknownHostException ignored) {
             logger.warn("Cannot get hostname, using 'unknown' as node name");
         }
-        // ensure table exists
-        mapper.createTableIfNotExists();
     }
 
     // 主方法：生成并持久化 ID
@@ -1,5 +1,10 @@
 package dev.ouanu.iems.service;
 
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -14,21 +19,46 @@ public class StatisticsService {
     private final OperatorMapper operatorMapper;
     private final DeviceMapper deviceMapper;
     private final ApkRepository apkRepository;
+    private final DashboardCounterService counters;
+    private final Logger log = LoggerFactory.getLogger(StatisticsService.class);
 
     public StatisticsService(OperatorMapper operatorMapper,
                              DeviceMapper deviceMapper,
-                             ApkRepository apkRepository) {
+                             ApkRepository apkRepository,
+                             DashboardCounterService counters) {
         this.operatorMapper = operatorMapper;
         this.deviceMapper = deviceMapper;
         this.apkRepository = apkRepository;
+        this.counters = counters;
     }
 
+    /**
+     * Dashboard overview from the incrementally maintained Redis counters (O(1));
+     * falls back to live COUNT queries when Redis is unavailable.
+     */
     @Transactional(readOnly = true)
     public DashboardStatsVO getDashboardStats() {
-        long operatorCount = safeCountOperators();
-        long deviceCount = safeCountDevices();
-        long apkCount = safeCountApks();
-        return new DashboardStatsVO(operatorCount, deviceCount, apkCount);
+        Map<String, Long> snapshot;
+        try {
+            snapshot = counters.snapshot();
+        } catch (RuntimeException e) {
+            log.warn("Dashboard counters unavailable, counting directly: {}", e.getMessage());
+            return new DashboardStatsVO(safeCountOperators(), safeCountDevices(), safeCountApks(), 0L, 0L, Map.of(), null);
+        }
+        Map<String, Long> byGroup = new TreeMap<>();
+        snapshot.forEach((field, value) -> {
+            if (field.startsWith(DashboardCounterService.DEVICES_GROUP_PREFIX) && value > 0) {
+                byGroup.put(field.substring(DashboardCounterService.DEVICES_GROUP_PREFIX.length()), value);
+            }
+        });
+        return new DashboardStatsVO(
+                snapshot.getOrDefault(DashboardCounterService.OPERATORS, 0L),
+                snapshot.getOrDefault(DashboardCounterService.DEVICES, 0L),
+                snapshot.getOrDefault(DashboardCounterService.APKS, 0L),
+                snapshot.getOrDefault(DashboardCounterService.DEVICES_ACTIVE, 0L),
+                snapshot.getOrDefault(DashboardCounterService.DEVICES_LOCKED, 0L),
+                byGroup,
+                snapshot.get(DashboardCounterService.RECONCILED_AT));
     }
 
     private long safeCountOperators() {
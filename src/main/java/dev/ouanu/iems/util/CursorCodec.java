@@ -0,0 +1,50 @@
+package dev.ouanu.iems.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Opaque continuation tokens for keyset (seek) pagination.
+ * A token wraps the Snowflake id of the last row of a page; clients must treat it as an opaque string.
+ */
+public final class CursorCodec {
+
+    private static final String VERSION_PREFIX = "k1:";
+
+    private CursorCodec() {
+    }
+
+    public static String encode(Long lastId) {
+        if (lastId == null) {
+            return null;
+        }
+        byte[] raw = (VERSION_PREFIX + lastId).getBytes(StandardCharsets.UTF_8);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw);
+    }
+
+    /**
+     * Decode a continuation token back to the id to seek after.
+     * @param cursor the token, blank means "first page"
+     * @return the id, or null for the first page
+     * @throws IllegalArgumentException if the token is malformed
+     */
+    public static Long decode(String cursor) throws IllegalArgumentException {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        String raw;
+        try {
+            raw = new String(Base64.getUrlDecoder().decode(cursor.trim()), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+        if (!raw.startsWith(VERSION_PREFIX)) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+        try {
+            return Long.valueOf(raw.substring(VERSION_PREFIX.length()));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package dev.ouanu.iems.util;
+
+/**
+ * Strong entity tags carrying a row's optimistic-lock version.
+ * A client echoes the tag back in {@code If-Match} so the update is applied only if nobody changed the row since.
+ */
+public final class ETags {
+
+    private ETags() {
+    }
+
+    public static String of(Long version) {
+        return version == null ? null : "\"" + version + "\"";
+    }
+
+    /**
+     * Parse an {@code If-Match} header back to the expected version.
+     * @param ifMatch the header value, absent or {@code *} means "any version"
+     * @return the version, or null when the update is unconditional
+     * @throws IllegalArgumentException if the header is not a tag issued by {@link #of(Long)}
+     */
+    public static Long parseIfMatch(String ifMatch) throws IllegalArgumentException {
+        if (ifMatch == null || ifMatch.isBlank() || "*".equals(ifMatch.trim())) {
+            return null;
+        }
+        String tag = ifMatch.trim();
+        if (tag.length() < 3 || tag.charAt(0) != '"' || tag.charAt(tag.length() - 1) != '"') {
+            throw new IllegalArgumentException("Invalid If-Match header");
+        }
+        try {
+            return Long.valueOf(tag.substring(1, tag.length() - 1));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid If-Match header", e);
+        }
+    }
+}
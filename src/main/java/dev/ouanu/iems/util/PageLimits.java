@@ -0,0 +1,28 @@
+package dev.ouanu.iems.util;
+
+/**
+ * Page-size bounds shared by the listing endpoints. Whoever builds a {@code CursorPageVO} must pass the capped size,
+ * otherwise a request for more than {@link #MAX_LIMIT} rows always looks like the last page.
+ */
+public final class PageLimits {
+
+    public static final int DEFAULT_LIMIT = 20;
+    public static final int MAX_LIMIT = 100;
+
+    private PageLimits() {
+    }
+
+    /**
+     * @return {@code limit} capped to {@link #MAX_LIMIT}, or {@link #DEFAULT_LIMIT} if it is not positive
+     */
+    public static int clamp(int limit) {
+        return clamp(limit, DEFAULT_LIMIT, MAX_LIMIT);
+    }
+
+    public static int clamp(int limit, int defaultLimit, int maxLimit) {
+        if (limit <= 0) {
+            return defaultLimit;
+        }
+        return Math.min(limit, maxLimit);
+    }
+}
@@ -0,0 +1,94 @@
+package dev.ouanu.iems.util;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded lock-free ring buffer for many producers and a single consumer.
+ * <p>
+ * Producers claim a slot with one CAS and never block: {@link #offer} returns false when the buffer is full, so a
+ * slow consumer costs dropped elements rather than stalled producers. Each slot carries a sequence number that tells
+ * producers and the consumer whether it is free or filled for the current lap (Vyukov's bounded queue).
+ * {@link #drainTo} must not be called from more than one thread at a time.
+ */
+public final class RingBuffer<E> {
+
+    private final AtomicReferenceArray<E> slots;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * @param capacity rounded up to the next power of two
+     */
+    public RingBuffer(int capacity) {
+        if (capacity < 2) {
+            throw new IllegalArgumentException("Capacity must be at least 2");
+        }
+        int size = Integer.highestOneBit(capacity - 1) << 1;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.sequences = new AtomicLongArray(size);
+        this.mask = size - 1;
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * @return false if the buffer is full and the element was not added
+     */
+    public boolean offer(E element) {
+        long pos = head.get();
+        while (true) {
+            int index = (int) (pos & mask);
+            long diff = sequences.get(index) - pos;
+            if (diff == 0) {
+                if (head.compareAndSet(pos, pos + 1)) {
+                    slots.set(index, element);
+                    // 发布：消费者看到 pos + 1 才读取该槽
+                    sequences.set(index, pos + 1);
+                    return true;
+                }
+                pos = head.get();
+            } else if (diff < 0) {
+                return false;
+            } else {
+                pos = head.get();
+            }
+        }
+    }
+
+    /**
+     * Move up to {@code max} elements into {@code sink}, oldest first.
+     * @return the number of elements moved
+     */
+    public int drainTo(Collection<? super E> sink, int max) {
+        long pos = tail.get();
+        int moved = 0;
+        while (moved < max) {
+            int index = (int) (pos & mask);
+            if (sequences.get(index) != pos + 1) {
+                // 空，或生产者已占位但尚未写入
+                break;
+            }
+            sink.add(slots.get(index));
+            slots.set(index, null);
+            sequences.set(index, pos + mask + 1);
+            pos++;
+            moved++;
+        }
+        tail.set(pos);
+        return moved;
+    }
+
+    public int size() {
+        return (int) Math.max(0, head.get() - tail.get());
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+}
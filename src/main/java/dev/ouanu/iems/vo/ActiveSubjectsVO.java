@@ -0,0 +1,17 @@
+package dev.ouanu.iems.vo;
+
+import java.time.LocalDate;
+
+import lombok.Data;
+
+@Data
+public class ActiveSubjectsVO {
+    // 统计截止的业务日（东八区）
+    private LocalDate day;
+    private long dailyDevices;
+    private long weeklyDevices;
+    private long monthlyDevices;
+    private long dailyOperators;
+    private long weeklyOperators;
+    private long monthlyOperators;
+}
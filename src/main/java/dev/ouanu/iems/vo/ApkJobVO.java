@@ -0,0 +1,34 @@
+package dev.ouanu.iems.vo;
+
+import java.io.Serializable;
+import java.time.Instant;
+import java.util.Map;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Progress of one asynchronous APK ingest job.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ApkJobVO implements Serializable {
+    public static final String QUEUED = "queued";
+    public static final String RUNNING = "running";
+    public static final String SUCCEEDED = "succeeded";
+    public static final String FAILED = "failed";
+
+    private String jobId;
+    private String state;
+    // 成功后生成的 APK id
+    private String apkId;
+    // 失败类别：invalid（不是有效 APK）、conflict（已存在）、error（内部错误）
+    private String failure;
+    private String error;
+    // 各阶段耗时（毫秒）：receive、queue、parse、store、save
+    private Map<String, Long> stageMillis;
+    private Instant createdAt;
+    private Instant updatedAt;
+}
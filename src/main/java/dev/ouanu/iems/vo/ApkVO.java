@@ -2,11 +2,13 @@ package dev.ouanu.iems.vo;
 
 import java.io.Serializable;
 import java.util.Map;
+import java.util.TreeMap;
 
 import org.springframework.util.StringUtils;
 import org.springframework.web.util.UriComponentsBuilder;
 
 import dev.ouanu.iems.entity.Apk;
+import dev.ouanu.iems.service.IconService;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -20,6 +22,8 @@ public class ApkVO implements Serializable {
     private long versionCode;
     private String versionName;
     private String imageDownloadUrl;
+    // 各尺寸（px）图标地址，可永久缓存
+    private Map<Integer, String> iconUrls;
     private String fileDownloadUrl;
 
     public static ApkVO fromEntity(Apk apk, String baseUrl) {
@@ -40,13 +44,28 @@ public class ApkVO implements Serializable {
             vo.setAppName(defaultLabel);
         }
 
-        if (StringUtils.hasText(apk.getIconPath())) {
-            String iconRelative = ensureStoragePrefix(apk.getIconPath());
+        // 有多尺寸图标时使用按内容哈希命名的不可变地址；有 id 时走下载接口（Range / ETag）；/storage/** 静态路径仅为兼容保留
+        if (apk.getIconSizes() != null && !apk.getIconSizes().isEmpty() && StringUtils.hasText(apk.getFileHash())) {
+            Map<Integer, String> iconUrls = new TreeMap<>();
+            for (Integer size : apk.getIconSizes()) {
+                iconUrls.put(size, buildAbsoluteUrl(baseUrl, IconService.urlPath(apk.getFileHash(), size)));
+            }
+            vo.setIconUrls(iconUrls);
+            int listSize = apk.getIconSizes().contains(IconService.DEFAULT_SIZE)
+                    ? IconService.DEFAULT_SIZE
+                    : apk.getIconSizes().get(apk.getIconSizes().size() - 1);
+            vo.setImageDownloadUrl(iconUrls.get(listSize));
+        } else if (StringUtils.hasText(apk.getIconPath())) {
+            String iconRelative = StringUtils.hasText(apk.getId())
+                    ? "/api/apks/" + apk.getId() + "/icon"
+                    : ensureStoragePrefix(apk.getIconPath());
             vo.setImageDownloadUrl(buildAbsoluteUrl(baseUrl, iconRelative));
         }
 
         if (StringUtils.hasText(apk.getFilePath())) {
-            String fileRelative = ensureStoragePrefix(apk.getFilePath());
+            String fileRelative = StringUtils.hasText(apk.getId())
+                    ? "/api/apks/" + apk.getId() + "/download"
+                    : ensureStoragePrefix(apk.getFilePath());
             vo.setFileDownloadUrl(buildAbsoluteUrl(baseUrl, fileRelative));
         }
         return vo;
@@ -0,0 +1,31 @@
+package dev.ouanu.iems.vo;
+
+import java.io.Serializable;
+import java.time.Instant;
+import java.util.Map;
+
+import org.springframework.beans.BeanUtils;
+
+import dev.ouanu.iems.entity.AuditRecord;
+import lombok.Data;
+
+@Data
+public class AuditRecordVO implements Serializable {
+    private String id;
+    private String actor;
+    private String action;
+    private String method;
+    private String clientIp;
+    private Map<String, Object> args;
+    private Integer status;
+    private String error;
+    private long durationMs;
+    private Instant occurredAt;
+
+    public static AuditRecordVO fromEntity(AuditRecord record) {
+        if (record == null) return null;
+        AuditRecordVO vo = new AuditRecordVO();
+        BeanUtils.copyProperties(record, vo);
+        return vo;
+    }
+}
@@ -0,0 +1,31 @@
+package dev.ouanu.iems.vo;
+
+import java.io.Serializable;
+import java.util.List;
+import java.util.function.Function;
+
+import dev.ouanu.iems.util.CursorCodec;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One page of a keyset-paginated listing; {@code nextCursor} is null on the last page.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class CursorPageVO<T> implements Serializable {
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    private List<T> items;
+    private String nextCursor;
+
+    public static <T> CursorPageVO<T> of(List<T> items, int limit, Function<T, Long> idOf) {
+        String next = null;
+        if (!items.isEmpty() && items.size() >= limit) {
+            next = CursorCodec.encode(idOf.apply(items.get(items.size() - 1)));
+        }
+        return new CursorPageVO<>(items, next);
+    }
+}
@@ -1,6 +1,7 @@
 package dev.ouanu.iems.vo;
 
 import java.io.Serializable;
+import java.util.Map;
 
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -13,4 +14,9 @@ public class DashboardStatsVO implements Serializable {
     private long operatorCount;
     private long deviceCount;
     private long apkCount;
+    private long activeDeviceCount;
+    private long lockedDeviceCount;
+    private Map<String, Long> devicesByGroup;
+    // 最近一次对账时间（毫秒时间戳），计数的最大滞后不超过一个对账周期
+    private Long reconciledAt;
 }
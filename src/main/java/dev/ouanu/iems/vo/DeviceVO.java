@@ -34,6 +34,7 @@ public class DeviceVO implements Serializable{
     private String romVersion;
     private Instant createdAt;
     private Instant updatedAt;
+    private Long version;
 
     public static DeviceVO fromEntity(Device device) {
         if (device == null) return null;
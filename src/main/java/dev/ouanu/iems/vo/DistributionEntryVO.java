@@ -0,0 +1,15 @@
+package dev.ouanu.iems.vo;
+
+import java.io.Serializable;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class DistributionEntryVO implements Serializable {
+    private String value;
+    private long count;
+}
@@ -0,0 +1,26 @@
+package dev.ouanu.iems.vo;
+
+import java.io.Serializable;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * EXPLAIN result for one recorded query shape.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class IndexAdviceVO implements Serializable {
+    private String statementId;
+    private String sql;
+    private long executions;
+    private String table;
+    private String accessType;
+    private String possibleKeys;
+    private String key;
+    private Long estimatedRows;
+    private String extra;
+    private boolean fullScan;
+}
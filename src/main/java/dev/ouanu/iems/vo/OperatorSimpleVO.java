@@ -4,6 +4,9 @@ import java.io.Serializable;
 
 import org.springframework.beans.BeanUtils;
 
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
+
 import dev.ouanu.iems.entity.Operator;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -13,6 +16,8 @@ import lombok.NoArgsConstructor;
 @AllArgsConstructor
 @NoArgsConstructor
 public class OperatorSimpleVO implements Serializable{
+    @JsonSerialize(using = ToStringSerializer.class)
+    private Long id;
     private String uuid;
     private String displayName;
     private String phone;
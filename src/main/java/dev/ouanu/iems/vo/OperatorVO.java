@@ -31,6 +31,7 @@ public class OperatorVO implements Serializable{
     private Boolean active;
     private Instant createdAt;
     private Instant updatedAt;
+    private Long version;
 
     public static OperatorVO fromEntity(Operator operator) {
         if (operator == null) return null;
@@ -20,6 +20,7 @@ public class PermissionVO implements Serializable{
     private String permissions;
     private Instant createdAt;
     private Instant updatedAt;
+    private Long version;
 
     public static PermissionVO fromEntity(IdPermission entity) {
         if (entity == null) return null;
@@ -28,6 +29,7 @@ public class PermissionVO implements Serializable{
         vo.setPermissions(entity.getPermissions());
         vo.setCreatedAt(entity.getCreatedAt());
         vo.setUpdatedAt(entity.getUpdatedAt());
+        vo.setVersion(entity.getVersion());
         return vo;
     }
 }
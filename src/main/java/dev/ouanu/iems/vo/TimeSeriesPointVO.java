@@ -0,0 +1,19 @@
+package dev.ouanu.iems.vo;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One bucket of a time series; {@code bucket} is the bucket start in business time (+08:00).
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class TimeSeriesPointVO implements Serializable {
+    private LocalDateTime bucket;
+    private long count;
+}
@@ -0,0 +1,25 @@
+package dev.ouanu.iems.vo;
+
+import java.io.Serializable;
+import java.time.Instant;
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * State of a chunked upload; chunk {@code i} covers bytes {@code [i * chunkSize, min((i + 1) * chunkSize, size))}.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class UploadSessionVO implements Serializable {
+    private String uploadId;
+    private long size;
+    private int chunkSize;
+    private int chunkCount;
+    // 尚未成功接收的分片序号，续传时只需补传这些分片
+    private List<Integer> missingChunks;
+    private Instant expiresAt;
+}
@@ -0,0 +1,56 @@
+-- 基线表结构（原先每次启动由各 Mapper 的 createTableIfNotExists 执行）。
+-- 使用 IF NOT EXISTS：已有库上首次执行为空操作，只在迁移台账中记下基线版本。
+CREATE TABLE IF NOT EXISTS operators (
+    id BIGINT NOT NULL AUTO_INCREMENT,
+    uuid VARCHAR(36) NOT NULL,
+    password_hash VARCHAR(255) NOT NULL,
+    display_name VARCHAR(255),
+    phone VARCHAR(64),
+    email VARCHAR(255),
+    account_type VARCHAR(32),
+    department VARCHAR(128),
+    team VARCHAR(128),
+    position VARCHAR(128),
+    level VARCHAR(32),
+    active TINYINT(1) DEFAULT 1,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    PRIMARY KEY (id),
+    UNIQUE KEY uq_operators_uuid (uuid),
+    UNIQUE KEY uq_operators_phone (phone),
+    UNIQUE KEY uq_operators_email (email)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+CREATE TABLE IF NOT EXISTS permissions (
+    id BIGINT PRIMARY KEY,
+    permissions TEXT NOT NULL,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP
+);
+
+CREATE TABLE IF NOT EXISTS devices (
+    id BIGINT PRIMARY KEY AUTO_INCREMENT,
+    uuid VARCHAR(128) NOT NULL,
+    mac_address VARCHAR(64),
+    signature_hash VARCHAR(128),
+    active TINYINT(1) DEFAULT 0,
+    locked TINYINT(1) DEFAULT 0,
+    customer_id BIGINT,
+    customer_group VARCHAR(128),
+    model VARCHAR(128),
+    brand VARCHAR(128),
+    serialno VARCHAR(128),
+    android_version VARCHAR(64),
+    app_version VARCHAR(64),
+    rom_version VARCHAR(255),
+    created_at TIMESTAMP NULL DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    UNIQUE KEY uk_uuid (uuid)
+);
+
+CREATE TABLE IF NOT EXISTS snowflake_ids (
+    id BIGINT PRIMARY KEY,
+    type VARCHAR(50) NOT NULL,
+    node VARCHAR(50) NOT NULL,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
@@ -0,0 +1,7 @@
+-- 运营人员搜索索引
+-- operators 表排序规则为 utf8mb4_unicode_ci，LIKE 'abc%' 本身不区分大小写，可直接走以下 B-Tree 索引；
+-- phone / email 已有唯一索引。display_name 额外建立 ngram 全文索引，用于 '%abc%' 这类中缀搜索。
+CREATE INDEX idx_operators_display_name ON operators (display_name);
+CREATE INDEX idx_operators_department_team ON operators (department, team);
+CREATE INDEX idx_operators_account_type ON operators (account_type);
+CREATE FULLTEXT INDEX ft_operators_display_name ON operators (display_name) WITH PARSER ngram;
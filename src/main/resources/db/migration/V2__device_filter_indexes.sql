@@ -0,0 +1,16 @@
+-- 设备表二级索引，对应管理端查询的常见过滤组合：
+--   客户 / 客户分组 + 启用 / 锁定状态，品牌 + 型号，系统 / 应用版本，时间范围；
+--   mac_address 用于注册与登录时的设备查找。
+-- 单条 ALTER 一次性建立全部索引，INPLACE + LOCK=NONE 在线执行，不阻塞读写。
+ALTER TABLE devices
+    ADD INDEX idx_devices_mac_address (mac_address),
+    ADD INDEX idx_devices_customer_state (customer_id, active, locked),
+    ADD INDEX idx_devices_group_state (customer_group, active, locked),
+    ADD INDEX idx_devices_brand_model (brand, model),
+    ADD INDEX idx_devices_model (model),
+    ADD INDEX idx_devices_serialno (serialno),
+    ADD INDEX idx_devices_versions (android_version, app_version),
+    ADD INDEX idx_devices_app_version (app_version),
+    ADD INDEX idx_devices_created_at (created_at),
+    ADD INDEX idx_devices_updated_at (updated_at),
+    ALGORITHM=INPLACE, LOCK=NONE;
@@ -0,0 +1,50 @@
+-- 设备构成分析的预聚合表，随设备新增 / 更新 / 删除在同一事务内增量维护。
+-- 时间桶按业务时区 +08:00 划分，与查询接口的时间参数一致；空值统一记为 '-'。
+
+-- 当前分布：每个维度取值下的设备数
+CREATE TABLE IF NOT EXISTS device_dimension_counts (
+    dimension VARCHAR(32) NOT NULL,
+    value VARCHAR(255) NOT NULL,
+    device_count BIGINT NOT NULL DEFAULT 0,
+    PRIMARY KEY (dimension, value),
+    KEY idx_device_dimension_counts_rank (dimension, device_count)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+-- 事件计数（registered / updated / deleted），按小时与按天
+CREATE TABLE IF NOT EXISTS device_events_hourly (
+    bucket_start DATETIME NOT NULL,
+    event VARCHAR(16) NOT NULL,
+    event_count BIGINT NOT NULL DEFAULT 0,
+    PRIMARY KEY (event, bucket_start)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
+CREATE TABLE IF NOT EXISTS device_events_daily (
+    bucket_day DATE NOT NULL,
+    event VARCHAR(16) NOT NULL,
+    event_count BIGINT NOT NULL DEFAULT 0,
+    PRIMARY KEY (event, bucket_day)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
+-- 回填现有设备；先清空，脚本中途失败后重跑不会因主键冲突而失败
+DELETE FROM device_dimension_counts;
+DELETE FROM device_events_hourly;
+DELETE FROM device_events_daily;
+INSERT INTO device_dimension_counts (dimension, value, device_count)
+SELECT 'brand', COALESCE(NULLIF(brand, ''), '-'), COUNT(1) FROM devices GROUP BY COALESCE(NULLIF(brand, ''), '-');
+INSERT INTO device_dimension_counts (dimension, value, device_count)
+SELECT 'model', COALESCE(NULLIF(model, ''), '-'), COUNT(1) FROM devices GROUP BY COALESCE(NULLIF(model, ''), '-');
+INSERT INTO device_dimension_counts (dimension, value, device_count)
+SELECT 'androidVersion', COALESCE(NULLIF(android_version, ''), '-'), COUNT(1) FROM devices GROUP BY COALESCE(NULLIF(android_version, ''), '-');
+INSERT INTO device_dimension_counts (dimension, value, device_count)
+SELECT 'appVersion', COALESCE(NULLIF(app_version, ''), '-'), COUNT(1) FROM devices GROUP BY COALESCE(NULLIF(app_version, ''), '-');
+INSERT INTO device_dimension_counts (dimension, value, device_count)
+SELECT 'romVersion', COALESCE(NULLIF(rom_version, ''), '-'), COUNT(1) FROM devices GROUP BY COALESCE(NULLIF(rom_version, ''), '-');
+
+INSERT INTO device_events_hourly (bucket_start, event, event_count)
+SELECT DATE_FORMAT(CONVERT_TZ(created_at, @@session.time_zone, '+08:00'), '%Y-%m-%d %H:00:00'), 'registered', COUNT(1)
+FROM devices WHERE created_at IS NOT NULL
+GROUP BY DATE_FORMAT(CONVERT_TZ(created_at, @@session.time_zone, '+08:00'), '%Y-%m-%d %H:00:00');
+INSERT INTO device_events_daily (bucket_day, event, event_count)
+SELECT DATE(CONVERT_TZ(created_at, @@session.time_zone, '+08:00')), 'registered', COUNT(1)
+FROM devices WHERE created_at IS NOT NULL
+GROUP BY DATE(CONVERT_TZ(created_at, @@session.time_zone, '+08:00'));
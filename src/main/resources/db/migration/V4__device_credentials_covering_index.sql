@@ -0,0 +1,7 @@
+-- 设备登录 / 注册查重 / 存在性校验按 mac_address 查找，只需要 id 与 signature_hash。
+-- (mac_address, signature_hash) 联合索引覆盖这些查询（InnoDB 二级索引自带主键 id），无需回表；
+-- 它的最左前缀同样服务原先的 mac_address 等值查询，因此替换 idx_devices_mac_address。
+ALTER TABLE devices
+    DROP INDEX idx_devices_mac_address,
+    ADD INDEX idx_devices_mac_credentials (mac_address, signature_hash),
+    ALGORITHM=INPLACE, LOCK=NONE;
@@ -0,0 +1,5 @@
+-- 乐观锁版本号：每次更新 version = version + 1，条件更新 WHERE id = ? AND version = ?。
+-- ALGORITHM=INSTANT 仅修改数据字典，不重建表、不阻塞读写（MySQL 8.0.12+）。
+ALTER TABLE devices ADD COLUMN version BIGINT NOT NULL DEFAULT 0, ALGORITHM=INSTANT;
+ALTER TABLE operators ADD COLUMN version BIGINT NOT NULL DEFAULT 0, ALGORITHM=INSTANT;
+ALTER TABLE permissions ADD COLUMN version BIGINT NOT NULL DEFAULT 0, ALGORITHM=INSTANT;
@@ -0,0 +1,13 @@
+-- 变更事件发件箱：业务写入与事件在同一事务内提交，由 ChangeOutboxRelay 批量转发到 Redis Stream。
+-- published_at 为空即待转发；已转发的行保留一段时间供排查与重放，随后分批清理。
+CREATE TABLE IF NOT EXISTS change_outbox (
+    id BIGINT NOT NULL AUTO_INCREMENT,
+    aggregate_type VARCHAR(32) NOT NULL,
+    aggregate_id VARCHAR(64) NOT NULL,
+    event_type VARCHAR(16) NOT NULL,
+    payload TEXT NULL,
+    created_at TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3),
+    published_at TIMESTAMP(3) NULL,
+    PRIMARY KEY (id),
+    KEY idx_change_outbox_pending (published_at, id)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
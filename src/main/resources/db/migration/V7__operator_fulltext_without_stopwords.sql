@@ -0,0 +1,7 @@
+-- 重建 display_name 的 ngram 全文索引，不使用 InnoDB 默认停用词表。
+-- ngram 解析器会丢弃包含停用词的词元，默认表中有 a、i、is、to 等，导致 MATCH 漏掉 LIKE '%is%' 能找到的行，
+-- 而 TextMatchPlanner 以 MATCH 缩小候选集。停用词设置只在建索引时生效，因此在同一会话内关闭后重建。
+SET SESSION innodb_ft_enable_stopword = OFF;
+ALTER TABLE operators DROP INDEX ft_operators_display_name,
+    ADD FULLTEXT INDEX ft_operators_display_name (display_name) WITH PARSER ngram;
+SET SESSION innodb_ft_enable_stopword = ON;
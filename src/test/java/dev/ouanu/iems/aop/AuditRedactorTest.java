@@ -0,0 +1,97 @@
+package dev.ouanu.iems.aop;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockMultipartFile;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+class AuditRedactorTest {
+
+    private final AuditRedactor redactor = new AuditRedactor(new ObjectMapper(),
+            new String[] { "password", " Token ", "" }, 8);
+
+    record Login(String email, String password, Nested nested) {
+    }
+
+    record Nested(String refreshToken, List<Map<String, String>> items) {
+    }
+
+    @Test
+    void masksSensitiveParameterNames() {
+        Map<String, Object> redacted = redactor.redact(new String[] { "PASSWORD", "token", "email" },
+                new Object[] { "secret", "abc", "a@b.c" });
+        assertEquals(AuditRedactor.MASK, redacted.get("PASSWORD"));
+        assertEquals(AuditRedactor.MASK, redacted.get("token"));
+        assertEquals("a@b.c", redacted.get("email"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void masksSensitiveFieldsAtAnyDepth() {
+        Login login = new Login("a@b.c", "secret",
+                new Nested("rt", List.of(Map.of("token", "t", "name", "n"))));
+        Map<String, Object> body = (Map<String, Object>) redactor.redact(new String[] { "request" },
+                new Object[] { login }).get("request");
+
+        assertEquals("a@b.c", body.get("email"));
+        assertEquals(AuditRedactor.MASK, body.get("password"));
+        Map<String, Object> nested = (Map<String, Object>) body.get("nested");
+        // refreshToken 不在配置的名单中
+        assertEquals("rt", nested.get("refreshToken"));
+        Map<String, Object> item = ((List<Map<String, Object>>) nested.get("items")).get(0);
+        assertEquals(AuditRedactor.MASK, item.get("token"));
+        assertEquals("n", item.get("name"));
+    }
+
+    @Test
+    void truncatesLongStrings() {
+        Map<String, Object> redacted = redactor.redact(new String[] { "note" }, new Object[] { "0123456789" });
+        assertEquals("01234567...", redacted.get("note"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void detachReplacesUploadsAndDropsRequestScopedObjects() {
+        Object[] args = {
+                new MockMultipartFile("file", "app.apk", "application/vnd.android.package-archive", new byte[3]),
+                new ByteArrayInputStream(new byte[1]),
+                new MockHttpServletRequest(),
+                new byte[] { 1 },
+                "kept"
+        };
+        Object[] detached = redactor.detach(args);
+        Map<String, Object> redacted = redactor.redact(new String[] { "file", "in", "request", "bytes", "name" },
+                detached);
+
+        assertEquals(List.of("file", "name"), List.copyOf(redacted.keySet()));
+        Map<String, Object> file = (Map<String, Object>) redacted.get("file");
+        assertEquals("app.apk", file.get("originalFilename"));
+        assertEquals(3, ((Number) file.get("size")).intValue());
+        assertEquals("kept", redacted.get("name"));
+        assertTrue(args[0] instanceof MockMultipartFile, "the caller's array is left untouched");
+    }
+
+    @Test
+    void detachReturnsSameArrayWhenNothingChanges() {
+        Object[] args = { "a", 1 };
+        assertSame(args, redactor.detach(args));
+    }
+
+    @Test
+    void namesArgumentsByPositionWithoutParameterNames() {
+        Map<String, Object> redacted = redactor.redact(null, new Object[] { "x", null });
+        assertEquals("x", redacted.get("arg0"));
+        assertTrue(redacted.containsKey("arg1"));
+        assertFalse(redacted.containsKey("arg2"));
+    }
+}
@@ -0,0 +1,76 @@
+package dev.ouanu.iems.apk;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import net.dongliu.apk.parser.ApkFile;
+import net.dongliu.apk.parser.bean.ApkMeta;
+
+/**
+ * Compares {@link ApkMetadataExtractor} with the per-locale {@code setPreferredLocale} / {@code getApkMeta} loop it
+ * replaced. Skipped unless an APK is given; run it by hand against real APKs:
+ * <pre>
+ * mvn test -Dtest=ApkMetadataBenchmark -Dbenchmark.apk=/path/to/app.apk [-Dbenchmark.iterations=10]
+ * </pre>
+ */
+@Tag("benchmark")
+@EnabledIfSystemProperty(named = "benchmark.apk", matches = ".+")
+class ApkMetadataBenchmark {
+
+    private static final int WARMUP = 3;
+
+    @Test
+    void extractorAgainstPerLocaleLoop() throws Exception {
+        Path apk = Path.of(System.getProperty("benchmark.apk"));
+        int iterations = Integer.getInteger("benchmark.iterations", 10);
+        System.out.printf("%s (%d bytes), %d iterations%n", apk.getFileName(), Files.size(apk), iterations);
+
+        Map<String, String> legacyLabels = Map.of();
+        Map<String, String> extractorLabels = Map.of();
+        for (int i = 0; i < WARMUP; i++) {
+            legacyLabels = legacy(apk);
+            extractorLabels = ApkMetadataExtractor.extract(apk).labels();
+        }
+
+        long legacyNanos = 0;
+        long extractorNanos = 0;
+        for (int i = 0; i < iterations; i++) {
+            long start = System.nanoTime();
+            legacy(apk);
+            legacyNanos += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            ApkMetadataExtractor.extract(apk);
+            extractorNanos += System.nanoTime() - start;
+        }
+
+        System.out.printf("legacy loop : %8.2f ms/op, %d labels%n", legacyNanos / 1e6 / iterations, legacyLabels.size());
+        System.out.printf("extractor   : %8.2f ms/op, %d labels (+ sdk, abis, permissions, signers)%n",
+                extractorNanos / 1e6 / iterations, extractorLabels.size());
+    }
+
+    // 旧实现：每个语言重新解析一次清单
+    private static Map<String, String> legacy(Path apk) throws Exception {
+        try (ApkFile apkFile = new ApkFile(apk.toFile())) {
+            ApkMeta defaultApkMeta = apkFile.getApkMeta();
+            Map<String, String> labels = new HashMap<>();
+            labels.put("default", defaultApkMeta.getLabel());
+            for (Locale locale : apkFile.getLocales()) {
+                apkFile.setPreferredLocale(locale);
+                String label = apkFile.getApkMeta().getLabel();
+                if (label != null) {
+                    labels.put(locale.toLanguageTag(), label);
+                }
+            }
+            apkFile.getAllIcons();
+            return labels;
+        }
+    }
+}
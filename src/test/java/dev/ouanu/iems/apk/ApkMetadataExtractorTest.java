@@ -0,0 +1,328 @@
+package dev.ouanu.iems.apk;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ApkMetadataExtractorTest {
+
+    private static final int SIGNATURE_SCHEME_V2_ID = 0x7109871a;
+    private static final int APP_NAME = 0x7f010000;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void readsManifestAbisAndPermissions() throws IOException {
+        BinaryManifest manifest = new BinaryManifest()
+                .start("manifest", "package", "com.example.app", "versionCode", 42, "versionName", "1.2.3")
+                .start("uses-sdk", "minSdkVersion", 24, "targetSdkVersion", 34).end()
+                .start("uses-permission", "name", "android.permission.INTERNET").end()
+                .start("uses-permission", "name", "android.permission.CAMERA").end()
+                .start("uses-permission", "name", "android.permission.INTERNET").end()
+                .start("application", "label", "Example").end()
+                .end();
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        entries.put("AndroidManifest.xml", manifest.toBytes());
+        entries.put("lib/arm64-v8a/libfoo.so", new byte[] { 1 });
+        entries.put("lib/armeabi-v7a/libfoo.so", new byte[] { 2 });
+        entries.put("lib/arm64-v8a/libbar.so", new byte[] { 3 });
+        entries.put("lib/readme.txt", new byte[] { 4 });
+
+        ApkMetadata metadata = ApkMetadataExtractor.extract(zip("app.apk", entries));
+
+        assertEquals("com.example.app", metadata.packageName());
+        assertEquals(42L, metadata.versionCode());
+        assertEquals("1.2.3", metadata.versionName());
+        assertEquals(Map.of("default", "Example"), metadata.labels());
+        assertEquals(24, metadata.minSdkVersion());
+        assertEquals(List.of("arm64-v8a", "armeabi-v7a"), metadata.abis());
+        assertEquals(List.of("android.permission.INTERNET", "android.permission.CAMERA"), metadata.permissions());
+        assertEquals(List.of(), metadata.signerDigests());
+        assertEquals(List.of(), metadata.icons());
+    }
+
+    @Test
+    void readsLabelTranslationsFromResourceTable() throws IOException {
+        BinaryManifest manifest = new BinaryManifest()
+                .start("manifest", "package", "com.example.app", "versionCode", 1, "versionName", "1.0")
+                .start("application", "label", new BinaryManifest.Reference(APP_NAME)).end()
+                .end();
+        Map<String, String> translations = new LinkedHashMap<>();
+        translations.put("", "Example");
+        translations.put("zh-CN", "示例");
+        translations.put("fr", "Exemple");
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        entries.put("AndroidManifest.xml", manifest.toBytes());
+        entries.put("resources.arsc", stringResourceTable("app_name", translations));
+
+        ApkMetadata metadata = ApkMetadataExtractor.extract(zip("labels.apk", entries));
+
+        assertEquals("Example", metadata.labels().get("default"));
+        assertEquals("示例", metadata.labels().get("zh-CN"));
+        assertEquals("Exemple", metadata.labels().get("fr"));
+        assertEquals(3, metadata.labels().size());
+    }
+
+    @Test
+    void readsSignerCertificatesFromSigningBlock() throws IOException {
+        byte[] certificate = "not really DER, only hashed".getBytes(StandardCharsets.US_ASCII);
+        Path unsigned = zip("unsigned.apk", Map.of("AndroidManifest.xml", new byte[] { 0 }));
+        Path signed = insertSigningBlock(unsigned, dir.resolve("signed.apk"), certificate);
+
+        try (ZipFile zip = new ZipFile(signed.toFile())) {
+            assertEquals(List.of(DigestUtils.sha256Hex(certificate)), ApkMetadataExtractor.signerDigests(signed, zip));
+        }
+        try (ZipFile zip = new ZipFile(unsigned.toFile())) {
+            assertEquals(List.of(), ApkMetadataExtractor.signerDigests(unsigned, zip));
+        }
+    }
+
+    @Test
+    void rejectsArchivesWithoutManifest() throws IOException {
+        Path file = zip("empty.apk", Map.of("classes.dex", new byte[] { 0 }));
+        assertThrows(IllegalArgumentException.class, () -> ApkMetadataExtractor.extract(file));
+    }
+
+    @Test
+    void rejectsFilesThatAreNotArchives() throws IOException {
+        Path file = Files.write(dir.resolve("text.apk"), "hello".getBytes(StandardCharsets.US_ASCII));
+        assertThrows(ZipException.class, () -> ApkMetadataExtractor.extract(file));
+    }
+
+    private Path zip(String name, Map<String, byte[]> entries) throws IOException {
+        Path file = dir.resolve(name);
+        try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(file))) {
+            for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+                out.putNextEntry(new ZipEntry(entry.getKey()));
+                out.write(entry.getValue());
+                out.closeEntry();
+            }
+        }
+        return file;
+    }
+
+    // 在中央目录之前插入只含一个 v2 签名者证书的 APK Signing Block，并修正 EOCD 中的中央目录偏移
+    private static Path insertSigningBlock(Path source, Path target, byte[] certificate) throws IOException {
+        byte[] zip = Files.readAllBytes(source);
+        ByteBuffer in = ByteBuffer.wrap(zip).order(ByteOrder.LITTLE_ENDIAN);
+        int eocd = zip.length - 22;
+        int centralDirectoryOffset = in.getInt(eocd + 16);
+
+        byte[] certificates = lengthPrefixed(lengthPrefixed(certificate));
+        byte[] signedData = lengthPrefixed(concat(lengthPrefixed(new byte[0]), certificates));
+        byte[] signers = lengthPrefixed(lengthPrefixed(signedData));
+        ByteBuffer pair = ByteBuffer.allocate(12 + signers.length).order(ByteOrder.LITTLE_ENDIAN);
+        pair.putLong(4 + signers.length).putInt(SIGNATURE_SCHEME_V2_ID).put(signers);
+
+        long blockSize = pair.capacity() + 24L;
+        ByteBuffer block = ByteBuffer.allocate((int) blockSize + 8).order(ByteOrder.LITTLE_ENDIAN);
+        block.putLong(blockSize).put(pair.array()).putLong(blockSize)
+                .put("APK Sig Block 42".getBytes(StandardCharsets.US_ASCII));
+
+        ByteBuffer eocdRecord = ByteBuffer.wrap(zip, eocd, 22).slice().order(ByteOrder.LITTLE_ENDIAN);
+        eocdRecord.putInt(16, centralDirectoryOffset + block.capacity());
+        try (OutputStream out = Files.newOutputStream(target)) {
+            out.write(zip, 0, centralDirectoryOffset);
+            out.write(block.array());
+            out.write(zip, centralDirectoryOffset, zip.length - centralDirectoryOffset);
+        }
+        return target;
+    }
+
+    /**
+     * A resources.arsc with one package (0x7f) holding a single string resource {@code 0x7f010000}, with one
+     * configuration per entry of {@code values}; keys are {@code ""} for the default configuration, otherwise
+     * {@code language[-COUNTRY]}.
+     */
+    private static byte[] stringResourceTable(String key, Map<String, String> values) {
+        List<String> strings = new ArrayList<>(values.values());
+        byte[] globalPool = stringPool(strings);
+        byte[] typeStrings = stringPool(List.of("string"));
+        byte[] keyStrings = stringPool(List.of(key));
+
+        ByteArrayOutputStream chunks = new ByteArrayOutputStream();
+        ByteBuffer spec = chunk(0x0202, 16, 20);
+        spec.put((byte) 1).put((byte) 0).putShort((short) 0).putInt(1).putInt(0);
+        chunks.writeBytes(spec.array());
+        int valueIndex = 0;
+        for (String config : values.keySet()) {
+            String[] parts = config.split("-");
+            int headerSize = 20 + 64;
+            ByteBuffer type = chunk(0x0201, headerSize, headerSize + 4 + 16);
+            type.put((byte) 1).put((byte) 0).putShort((short) 0).putInt(1).putInt(headerSize + 4);
+            // ResTable_config：size、mcc、mnc、language[2]、country[2]，其余字段保持为 0
+            type.putInt(64).putShort((short) 0).putShort((short) 0)
+                    .put(code(parts[0])).put(code(parts.length > 1 ? parts[1] : ""));
+            type.position(headerSize);
+            type.putInt(0);
+            // ResTable_entry + Res_value(TYPE_STRING)
+            type.putShort((short) 8).putShort((short) 0).putInt(0)
+                    .putShort((short) 8).put((byte) 0).put((byte) 0x03).putInt(valueIndex++);
+            chunks.writeBytes(type.array());
+        }
+
+        int packageHeader = 288;
+        ByteBuffer pkg = chunk(0x0200, packageHeader,
+                packageHeader + typeStrings.length + keyStrings.length + chunks.size());
+        pkg.putInt(0x7f);
+        for (char c : "com.example.app".toCharArray()) {
+            pkg.putChar(c);
+        }
+        pkg.position(8 + 4 + 256);
+        pkg.putInt(packageHeader).putInt(0).putInt(packageHeader + typeStrings.length).putInt(0).putInt(0);
+        pkg.put(typeStrings).put(keyStrings).put(chunks.toByteArray());
+
+        ByteBuffer table = chunk(0x0002, 12, 12 + globalPool.length + pkg.capacity());
+        table.putInt(1).put(globalPool).put(pkg.array());
+        return table.array();
+    }
+
+    private static byte[] code(String value) {
+        byte[] code = new byte[2];
+        byte[] ascii = value.getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(ascii, 0, code, 0, ascii.length);
+        return code;
+    }
+
+    private static ByteBuffer chunk(int type, int headerSize, int size) {
+        ByteBuffer chunk = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        chunk.putShort((short) type).putShort((short) headerSize).putInt(size);
+        return chunk;
+    }
+
+    // UTF-16 字符串池，清单与资源表共用同一格式
+    private static byte[] stringPool(List<String> strings) {
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        int[] offsets = new int[strings.size()];
+        for (int i = 0; i < strings.size(); i++) {
+            offsets[i] = data.size();
+            String value = strings.get(i);
+            ByteBuffer string = ByteBuffer.allocate(4 + 2 * value.length()).order(ByteOrder.LITTLE_ENDIAN);
+            string.putShort((short) value.length());
+            for (char c : value.toCharArray()) {
+                string.putChar(c);
+            }
+            data.writeBytes(string.array());
+        }
+        while (data.size() % 4 != 0) {
+            data.write(0);
+        }
+        int stringsStart = 28 + 4 * offsets.length;
+        ByteBuffer pool = chunk(0x0001, 28, stringsStart + data.size());
+        pool.putInt(offsets.length).putInt(0).putInt(0).putInt(stringsStart).putInt(0);
+        for (int offset : offsets) {
+            pool.putInt(offset);
+        }
+        pool.put(data.toByteArray());
+        return pool.array();
+    }
+
+    private static byte[] lengthPrefixed(byte[] value) {
+        return ByteBuffer.allocate(4 + value.length).order(ByteOrder.LITTLE_ENDIAN).putInt(value.length).put(value).array();
+    }
+
+    private static byte[] concat(byte[] a, byte[] b) {
+        return ByteBuffer.allocate(a.length + b.length).put(a).put(b).array();
+    }
+
+    /**
+     * Minimal writer for Android's binary XML: a UTF-16 string pool followed by element start / end chunks whose
+     * attributes are plain strings, decimal integers or resource references, which is all the manifest translator
+     * needs.
+     */
+    private static final class BinaryManifest {
+
+        record Reference(int id) {
+        }
+
+        private static final int NO_ENTRY = -1;
+        private static final int TYPE_REFERENCE = 0x01;
+        private static final int TYPE_STRING = 0x03;
+        private static final int TYPE_INT_DEC = 0x10;
+
+        private final List<String> strings = new ArrayList<>();
+        private final ByteArrayOutputStream nodes = new ByteArrayOutputStream();
+        private final List<String> open = new ArrayList<>();
+
+        BinaryManifest start(String name, Object... attributes) {
+            int count = attributes.length / 2;
+            ByteBuffer chunk = chunk(0x0102, 16, 36 + 20 * count);
+            chunk.putInt(NO_ENTRY).putInt(index(name));
+            chunk.putShort((short) 20).putShort((short) 20).putShort((short) count)
+                    .putShort((short) 0).putShort((short) 0).putShort((short) 0);
+            for (int i = 0; i < attributes.length; i += 2) {
+                chunk.putInt(NO_ENTRY).putInt(index((String) attributes[i]));
+                Object value = attributes[i + 1];
+                if (value instanceof Integer number) {
+                    chunk.putInt(NO_ENTRY).putShort((short) 8).put((byte) 0).put((byte) TYPE_INT_DEC).putInt(number);
+                } else if (value instanceof Reference reference) {
+                    chunk.putInt(NO_ENTRY).putShort((short) 8).put((byte) 0).put((byte) TYPE_REFERENCE)
+                            .putInt(reference.id());
+                } else {
+                    int string = index((String) value);
+                    chunk.putInt(string).putShort((short) 8).put((byte) 0).put((byte) TYPE_STRING).putInt(string);
+                }
+            }
+            nodes.writeBytes(chunk.array());
+            open.add(name);
+            return this;
+        }
+
+        BinaryManifest end() {
+            String name = open.remove(open.size() - 1);
+            ByteBuffer chunk = chunk(0x0103, 16, 24);
+            chunk.putInt(NO_ENTRY).putInt(index(name));
+            nodes.writeBytes(chunk.array());
+            return this;
+        }
+
+        byte[] toBytes() {
+            byte[] pool = stringPool(strings);
+            byte[] body = nodes.toByteArray();
+            ByteBuffer file = chunk(0x0003, 8, 8 + pool.length + body.length);
+            file.put(pool).put(body);
+            return file.array();
+        }
+
+        private int index(String value) {
+            int index = strings.indexOf(value);
+            if (index < 0) {
+                strings.add(value);
+                index = strings.size() - 1;
+            }
+            return index;
+        }
+
+        // 节点块的头部还包含行号与注释引用
+        private static ByteBuffer chunk(int type, int headerSize, int size) {
+            ByteBuffer chunk = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+            chunk.putShort((short) type).putShort((short) headerSize).putInt(size);
+            if (headerSize == 16) {
+                chunk.putInt(1).putInt(NO_ENTRY);
+            }
+            return chunk;
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package dev.ouanu.iems.apk;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class DeltaPatchTest {
+
+    private static final long TIME = 1_700_000_000_000L;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void rebuildsNewArchiveByteForByte() throws IOException {
+        byte[] library = random(1, 200_000);
+        byte[] dex = random(2, 100_000);
+        Path oldApk = zip("old.apk", Map.of(
+                "AndroidManifest.xml", text("manifest v1"),
+                "classes.dex", dex,
+                "lib/arm64-v8a/libfoo.so", library,
+                "res/removed.png", random(3, 5_000)));
+        Path newApk = zip("new.apk", Map.of(
+                "AndroidManifest.xml", text("manifest v2"),
+                "classes.dex", dex,
+                "lib/arm64-v8a/libfoo.so", library,
+                "res/added.png", random(4, 5_000)));
+
+        byte[] patch = create(oldApk, newApk);
+        ByteArrayOutputStream rebuilt = new ByteArrayOutputStream();
+        DeltaPatch.Header header = DeltaPatch.apply(oldApk, new ByteArrayInputStream(patch), rebuilt);
+
+        assertArrayEquals(Files.readAllBytes(newApk), rebuilt.toByteArray());
+        assertArrayEquals(DigestUtils.sha256(Files.readAllBytes(oldApk)), header.oldSha256());
+        assertArrayEquals(DigestUtils.sha256(Files.readAllBytes(newApk)), header.newSha256());
+        assertEquals(Files.size(newApk), header.newSize());
+        // 未变的大条目以 COPY 引用旧文件，补丁远小于新文件
+        assertTrue(patch.length < Files.size(newApk) / 10, "patch " + patch.length + " bytes");
+    }
+
+    @Test
+    void unrelatedArchivesStillRoundTrip() throws IOException {
+        Path oldApk = zip("old.apk", Map.of("a.txt", text("alpha")));
+        Path newApk = zip("new.apk", Map.of("b.txt", random(5, 10_000)));
+
+        ByteArrayOutputStream rebuilt = new ByteArrayOutputStream();
+        DeltaPatch.apply(oldApk, new ByteArrayInputStream(create(oldApk, newApk)), rebuilt);
+        assertArrayEquals(Files.readAllBytes(newApk), rebuilt.toByteArray());
+    }
+
+    @Test
+    void rejectsForeignAndTruncatedPatches() throws IOException {
+        Path oldApk = zip("old.apk", Map.of("a.bin", random(6, 50_000)));
+        Path newApk = zip("new.apk", Map.of("a.bin", random(6, 50_000), "b.txt", text("new")));
+        byte[] patch = create(oldApk, newApk);
+
+        byte[] foreign = patch.clone();
+        foreign[0] = 'X';
+        assertThrows(IOException.class, () -> apply(oldApk, foreign));
+
+        byte[] truncated = Arrays.copyOf(patch, patch.length - 2);
+        assertThrows(IOException.class, () -> apply(oldApk, truncated));
+
+        // 基线文件不对：COPY 超出旧文件范围
+        Path tiny = zip("tiny.apk", Map.of("x", text("x")));
+        assertThrows(IOException.class, () -> apply(tiny, patch));
+    }
+
+    private byte[] create(Path oldApk, Path newApk) throws IOException {
+        ByteArrayOutputStream patch = new ByteArrayOutputStream();
+        DeltaPatch.create(oldApk, newApk, DigestUtils.sha256(Files.readAllBytes(oldApk)),
+                DigestUtils.sha256(Files.readAllBytes(newApk)), patch);
+        return patch.toByteArray();
+    }
+
+    private static void apply(Path oldApk, byte[] patch) throws IOException {
+        DeltaPatch.apply(oldApk, new ByteArrayInputStream(patch), OutputStream.nullOutputStream());
+    }
+
+    // 条目按名称排序写入；.so 以 STORED 存放，与 APK 的常见做法一致
+    private Path zip(String name, Map<String, byte[]> entries) throws IOException {
+        Path file = dir.resolve(name);
+        try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(file))) {
+            for (String entryName : entries.keySet().stream().sorted().toList()) {
+                byte[] data = entries.get(entryName);
+                ZipEntry entry = new ZipEntry(entryName);
+                entry.setTime(TIME);
+                if (entryName.endsWith(".so")) {
+                    CRC32 crc = new CRC32();
+                    crc.update(data);
+                    entry.setMethod(ZipEntry.STORED);
+                    entry.setSize(data.length);
+                    entry.setCompressedSize(data.length);
+                    entry.setCrc(crc.getValue());
+                }
+                out.putNextEntry(entry);
+                out.write(data);
+                out.closeEntry();
+            }
+        }
+        return file;
+    }
+
+    private static byte[] random(long seed, int length) {
+        byte[] data = new byte[length];
+        new Random(seed).nextBytes(data);
+        return data;
+    }
+
+    private static byte[] text(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,117 @@
+package dev.ouanu.iems.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+
+import io.lettuce.core.api.push.PushMessage;
+
+class NearCacheTest {
+
+    private final ConcurrentMapCache redis = new ConcurrentMapCache("apps");
+    private final ClientSideCache local = new ClientSideCache(List.of("apps::"), 100, 60_000);
+    private final Cache cache = new NearCache(redis, local);
+
+    @Test
+    void servesLocalCopyUntilServerInvalidates() {
+        redis.put("k", "v1");
+        assertEquals("v1", cache.get("k", String.class));
+
+        // 另一实例直接改写了 Redis：本地副本在收到失效推送前仍然有效
+        redis.put("k", "v2");
+        assertEquals("v1", cache.get("k", String.class));
+        assertEquals(1, local.getHits());
+
+        local.onPushMessage(invalidate("apps::k"));
+        assertEquals("v2", cache.get("k", String.class));
+        assertEquals(1, local.getInvalidations());
+    }
+
+    @Test
+    void invalidationOnlyDropsListedKeys() {
+        redis.put("a", "1");
+        redis.put("b", "2");
+        cache.get("a");
+        cache.get("b");
+
+        local.onPushMessage(invalidate("apps::a"));
+
+        assertEquals(1, local.size());
+        redis.put("b", "3");
+        assertEquals("2", cache.get("b", String.class));
+    }
+
+    @Test
+    void flushInvalidationClearsEverything() {
+        redis.put("a", "1");
+        cache.get("a");
+
+        local.onPushMessage(invalidate(null));
+
+        assertEquals(0, local.size());
+    }
+
+    @Test
+    void invalidationDuringLoadIsNotOverwrittenByTheLoadedValue() {
+        String value = local.get("apps::k", () -> {
+            local.onPushMessage(invalidate("apps::k"));
+            return "stale";
+        });
+
+        assertEquals("stale", value);
+        assertEquals(0, local.size());
+    }
+
+    @Test
+    void ignoresOtherPushMessages() {
+        redis.put("a", "1");
+        cache.get("a");
+
+        local.onPushMessage(push("message", List.of()));
+
+        assertEquals(1, local.size());
+        assertNull(cache.get("missing"));
+    }
+
+    // RESP3 推送：["invalidate", [key, ...]]，FLUSHALL 时 key 列表为 null
+    private static PushMessage invalidate(String key) {
+        return push("invalidate", key == null ? null : List.of(key));
+    }
+
+    private static PushMessage push(String type, List<String> keys) {
+        return new PushMessage() {
+            @Override
+            public String getType() {
+                return type;
+            }
+
+            @Override
+            public List<Object> getContent() {
+                return getContent(buffer -> buffer);
+            }
+
+            @Override
+            public List<Object> getContent(Function<ByteBuffer, Object> decode) {
+                List<Object> content = new ArrayList<>();
+                content.add(type);
+                if (keys == null) {
+                    content.add(null);
+                } else {
+                    content.add(keys.stream()
+                            .map(k -> decode.apply(ByteBuffer.wrap(k.getBytes(StandardCharsets.UTF_8))))
+                            .toList());
+                }
+                return content;
+            }
+        };
+    }
+}
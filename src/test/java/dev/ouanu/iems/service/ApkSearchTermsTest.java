@@ -0,0 +1,69 @@
+package dev.ouanu.iems.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.Test;
+
+class ApkSearchTermsTest {
+
+    @Test
+    void collectsNormalizedLabelsAndWords() {
+        Map<String, String> labels = new LinkedHashMap<>();
+        labels.put("default", "  My   App ");
+        labels.put("de", "Meine-App");
+        assertEquals(List.of("my app", "my", "app", "meine-app", "meine"), ApkSearchTerms.of(labels));
+    }
+
+    @Test
+    void normalizesWidthAndCase() {
+        assertEquals("abc 123", ApkSearchTerms.normalize("ＡＢＣ\t１２３"));
+        assertEquals("", ApkSearchTerms.normalize(null));
+    }
+
+    @Test
+    void addsSuffixesOfCjkRuns() {
+        List<String> terms = ApkSearchTerms.of(Map.of("default", "微信支付"));
+        assertEquals(List.of("微信支付", "信支付", "支付", "付"), terms);
+        assertTrue(matchesAny(terms, "支付"));
+
+        List<String> mixed = ApkSearchTerms.of(Map.of("default", "微信pay"));
+        assertTrue(mixed.contains("pay"), mixed.toString());
+        assertFalse(mixed.contains("ay"), mixed.toString());
+    }
+
+    @Test
+    void boundsTheNumberAndLengthOfTerms() {
+        Map<String, String> labels = Map.of("default", "字".repeat(200));
+        List<String> terms = ApkSearchTerms.of(labels);
+        assertEquals(64, terms.size());
+        assertTrue(terms.stream().allMatch(term -> term.length() <= 128));
+    }
+
+    @Test
+    void splitsQueryWordsOnPunctuation() {
+        assertEquals(List.of("wechat", "pay"), ApkSearchTerms.words("  \"WeChat\" -Pay "));
+        assertEquals(List.of(), ApkSearchTerms.words(null));
+    }
+
+    @Test
+    void prefixRegexIsAnchoredAndLiteral() {
+        String regex = ApkSearchTerms.prefixRegex("a.b*(c)");
+        assertEquals("^a\\.b\\*\\(c\\)", regex);
+        Pattern pattern = Pattern.compile(regex);
+        assertTrue(pattern.matcher("a.b*(c) pro").find());
+        assertFalse(pattern.matcher("xa.b*(c)").find());
+        assertFalse(pattern.matcher("aXbb(c)").find());
+    }
+
+    private static boolean matchesAny(List<String> terms, String input) {
+        Pattern pattern = Pattern.compile(ApkSearchTerms.prefixRegex(ApkSearchTerms.normalize(input)));
+        return terms.stream().anyMatch(term -> pattern.matcher(term).find());
+    }
+}
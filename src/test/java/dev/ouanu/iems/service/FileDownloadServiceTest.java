@@ -0,0 +1,171 @@
+package dev.ouanu.iems.service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class FileDownloadServiceTest {
+
+    private static final String ETAG = "\"abc\"";
+    private static final byte[] CONTENT = "0123456789".getBytes(StandardCharsets.US_ASCII);
+
+    @TempDir
+    Path dir;
+
+    private final FileDownloadService service = new FileDownloadService(new SimpleMeterRegistry());
+    private Path file;
+
+    @BeforeEach
+    void writeFile() throws IOException {
+        file = Files.write(dir.resolve("data.bin"), CONTENT);
+    }
+
+    @Test
+    void servesFullBodyWithoutRange() throws IOException {
+        MockHttpServletResponse response = send(request());
+        assertEquals(200, response.getStatus());
+        assertEquals("bytes", response.getHeader(HttpHeaders.ACCEPT_RANGES));
+        assertEquals(ETAG, response.getHeader(HttpHeaders.ETAG));
+        assertEquals(10, response.getContentLengthLong());
+        assertArrayEquals(CONTENT, response.getContentAsByteArray());
+    }
+
+    @Test
+    void cachesImmutableUnlessOverridden() throws IOException {
+        assertEquals(FileDownloadService.CACHE_IMMUTABLE, send(request()).getHeader(HttpHeaders.CACHE_CONTROL));
+
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        service.send(request(), response, file, ETAG, MediaType.APPLICATION_OCTET_STREAM, "data.bin", "test",
+                FileDownloadService.CACHE_REVALIDATE);
+        assertEquals(FileDownloadService.CACHE_REVALIDATE, response.getHeader(HttpHeaders.CACHE_CONTROL));
+        assertEquals(ETAG, response.getHeader(HttpHeaders.ETAG));
+    }
+
+    @Test
+    void servesSingleRanges() throws IOException {
+        assertPartial("bytes=2-5", "2345", "bytes 2-5/10");
+        assertPartial("bytes=7-", "789", "bytes 7-9/10");
+        assertPartial("bytes=-3", "789", "bytes 7-9/10");
+        assertPartial("bytes=8-100", "89", "bytes 8-9/10");
+    }
+
+    @Test
+    void answersUnsatisfiableRanges() throws IOException {
+        MockHttpServletRequest request = request();
+        request.addHeader(HttpHeaders.RANGE, "bytes=10-20");
+        MockHttpServletResponse response = send(request);
+        assertEquals(416, response.getStatus());
+        assertEquals("bytes */10", response.getHeader(HttpHeaders.CONTENT_RANGE));
+        assertEquals(0, response.getContentAsByteArray().length);
+    }
+
+    @Test
+    void ignoresMalformedAndMultipleRanges() throws IOException {
+        for (String range : new String[] { "bytes=abc", "items=0-1", "bytes=0-1,4-5" }) {
+            MockHttpServletRequest request = request();
+            request.addHeader(HttpHeaders.RANGE, range);
+            MockHttpServletResponse response = send(request);
+            assertEquals(200, response.getStatus(), range);
+            assertArrayEquals(CONTENT, response.getContentAsByteArray(), range);
+        }
+    }
+
+    @Test
+    void honoursRangeOnlyWhenIfRangeMatches() throws IOException {
+        MockHttpServletRequest matching = request();
+        matching.addHeader(HttpHeaders.RANGE, "bytes=0-1");
+        matching.addHeader(HttpHeaders.IF_RANGE, ETAG);
+        assertEquals(206, send(matching).getStatus());
+
+        for (String ifRange : new String[] { "\"other\"", "W/\"abc\"", "Wed, 21 Oct 2015 07:28:00 GMT" }) {
+            MockHttpServletRequest stale = request();
+            stale.addHeader(HttpHeaders.RANGE, "bytes=0-1");
+            stale.addHeader(HttpHeaders.IF_RANGE, ifRange);
+            MockHttpServletResponse response = send(stale);
+            assertEquals(200, response.getStatus(), ifRange);
+            assertArrayEquals(CONTENT, response.getContentAsByteArray(), ifRange);
+        }
+    }
+
+    @Test
+    void answersNotModifiedForMatchingTag() throws IOException {
+        for (String ifNoneMatch : new String[] { ETAG, "\"x\", " + ETAG, "W/" + ETAG, "*" }) {
+            MockHttpServletRequest request = request();
+            request.addHeader(HttpHeaders.IF_NONE_MATCH, ifNoneMatch);
+            MockHttpServletResponse response = send(request);
+            assertEquals(304, response.getStatus(), ifNoneMatch);
+            assertEquals(0, response.getContentAsByteArray().length);
+        }
+    }
+
+    @Test
+    void headSendsHeadersOnly() throws IOException {
+        MockHttpServletRequest request = request();
+        request.setMethod("HEAD");
+        request.addHeader(HttpHeaders.RANGE, "bytes=0-3");
+        MockHttpServletResponse response = send(request);
+        assertEquals(206, response.getStatus());
+        assertEquals(4, response.getContentLengthLong());
+        assertEquals(0, response.getContentAsByteArray().length);
+    }
+
+    @Test
+    void handsRangeToSendfileWhenSupported() throws IOException {
+        MockHttpServletRequest request = request();
+        request.setAttribute("org.apache.tomcat.sendfile.support", Boolean.TRUE);
+        request.addHeader(HttpHeaders.RANGE, "bytes=4-");
+        MockHttpServletResponse response = send(request);
+        assertEquals(206, response.getStatus());
+        assertEquals(file.toAbsolutePath().toString(), request.getAttribute("org.apache.tomcat.sendfile.filename"));
+        assertEquals(4L, request.getAttribute("org.apache.tomcat.sendfile.start"));
+        assertEquals(10L, request.getAttribute("org.apache.tomcat.sendfile.end"));
+        assertEquals(0, response.getContentAsByteArray().length);
+    }
+
+    @Test
+    void withoutEtagSkipsConditionals() throws IOException {
+        MockHttpServletRequest request = request();
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, "*");
+        request.addHeader(HttpHeaders.RANGE, "bytes=0-1");
+        request.addHeader(HttpHeaders.IF_RANGE, ETAG);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        service.send(request, response, file, null, MediaType.APPLICATION_OCTET_STREAM, null, "test");
+        assertEquals(200, response.getStatus());
+        assertNull(response.getHeader(HttpHeaders.ETAG));
+    }
+
+    private void assertPartial(String range, String body, String contentRange) throws IOException {
+        MockHttpServletRequest request = request();
+        request.addHeader(HttpHeaders.RANGE, range);
+        MockHttpServletResponse response = send(request);
+        assertEquals(206, response.getStatus(), range);
+        assertEquals(contentRange, response.getHeader(HttpHeaders.CONTENT_RANGE), range);
+        assertEquals(body.length(), response.getContentLengthLong(), range);
+        assertEquals(body, new String(response.getContentAsByteArray(), StandardCharsets.US_ASCII), range);
+    }
+
+    private MockHttpServletResponse send(MockHttpServletRequest request) throws IOException {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        service.send(request, response, file, ETAG, MediaType.APPLICATION_OCTET_STREAM, "data.bin", "test");
+        return response;
+    }
+
+    private static MockHttpServletRequest request() {
+        return new MockHttpServletRequest("GET", "/download");
+    }
+}
@@ -0,0 +1,47 @@
+package dev.ouanu.iems.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import org.junit.jupiter.api.Test;
+
+class CursorCodecTest {
+
+    @Test
+    void roundTripsIds() {
+        for (long id : new long[] { 0L, 1L, 1_234_567_890_123_456_789L, Long.MAX_VALUE }) {
+            assertEquals(id, CursorCodec.decode(CursorCodec.encode(id)));
+        }
+    }
+
+    @Test
+    void encodesAsUrlSafeTokenWithoutPadding() {
+        String token = CursorCodec.encode(Long.MAX_VALUE);
+        assertTrue(token.matches("[A-Za-z0-9_-]+"), token);
+    }
+
+    @Test
+    void nullAndBlankMeanFirstPage() {
+        assertNull(CursorCodec.encode(null));
+        assertNull(CursorCodec.decode(null));
+        assertNull(CursorCodec.decode(""));
+        assertNull(CursorCodec.decode("  "));
+    }
+
+    @Test
+    void rejectsMalformedTokens() {
+        assertThrows(IllegalArgumentException.class, () -> CursorCodec.decode("not base64!"));
+        assertThrows(IllegalArgumentException.class, () -> CursorCodec.decode(urlBase64("42")));
+        assertThrows(IllegalArgumentException.class, () -> CursorCodec.decode(urlBase64("k1:abc")));
+        assertThrows(IllegalArgumentException.class, () -> CursorCodec.decode(urlBase64("k2:42")));
+    }
+
+    private static String urlBase64(String raw) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+}
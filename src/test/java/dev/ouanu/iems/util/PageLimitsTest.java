@@ -0,0 +1,22 @@
+package dev.ouanu.iems.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+class PageLimitsTest {
+
+    @Test
+    void defaultsNonPositiveLimits() {
+        assertEquals(PageLimits.DEFAULT_LIMIT, PageLimits.clamp(0));
+        assertEquals(PageLimits.DEFAULT_LIMIT, PageLimits.clamp(-5));
+        assertEquals(30, PageLimits.clamp(0, 30, 200));
+    }
+
+    @Test
+    void capsLargeLimits() {
+        assertEquals(50, PageLimits.clamp(50));
+        assertEquals(PageLimits.MAX_LIMIT, PageLimits.clamp(PageLimits.MAX_LIMIT + 1));
+        assertEquals(200, PageLimits.clamp(201, 30, 200));
+    }
+}
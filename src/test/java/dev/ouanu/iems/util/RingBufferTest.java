@@ -0,0 +1,109 @@
+package dev.ouanu.iems.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+class RingBufferTest {
+
+    @Test
+    void roundsCapacityUpToPowerOfTwo() {
+        assertEquals(2, new RingBuffer<>(2).capacity());
+        assertEquals(8, new RingBuffer<>(5).capacity());
+        assertEquals(16, new RingBuffer<>(16).capacity());
+        assertThrows(IllegalArgumentException.class, () -> new RingBuffer<>(1));
+    }
+
+    @Test
+    void rejectsOffersWhenFull() {
+        RingBuffer<Integer> buffer = new RingBuffer<>(4);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(buffer.offer(i));
+        }
+        assertFalse(buffer.offer(4));
+        assertEquals(4, buffer.size());
+    }
+
+    @Test
+    void drainsOldestFirstAndRespectsMax() {
+        RingBuffer<Integer> buffer = new RingBuffer<>(4);
+        for (int i = 0; i < 4; i++) {
+            buffer.offer(i);
+        }
+        List<Integer> sink = new ArrayList<>();
+        assertEquals(3, buffer.drainTo(sink, 3));
+        assertEquals(List.of(0, 1, 2), sink);
+        assertEquals(1, buffer.size());
+        assertEquals(1, buffer.drainTo(sink, 10));
+        assertEquals(List.of(0, 1, 2, 3), sink);
+        assertEquals(0, buffer.drainTo(sink, 10));
+    }
+
+    @Test
+    void reusesSlotsAcrossLaps() {
+        RingBuffer<Integer> buffer = new RingBuffer<>(2);
+        List<Integer> sink = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            assertTrue(buffer.offer(i));
+            assertEquals(1, buffer.drainTo(sink, 1));
+        }
+        assertEquals(100, sink.size());
+        assertEquals(99, sink.get(99));
+        assertEquals(0, buffer.size());
+    }
+
+    @Test
+    void concurrentProducersNeitherLoseNorDuplicateAcceptedElements() throws Exception {
+        int producers = 4;
+        int perProducer = 10_000;
+        RingBuffer<Integer> buffer = new RingBuffer<>(1024);
+        AtomicInteger accepted = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(producers);
+        try {
+            for (int p = 0; p < producers; p++) {
+                int base = p * perProducer;
+                pool.execute(() -> {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                    for (int i = 0; i < perProducer; i++) {
+                        if (buffer.offer(base + i)) {
+                            accepted.incrementAndGet();
+                        }
+                    }
+                });
+            }
+            start.countDown();
+            pool.shutdown();
+            List<Integer> drained = new ArrayList<>();
+            while (!pool.isTerminated()) {
+                buffer.drainTo(drained, 256);
+                pool.awaitTermination(1, TimeUnit.MILLISECONDS);
+            }
+            buffer.drainTo(drained, Integer.MAX_VALUE);
+
+            assertEquals(accepted.get(), drained.size());
+            Set<Integer> distinct = new HashSet<>(drained);
+            assertEquals(drained.size(), distinct.size());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}